@@ -0,0 +1,188 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// JMH benchmarks for every TicketPool implementation, selected through TicketPoolManager
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class TicketPoolBenchmark {
+    private static final int TICKET_NAMES = 1 << 16;
+
+    @Param({"SYNCHRONIZED", "REENTRANT_LOCK", "BLOCKING_QUEUE", "LOCK_FREE_RING", "SHARDED", "OFF_HEAP", "TIERED"})
+    public String mechanism;
+
+    @Param({"1024", "65536"})
+    public int capacity;
+
+    // Percentage of capacity filled before each iteration; 0 and 100 exercise the empty and full edges
+    @Param({"0", "50", "100"})
+    public int fillPercent;
+
+    private TicketPoolManager pool;
+    private String[] ticketNames;
+
+    @Setup(Level.Trial)
+    public void createPool() {
+        // Preformatted so the benchmarks measure the pool rather than string building
+        ticketNames = new String[TICKET_NAMES];
+        for (int i = 0; i < TICKET_NAMES; i++) {
+            ticketNames[i] = "Ticket-Bench-" + i;
+        }
+        pool = new TicketPoolManager(capacity);
+        pool.switchSynchronizationMechanism(SynchronizationMechanism.valueOf(mechanism));
+    }
+
+    @Setup(Level.Iteration)
+    public void fillPool() {
+        // Bring the pool back to the requested fill level so every iteration starts from the same state
+        int target = capacity * fillPercent / 100;
+        while (pool.getAvailableTickets() > target && pool.tryPurchase() != null) {
+            // Drain excess tickets
+        }
+        for (int i = pool.getAvailableTickets(); i < target; i++) {
+            pool.addTicket(ticketNames[i & (TICKET_NAMES - 1)]);
+        }
+    }
+
+    // Per-thread cursor into the preformatted ticket names
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        String nextTicket(String[] names) {
+            return names[next++ & (TICKET_NAMES - 1)];
+        }
+    }
+
+    /**
+     * Add path. When the pool is full, one ticket is purchased to make room so that the
+     * fill level stays steady and the add path keeps being exercised.
+     */
+    @Benchmark
+    public boolean add(Cursor cursor) {
+        if (pool.addTicket(cursor.nextTicket(ticketNames))) {
+            return true;
+        }
+        pool.tryPurchase();
+        return false;
+    }
+
+    /**
+     * Purchase path. When the pool is empty, one ticket is added so that the fill level stays steady.
+     * Uses tryPurchase so that a benchmark thread can never block forever at teardown.
+     */
+    @Benchmark
+    public String purchase(Cursor cursor) {
+        String ticket = pool.tryPurchase();
+        if (ticket == null) {
+            pool.addTicket(cursor.nextTicket(ticketNames));
+        }
+        return ticket;
+    }
+
+    /**
+     * Withdraw path: a ticket is added and then removed by ID through the pool's index. When the pool is full,
+     * one ticket is purchased first so that the add lands and the removal has something to find.
+     */
+    @Benchmark
+    public boolean withdraw(Cursor cursor) {
+        String ticket = cursor.nextTicket(ticketNames);
+        if (!pool.addTicket(ticket)) {
+            pool.tryPurchase();
+            pool.addTicket(ticket);
+        }
+        return pool.removeTicket(ticket);
+    }
+
+    /**
+     * Checkout path: a ticket is held and the hold confirmed straight away, which includes scheduling the hold
+     * on the timing wheel. When the pool is empty, one ticket is added first so that the hold has something to take.
+     */
+    @Benchmark
+    public boolean holdAndConfirm(Cursor cursor) {
+        TicketHold hold = pool.holdTicket(1, TimeUnit.MINUTES);
+        if (hold == null) {
+            pool.addTicket(cursor.nextTicket(ticketNames));
+            return false;
+        }
+        return pool.confirm(hold);
+    }
+
+    /**
+     * Mixed workload: producers and consumers run concurrently against the same pool.
+     * Each group runs one adder and one purchaser (GroupThreads); the -tg command line option overrides the
+     * split, and the thread count sets how many groups run.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean mixedAdd(Cursor cursor) {
+        return pool.addTicket(cursor.nextTicket(ticketNames));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public String mixedPurchase() {
+        return pool.tryPurchase();
+    }
+
+    /**
+     * Read paths while a writer keeps changing the pool, showing how readers and writers interfere.
+     */
+    @Benchmark
+    @Group("readUnderLoad")
+    @GroupThreads(3)
+    public void readStatus(Blackhole blackhole) {
+        blackhole.consume(pool.getAvailableTickets());
+        blackhole.consume(pool.viewTicketInfo(0));
+    }
+
+    @Benchmark
+    @Group("readUnderLoad")
+    @GroupThreads(1)
+    public String readUnderLoadWriter(Cursor cursor) {
+        if (!pool.addTicket(cursor.nextTicket(ticketNames))) {
+            return pool.tryPurchase();
+        }
+        return null;
+    }
+
+    /**
+     * Runs the suite with a chosen thread count, which JMH cannot take as a @Param.
+     * Group benchmarks run as many whole groups as fit the count, keeping their GroupThreads split.
+     * Usage: TicketPoolBenchmark [threads] [benchmark regex]
+     */
+    public static void main(String[] args) throws RunnerException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        String include = args.length > 1 ? args[1] : TicketPoolBenchmark.class.getSimpleName();
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .threads(threads)
+                .build();
+        new Runner(options).run();
+    }
+}
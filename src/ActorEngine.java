@@ -0,0 +1,172 @@
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs stepped actors as tasks on a scheduled pool sized to the cores. Between steps an actor is only a queued
+// task, and an actor waiting for a ticket holds an asynchronous purchase, so hundreds of thousands of actors
+// fit in one JVM without a thread stack each.
+final class ActorEngine implements AutoCloseable {
+    private final ScheduledThreadPoolExecutor executor;
+    private final Set<Task> tasks = ConcurrentHashMap.newKeySet();
+
+    ActorEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    ActorEngine(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(threads, task -> {
+            Thread thread = new Thread(task, "actor-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true); // Stopped actors leave no cancelled steps in the queue
+    }
+
+    /**
+     * Starts stepping the actor at once.
+     *
+     * @return the task, to stop the actor with
+     */
+    Task start(SteppedActor actor) {
+        Task task = new Task(actor);
+        tasks.add(task);
+        task.done.whenComplete((ignored, failure) -> tasks.remove(task));
+        synchronized (task) {
+            task.next = executor.schedule(task, 0, TimeUnit.MILLISECONDS);
+        }
+        return task;
+    }
+
+    // The number of actors started and not yet stopped
+    int getActorCount() {
+        return tasks.size();
+    }
+
+    // The number of threads the engine has started so far
+    int getThreadCount() {
+        return executor.getPoolSize();
+    }
+
+    /**
+     * Stops every actor, waits up to ten seconds for their steps to finish, and shuts the threads down.
+     */
+    @Override
+    public void close() {
+        CompletableFuture<?>[] stopped = tasks.stream().map(Task::stop).toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(stopped).get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.out.println("Warning: " + tasks.size() + " actors were still stepping when the engine closed");
+        }
+        executor.shutdownNow();
+    }
+
+    // One actor: runs a step, then schedules the next after the actor's delay, or after the future it is
+    // waiting on completes
+    final class Task implements Runnable {
+        private final SteppedActor actor;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        // Guarded by this
+        private boolean stopped;
+        private boolean stepping;
+        private ScheduledFuture<?> next;
+        private CompletableFuture<?> waiting;
+
+        private Task(SteppedActor actor) {
+            this.actor = actor;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                stepping = true;
+                next = null;
+            }
+            CompletableFuture<?> pending;
+            try {
+                pending = actor.step();
+            } catch (RuntimeException e) {
+                System.out.println("Warning: actor stopped after a failed step: " + e);
+                synchronized (this) {
+                    stopped = true;
+                    stepping = false;
+                }
+                done.complete(null);
+                return;
+            }
+            synchronized (this) {
+                stepping = false;
+                if (stopped) {
+                    if (pending != null) {
+                        pending.cancel(false); // Stopped during the step: withdraw what it started
+                    }
+                    done.complete(null);
+                } else if (pending != null) {
+                    waiting = pending;
+                    pending.whenComplete((result, failure) -> resume());
+                } else {
+                    scheduleNext();
+                }
+            }
+        }
+
+        /**
+         * Stops the actor. A step in progress is allowed to finish and a purchase it is waiting on is cancelled.
+         *
+         * @return a future completed once the actor has taken its last step
+         */
+        CompletableFuture<Void> stop() {
+            CompletableFuture<?> cancelled = null;
+            synchronized (this) {
+                if (stopped) {
+                    return done;
+                }
+                stopped = true;
+                if (stepping) {
+                    return done; // run() completes it when the step returns
+                }
+                if (waiting != null) {
+                    cancelled = waiting;
+                } else {
+                    if (next != null) {
+                        next.cancel(false);
+                    }
+                    done.complete(null);
+                }
+            }
+            if (cancelled != null) {
+                cancelled.cancel(false); // resume() completes done, whether or not the purchase had already finished
+            }
+            return done;
+        }
+
+        // Follows the completion of the future the last step returned
+        private synchronized void resume() {
+            waiting = null;
+            if (stopped) {
+                done.complete(null);
+            } else {
+                scheduleNext();
+            }
+        }
+
+        // Called with the lock held
+        private void scheduleNext() {
+            try {
+                next = executor.schedule(this, actor.nextDelayMs(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                stopped = true; // The engine is shutting down
+                done.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// A started producer, consumer or reader, running either on a thread of its own or on an ActorEngine.
+// Stopping is split in two so many actors can be asked to stop at once and then awaited together.
+final class ActorHandle {
+    private final SteppedActor actor;
+    private final Thread thread;          // Null when the actor runs on an engine
+    private final ActorEngine.Task task;  // Null when the actor has its own thread
+
+    private ActorHandle(SteppedActor actor, Thread thread, ActorEngine.Task task) {
+        this.actor = actor;
+        this.thread = thread;
+        this.task = task;
+    }
+
+    // Starts the actor on a new thread from the factory
+    static ActorHandle start(SteppedActor actor, ThreadFactory threadFactory) {
+        Thread thread = threadFactory.newThread(actor);
+        thread.start();
+        return new ActorHandle(actor, thread, null);
+    }
+
+    // Starts the actor as a task on the engine
+    static ActorHandle start(SteppedActor actor, ActorEngine engine) {
+        return new ActorHandle(actor, null, engine.start(actor));
+    }
+
+    // Changes the actor's delay between operations; it applies from the next operation on
+    void setDelayMs(int delayMs) {
+        actor.setDelayMs(delayMs);
+    }
+
+    // Asks the actor to stop without waiting for it
+    void stop() {
+        if (task != null) {
+            task.stop();
+        } else {
+            actor.stop();
+            thread.interrupt(); // Wakes it from a sleep or a blocking pool call
+        }
+    }
+
+    /**
+     * Waits for a stopped actor to finish its last operation.
+     *
+     * @return true if it finished within the timeout
+     */
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        if (task != null) {
+            try {
+                task.stop().get(timeout, unit);
+                return true;
+            } catch (TimeoutException e) {
+                return false;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e); // A task's done future is only ever completed normally
+            }
+        }
+        thread.join(unit.toMillis(timeout));
+        return !thread.isAlive();
+    }
+}
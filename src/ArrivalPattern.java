@@ -0,0 +1,6 @@
+// Enum to represent how a scenario spaces the arrivals of adds and purchases
+public enum ArrivalPattern {
+    POISSON,
+    BURSTY,
+    UNIFORM
+}
@@ -0,0 +1,299 @@
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Chooses the implementation behind the AUTO mechanism. Each interval it reads the current implementation's
+// statistics for the interval just ended, classifies the load by contention, wait share and read share, and
+// switches when another implementation suits the load better. Hysteresis keeps it from flapping: each
+// classification has separate enter and leave thresholds, a new choice must win several intervals in a row,
+// a switch is followed by a settling period, and a switch that made contention clearly worse is undone and
+// not retried for a while. Every decision is kept with its reason so the tuning can be audited.
+final class AutoTuner {
+    // Only FIFO implementations without tiers, so tuning never changes what buyers observe
+    private static final Set<SynchronizationMechanism> CANDIDATES = EnumSet.of(SynchronizationMechanism.SYNCHRONIZED,
+            SynchronizationMechanism.REENTRANT_LOCK, SynchronizationMechanism.BLOCKING_QUEUE,
+            SynchronizationMechanism.LOCK_FREE_RING);
+    // Calls that may park the caller until the pool changes; their latency is waiting, not contention
+    private static final Set<PoolStatistics.Operation> BLOCKING = EnumSet.of(PoolStatistics.Operation.PUT,
+            PoolStatistics.Operation.OFFER_TIMED, PoolStatistics.Operation.PURCHASE, PoolStatistics.Operation.PURCHASE_TIMED,
+            PoolStatistics.Operation.PURCHASE_BATCH, PoolStatistics.Operation.PURCHASE_ASYNC);
+
+    private static final int MIN_OPERATIONS = 500; // Fewer calls in an interval say too little to act on
+    private static final long CONTENDED_ENTER_NANOS = 50_000;
+    private static final long CONTENDED_LEAVE_NANOS = 10_000;
+    private static final double READ_HEAVY_ENTER = 0.6;
+    private static final double READ_HEAVY_LEAVE = 0.4;
+    private static final double WAIT_HEAVY_ENTER = 0.10;
+    private static final double WAIT_HEAVY_LEAVE = 0.02;
+    private static final int CONFIRMATIONS = 3; // Intervals in a row a new choice must win before it is applied
+    private static final int SETTLING_INTERVALS = 3; // Intervals after a switch before the next one is considered
+    private static final double REGRESSION_FACTOR = 1.5; // Contention this much worse after a switch undoes it
+    private static final int BACKOFF_INTERVALS = 60; // How long an undone choice is not retried
+    private static final int MAX_DECISIONS = 256;
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "auto-tuner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final TicketPoolManager manager;
+    private final long intervalMillis;
+    private final ArrayDeque<String> decisions = new ArrayDeque<>(); // Guarded by itself
+    private ScheduledFuture<?> task;
+
+    // Sampling state, touched only by the scheduler thread
+    private SynchronizationMechanism baselineMechanism;
+    private long baselineSince;
+    private final Map<PoolStatistics.Operation, LatencyHistogram.Snapshot> baseline = new EnumMap<>(PoolStatistics.Operation.class);
+    private long baselineWaits;
+
+    // Decision state
+    private long interval;
+    private boolean contended;
+    private boolean readHeavy;
+    private boolean waitHeavy;
+    private SynchronizationMechanism favoured;
+    private int favouredIntervals;
+    private long lastSwitchInterval = -SETTLING_INTERVALS;
+    private SynchronizationMechanism switchedFrom;
+    private long contentionBeforeSwitch;
+    private final Map<SynchronizationMechanism, Long> backedOffUntil = new EnumMap<>(SynchronizationMechanism.class);
+
+    AutoTuner(TicketPoolManager manager, long intervalMillis) {
+        this.manager = manager;
+        this.intervalMillis = Math.max(1, intervalMillis);
+    }
+
+    /**
+     * Starts sampling on the shared tuner thread.
+     */
+    synchronized void start() {
+        if (task == null) {
+            task = SCHEDULER.scheduleAtFixedRate(this::run, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops sampling; a sample already running may still finish.
+     */
+    synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    /**
+     * Returns the most recent decisions, oldest first, each with its time, outcome and reason.
+     */
+    List<String> getDecisions() {
+        synchronized (decisions) {
+            return new ArrayList<>(decisions);
+        }
+    }
+
+    // One sampling interval: measure, decide and apply
+    private void run() {
+        try {
+            SynchronizationMechanism active = manager.getCurrentMechanism();
+            Sample sample = measure(active);
+            if (sample == null) {
+                return;
+            }
+            SynchronizationMechanism target = decide(active, sample);
+            if (target != null && manager.switchForTuner(this, target)) {
+                baselineMechanism = null; // The new implementation's statistics start from a fresh baseline
+            }
+        } catch (RuntimeException e) {
+            log("error", "sampling failed: " + e);
+        }
+    }
+
+    // Reads what the active implementation recorded since the last sample. Returns null when there is no earlier
+    // sample of the same implementation to compare with, which is also how a statistics reset is absorbed
+    private Sample measure(SynchronizationMechanism active) {
+        PoolStatistics statistics = manager.getStatistics(active);
+        if (!statistics.isEnabled()) {
+            log("hold", "statistics are off, so there is nothing to judge " + active + " by");
+            baselineMechanism = null;
+            return null;
+        }
+        Map<PoolStatistics.Operation, LatencyHistogram.Snapshot> now = new EnumMap<>(PoolStatistics.Operation.class);
+        for (PoolStatistics.Operation operation : PoolStatistics.Operation.values()) {
+            now.put(operation, statistics.snapshot(operation));
+        }
+        long waits = statistics.getEmptyPoolWaits() + statistics.getFullPoolWaits();
+        boolean comparable = active == baselineMechanism && statistics.getSince() == baselineSince;
+
+        Sample sample = null;
+        if (comparable) {
+            long operations = 0;
+            long reads = 0;
+            long contentionNanos = 0;
+            long waitNanos = 0;
+            for (PoolStatistics.Operation operation : PoolStatistics.Operation.values()) {
+                LatencyHistogram.Snapshot delta = now.get(operation).since(baseline.get(operation));
+                operations += delta.getCount();
+                if (operation == PoolStatistics.Operation.READ) {
+                    reads += delta.getCount();
+                }
+                // The worst p99 among the call types decides, so a slow minority is not averaged away
+                if (BLOCKING.contains(operation)) {
+                    waitNanos = Math.max(waitNanos, delta.getPercentile(99));
+                } else {
+                    contentionNanos = Math.max(contentionNanos, delta.getPercentile(99));
+                }
+            }
+            sample = new Sample(operations, reads, waits - baselineWaits, contentionNanos, waitNanos);
+        } else {
+            log("hold", "taking a baseline of " + active);
+        }
+        baselineMechanism = active;
+        baselineSince = statistics.getSince();
+        baseline.putAll(now);
+        baselineWaits = waits;
+        return sample;
+    }
+
+    /**
+     * Classifies one interval's load and returns the implementation to switch to, or null to stay.
+     * Every call logs its outcome and reason.
+     */
+    SynchronizationMechanism decide(SynchronizationMechanism active, Sample sample) {
+        interval++;
+        if (sample.operations < MIN_OPERATIONS) {
+            favoured = null;
+            log("hold", active + " stays: " + sample + ", fewer than " + MIN_OPERATIONS + " calls to judge by");
+            return null;
+        }
+
+        // Undo a switch that made things clearly worse, once it has had time to settle
+        if (switchedFrom != null && interval - lastSwitchInterval >= SETTLING_INTERVALS) {
+            SynchronizationMechanism previous = switchedFrom;
+            switchedFrom = null;
+            if (sample.contentionNanos > CONTENDED_ENTER_NANOS
+                    && sample.contentionNanos > contentionBeforeSwitch * REGRESSION_FACTOR) {
+                backedOffUntil.put(active, interval + BACKOFF_INTERVALS);
+                favoured = null;
+                lastSwitchInterval = interval;
+                log("revert", active + " -> " + previous + ": " + sample + ", contention rose from "
+                        + micros(contentionBeforeSwitch) + " after the switch; " + active + " not retried for "
+                        + BACKOFF_INTERVALS + " intervals");
+                return previous;
+            }
+        }
+
+        // Each classification has a band between its enter and leave thresholds in which it keeps its last value
+        contended = contended ? sample.contentionNanos >= CONTENDED_LEAVE_NANOS : sample.contentionNanos > CONTENDED_ENTER_NANOS;
+        readHeavy = readHeavy ? sample.readShare() >= READ_HEAVY_LEAVE : sample.readShare() > READ_HEAVY_ENTER;
+        waitHeavy = waitHeavy ? sample.waitShare() >= WAIT_HEAVY_LEAVE : sample.waitShare() > WAIT_HEAVY_ENTER;
+
+        SynchronizationMechanism target;
+        String reason;
+        if (!contended) {
+            target = SynchronizationMechanism.SYNCHRONIZED;
+            reason = "uncontended, where a plain monitor costs least";
+        } else if (readHeavy) {
+            target = SynchronizationMechanism.REENTRANT_LOCK;
+            reason = "contended and read-heavy, where readers can share a read lock";
+        } else if (waitHeavy) {
+            target = SynchronizationMechanism.BLOCKING_QUEUE;
+            reason = "contended with many producers or consumers parked, where separate put and take locks keep them apart";
+        } else {
+            target = SynchronizationMechanism.LOCK_FREE_RING;
+            reason = "contended with few waits, where compare-and-set slots avoid lock handoffs";
+        }
+
+        if (target == active) {
+            favoured = null;
+            log("stay", active + " stays: " + sample + "; load is " + reason);
+            return null;
+        }
+        if (interval - lastSwitchInterval < SETTLING_INTERVALS) {
+            log("hold", active + " stays: " + sample + "; " + target + " favoured, but the last switch is still settling");
+            return null;
+        }
+        Long backoff = backedOffUntil.get(target);
+        if (backoff != null && interval < backoff) {
+            log("hold", active + " stays: " + sample + "; " + target + " favoured, but it was undone recently");
+            return null;
+        }
+        if (target != favoured) {
+            favoured = target;
+            favouredIntervals = 0;
+        }
+        favouredIntervals++;
+        if (favouredIntervals < CONFIRMATIONS) {
+            log("hold", active + " stays: " + sample + "; " + target + " favoured (" + favouredIntervals + "/"
+                    + CONFIRMATIONS + "), load is " + reason);
+            return null;
+        }
+
+        favoured = null;
+        lastSwitchInterval = interval;
+        switchedFrom = CANDIDATES.contains(active) ? active : null;
+        contentionBeforeSwitch = sample.contentionNanos;
+        log("switch", active + " -> " + target + ": " + sample + "; load is " + reason);
+        return target;
+    }
+
+    private void log(String outcome, String reason) {
+        String decision = LocalTime.now().format(TIME) + " " + outcome + " " + reason;
+        synchronized (decisions) {
+            if (decisions.size() == MAX_DECISIONS) {
+                decisions.removeFirst();
+            }
+            decisions.addLast(decision);
+        }
+        if (!outcome.equals("hold") && !outcome.equals("stay")) {
+            System.out.println("Auto-tuning: " + outcome + " " + reason);
+        }
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1f us", nanos / 1000.0);
+    }
+
+    // What one interval's statistics say about the load
+    static final class Sample {
+        private final long operations;
+        private final long reads;
+        private final long waits;
+        private final long contentionNanos; // Worst p99 of the calls that never park
+        private final long waitNanos; // Worst p99 of the calls that may park
+
+        Sample(long operations, long reads, long waits, long contentionNanos, long waitNanos) {
+            this.operations = operations;
+            this.reads = reads;
+            this.waits = waits;
+            this.contentionNanos = contentionNanos;
+            this.waitNanos = waitNanos;
+        }
+
+        double readShare() {
+            return operations == 0 ? 0 : (double) reads / operations;
+        }
+
+        double waitShare() {
+            return operations == 0 ? 0 : (double) waits / operations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d calls, %.0f%% reads, %.1f%% waited, contention p99 %s, wait p99 %s",
+                    operations, readShare() * 100, waitShare() * 100, micros(contentionNanos), micros(waitNanos));
+        }
+    }
+}
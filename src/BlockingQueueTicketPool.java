@@ -1,19 +1,39 @@
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 // 3. BlockingQueue implementation
-class BlockingQueueTicketPool implements TicketPool {
-    private final BlockingQueue<String> tickets;
+class BlockingQueueTicketPool implements TicketPool, HeldTickets {
+    // Each ticket is queued in its own cell. Purchasing or removing the ticket empties the cell, and whichever
+    // empties it first owns the ticket; an emptied cell stays queued until a purchase reaches it
+    private final BlockingQueue<AtomicReference<String>> tickets;
+    private final ConcurrentHashMap<String, AtomicReference<String>> index;
+    private final AtomicInteger emptyCells;
+    // One permit per free slot. A held ticket leaves the queue but keeps its permit, which a queue bounded by its
+    // own capacity could not express, so the queue itself is unbounded and producers wait here for space instead
+    private final Semaphore slots;
     private final int capacity;
+    private final PendingPurchases pendingPurchases;
 
     /**
      * Constructs a ticket pool backed by a thread-safe blocking queue.
      */
     public BlockingQueueTicketPool(int capacity) {
-        this.tickets = new LinkedBlockingQueue<>(capacity);
+        this.tickets = new LinkedBlockingQueue<>();
+        this.index = new ConcurrentHashMap<>();
+        this.emptyCells = new AtomicInteger();
+        this.slots = new Semaphore(Math.max(0, capacity));
         this.capacity = capacity;
+        this.pendingPurchases = new PendingPurchases();
     }
 
     /**
@@ -22,7 +42,70 @@ class BlockingQueueTicketPool implements TicketPool {
      */
     @Override
     public boolean addTicket(String ticketInfo) {
-        return tickets.offer(ticketInfo); // Non-blocking, returns false if full
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticketInfo)) {
+            return true; // Delivered straight to the oldest asynchronous purchase
+        }
+        if (!slots.tryAcquire()) { // Non-blocking, returns false if full
+            return false;
+        }
+        enqueue(ticketInfo);
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return true;
+    }
+
+    /**
+     * Inserts the ticket, waiting for a slot permit until a purchase frees a slot.
+     */
+    @Override
+    public void putTicket(String ticketInfo) throws InterruptedException {
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticketInfo)) {
+            return; // Delivered straight to the oldest asynchronous purchase
+        }
+        slots.acquire(); // Blocks if the pool is full
+        enqueue(ticketInfo);
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+    }
+
+    /**
+     * Inserts the ticket, waiting up to the given timeout for a purchase to free a slot.
+     */
+    @Override
+    public boolean offerTicket(String ticketInfo, long timeout, TimeUnit unit) throws InterruptedException {
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticketInfo)) {
+            return true; // Delivered straight to the oldest asynchronous purchase
+        }
+        if (!slots.tryAcquire(timeout, unit)) {
+            return false;
+        }
+        enqueue(ticketInfo);
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return true;
+    }
+
+    /**
+     * Takes slot permits for as much of the batch as fits in one step, then offers each ticket in turn.
+     * LinkedBlockingQueue has no bulk insert, so this costs one put-lock round-trip per ticket.
+     */
+    @Override
+    public int addTickets(Collection<String> ticketInfos) {
+        if (pendingPurchases.hasWaiting()) {
+            return TicketPool.super.addTickets(ticketInfos); // Hand tickets to waiting purchases one by one
+        }
+        int added = acquireSlots(ticketInfos.size());
+        Iterator<String> remaining = ticketInfos.iterator();
+        for (int i = 0; i < added; i++) {
+            enqueue(remaining.next());
+        }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return added;
     }
 
     /**
@@ -30,31 +113,182 @@ class BlockingQueueTicketPool implements TicketPool {
      */
     @Override
     public String purchaseTicket() throws InterruptedException {
-        return tickets.take(); // Blocks if queue is empty
+        String ticket;
+        do {
+            ticket = claim(tickets.take(), false); // Blocks if queue is empty
+        } while (ticket == null);
+        return ticket;
     }
 
     /**
-     * Returns the number of tickets currently in the queue.
+     * Retrieves and removes the head of the queue, waiting up to the given timeout for a ticket.
+     */
+    @Override
+    public String purchaseTicket(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            AtomicReference<String> cell = tickets.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (cell == null) {
+                return null;
+            }
+            String ticket = claim(cell, false);
+            if (ticket != null) {
+                return ticket;
+            }
+        }
+    }
+
+    /**
+     * Retrieves and removes the head of the queue, or returns null if the queue is empty.
+     */
+    @Override
+    public String tryPurchase() {
+        return poll(false);
+    }
+
+    /**
+     * Returns a future for the next ticket. If purchases are already waiting, or the pool is empty,
+     * the purchase joins the FIFO queue of waiting purchases and is completed by a later add.
+     */
+    @Override
+    public CompletableFuture<String> purchaseTicketAsync() {
+        if (!pendingPurchases.hasWaiting()) {
+            String ticket = tryPurchase();
+            if (ticket != null) {
+                return CompletableFuture.completedFuture(ticket);
+            }
+        }
+        TicketPurchase purchase = pendingPurchases.register();
+        pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        return purchase;
+    }
+
+    /**
+     * Waits for the head of the queue, then drains up to maxTickets - 1 more under a single take-lock acquisition.
+     */
+    @Override
+    public int purchaseTickets(int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        if (maxTickets <= 0) {
+            return 0;
+        }
+        purchased.add(purchaseTicket());
+        List<AtomicReference<String>> cells = new ArrayList<>(Math.min(maxTickets - 1, capacity));
+        tickets.drainTo(cells, maxTickets - 1);
+        int count = 1;
+        for (AtomicReference<String> cell : cells) {
+            String ticket = claim(cell, false);
+            if (ticket != null) {
+                purchased.add(ticket);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of tickets currently in the queue, not counting emptied cells.
      */
     @Override
     public int getAvailableTickets() {
-        return tickets.size();
+        return Math.max(0, tickets.size() - emptyCells.get());
     }
 
     /**
-     * Returns ticket info at the given index by copying to a list.
-     * Returns null if index is out of bounds.
+     * Returns ticket info at the given index by walking the queue from its head, or null if the index is out of bounds.
+     * Only the first index + 1 nodes are visited, rather than copying the whole queue.
      */
     @Override
     public String viewTicketInfo(int index) {
         // BlockingQueue doesn't support direct indexing
-        List<String> ticketList = new ArrayList<>(tickets);
-        if (index >= 0 && index < ticketList.size()) {
-            return ticketList.get(index);
+        if (index < 0) {
+            return null;
+        }
+        int position = 0;
+        for (AtomicReference<String> cell : tickets) {
+            String ticket = cell.get();
+            if (ticket != null && position++ == index) {
+                return ticket;
+            }
         }
         return null;
     }
 
+    /**
+     * Looks up the ticket's cell in the hash index and returns the ticket if the cell still holds it.
+     */
+    @Override
+    public String findTicket(String ticketId) {
+        AtomicReference<String> cell = index.get(ticketId);
+        return cell == null ? null : cell.get();
+    }
+
+    /**
+     * Empties the ticket's cell in place, which is constant time and leaves the queue order untouched.
+     * LinkedBlockingQueue cannot unlink from the middle without a walk, so the empty cell is dropped when
+     * a purchase reaches it; empty cells at the head are dropped straight away.
+     */
+    @Override
+    public boolean removeTicket(String ticketId) {
+        AtomicReference<String> cell = index.get(ticketId);
+        if (cell == null || cell.getAndSet(null) == null) {
+            return false; // Not queued, or a purchase emptied the cell first
+        }
+        emptyCells.incrementAndGet();
+        index.remove(ticketId, cell);
+        dropEmptyCells();
+        return true;
+    }
+
+    /**
+     * Copies the first tickets by walking the queue from its head, and reads the size from its atomic count.
+     * LinkedBlockingQueue keeps its locks private, so the copy is weakly consistent rather than versioned:
+     * the page is in purchase order and every ticket in it was in the queue during the call. The iterator
+     * holds the queue's locks only for each single step, so the cost to writers grows with the page, not the pool.
+     */
+    @Override
+    public PoolSnapshot snapshot(int maxTickets) {
+        List<String> page = new ArrayList<>(Math.max(0, Math.min(maxTickets, 64)));
+        Iterator<AtomicReference<String>> iterator = tickets.iterator();
+        while (page.size() < maxTickets && iterator.hasNext()) {
+            String ticket = iterator.next().get();
+            if (ticket != null) {
+                page.add(ticket);
+            }
+        }
+        return new PoolSnapshot(-1, getAvailableTickets(), page);
+    }
+
+    /**
+     * Takes the head ticket for a hold of the given time; its slot permit is kept until the hold is settled.
+     */
+    @Override
+    public TicketHold holdTicket(long ttl, TimeUnit unit) {
+        String ticket = takeHeld();
+        return ticket == null ? null : TicketHold.start(this, ticket, ttl, unit);
+    }
+
+    @Override
+    public String takeHeld() {
+        return poll(true);
+    }
+
+    @Override
+    public void settleHeld(String ticket, boolean sold) {
+        if (sold || pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticket)) {
+            slots.release();
+            return;
+        }
+        enqueue(ticket); // Back in the queue under the permit it kept
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+    }
+
+    @Override
+    public int adoptHeld(int count) {
+        return acquireSlots(count);
+    }
+
     /**
      * No-op for this implementation; switching is handled by TicketPoolManager.
      */
@@ -62,4 +296,72 @@ class BlockingQueueTicketPool implements TicketPool {
     public void switchSynchronizationMechanism(SynchronizationMechanism mechanism) {
         // Not handled here, managed by TicketPoolManager
     }
-}
\ No newline at end of file
+
+    private boolean hasTickets() {
+        return !tickets.isEmpty();
+    }
+
+    // Queues the ticket in a new cell; the caller holds a slot permit for it
+    private void enqueue(String ticketInfo) {
+        AtomicReference<String> cell = new AtomicReference<>(ticketInfo);
+        tickets.add(cell);
+        indexCell(cell, ticketInfo);
+    }
+
+    // Takes as many slot permits as are free, up to wanted, without waiting
+    private int acquireSlots(int wanted) {
+        int granted = 0;
+        while (granted < wanted && slots.tryAcquire()) {
+            granted++;
+        }
+        return granted;
+    }
+
+    // Dequeues the first cell that still holds a ticket, or returns null if the queue is empty
+    private String poll(boolean keepSlot) {
+        AtomicReference<String> cell;
+        while ((cell = tickets.poll()) != null) {
+            String ticket = claim(cell, keepSlot);
+            if (ticket != null) {
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    // Indexes a queued cell. If a purchase already emptied it, its own index removal may have run first, so undo
+    private void indexCell(AtomicReference<String> cell, String ticketInfo) {
+        index.put(ticketInfo, cell);
+        if (cell.get() == null) {
+            index.remove(ticketInfo, cell);
+        }
+    }
+
+    // Takes the ticket out of a dequeued cell, or returns null if removeTicket emptied it first. The cell's slot
+    // permit is returned unless the ticket is going on hold
+    private String claim(AtomicReference<String> cell, boolean keepSlot) {
+        String ticket = cell.getAndSet(null);
+        if (ticket == null) {
+            emptyCells.decrementAndGet();
+            slots.release();
+            return null;
+        }
+        if (!keepSlot) {
+            slots.release();
+        }
+        index.remove(ticket, cell);
+        if (emptyCells.get() > 0) {
+            dropEmptyCells(); // A removed ticket may now be at the head
+        }
+        return ticket;
+    }
+
+    // Drops empty cells from the head of the queue, freeing their capacity for producers
+    private void dropEmptyCells() {
+        AtomicReference<String> head;
+        while ((head = tickets.peek()) != null && head.get() == null && tickets.remove(head)) {
+            emptyCells.decrementAndGet();
+            slots.release();
+        }
+    }
+}
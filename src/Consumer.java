@@ -1,15 +1,38 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
 // Consumer class to purchase tickets
-class Consumer implements Runnable {
+class Consumer implements SteppedActor {
     private final TicketPool ticketPool;
     private final String consumerId;
     private volatile boolean running;
-    private final int delayMs;
+    private volatile int delayMs;
+    private EventLog.Sink log = EventLog.SHARED; // Set before the actor starts, if at all
+    private final int batchSize;
+    private final TicketTier tier;
+    private final List<String> batch;
+    // Also counted by the callback of an asynchronous purchase, which may run on another thread than the next step
+    private final LongAdder ticketsPurchased = new LongAdder();
 
     public Consumer(TicketPool ticketPool, String consumerId, int delayMs) {
+        this(ticketPool, consumerId, delayMs, 1);
+    }
+
+    public Consumer(TicketPool ticketPool, String consumerId, int delayMs, int batchSize) {
+        this(ticketPool, consumerId, delayMs, batchSize, TicketTier.GENERAL);
+    }
+
+    // Buys as a member of the given tier: tickets of that tier first, then those of lower tiers
+    public Consumer(TicketPool ticketPool, String consumerId, int delayMs, int batchSize, TicketTier tier) {
         this.ticketPool = ticketPool;
         this.consumerId = consumerId;
         this.running = true;
         this.delayMs = delayMs;
+        this.batchSize = Math.max(1, batchSize);
+        this.tier = tier;
+        this.batch = new ArrayList<>(this.batchSize);
     }
 
     // The main logic of the consumer thread
@@ -17,9 +40,18 @@ class Consumer implements Runnable {
     public void run() {
         while (running) {
             try {
-                // Attempt to purchase a ticket from the pool
-                String ticket = ticketPool.purchaseTicket();
-                System.out.println(consumerId + " purchased: " + ticket);
+                if (batchSize > 1) {
+                    // Purchase up to batchSize tickets in a single drain
+                    batch.clear();
+                    int purchased = ticketPool.purchaseTickets(tier, batchSize, batch);
+                    log.record(EventLog.Kind.PURCHASED_BATCH, consumerId, purchased, batch.get(0), batch.get(purchased - 1));
+                    ticketsPurchased.add(purchased);
+                } else {
+                    // Attempt to purchase a ticket from the pool
+                    String ticket = ticketPool.purchaseTicket(tier);
+                    log.record(EventLog.Kind.PURCHASED, consumerId, ticket);
+                    ticketsPurchased.increment();
+                }
 
                 // Wait for a specified delay before next purchase
                 Thread.sleep(delayMs);
@@ -31,8 +63,63 @@ class Consumer implements Runnable {
         }
     }
 
+    // Buys what is available now, up to a batch; if nothing is, waits for the next ticket with an asynchronous
+    // purchase rather than a blocked thread. A buyer the pool cannot hold a purchase for retries after the delay.
+    @Override
+    public CompletableFuture<?> step() {
+        if (batchSize > 1) {
+            batch.clear();
+            String ticket;
+            while (batch.size() < batchSize && (ticket = ticketPool.tryPurchase(tier)) != null) {
+                batch.add(ticket);
+            }
+            if (!batch.isEmpty()) {
+                log.record(EventLog.Kind.PURCHASED_BATCH, consumerId, batch.size(), batch.get(0), batch.get(batch.size() - 1));
+                ticketsPurchased.add(batch.size());
+                return null;
+            }
+        } else {
+            String ticket = ticketPool.tryPurchase(tier);
+            if (ticket != null) {
+                log.record(EventLog.Kind.PURCHASED, consumerId, ticket);
+                ticketsPurchased.increment();
+                return null;
+            }
+        }
+
+        CompletableFuture<String> purchase = ticketPool.purchaseTicketAsync(tier);
+        if (purchase != null) {
+            purchase.thenAccept(ticket -> {
+                log.record(EventLog.Kind.PURCHASED, consumerId, ticket);
+                ticketsPurchased.increment();
+            });
+        }
+        return purchase; // Returned as is, so that stopping the consumer cancels the pool's pending purchase
+    }
+
+    // Tickets this consumer has bought
+    public long getTicketsPurchased() {
+        return ticketsPurchased.sum();
+    }
+
+    @Override
+    public long nextDelayMs() {
+        return delayMs;
+    }
+
+    @Override
+    public void setDelayMs(int delayMs) {
+        this.delayMs = delayMs;
+    }
+
     // Stops the consumer thread
+    @Override
     public void stop() {
         running = false;
     }
-}
\ No newline at end of file
+
+    @Override
+    public void logTo(EventLog.Sink sink) {
+        this.log = sink;
+    }
+}
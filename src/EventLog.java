@@ -0,0 +1,288 @@
+import java.io.PrintStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Asynchronous event log for the simulation actors. Actors store a compact record into a preallocated
+// lock-free ring and return at once; a single background thread formats records and prints them in batches,
+// so console I/O no longer serialises the actors or hides the pool's own contention.
+final class EventLog {
+    // The kinds of event the actors report
+    enum Kind {
+        PRODUCED,
+        PRODUCED_BATCH,
+        POOL_FULL,
+        PURCHASED,
+        PURCHASED_BATCH,
+        READ,
+        PEEKED
+    }
+
+    // Where an actor's events go. SHARED is this log; a virtual-time run, which reports only totals, uses DISCARD
+    // rather than turning the log off for every other actor in the process
+    interface Sink {
+        // Records an event whose tickets are given as text or, when the text is null, as numeric IDs (-1 for none)
+        void record(Kind kind, String actorId, int count, String first, String last, long firstId, long lastId);
+
+        default void record(Kind kind, String actorId, String ticket) {
+            record(kind, actorId, 1, ticket, null, -1, -1);
+        }
+
+        default void record(Kind kind, String actorId, long ticketId) {
+            record(kind, actorId, 1, null, null, ticketId, -1);
+        }
+
+        default void record(Kind kind, String actorId, int count, long firstId, long lastId) {
+            record(kind, actorId, count, null, null, firstId, lastId);
+        }
+
+        default void record(Kind kind, String actorId, int count, String first, String last) {
+            record(kind, actorId, count, first, last, -1, -1);
+        }
+    }
+
+    static final Sink SHARED = EventLog::record;
+    static final Sink DISCARD = (kind, actorId, count, first, last, firstId, lastId) -> {
+    };
+
+    private static final int RING_SIZE = 1 << 16; // Power of two, so positions map to slots with a mask
+    private static final int MAX_BATCH = 4096;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private static final Record[] records = new Record[RING_SIZE];
+    private static final AtomicLongArray sequences = new AtomicLongArray(RING_SIZE);
+    private static final AtomicLong enqueuePosition = new AtomicLong();
+    private static volatile long dequeuePosition; // Advanced only by the writer thread
+    private static final LongAdder dropped = new LongAdder();
+    private static final AtomicLong written = new AtomicLong();
+
+    private static volatile LogVerbosity verbosity = LogVerbosity.FULL;
+    private static volatile int sampleRate = 100;
+    private static final Thread writer;
+
+    static {
+        for (int i = 0; i < RING_SIZE; i++) {
+            records[i] = new Record();
+            sequences.set(i, i);
+        }
+        writer = new Thread(EventLog::writeLoop, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private EventLog() {
+    }
+
+    /**
+     * Sets how many events are written: none, about one in {@code sampleRate}, or all of them.
+     */
+    static void setVerbosity(LogVerbosity newVerbosity, int newSampleRate) {
+        sampleRate = Math.max(1, newSampleRate);
+        verbosity = newVerbosity;
+    }
+
+    static LogVerbosity getVerbosity() {
+        return verbosity;
+    }
+
+    static int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Returns the number of events printed so far.
+     */
+    static long getWrittenEvents() {
+        return written.get();
+    }
+
+    /**
+     * Returns the number of events discarded because the ring was full.
+     */
+    static long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * Records a single-ticket event (or a plain event when {@code ticket} is null).
+     */
+    static void record(Kind kind, String actorId, String ticket) {
+        record(kind, actorId, 1, ticket, null);
+    }
+
+    /**
+     * Records a single-ticket event for a ticket with a numeric ID from {@link TicketIds}.
+     */
+    static void record(Kind kind, String actorId, long ticketId) {
+        record(kind, actorId, 1, null, null, ticketId, -1);
+    }
+
+    /**
+     * Records a batch event for tickets with numeric IDs; their text is built by the writer thread.
+     */
+    static void record(Kind kind, String actorId, int count, long firstId, long lastId) {
+        record(kind, actorId, count, null, null, firstId, lastId);
+    }
+
+    /**
+     * Records an event. Only references and a count are stored; no text is built on the caller's thread.
+     * Never blocks: if the writer has fallen a full ring behind, the event is counted as dropped instead.
+     */
+    static void record(Kind kind, String actorId, int count, String first, String last) {
+        record(kind, actorId, count, first, last, -1, -1);
+    }
+
+    // Stores an event whose tickets are given as text or, when the text is null, as numeric IDs (-1 for none)
+    private static void record(Kind kind, String actorId, int count, String first, String last, long firstId, long lastId) {
+        LogVerbosity level = verbosity;
+        if (level == LogVerbosity.OFF
+                || level == LogVerbosity.SAMPLED && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+
+        long position = enqueuePosition.get();
+        while (true) {
+            int index = (int) position & (RING_SIZE - 1);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    Record record = records[index];
+                    record.kind = kind;
+                    record.actorId = actorId;
+                    record.count = count;
+                    record.first = first;
+                    record.last = last;
+                    record.firstId = firstId;
+                    record.lastId = lastId;
+                    sequences.set(index, position + 1); // Publishes the fields to the writer
+                    return;
+                }
+                position = enqueuePosition.get();
+            } else if (difference < 0) {
+                dropped.increment(); // Ring full: the actor must not wait on the console
+                return;
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+    }
+
+    /**
+     * Waits until every event recorded before this call has been printed, or the timeout elapses.
+     */
+    static boolean flush(long timeout, TimeUnit unit) {
+        long target = enqueuePosition.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (dequeuePosition < target) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            Thread.yield();
+        }
+        return true;
+    }
+
+    // Drains published records in batches, formatting them into one buffer per batch
+    private static void writeLoop() {
+        StringBuilder text = new StringBuilder(64 * 1024);
+        long reportedDrops = 0;
+        while (true) {
+            long position = dequeuePosition;
+            int batch = 0;
+            while (batch < MAX_BATCH) {
+                int index = (int) position & (RING_SIZE - 1);
+                if (sequences.get(index) != position + 1) {
+                    break; // Not published yet
+                }
+                Record record = records[index];
+                format(record, text);
+                record.clear();
+                sequences.set(index, position + RING_SIZE); // Hands the slot back to producers
+                position++;
+                batch++;
+            }
+
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                text.append("[event log dropped ").append(drops - reportedDrops).append(" events]\n");
+                reportedDrops = drops;
+            }
+            if (text.length() > 0) {
+                PrintStream out = System.out;
+                out.print(text);
+                out.flush();
+                text.setLength(0);
+                written.addAndGet(batch);
+            }
+            dequeuePosition = position;
+
+            if (batch == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    // Formats a record exactly as the actors used to print it
+    private static void format(Record record, StringBuilder text) {
+        text.append(record.actorId);
+        switch (record.kind) {
+            case PRODUCED:
+                text.append(" produced: ");
+                appendTicket(text, record.first, record.firstId);
+                break;
+            case PRODUCED_BATCH:
+                text.append(" produced ").append(record.count).append(" tickets: ");
+                appendTicket(text, record.first, record.firstId);
+                text.append(" .. ");
+                appendTicket(text, record.last, record.lastId);
+                break;
+            case POOL_FULL:
+                text.append(": Pool full, waiting before retry");
+                break;
+            case PURCHASED:
+                text.append(" purchased: ").append(record.first);
+                break;
+            case PURCHASED_BATCH:
+                text.append(" purchased ").append(record.count).append(" tickets: ")
+                        .append(record.first).append(" .. ").append(record.last);
+                break;
+            case READ:
+                text.append(" read: ").append(record.count).append(" tickets available");
+                break;
+            case PEEKED:
+                text.append(" peeked at first ticket: ").append(record.first);
+                break;
+        }
+        text.append('\n');
+    }
+
+    // Appends a ticket stored as text, or else as a numeric ID
+    private static void appendTicket(StringBuilder text, String ticket, long ticketId) {
+        if (ticket != null || ticketId < 0) {
+            text.append(ticket);
+        } else {
+            TicketIds.appendTo(text, ticketId);
+        }
+    }
+
+    // One reusable slot of the ring; fields are published by the slot's sequence number
+    private static final class Record {
+        private Kind kind;
+        private String actorId;
+        private int count;
+        private String first;
+        private String last;
+        private long firstId;
+        private long lastId;
+
+        void clear() {
+            actorId = null;
+            first = null;
+            last = null;
+        }
+    }
+}
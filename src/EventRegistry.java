@@ -0,0 +1,242 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Registry of ticket pools, one per event, for running thousands of events at once. Pools are created on first
+// use with the event's own capacity and mechanism, and a background sweep evicts pools that are sold out or have
+// been idle for long. Events share nothing but the map, which is read without locking, so a hot event does not
+// slow down the others.
+public final class EventRegistry implements AutoCloseable {
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long DEFAULT_SOLD_OUT_GRACE_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private final ConcurrentHashMap<String, Event> events = new ConcurrentHashMap<>();
+    private final int defaultCapacity;
+    private final SynchronizationMechanism defaultMechanism;
+    private final long idleTimeoutNanos;
+    private final long soldOutGraceNanos;
+    private final ScheduledExecutorService sweeper;
+    private final LongAdder evictedEvents = new LongAdder();
+    private final LongAdder discardedTickets = new LongAdder();
+
+    /**
+     * Constructs a registry whose events default to the given capacity and the synchronized implementation.
+     * Sold-out events are evicted after 30 seconds without calls, and other events after 10 minutes.
+     *
+     * @param defaultCapacity the capacity of events created without one
+     */
+    public EventRegistry(int defaultCapacity) {
+        this(defaultCapacity, SynchronizationMechanism.SYNCHRONIZED, DEFAULT_IDLE_TIMEOUT_MS,
+                DEFAULT_SOLD_OUT_GRACE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructs a registry with the given defaults and eviction times.
+     *
+     * @param defaultCapacity  the capacity of events created without one
+     * @param defaultMechanism the synchronization mechanism of events created without one
+     * @param idleTimeout      how long an event with unsold tickets may go without calls before it is evicted,
+     *                         discarding the tickets
+     * @param soldOutGrace     how long an event with no tickets, available or held, may go without calls
+     *                         before it is evicted
+     * @param unit             the unit of both times
+     */
+    public EventRegistry(int defaultCapacity, SynchronizationMechanism defaultMechanism, long idleTimeout,
+                         long soldOutGrace, TimeUnit unit) {
+        this.defaultCapacity = defaultCapacity;
+        this.defaultMechanism = defaultMechanism;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        this.soldOutGraceNanos = unit.toNanos(soldOutGrace);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "event-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(10), Math.min(idleTimeoutNanos, soldOutGraceNanos) / 4);
+        sweeper.scheduleWithFixedDelay(this::evictIdle, sweepNanos, sweepNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns a pool addressing the given event, with the registry's default capacity and mechanism.
+     * See {@link #event(String, int, SynchronizationMechanism)}.
+     *
+     * @param eventId the ID of the event
+     * @return a pool that forwards every call to the event's current pool
+     */
+    public TicketPool event(String eventId) {
+        return new EventTicketPool(this, eventId, defaultCapacity, defaultMechanism);
+    }
+
+    /**
+     * Returns a pool addressing the given event. The event's pool is created on the first call made through
+     * it, and again on the first call after it has been evicted, with the given capacity and mechanism;
+     * if the event already exists its own settings are kept. Holding on to the returned pool does not
+     * keep the event from being evicted.
+     *
+     * @param eventId   the ID of the event
+     * @param capacity  the event's capacity, if this call creates it
+     * @param mechanism the event's synchronization mechanism, if this call creates it
+     * @return a pool that forwards every call to the event's current pool
+     */
+    public TicketPool event(String eventId, int capacity, SynchronizationMechanism mechanism) {
+        return new EventTicketPool(this, eventId, capacity, mechanism);
+    }
+
+    /**
+     * Returns the given event's pool without creating it, for inspecting or switching it.
+     *
+     * @param eventId the ID of the event
+     * @return the event's pool, or null if the event does not exist or has been evicted
+     */
+    public TicketPoolManager getPool(String eventId) {
+        Event event = events.get(eventId);
+        return event != null ? event.pool : null;
+    }
+
+    /**
+     * Returns the IDs of the events that currently have a pool.
+     *
+     * @return a copy of the event IDs, in no particular order
+     */
+    public List<String> getEventIds() {
+        return new ArrayList<>(events.keySet());
+    }
+
+    /**
+     * Returns the number of events that currently have a pool.
+     *
+     * @return the number of events
+     */
+    public int getEventCount() {
+        return events.size();
+    }
+
+    /**
+     * Returns how many events have been evicted since the registry was created.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictedEvents() {
+        return evictedEvents.sum();
+    }
+
+    /**
+     * Returns how many unsold tickets were discarded with idle events.
+     *
+     * @return the number of discarded tickets
+     */
+    public long getDiscardedTickets() {
+        return discardedTickets.sum();
+    }
+
+    /**
+     * Evicts every event that is sold out and past its grace time, or idle past the idle timeout.
+     * An event is never evicted while a call, including a waiting purchase or add, is in progress on it,
+     * or while it has tickets on hold. Runs periodically on the sweeper thread and may also be called directly.
+     *
+     * @return the number of events evicted
+     */
+    public synchronized int evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Event event : events.values()) {
+            if (event.touched) {
+                event.touched = false;
+                event.idleSince = now;
+            } else if (now - event.idleSince >= Math.min(soldOutGraceNanos, idleTimeoutNanos) && evict(event, now)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Stops the eviction sweep. Pools already handed out keep working.
+     */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    // Enters the event's current pool, creating it if needed
+    Event enter(String eventId, int capacity, SynchronizationMechanism mechanism) {
+        while (true) {
+            Event event = events.get(eventId);
+            if (event == null) {
+                event = events.computeIfAbsent(eventId, id -> new Event(id, new TicketPoolManager(capacity, mechanism)));
+            }
+            if (event.enter()) {
+                return event;
+            }
+            Thread.onSpinWait(); // Being evicted; the sweeper either removes it or lets it be shortly
+        }
+    }
+
+    // Claims the event for eviction, then decides with no call able to change the pool meanwhile
+    private boolean evict(Event event, long now) {
+        event.evicting = true;
+        try {
+            if (event.activeCalls.sum() != 0 || event.pool.getHeldTickets() != 0) {
+                return false;
+            }
+            int unsold = event.pool.getAvailableTickets();
+            if (unsold > 0 && now - event.idleSince < idleTimeoutNanos) {
+                return false;
+            }
+            events.remove(event.eventId, event);
+            event.evicted = true;
+            if (unsold > 0) {
+                discardedTickets.add(unsold);
+                System.out.println("Warning: idle event " + event.eventId + " evicted with " + unsold + " unsold tickets");
+            }
+        } finally {
+            event.evicting = false;
+        }
+        try {
+            event.pool.close();
+        } catch (IOException e) {
+            System.out.println("Warning: closing the pool of evicted event " + event.eventId + " failed: " + e.getMessage());
+        }
+        evictedEvents.increment();
+        return true;
+    }
+
+    // One event's pool, with a gate like TicketPoolManager's that lets the sweeper evict it only when no call is
+    // in progress. The gate and the idle flag are per event, so events never contend with each other
+    static final class Event {
+        final TicketPoolManager pool;
+        private final String eventId;
+        private final LongAdder activeCalls = new LongAdder();
+        private volatile boolean evicting;
+        private volatile boolean evicted;
+        private volatile boolean touched = true;
+        private long idleSince; // Sweeper thread only
+
+        private Event(String eventId, TicketPoolManager pool) {
+            this.eventId = eventId;
+            this.pool = pool;
+        }
+
+        // Registers a call, or returns false if the event is being or has been evicted
+        boolean enter() {
+            activeCalls.increment();
+            if (evicting || evicted) {
+                activeCalls.decrement();
+                return false;
+            }
+            if (!touched) {
+                touched = true; // Written only when it changes, so a hot event's callers share the line read-only
+            }
+            return true;
+        }
+
+        void exit() {
+            activeCalls.decrement();
+        }
+    }
+}
@@ -0,0 +1,308 @@
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// A TicketPool addressing one event of an EventRegistry. Each call enters the event's current pool through the
+// event's gate, so the pool cannot be evicted during the call, and the first call after an eviction creates a
+// fresh pool with this view's capacity and mechanism
+class EventTicketPool implements TicketPool {
+    private final EventRegistry registry;
+    private final String eventId;
+    private final int capacity;
+    private final SynchronizationMechanism mechanism;
+    private volatile EventRegistry.Event cached; // Saves the map lookup while the event stays live
+
+    EventTicketPool(EventRegistry registry, String eventId, int capacity, SynchronizationMechanism mechanism) {
+        this.registry = registry;
+        this.eventId = eventId;
+        this.capacity = capacity;
+        this.mechanism = mechanism;
+    }
+
+    /**
+     * Returns the ID of the event this pool addresses.
+     */
+    public String getEventId() {
+        return eventId;
+    }
+
+    /**
+     * Forwards to the event's pool, creating it if needed. Every other call is forwarded the same way.
+     */
+    @Override
+    public boolean addTicket(String ticketInfo) {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.addTicket(ticketInfo);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public boolean addTicket(String ticketInfo, TicketTier tier) {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.addTicket(ticketInfo, tier);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public boolean addTicket(long ticketId, TicketTier tier) {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.addTicket(ticketId, tier);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public int addTickets(long[] ticketIds, int offset, int count, TicketTier tier) {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.addTickets(ticketIds, offset, count, tier);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public int addTickets(Collection<String> ticketInfos) {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.addTickets(ticketInfos);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public int addTickets(Collection<String> ticketInfos, TicketTier tier) {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.addTickets(ticketInfos, tier);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public void putTicket(String ticketInfo) throws InterruptedException {
+        EventRegistry.Event event = enter();
+        try {
+            event.pool.putTicket(ticketInfo);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public boolean offerTicket(String ticketInfo, long timeout, TimeUnit unit) throws InterruptedException {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.offerTicket(ticketInfo, timeout, unit);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public boolean offerTicket(String ticketInfo, TicketTier tier, long timeout, TimeUnit unit) throws InterruptedException {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.offerTicket(ticketInfo, tier, timeout, unit);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public String purchaseTicket() throws InterruptedException {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.purchaseTicket();
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public String purchaseTicket(TicketTier tier) throws InterruptedException {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.purchaseTicket(tier);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public String purchaseTicket(long timeout, TimeUnit unit) throws InterruptedException {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.purchaseTicket(timeout, unit);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public String tryPurchase() {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.tryPurchase();
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public String tryPurchase(TicketTier tier) {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.tryPurchase(tier);
+        } finally {
+            event.exit();
+        }
+    }
+
+    /**
+     * Places the purchase on the event's pool. The event counts as busy until the future completes,
+     * so it cannot be evicted with the purchase still waiting.
+     */
+    @Override
+    public CompletableFuture<String> purchaseTicketAsync() {
+        EventRegistry.Event event = enter();
+        CompletableFuture<String> purchase;
+        try {
+            purchase = event.pool.purchaseTicketAsync();
+        } catch (RuntimeException e) {
+            event.exit();
+            throw e;
+        }
+        purchase.whenComplete((ticket, failure) -> event.exit());
+        return purchase;
+    }
+
+    @Override
+    public CompletableFuture<String> purchaseTicketAsync(TicketTier tier) {
+        EventRegistry.Event event = enter();
+        CompletableFuture<String> purchase;
+        try {
+            purchase = event.pool.purchaseTicketAsync(tier);
+        } catch (RuntimeException e) {
+            event.exit();
+            throw e;
+        }
+        if (purchase == null) {
+            event.exit();
+            return null;
+        }
+        purchase.whenComplete((ticket, failure) -> event.exit());
+        return purchase;
+    }
+
+    @Override
+    public int purchaseTickets(int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.purchaseTickets(maxTickets, purchased);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public int purchaseTickets(TicketTier tier, int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.purchaseTickets(tier, maxTickets, purchased);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public int getAvailableTickets() {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.getAvailableTickets();
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public String viewTicketInfo(int index) {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.viewTicketInfo(index);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public String findTicket(String ticketId) {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.findTicket(ticketId);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public boolean removeTicket(String ticketId) {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.removeTicket(ticketId);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public TicketHold holdTicket(long ttl, TimeUnit unit) {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.holdTicket(ttl, unit);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public PoolSnapshot snapshot(int maxTickets) {
+        EventRegistry.Event event = enter();
+        try {
+            return event.pool.snapshot(maxTickets);
+        } finally {
+            event.exit();
+        }
+    }
+
+    @Override
+    public void switchSynchronizationMechanism(SynchronizationMechanism mechanism) {
+        EventRegistry.Event event = enter();
+        try {
+            event.pool.switchSynchronizationMechanism(mechanism);
+        } finally {
+            event.exit();
+        }
+    }
+
+    // Enters the cached event, or looks the event up again if it has been evicted since
+    private EventRegistry.Event enter() {
+        EventRegistry.Event event = cached;
+        if (event != null && event.enter()) {
+            return event;
+        }
+        event = registry.enter(eventId, capacity, mechanism);
+        cached = event;
+        return event;
+    }
+}
@@ -0,0 +1,6 @@
+// Enum to represent how simulated producers, consumers and readers are run
+public enum ExecutionMode {
+    PLATFORM,
+    VIRTUAL,
+    SCHEDULED // Tasks on a shared ActorEngine instead of a thread per actor
+}
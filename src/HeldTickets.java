@@ -0,0 +1,19 @@
+// Slot-level operations behind ticket holds. A held ticket is out of sale but still occupies its slot,
+// so it counts against the pool's capacity until the hold is settled
+interface HeldTickets extends HoldSettler {
+
+    /**
+     * Takes the next ticket out of sale while keeping its slot occupied.
+     *
+     * @return the held ticket, or null if the pool is empty
+     */
+    String takeHeld();
+
+    /**
+     * Reserves slots for tickets held in another pool, so their holds can be settled here.
+     *
+     * @param count the number of held tickets to take over
+     * @return the number of slots reserved, less than count only if the pool has no room for the rest
+     */
+    int adoptHeld(int count);
+}
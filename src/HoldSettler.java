@@ -0,0 +1,11 @@
+// Settles the holds on tickets taken out of sale. All a TicketHold needs from the pool that issued it
+interface HoldSettler {
+
+    /**
+     * Settles a held ticket. A sold ticket frees its slot; otherwise the ticket goes back on sale in the slot it kept.
+     *
+     * @param ticket the held ticket
+     * @param sold   true if the hold was confirmed, false if it was released or expired
+     */
+    void settleHeld(String ticket, boolean sold);
+}
@@ -0,0 +1,154 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Hierarchical timing wheel that expires ticket holds. Four wheels of 256 buckets cover 10 ms, 2.56 s, 11 min
+// and 47 h per bucket. A new hold is queued lock-free and filed into a bucket by the timer thread; each tick
+// expires the holds in one bucket and, when a wheel wraps, spreads one bucket of the next wheel over the finer
+// ones. The cost per tick therefore depends on the holds falling due, not on how many are outstanding. Holds
+// settled early are not unlinked; they are dropped when their bucket comes due
+final class HoldTimer {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private static final HoldTimer SHARED = new HoldTimer();
+
+    private final TicketHold[][] buckets = new TicketHold[LEVELS][WHEEL_SIZE]; // Timer thread only
+    private final ConcurrentLinkedQueue<TicketHold> incoming = new ConcurrentLinkedQueue<>();
+    private final long origin = System.nanoTime();
+    private long currentTick; // Timer thread only
+    private long scheduled; // Holds filed in the wheel and not yet due; timer thread only
+    private volatile boolean idle;
+    private volatile Thread thread;
+
+    /**
+     * Returns the timer shared by every pool, so the process runs a single timer thread however many pools hold tickets.
+     */
+    static HoldTimer shared() {
+        return SHARED;
+    }
+
+    /**
+     * Schedules the hold's expiry. Constant time and lock-free for the caller.
+     */
+    void schedule(TicketHold hold) {
+        incoming.add(hold);
+        if (thread == null) {
+            start();
+        } else if (idle) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private synchronized void start() {
+        if (thread == null) {
+            Thread timer = new Thread(this::run, "hold-timer");
+            timer.setDaemon(true);
+            timer.start();
+            thread = timer;
+        }
+    }
+
+    // Advances the wheel tick by tick, sleeping until the next tick, or indefinitely while nothing is scheduled
+    private void run() {
+        while (true) {
+            long now = tickOf(System.nanoTime());
+            if (scheduled == 0) {
+                currentTick = Math.max(currentTick, now - 1); // Nothing is filed, so skipped ticks need no work
+            }
+            while (currentTick < now) {
+                fileIncoming();
+                advance();
+            }
+            fileIncoming();
+
+            if (scheduled == 0) {
+                idle = true;
+                if (incoming.isEmpty()) { // Re-check after publishing idle, so a new hold's unpark is not missed
+                    LockSupport.park(this);
+                }
+                idle = false;
+            } else {
+                LockSupport.parkNanos(this, origin + (currentTick + 1) * TICK_NANOS - System.nanoTime());
+            }
+        }
+    }
+
+    // Moves newly scheduled holds into their buckets
+    private void fileIncoming() {
+        TicketHold hold;
+        while ((hold = incoming.poll()) != null) {
+            if (hold.isHeld()) {
+                hold.expiryTick = Math.max(tickOf(hold.getDeadline() + TICK_NANOS - 1), currentTick + 1);
+                file(hold);
+            }
+        }
+    }
+
+    // Files a hold in the finest wheel whose span covers its remaining delay
+    private void file(TicketHold hold) {
+        long delay = Math.min(hold.expiryTick - currentTick, MAX_DELAY_TICKS);
+        long expiry = currentTick + delay;
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        int index = (int) (expiry >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+        hold.next = buckets[level][index];
+        buckets[level][index] = hold;
+        scheduled++;
+    }
+
+    // Moves to the next tick: cascades coarser buckets whose turn has come, then expires the holds now due
+    private void advance() {
+        currentTick++;
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                break;
+            }
+            int index = (int) (currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+            TicketHold hold = buckets[level][index];
+            buckets[level][index] = null;
+            while (hold != null) {
+                TicketHold next = hold.next;
+                hold.next = null;
+                scheduled--;
+                if (hold.isHeld()) {
+                    file(hold);
+                }
+                hold = next;
+            }
+        }
+
+        int index = (int) currentTick & WHEEL_MASK;
+        TicketHold hold = buckets[0][index];
+        buckets[0][index] = null;
+        while (hold != null) {
+            TicketHold next = hold.next;
+            hold.next = null;
+            scheduled--;
+            if (hold.expiryTick > currentTick) {
+                file(hold); // Clamped to the wheel's span when it was filed; not due yet
+            } else {
+                expire(hold);
+            }
+            hold = next;
+        }
+    }
+
+    private static void expire(TicketHold hold) {
+        try {
+            hold.expire();
+        } catch (RuntimeException e) {
+            System.out.println("Warning: expiring hold on " + hold.getTicket() + " failed: " + e);
+        }
+    }
+
+    private long tickOf(long nanoTime) {
+        return (nanoTime - origin) / TICK_NANOS;
+    }
+}
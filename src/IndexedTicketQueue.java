@@ -0,0 +1,122 @@
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// FIFO of tickets kept as a doubly linked list with a hash index from ticket ID to node, so a ticket can be
+// found or unlinked from anywhere in the queue in constant time. Not thread-safe: the owning pool guards it
+final class IndexedTicketQueue {
+    private final Map<String, Node> index = new HashMap<>();
+    private Node head;
+    private Node tail;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Appends the ticket at the tail; a duplicate ID re-points the index at the newest copy
+    void addLast(String ticketInfo) {
+        Node node = new Node(ticketInfo);
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.next = node;
+            node.prev = tail;
+        }
+        tail = node;
+        size++;
+        index.put(ticketInfo, node);
+    }
+
+    // Removes and returns the oldest ticket, or null if the queue is empty
+    String pollFirst() {
+        Node node = head;
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return node.ticket;
+    }
+
+    // Moves up to maxTickets from the front into the collection, returning how many were moved
+    int drainTo(int maxTickets, Collection<? super String> purchased) {
+        int count = 0;
+        while (count < maxTickets && head != null) {
+            purchased.add(pollFirst());
+            count++;
+        }
+        return count;
+    }
+
+    // Returns the ticket with the given ID, or null if it is not queued
+    String find(String ticketId) {
+        Node node = index.get(ticketId);
+        return node == null ? null : node.ticket;
+    }
+
+    // Unlinks the ticket with the given ID wherever it is in the queue
+    boolean remove(String ticketId) {
+        Node node = index.get(ticketId);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    // Returns the ticket at the given position from the head by walking the list, or null if out of range
+    String get(int position) {
+        if (position < 0 || position >= size) {
+            return null;
+        }
+        Node node = head;
+        for (int i = 0; i < position; i++) {
+            node = node.next;
+        }
+        return node.ticket;
+    }
+
+    // Appends up to maxTickets from the head. Safe to call without the owner's lock only if the caller discards
+    // the result when a writer interfered: a torn walk can stop early or fail, but never runs past maxTickets
+    void copyTo(int maxTickets, List<String> page) {
+        Node node = head;
+        for (int i = 0; i < maxTickets && node != null; i++) {
+            page.add(node.ticket);
+            node = node.next;
+        }
+    }
+
+    private void unlink(Node node) {
+        Node prev = node.prev;
+        Node next = node.next;
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.next = next;
+        }
+        if (next == null) {
+            tail = prev;
+        } else {
+            next.prev = prev;
+        }
+        node.prev = null;
+        node.next = null;
+        size--;
+        index.remove(node.ticket, node); // An older duplicate's removal leaves the newest copy indexed
+    }
+
+    private static final class Node {
+        private final String ticket;
+        private Node prev;
+        private Node next;
+
+        Node(String ticket) {
+            this.ticket = ticket;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Decorator that times every call to a pool and counts full-pool rejections and empty-pool waits.
+// When its statistics are disabled each call costs one volatile read on top of the delegate call.
+class InstrumentedTicketPool implements TicketPool, HeldTickets {
+    private final TicketPool delegate;
+    private final PoolStatistics statistics;
+
+    /**
+     * Wraps the given pool, recording into the given statistics whenever they are enabled.
+     */
+    public InstrumentedTicketPool(TicketPool delegate, PoolStatistics statistics) {
+        this.delegate = delegate;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Adds a general ticket; see {@link #addTicket(String, TicketTier)}.
+     */
+    @Override
+    public boolean addTicket(String ticketInfo) {
+        return addTicket(ticketInfo, TicketTier.GENERAL);
+    }
+
+    /**
+     * Adds a ticket, timing the call and counting it as a rejection if the pool was full.
+     * The untiered calls forward here: pools without tiers ignore the tier, and tiered pools treat an
+     * untiered ticket as general and an untiered buyer as presale.
+     */
+    @Override
+    public boolean addTicket(String ticketInfo, TicketTier tier) {
+        if (!statistics.isEnabled()) {
+            return delegate.addTicket(ticketInfo, tier);
+        }
+        long start = System.nanoTime();
+        boolean added = delegate.addTicket(ticketInfo, tier);
+        statistics.record(PoolStatistics.Operation.ADD, System.nanoTime() - start);
+        if (!added) {
+            statistics.recordFullPoolRejection(1);
+        }
+        return added;
+    }
+
+    /**
+     * Adds a batch of general tickets.
+     */
+    @Override
+    public int addTickets(Collection<String> ticketInfos) {
+        return addTickets(ticketInfos, TicketTier.GENERAL);
+    }
+
+    /**
+     * Adds a batch of tickets, counting every ticket that did not fit as a rejection.
+     */
+    @Override
+    public int addTickets(Collection<String> ticketInfos, TicketTier tier) {
+        if (!statistics.isEnabled()) {
+            return delegate.addTickets(ticketInfos, tier);
+        }
+        long start = System.nanoTime();
+        int added = delegate.addTickets(ticketInfos, tier);
+        statistics.record(PoolStatistics.Operation.ADD_BATCH, System.nanoTime() - start);
+        if (added < ticketInfos.size()) {
+            statistics.recordFullPoolRejection(ticketInfos.size() - added);
+        }
+        return added;
+    }
+
+    /**
+     * Adds a ticket by numeric ID, timed and counted like {@link #addTicket(String, TicketTier)}.
+     */
+    @Override
+    public boolean addTicket(long ticketId, TicketTier tier) {
+        if (!statistics.isEnabled()) {
+            return delegate.addTicket(ticketId, tier);
+        }
+        long start = System.nanoTime();
+        boolean added = delegate.addTicket(ticketId, tier);
+        statistics.record(PoolStatistics.Operation.ADD, System.nanoTime() - start);
+        if (!added) {
+            statistics.recordFullPoolRejection(1);
+        }
+        return added;
+    }
+
+    /**
+     * Adds a batch of tickets by numeric ID, counting every ticket that did not fit as a rejection.
+     */
+    @Override
+    public int addTickets(long[] ticketIds, int offset, int count, TicketTier tier) {
+        if (!statistics.isEnabled()) {
+            return delegate.addTickets(ticketIds, offset, count, tier);
+        }
+        long start = System.nanoTime();
+        int added = delegate.addTickets(ticketIds, offset, count, tier);
+        statistics.record(PoolStatistics.Operation.ADD_BATCH, System.nanoTime() - start);
+        if (added < count) {
+            statistics.recordFullPoolRejection(count - added);
+        }
+        return added;
+    }
+
+    /**
+     * Tries a non-blocking add first so that an add which finds the pool full can be counted as a wait,
+     * then falls back to the delegate's blocking add.
+     */
+    @Override
+    public void putTicket(String ticketInfo) throws InterruptedException {
+        if (!statistics.isEnabled()) {
+            delegate.putTicket(ticketInfo);
+            return;
+        }
+        long start = System.nanoTime();
+        if (!delegate.addTicket(ticketInfo)) {
+            statistics.recordFullPoolWait();
+            delegate.putTicket(ticketInfo);
+        }
+        statistics.record(PoolStatistics.Operation.PUT, System.nanoTime() - start);
+    }
+
+    /**
+     * Timed variant of {@link #putTicket(String)}; the timeout covers both attempts, and an add that
+     * times out is counted as a rejection.
+     */
+    @Override
+    public boolean offerTicket(String ticketInfo, long timeout, TimeUnit unit) throws InterruptedException {
+        return offerTicket(ticketInfo, TicketTier.GENERAL, timeout, unit);
+    }
+
+    /**
+     * Tiered variant of {@link #offerTicket(String, long, TimeUnit)}.
+     */
+    @Override
+    public boolean offerTicket(String ticketInfo, TicketTier tier, long timeout, TimeUnit unit) throws InterruptedException {
+        if (!statistics.isEnabled()) {
+            return delegate.offerTicket(ticketInfo, tier, timeout, unit);
+        }
+        long start = System.nanoTime();
+        boolean added = delegate.addTicket(ticketInfo, tier);
+        if (!added) {
+            statistics.recordFullPoolWait();
+            added = delegate.offerTicket(ticketInfo, tier, unit.toNanos(timeout) - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+            if (!added) {
+                statistics.recordFullPoolRejection(1);
+            }
+        }
+        statistics.record(PoolStatistics.Operation.OFFER_TIMED, System.nanoTime() - start);
+        return added;
+    }
+
+    /**
+     * Tries a non-blocking purchase first so that a purchase which finds the pool empty can be counted
+     * as a wait, then falls back to the delegate's blocking purchase.
+     */
+    @Override
+    public String purchaseTicket() throws InterruptedException {
+        return purchaseTicket(TicketTier.PRESALE);
+    }
+
+    /**
+     * Tiered variant of {@link #purchaseTicket()}.
+     */
+    @Override
+    public String purchaseTicket(TicketTier tier) throws InterruptedException {
+        if (!statistics.isEnabled()) {
+            return delegate.purchaseTicket(tier);
+        }
+        long start = System.nanoTime();
+        String ticket = delegate.tryPurchase(tier);
+        if (ticket == null) {
+            statistics.recordEmptyPoolWait();
+            ticket = delegate.purchaseTicket(tier);
+        }
+        statistics.record(PoolStatistics.Operation.PURCHASE, System.nanoTime() - start);
+        return ticket;
+    }
+
+    /**
+     * Timed variant of {@link #purchaseTicket()}; the timeout covers both attempts.
+     */
+    @Override
+    public String purchaseTicket(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!statistics.isEnabled()) {
+            return delegate.purchaseTicket(timeout, unit);
+        }
+        long start = System.nanoTime();
+        String ticket = delegate.tryPurchase();
+        if (ticket == null) {
+            statistics.recordEmptyPoolWait();
+            ticket = delegate.purchaseTicket(unit.toNanos(timeout) - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+        }
+        statistics.record(PoolStatistics.Operation.PURCHASE_TIMED, System.nanoTime() - start);
+        return ticket;
+    }
+
+    /**
+     * Times a non-blocking purchase of a ticket of any tier.
+     */
+    @Override
+    public String tryPurchase() {
+        return tryPurchase(TicketTier.PRESALE);
+    }
+
+    /**
+     * Times a non-blocking purchase.
+     */
+    @Override
+    public String tryPurchase(TicketTier tier) {
+        if (!statistics.isEnabled()) {
+            return delegate.tryPurchase(tier);
+        }
+        long start = System.nanoTime();
+        String ticket = delegate.tryPurchase(tier);
+        statistics.record(PoolStatistics.Operation.TRY_PURCHASE, System.nanoTime() - start);
+        return ticket;
+    }
+
+    /**
+     * Times the delay until the returned future completes with a ticket.
+     */
+    @Override
+    public CompletableFuture<String> purchaseTicketAsync() {
+        if (!statistics.isEnabled()) {
+            return delegate.purchaseTicketAsync();
+        }
+        long start = System.nanoTime();
+        CompletableFuture<String> purchase = delegate.purchaseTicketAsync();
+        if (!purchase.isDone()) {
+            statistics.recordEmptyPoolWait();
+        }
+        purchase.whenComplete((ticket, failure) -> {
+            if (failure == null) {
+                statistics.record(PoolStatistics.Operation.PURCHASE_ASYNC, System.nanoTime() - start);
+            }
+        });
+        return purchase;
+    }
+
+    /**
+     * Uses the delegate's single-acquisition drain when the pool is empty; otherwise takes the first ticket
+     * without blocking and drains the rest the same way, so no call that finds tickets can block.
+     */
+    @Override
+    public int purchaseTickets(int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        return purchaseTickets(TicketTier.PRESALE, maxTickets, purchased);
+    }
+
+    /**
+     * Tiered variant of {@link #purchaseTickets(int, Collection)}.
+     */
+    @Override
+    public int purchaseTickets(TicketTier tier, int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        if (!statistics.isEnabled() || maxTickets <= 0) {
+            return delegate.purchaseTickets(tier, maxTickets, purchased);
+        }
+        long start = System.nanoTime();
+        int count;
+        String ticket = delegate.tryPurchase(tier);
+        if (ticket == null) {
+            statistics.recordEmptyPoolWait();
+            count = delegate.purchaseTickets(tier, maxTickets, purchased);
+        } else {
+            purchased.add(ticket);
+            count = 1;
+            while (count < maxTickets && (ticket = delegate.tryPurchase(tier)) != null) {
+                purchased.add(ticket);
+                count++;
+            }
+        }
+        statistics.record(PoolStatistics.Operation.PURCHASE_BATCH, System.nanoTime() - start);
+        return count;
+    }
+
+    /**
+     * Times a count of the available tickets.
+     */
+    @Override
+    public int getAvailableTickets() {
+        if (!statistics.isEnabled()) {
+            return delegate.getAvailableTickets();
+        }
+        long start = System.nanoTime();
+        int available = delegate.getAvailableTickets();
+        statistics.record(PoolStatistics.Operation.READ, System.nanoTime() - start);
+        return available;
+    }
+
+    /**
+     * Times a peek at the ticket at the given index.
+     */
+    @Override
+    public String viewTicketInfo(int index) {
+        if (!statistics.isEnabled()) {
+            return delegate.viewTicketInfo(index);
+        }
+        long start = System.nanoTime();
+        String ticketInfo = delegate.viewTicketInfo(index);
+        statistics.record(PoolStatistics.Operation.READ, System.nanoTime() - start);
+        return ticketInfo;
+    }
+
+    /**
+     * Times a lookup of a ticket by ID.
+     */
+    @Override
+    public String findTicket(String ticketId) {
+        if (!statistics.isEnabled()) {
+            return delegate.findTicket(ticketId);
+        }
+        long start = System.nanoTime();
+        String ticketInfo = delegate.findTicket(ticketId);
+        statistics.record(PoolStatistics.Operation.READ, System.nanoTime() - start);
+        return ticketInfo;
+    }
+
+    /**
+     * Times the removal of a ticket by ID.
+     */
+    @Override
+    public boolean removeTicket(String ticketId) {
+        if (!statistics.isEnabled()) {
+            return delegate.removeTicket(ticketId);
+        }
+        long start = System.nanoTime();
+        boolean removed = delegate.removeTicket(ticketId);
+        statistics.record(PoolStatistics.Operation.REMOVE, System.nanoTime() - start);
+        return removed;
+    }
+
+    /**
+     * Holds a ticket taken through {@link #takeHeld()}, so the hold is settled through this decorator.
+     */
+    @Override
+    public TicketHold holdTicket(long ttl, TimeUnit unit) {
+        String ticket = takeHeld();
+        return ticket == null ? null : TicketHold.start(this, ticket, ttl, unit);
+    }
+
+    /**
+     * Times taking a ticket out of sale for a hold.
+     */
+    @Override
+    public String takeHeld() {
+        if (!statistics.isEnabled()) {
+            return ((HeldTickets) delegate).takeHeld();
+        }
+        long start = System.nanoTime();
+        String ticket = ((HeldTickets) delegate).takeHeld();
+        statistics.record(PoolStatistics.Operation.HOLD, System.nanoTime() - start);
+        return ticket;
+    }
+
+    @Override
+    public void settleHeld(String ticket, boolean sold) {
+        ((HeldTickets) delegate).settleHeld(ticket, sold);
+    }
+
+    @Override
+    public int adoptHeld(int count) {
+        return ((HeldTickets) delegate).adoptHeld(count);
+    }
+
+    /**
+     * Times a snapshot of the pool's contents.
+     */
+    @Override
+    public PoolSnapshot snapshot(int maxTickets) {
+        if (!statistics.isEnabled()) {
+            return delegate.snapshot(maxTickets);
+        }
+        long start = System.nanoTime();
+        PoolSnapshot snapshot = delegate.snapshot(maxTickets);
+        statistics.record(PoolStatistics.Operation.READ, System.nanoTime() - start);
+        return snapshot;
+    }
+
+    /**
+     * No-op for this implementation; switching is handled by TicketPoolManager.
+     */
+    @Override
+    public void switchSynchronizationMechanism(SynchronizationMechanism mechanism) {
+        // Not handled here, managed by TicketPoolManager
+    }
+}
@@ -0,0 +1,137 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Fixed-size, log-linear latency histogram. Each power of two is split into eight buckets, so any
+// reported percentile is within 12.5% of the true value. Recording is one increment on a stripe chosen
+// by the calling thread, so concurrent recorders rarely touch the same cache line and never allocate.
+final class LatencyHistogram {
+    private static final int LINEAR_BUCKETS = 16;  // Values below 16 ns get one bucket each
+    private static final int SUB_BUCKET_BITS = 3;  // 8 buckets per power of two above that
+    private static final int BUCKETS = LINEAR_BUCKETS + (63 - 4) * (1 << SUB_BUCKET_BITS);
+
+    private final AtomicLongArray[] stripes;
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Constructs an empty histogram with one stripe per available processor, rounded up to a power of two.
+     */
+    LatencyHistogram() {
+        int count = Integer.highestOneBit(Math.min(64, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        this.stripes = new AtomicLongArray[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    /**
+     * Records one measurement in nanoseconds. Negative values are treated as zero.
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        long mixed = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        stripes[(int) (mixed >>> 32) & (stripes.length - 1)].getAndIncrement(bucketOf(value));
+
+        long currentMax;
+        while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+            // Retry: another thread raised the maximum concurrently
+        }
+    }
+
+    /**
+     * Returns a consistent-enough copy of the bucket counts for computing percentiles.
+     */
+    Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long count = stripe.get(i);
+                counts[i] += count;
+                total += count;
+            }
+        }
+        return new Snapshot(counts, total, max.get());
+    }
+
+    /**
+     * Clears all recorded values. Measurements recorded concurrently may or may not survive the reset.
+     */
+    void reset() {
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                stripe.set(i, 0);
+            }
+        }
+        max.set(0);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+        return LINEAR_BUCKETS + ((exponent - 4) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    // Largest value that falls into the given bucket
+    private static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = ((bucket - LINEAR_BUCKETS) >> SUB_BUCKET_BITS) + 4;
+        long subBucket = (bucket - LINEAR_BUCKETS) & ((1 << SUB_BUCKET_BITS) - 1);
+        return (((1L << SUB_BUCKET_BITS) + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    // Immutable view of the histogram at one point in time
+    static final class Snapshot {
+        private final long[] counts;
+        private final long total;
+        private final long max;
+
+        private Snapshot(long[] counts, long total, long max) {
+            this.counts = counts;
+            this.total = total;
+            this.max = max;
+        }
+
+        long getCount() {
+            return total;
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the measurements recorded after the given earlier snapshot of the same histogram.
+         * The maximum stays the histogram's overall maximum, which only caps the percentiles.
+         */
+        Snapshot since(Snapshot earlier) {
+            long[] delta = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                delta[i] = Math.max(0, counts[i] - earlier.counts[i]);
+            }
+            return new Snapshot(delta, Math.max(0, total - earlier.total), max);
+        }
+
+        /**
+         * Returns the value at the given percentile (0 to 100), or 0 if nothing was recorded.
+         */
+        long getPercentile(double percentile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
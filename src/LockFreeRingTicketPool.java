@@ -0,0 +1,494 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// 4. Lock-free bounded ring buffer implementation (multi-producer/multi-consumer)
+class LockFreeRingTicketPool implements TicketPool, HeldTickets {
+    private static final int MAX_OPTIMISTIC_ATTEMPTS = 8; // As in SeqLock, before a reader settles for an estimate
+
+    // Slot sequences below zero mark a ticket being sold or removed at a ring position; see marker().
+    // A REMOVED sequence is the tombstone that holds the slot until the head passes it
+    private static final int CLAIMED = 0;
+    private static final int REMOVING = 1;
+    private static final int REMOVED = 2;
+
+    private final AtomicReferenceArray<String> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePosition;
+    private final AtomicLong dequeuePosition;
+    private final WaitQueue waitingConsumers;
+    private final WaitQueue waitingProducers;
+    private final PendingPurchases pendingPurchases;
+    private final int capacity;
+    // Tickets on hold. A holder counts its ticket here before taking it off the ring and a producer reads this
+    // after the ring positions, so the ring and the holds together never exceed the capacity
+    private final AtomicInteger held;
+
+    // Ticket ID to ring position. Only a hint: every lookup is checked against the slot's sequence.
+    // Built on the first lookup or removal, so a pool that never looks tickets up does no boxing or hashing for it
+    private final ConcurrentHashMap<String, Long> index;
+    private volatile boolean indexing;
+    private final AtomicInteger tombstones;
+    // Every write or skip of a tombstone is bracketed by these, so readers can tell when none overlapped them.
+    // Consumers claim a ticket through its slot's sequence, which shuts out removals, so plain purchases never touch them
+    private final AtomicLong tombstoneChangesStarted;
+    private final AtomicLong tombstoneChangesFinished;
+
+    /**
+     * Constructs a lock-free ticket pool backed by a preallocated ring of the given capacity.
+     * Each slot carries a sequence number that producers and consumers claim with CAS,
+     * so neither side ever takes a lock on the add/purchase fast path.
+     */
+    public LockFreeRingTicketPool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.enqueuePosition = new AtomicLong();
+        this.dequeuePosition = new AtomicLong();
+        this.waitingConsumers = new WaitQueue();
+        this.waitingProducers = new WaitQueue();
+        this.pendingPurchases = new PendingPurchases();
+        this.index = new ConcurrentHashMap<>();
+        this.tombstones = new AtomicInteger();
+        this.held = new AtomicInteger();
+        this.tombstoneChangesStarted = new AtomicLong();
+        this.tombstoneChangesFinished = new AtomicLong();
+    }
+
+    /**
+     * Claims the next free slot and publishes the ticket into it.
+     * Returns false if the ring is full. Wakes a parked consumer if one is waiting.
+     */
+    @Override
+    public boolean addTicket(String ticketInfo) {
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticketInfo)) {
+            return true; // Delivered straight to the oldest asynchronous purchase
+        }
+        if (!offer(ticketInfo, false)) {
+            return false;
+        }
+        waitingConsumers.signal();
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return true;
+    }
+
+    /**
+     * Publishes the ticket, parking in the producer queue while the ring is full until a purchase frees a slot.
+     */
+    @Override
+    public void putTicket(String ticketInfo) throws InterruptedException {
+        waitingProducers.await(() -> addTicket(ticketInfo) ? Boolean.TRUE : null, this::hasSpace, -1);
+    }
+
+    /**
+     * Publishes the ticket, parking for at most the given timeout while the ring is full.
+     */
+    @Override
+    public boolean offerTicket(String ticketInfo, long timeout, TimeUnit unit) throws InterruptedException {
+        return waitingProducers.await(() -> addTicket(ticketInfo) ? Boolean.TRUE : null, this::hasSpace,
+                Math.max(0, unit.toNanos(timeout))) != null;
+    }
+
+    /**
+     * Takes the oldest ticket, spinning through CAS races and parking only while the ring is empty.
+     */
+    @Override
+    public String purchaseTicket() throws InterruptedException {
+        return waitingConsumers.await(this::take, this::hasTickets, -1);
+    }
+
+    /**
+     * Takes the oldest ticket, parking for at most the given timeout while the ring is empty.
+     */
+    @Override
+    public String purchaseTicket(long timeout, TimeUnit unit) throws InterruptedException {
+        return waitingConsumers.await(this::take, this::hasTickets, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    /**
+     * Takes the oldest ticket without waiting, or returns null if the ring is empty.
+     */
+    @Override
+    public String tryPurchase() {
+        return take();
+    }
+
+    /**
+     * Returns a future for the next ticket. If purchases are already waiting, or the pool is empty,
+     * the purchase joins the FIFO queue of waiting purchases and is completed by a later add.
+     */
+    @Override
+    public CompletableFuture<String> purchaseTicketAsync() {
+        if (!pendingPurchases.hasWaiting()) {
+            String ticket = tryPurchase();
+            if (ticket != null) {
+                return CompletableFuture.completedFuture(ticket);
+            }
+        }
+        TicketPurchase purchase = pendingPurchases.register();
+        pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        return purchase;
+    }
+
+    /**
+     * Returns the number of published tickets less the removed ones still in the ring, read optimistically
+     * like a SeqLock: if removals keep overlapping the read, the last attempt is returned as an estimate.
+     */
+    @Override
+    public int getAvailableTickets() {
+        long size = 0;
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_ATTEMPTS; attempt++) {
+            long finished = tombstoneChangesFinished.get();
+            long head = dequeuePosition.get();
+            long tail = enqueuePosition.get();
+            size = Math.min(tail - head, capacity) - tombstones.get();
+            if (tombstoneChangesStarted.get() == finished) {
+                break;
+            }
+            Thread.onSpinWait();
+        }
+        return (int) Math.max(0, size);
+    }
+
+    /**
+     * Returns the ticket at the given position from the head of the ring, or null if the index is invalid.
+     * The read is optimistic, like a snapshot: it is discarded if the ring changes while being read.
+     */
+    @Override
+    public String viewTicketInfo(int index) {
+        if (index < 0 || index >= capacity) {
+            return null;
+        }
+        List<String> page = snapshot(index + 1).getTickets();
+        return index < page.size() ? page.get(index) : null;
+    }
+
+    /**
+     * Looks up the ticket's ring position in the hash index and returns it only if that slot still holds it.
+     * The first lookup builds the index from the ring; from then on every add and purchase keeps it up to date.
+     */
+    @Override
+    public String findTicket(String ticketId) {
+        startIndexing();
+        Long indexed = index.get(ticketId);
+        if (indexed == null) {
+            return null;
+        }
+        long position = indexed;
+        int slot = (int) (position % capacity);
+        String ticket = slots.get(slot);
+        if (sequences.get(slot) == position + 1 && ticket != null && ticket.equals(ticketId)) {
+            return ticket;
+        }
+        return null;
+    }
+
+    /**
+     * Marks the ticket's slot removed by CAS on its sequence, racing fairly with any consumer claiming it.
+     * The ring cannot close the gap, so the slot is freed when the head reaches it; tombstones at the head
+     * are skipped straight away, so a removed ticket only holds capacity while older tickets are queued ahead of it.
+     */
+    @Override
+    public boolean removeTicket(String ticketId) {
+        startIndexing();
+        Long indexed = index.get(ticketId);
+        if (indexed == null) {
+            return false;
+        }
+        long position = indexed;
+        int slot = (int) (position % capacity);
+        while (sequences.get(slot) == position) {
+            Thread.onSpinWait(); // The producer has indexed the ticket but is still publishing it
+        }
+
+        boolean removed = false;
+        tombstoneChangesStarted.incrementAndGet();
+        try {
+            String ticket = slots.get(slot);
+            if (sequences.get(slot) == position + 1 && ticket != null && ticket.equals(ticketId)
+                    && sequences.compareAndSet(slot, position + 1, marker(position, REMOVING))) {
+                slots.set(slot, null);
+                tombstones.incrementAndGet();
+                sequences.set(slot, marker(position, REMOVED));
+                index.remove(ticketId, position);
+                removed = true;
+            }
+        } finally {
+            tombstoneChangesFinished.incrementAndGet();
+        }
+        if (removed) {
+            skipTombstones();
+        }
+        return removed;
+    }
+
+    /**
+     * Copies the first tickets straight from the ring, skipping tombstones. The copy is kept only if no consumer
+     * moved the head and no removal ran while it was taken, which makes it the ring's exact contents at the moment
+     * the tail was read. Like a SeqLock read it is retried a bounded number of times; under constant traffic the
+     * last attempt is returned with the slots that were still changing left out.
+     * The version counts adds, purchases and removals, so it changes with every change to the ring.
+     */
+    @Override
+    public PoolSnapshot snapshot(int maxTickets) {
+        List<String> page = new ArrayList<>(Math.max(0, Math.min(maxTickets, capacity)));
+        long version = 0;
+        long size = 0;
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_ATTEMPTS; attempt++) {
+            page.clear();
+            long finished = tombstoneChangesFinished.get();
+            long head = dequeuePosition.get();
+            long tail = enqueuePosition.get();
+            int removed = tombstones.get();
+            boolean settled = true;
+            for (long position = head; position < tail && page.size() < maxTickets; position++) {
+                int slot = (int) (position % capacity);
+                long sequence = sequences.get(slot);
+                String ticket = slots.get(slot);
+                if (sequence == position + 1 && sequences.get(slot) == sequence) {
+                    page.add(ticket);
+                } else if (sequence != marker(position, REMOVED)) {
+                    settled = false; // Still being written, sold or removed
+                }
+            }
+            version = head + tail + finished;
+            size = Math.min(tail - head, capacity) - removed;
+            if (settled && dequeuePosition.get() == head && tombstoneChangesStarted.get() == finished) {
+                break;
+            }
+            Thread.onSpinWait();
+        }
+        return new PoolSnapshot(version, (int) Math.max(0, size), page);
+    }
+
+    /**
+     * Takes the oldest ticket for a hold of the given time. Its ring slot is freed, but the hold counts against the
+     * capacity until it is settled, so producers cannot fill the ring past it.
+     */
+    @Override
+    public TicketHold holdTicket(long ttl, TimeUnit unit) {
+        String ticket = takeHeld();
+        return ticket == null ? null : TicketHold.start(this, ticket, ttl, unit);
+    }
+
+    @Override
+    public String takeHeld() {
+        held.incrementAndGet(); // Counted before the ticket leaves the ring
+        String ticket = poll();
+        if (ticket == null) {
+            held.decrementAndGet();
+            return null;
+        }
+        if (tombstones.get() > 0) {
+            skipTombstones();
+        }
+        return ticket;
+    }
+
+    @Override
+    public void settleHeld(String ticket, boolean sold) {
+        if (sold || pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticket)) {
+            held.decrementAndGet();
+            waitingProducers.signal();
+            return;
+        }
+        offer(ticket, true);
+        held.decrementAndGet(); // Only once the ticket is back on the ring
+        waitingConsumers.signal();
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+    }
+
+    @Override
+    public int adoptHeld(int count) {
+        while (true) {
+            int current = held.get();
+            long head = dequeuePosition.get(); // Read before the tail, so the ring's occupancy is never underestimated
+            long used = enqueuePosition.get() - head + current;
+            int adopted = (int) Math.max(0, Math.min(count, capacity - used));
+            if (held.compareAndSet(current, current + adopted)) {
+                return adopted;
+            }
+        }
+    }
+
+    /**
+     * No-op for this implementation; switching is handled by TicketPoolManager.
+     */
+    @Override
+    public void switchSynchronizationMechanism(SynchronizationMechanism mechanism) {
+        // Not handled here, managed by TicketPoolManager
+    }
+
+    // Vyukov-style bounded MPMC enqueue: a slot is free for position p when its sequence equals p.
+    // A ticket coming back from a hold already owns a slot, so it skips the check for held slots and waits out
+    // a consumer that has claimed the slot ahead of it but not yet handed it on
+    private boolean offer(String ticketInfo, boolean fromHold) {
+        long position = enqueuePosition.get();
+        while (true) {
+            int slot = (int) (position % capacity);
+            long difference = sequences.get(slot) - position;
+
+            if (difference == 0) {
+                if (!fromHold && held.get() > 0 && position - dequeuePosition.get() + held.get() >= capacity) {
+                    return false; // The free slots are reserved by held tickets
+                }
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    if (indexing) {
+                        index.put(ticketInfo, position); // Indexed before publishing, so a published ticket is always found
+                    }
+                    slots.set(slot, ticketInfo);
+                    sequences.set(slot, position + 1); // Publish to consumers
+                    return true;
+                }
+                position = enqueuePosition.get();
+            } else if (difference < 0) {
+                if (!fromHold) {
+                    return false; // Slot still holds a ticket from the previous lap: ring is full
+                }
+                Thread.onSpinWait();
+                position = enqueuePosition.get();
+            } else {
+                position = enqueuePosition.get(); // Another producer claimed this position
+            }
+        }
+    }
+
+    // Vyukov-style bounded MPMC dequeue: a slot is readable for position p when its sequence equals p + 1.
+    // The ticket is claimed by CAS on the sequence rather than the head, so a removal can never turn it into a
+    // tombstone under the claim; whoever sees a claimed slot at the head moves the head past it.
+    // Tombstones are skipped and their slots freed on the way
+    private String poll() {
+        long position = dequeuePosition.get();
+        while (true) {
+            int slot = (int) (position % capacity);
+            long sequence = sequences.get(slot);
+
+            if (sequence == position + 1) {
+                if (sequences.compareAndSet(slot, sequence, marker(position, CLAIMED))) {
+                    String ticket = slots.get(slot);
+                    slots.set(slot, null);
+                    dequeuePosition.compareAndSet(position, position + 1); // Fails if another consumer helped
+                    sequences.set(slot, position + capacity); // Hand the slot to the next lap's producer
+                    if (indexing) {
+                        index.remove(ticket, position);
+                    }
+                    return ticket;
+                }
+            } else if (sequence == marker(position, CLAIMED)) {
+                dequeuePosition.compareAndSet(position, position + 1); // Help the consumer that claimed it
+            } else if (sequence == marker(position, REMOVED)) {
+                skipTombstones();
+            } else if (sequence == marker(position, REMOVING)) {
+                Thread.onSpinWait();
+            } else if (sequence > position + 1 || sequence < 0 && markedPosition(sequence) > position) {
+                // Another consumer moved the head on
+            } else {
+                return null; // Nothing published at this position yet: ring is empty
+            }
+            position = dequeuePosition.get();
+        }
+    }
+
+    // The sequence of a slot whose ticket at the given position is claimed, being removed or removed.
+    // Negative and distinct for every position and state, so it can never be mistaken for a lap's sequence
+    private static long marker(long position, int state) {
+        return -4 * position - 4 - state;
+    }
+
+    private static long markedPosition(long marker) {
+        return (-marker - 4) / 4;
+    }
+
+    // Turns the index on and adds the tickets already in the ring. A producer checks the flag after claiming its
+    // position, so a ticket is either below the tail read here or indexed by its producer; one sold while being
+    // added is taken out again, because its consumer may have checked the index before the entry existed
+    private void startIndexing() {
+        if (indexing) {
+            return;
+        }
+        synchronized (index) {
+            if (indexing) {
+                return;
+            }
+            indexing = true;
+            long tail = enqueuePosition.get();
+            for (long position = dequeuePosition.get(); position < tail; position++) {
+                int slot = (int) (position % capacity);
+                while (sequences.get(slot) == position) {
+                    Thread.onSpinWait(); // Claimed but not yet published
+                }
+                String ticket = slots.get(slot);
+                if (sequences.get(slot) != position + 1 || ticket == null) {
+                    continue;
+                }
+                index.put(ticket, position);
+                if (sequences.get(slot) != position + 1) {
+                    index.remove(ticket, position);
+                }
+            }
+        }
+    }
+
+    // Dequeues a ticket and wakes a producer parked on the full ring
+    private String take() {
+        String ticket = poll();
+        if (ticket != null) {
+            waitingProducers.signal();
+            if (tombstones.get() > 0) {
+                skipTombstones(); // A removed ticket may now be at the head
+            }
+        }
+        return ticket;
+    }
+
+    // Frees the slots of tombstones at the head of the ring, waking a producer for each
+    private void skipTombstones() {
+        while (true) {
+            long position = dequeuePosition.get();
+            int slot = (int) (position % capacity);
+            if (sequences.get(slot) != marker(position, REMOVED)) {
+                return;
+            }
+            tombstoneChangesStarted.incrementAndGet();
+            try {
+                if (dequeuePosition.compareAndSet(position, position + 1)) {
+                    slots.set(slot, null);
+                    sequences.set(slot, position + capacity);
+                    tombstones.decrementAndGet();
+                    waitingProducers.signal();
+                }
+            } finally {
+                tombstoneChangesFinished.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean hasSpace() {
+        long position = enqueuePosition.get();
+        return sequences.get((int) (position % capacity)) == position
+                && position - dequeuePosition.get() + held.get() < capacity;
+    }
+
+    private boolean hasTickets() {
+        long position = dequeuePosition.get();
+        long sequence = sequences.get((int) (position % capacity));
+        // A slot being sold or removed may be followed by more tickets, so it only sends the caller round again
+        return sequence == position + 1 || sequence == marker(position, CLAIMED) || sequence == marker(position, REMOVING);
+    }
+}
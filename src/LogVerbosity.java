@@ -0,0 +1,6 @@
+// Enum to represent how much of the actors' activity the event log writes out
+public enum LogVerbosity {
+    OFF,
+    SAMPLED,
+    FULL
+}
@@ -0,0 +1,752 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 6. Off-heap implementation: tickets stored as fixed-width records in direct memory
+class OffHeapTicketPool implements TicketPool, HeldTickets {
+    // Record layout (32 bytes):
+    //   [0]      kind
+    //   STRUCTURED: [4..7] producer index, [8..15] sequence number, [16..19] metadata
+    //   INLINE:     [1] UTF-8 length, [2..31] UTF-8 bytes
+    //   OVERFLOW:   [8..15] key into the heap overflow map
+    //   REMOVED:    tombstone left by removeTicket until the head passes it
+    static final int RECORD_SIZE = 32;
+    private static final int RECORDS_PER_CHUNK = 1 << 20; // 32 MB of direct memory per chunk
+    private static final byte KIND_STRUCTURED = 1;
+    private static final byte KIND_INLINE = 2;
+    private static final byte KIND_OVERFLOW = 3;
+    private static final byte KIND_REMOVED = 4;
+    private static final int MIN_INDEX_SIZE = 64;
+    private static final int MAX_INDEX_SIZE = 1 << 30;
+    private static final int INLINE_LIMIT = RECORD_SIZE - 2;
+    private static final String TICKET_PREFIX = "Ticket-";
+
+    // Direct ByteBuffers, left to the garbage collector since a pool has no close(). An automatic FFM arena would
+    // do the same; ByteBuffer's absolute accessors already cover the fixed record layout
+    private final ByteBuffer[] chunks;
+    private final int capacity;
+    private int head;
+    private int size; // Records between head and tail, tombstones included
+    private int removed; // Tombstones among them; the head record is never one
+    private int held; // Tickets on hold, which keep their records reserved
+
+    // Open-addressing hash index from ticket ID to slot: each entry packs the ID's hash code (high half) and
+    // slot + 1 (low half), 0 marks a free entry. A primitive array, so indexing adds no objects per ticket
+    private long[] index;
+    private int indexed;
+
+    // Small heap-side dictionaries: one entry per producer, plus tickets that fit no record format
+    private final Map<String, Integer> producerIndex;
+    private final List<String> producerNames;
+    private final Map<Long, String> overflow;
+    private long nextOverflowKey;
+
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+    private final PendingPurchases pendingPurchases;
+    private final SeqLock seqLock;
+
+    /**
+     * Constructs an off-heap ticket pool with specified capacity.
+     * Direct memory is allocated in fixed-size chunks the first time the ring reaches them,
+     * so a large but mostly empty pool costs almost nothing.
+     */
+    public OffHeapTicketPool(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.chunks = new ByteBuffer[(this.capacity + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK];
+        this.producerIndex = new HashMap<>();
+        this.producerNames = new ArrayList<>();
+        this.overflow = new HashMap<>();
+        this.index = new long[MIN_INDEX_SIZE];
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+        this.pendingPurchases = new PendingPurchases();
+        this.seqLock = new SeqLock();
+    }
+
+    /**
+     * Encodes the ticket into the next free record if the pool is not full.
+     */
+    @Override
+    public boolean addTicket(String ticketInfo) {
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticketInfo)) {
+            return true; // Delivered straight to the oldest asynchronous purchase
+        }
+        lock.lock();
+        try {
+            if (size + held >= capacity) {
+                return false;
+            }
+            append(ticketInfo);
+        } finally {
+            lock.unlock();
+        }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return true;
+    }
+
+    /**
+     * Encodes as many of the tickets as fit under a single lock acquisition.
+     */
+    @Override
+    public int addTickets(Collection<String> ticketInfos) {
+        if (pendingPurchases.hasWaiting()) {
+            return TicketPool.super.addTickets(ticketInfos); // Hand tickets to waiting purchases one by one
+        }
+        int added = 0;
+        lock.lock();
+        try {
+            seqLock.beginWrite();
+            try {
+                for (String ticketInfo : ticketInfos) {
+                    if (size + held >= capacity) {
+                        break;
+                    }
+                    insert(ticketInfo);
+                    added++;
+                }
+            } finally {
+                seqLock.endWrite();
+            }
+
+            if (added == 1) {
+                notEmpty.signal();
+            } else if (added > 1) {
+                notEmpty.signalAll(); // Several consumers can proceed
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return added;
+    }
+
+    /**
+     * Stores the numeric ticket in a structured record without building its text, unless a waiting
+     * purchase takes it at once.
+     */
+    @Override
+    public boolean addTicket(long ticketId, TicketTier tier) {
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(TicketIds.format(ticketId))) {
+            return true;
+        }
+        lock.lock();
+        try {
+            if (size + held >= capacity) {
+                return false;
+            }
+            seqLock.beginWrite();
+            insert(ticketId);
+            seqLock.endWrite();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return true;
+    }
+
+    /**
+     * Stores as many of the numeric tickets as fit under a single lock acquisition.
+     */
+    @Override
+    public int addTickets(long[] ticketIds, int offset, int count, TicketTier tier) {
+        if (pendingPurchases.hasWaiting()) {
+            return TicketPool.super.addTickets(ticketIds, offset, count, tier); // Hand tickets to waiting purchases
+        }
+        int added = 0;
+        lock.lock();
+        try {
+            seqLock.beginWrite();
+            try {
+                while (added < count && size + held < capacity) {
+                    insert(ticketIds[offset + added]);
+                    added++;
+                }
+            } finally {
+                seqLock.endWrite();
+            }
+
+            if (added == 1) {
+                notEmpty.signal();
+            } else if (added > 1) {
+                notEmpty.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return added;
+    }
+
+    /**
+     * Waits on the notFull condition until a purchase frees a record, then encodes the ticket into it.
+     */
+    @Override
+    public void putTicket(String ticketInfo) throws InterruptedException {
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticketInfo)) {
+            return; // Delivered straight to the oldest asynchronous purchase
+        }
+        lock.lockInterruptibly();
+        try {
+            while (size + held >= capacity) {
+                notFull.await();
+            }
+            append(ticketInfo);
+        } finally {
+            lock.unlock();
+        }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+    }
+
+    /**
+     * Waits on the notFull condition up to the given timeout, returning false if no record was freed in time.
+     */
+    @Override
+    public boolean offerTicket(String ticketInfo, long timeout, TimeUnit unit) throws InterruptedException {
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticketInfo)) {
+            return true; // Delivered straight to the oldest asynchronous purchase
+        }
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size + held >= capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            append(ticketInfo);
+        } finally {
+            lock.unlock();
+        }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until a ticket is available, then decodes and removes the oldest record.
+     */
+    @Override
+    public String purchaseTicket() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            return removeHead();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to the given timeout for a ticket, returning null if none arrived in time.
+     */
+    @Override
+    public String purchaseTicket(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return removeHead();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Decodes and removes the oldest record if one is available, or returns null otherwise.
+     */
+    @Override
+    public String tryPurchase() {
+        lock.lock();
+        try {
+            return size == 0 ? null : removeHead();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a future for the next ticket. If purchases are already waiting, or the pool is empty,
+     * the purchase joins the FIFO queue of waiting purchases and is completed by a later add.
+     */
+    @Override
+    public CompletableFuture<String> purchaseTicketAsync() {
+        if (!pendingPurchases.hasWaiting()) {
+            String ticket = tryPurchase();
+            if (ticket != null) {
+                return CompletableFuture.completedFuture(ticket);
+            }
+        }
+        TicketPurchase purchase = pendingPurchases.register();
+        pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        return purchase;
+    }
+
+    /**
+     * Waits until a ticket is available, then decodes and removes up to maxTickets records in one acquisition.
+     */
+    @Override
+    public int purchaseTickets(int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        if (maxTickets <= 0) {
+            return 0;
+        }
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            int count = Math.min(maxTickets, size - removed);
+            for (int i = 0; i < count; i++) {
+                purchased.add(removeHead());
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of records currently in the pool, not counting tombstones.
+     */
+    @Override
+    public int getAvailableTickets() {
+        lock.lock();
+        try {
+            return size - removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Decodes the record at the given index without removing it, or returns null if the index is invalid.
+     * Tombstones are stepped over, so the cost grows with the number of them ahead of the index.
+     */
+    @Override
+    public String viewTicketInfo(int index) {
+        lock.lock();
+        try {
+            if (index < 0 || index >= size - removed) {
+                return null;
+            }
+            if (removed == 0) {
+                return decode((head + index) % capacity);
+            }
+            int remaining = index;
+            for (int i = 0; i < size; i++) {
+                int slot = (head + i) % capacity;
+                if (chunkFor(slot).get(offsetOf(slot)) != KIND_REMOVED && remaining-- == 0) {
+                    return decode(slot);
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Looks the ticket up in the off-heap pool's hash index, confirming the match against the record itself.
+     */
+    @Override
+    public String findTicket(String ticketId) {
+        lock.lock();
+        try {
+            int entry = findEntry(ticketId);
+            return entry < 0 ? null : decode(slotOf(index[entry]));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Turns the ticket's record into a tombstone in place, keeping the order of the records around it.
+     * The record's slot is freed when the head reaches it, straight away if it is the head.
+     */
+    @Override
+    public boolean removeTicket(String ticketId) {
+        lock.lock();
+        try {
+            int entry = findEntry(ticketId);
+            if (entry < 0) {
+                return false;
+            }
+            int slot = slotOf(index[entry]);
+            seqLock.beginWrite();
+            unindex(entry);
+            release(slot);
+            chunkFor(slot).put(offsetOf(slot), KIND_REMOVED);
+            removed++;
+            skipTombstones();
+            seqLock.endWrite();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Decodes and removes the oldest record for a hold of the given time; a record stays reserved until the hold is settled.
+     */
+    @Override
+    public TicketHold holdTicket(long ttl, TimeUnit unit) {
+        String ticket = takeHeld();
+        return ticket == null ? null : TicketHold.start(this, ticket, ttl, unit);
+    }
+
+    @Override
+    public String takeHeld() {
+        lock.lock();
+        try {
+            if (size == 0) {
+                return null;
+            }
+            held++;
+            return removeHead();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void settleHeld(String ticket, boolean sold) {
+        boolean handedOff = !sold && pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticket);
+        lock.lock();
+        try {
+            held--;
+            if (sold || handedOff) {
+                notFull.signal();
+            } else {
+                append(ticket); // The reserved record guarantees room
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!sold && !handedOff && pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+    }
+
+    @Override
+    public int adoptHeld(int count) {
+        lock.lock();
+        try {
+            int adopted = Math.max(0, Math.min(count, capacity - size - held));
+            held += adopted;
+            return adopted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Decodes the size and the first records without taking the lock, retrying if a writer changed the ring
+     * meanwhile. Falls back to the lock only if writers keep interfering.
+     */
+    @Override
+    public PoolSnapshot snapshot(int maxTickets) {
+        PoolSnapshot snapshot = seqLock.readOptimistically(version -> copy(version, maxTickets));
+        if (snapshot != null) {
+            return snapshot;
+        }
+        lock.lock();
+        try {
+            return copy(seqLock.version(), maxTickets);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * No-op for this implementation; switching is handled by TicketPoolManager.
+     */
+    @Override
+    public void switchSynchronizationMechanism(SynchronizationMechanism mechanism) {
+        // Not handled here, managed by TicketPoolManager
+    }
+
+    private boolean hasTickets() {
+        lock.lock();
+        try {
+            return size > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Encodes the ticket at the tail and wakes one consumer; the caller holds the lock and has checked for space
+    private void append(String ticketInfo) {
+        seqLock.beginWrite();
+        insert(ticketInfo);
+        seqLock.endWrite();
+        notEmpty.signal();
+    }
+
+    // Encodes and indexes the ticket at the tail; the caller holds the lock inside a seqLock write
+    private void insert(String ticketInfo) {
+        int slot = (head + size) % capacity;
+        encode(ticketInfo, slot);
+        addEntry(ticketInfo.hashCode(), slot);
+        size++;
+    }
+
+    // Stores and indexes a numeric ticket at the tail, under the hash code of its text; the caller holds the lock
+    // inside a seqLock write
+    private void insert(long ticketId) {
+        int slot = (head + size) % capacity;
+        encodeStructured(slot, producerIndexOf(TicketIds.producerOf(ticketId)), TicketIds.sequenceOf(ticketId));
+        addEntry(TicketIds.hashOf(ticketId), slot);
+        size++;
+    }
+
+    // Decodes and frees the head record and wakes one producer; the caller holds the lock
+    private String removeHead() {
+        int slot = head;
+        String ticket = decode(slot);
+        seqLock.beginWrite();
+        unindex(entryOf(ticket.hashCode(), slot));
+        release(slot);
+        head = (head + 1) % capacity;
+        size--;
+        skipTombstones();
+        seqLock.endWrite();
+        notFull.signal();
+        return ticket;
+    }
+
+    // Frees tombstones at the head so the head record is always a ticket, waking a producer for each
+    private void skipTombstones() {
+        while (removed > 0 && chunkFor(head).get(offsetOf(head)) == KIND_REMOVED) {
+            head = (head + 1) % capacity;
+            size--;
+            removed--;
+            notFull.signal();
+        }
+    }
+
+    // Drops the heap-side copy of an overflow record
+    private void release(int slot) {
+        if (chunkFor(slot).get(offsetOf(slot)) == KIND_OVERFLOW) {
+            overflow.remove(chunkFor(slot).getLong(offsetOf(slot) + 8));
+        }
+    }
+
+    // Returns the index entry holding the ticket, or -1; decodes only records whose hash code matches
+    private int findEntry(String ticketId) {
+        int hash = ticketId.hashCode();
+        int mask = index.length - 1;
+        for (int entry = bucketOf(hash, mask); index[entry] != 0; entry = (entry + 1) & mask) {
+            if ((int) (index[entry] >>> 32) == hash && ticketId.equals(decode(slotOf(index[entry])))) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    // Returns the index entry for the given slot, which must be indexed under the given hash code
+    private int entryOf(int hash, int slot) {
+        int mask = index.length - 1;
+        int entry = bucketOf(hash, mask);
+        while (slotOf(index[entry]) != slot) {
+            entry = (entry + 1) & mask;
+        }
+        return entry;
+    }
+
+    private void addEntry(int hash, int slot) {
+        if (indexed >= index.length / 2 && index.length < MAX_INDEX_SIZE) {
+            long[] previous = index;
+            index = new long[previous.length * 2];
+            for (long packed : previous) {
+                if (packed != 0) {
+                    place(packed);
+                }
+            }
+        }
+        place(((long) hash << 32) | (slot + 1));
+        indexed++;
+    }
+
+    private void place(long packed) {
+        int mask = index.length - 1;
+        int entry = bucketOf((int) (packed >>> 32), mask);
+        while (index[entry] != 0) {
+            entry = (entry + 1) & mask;
+        }
+        index[entry] = packed;
+    }
+
+    // Deletes an entry by shifting later entries of the same probe run back, so lookups need no tombstones
+    private void unindex(int entry) {
+        int mask = index.length - 1;
+        int gap = entry;
+        for (int next = (gap + 1) & mask; index[next] != 0; next = (next + 1) & mask) {
+            int home = bucketOf((int) (index[next] >>> 32), mask);
+            boolean staysPut = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+            if (!staysPut) {
+                index[gap] = index[next];
+                gap = next;
+            }
+        }
+        index[gap] = 0;
+        indexed--;
+    }
+
+    private static int bucketOf(int hash, int mask) {
+        int mixed = hash * 0x9E3779B9; // Fibonacci hashing spreads sequential ticket numbers
+        return (mixed ^ (mixed >>> 16)) & mask;
+    }
+
+    private static int slotOf(long packed) {
+        return (int) packed - 1;
+    }
+
+    // Decodes the size and up to maxTickets records from the head. Never allocates a chunk, so it is safe to run
+    // without the lock as long as the caller validates the result
+    private PoolSnapshot copy(long version, int maxTickets) {
+        int records = size;
+        int count = records - removed;
+        int first = head;
+        List<String> page = new ArrayList<>(Math.max(0, Math.min(maxTickets, count)));
+        for (int i = 0; i < records && page.size() < maxTickets; i++) {
+            int slot = (first + i) % capacity;
+            ByteBuffer chunk = chunks[slot / RECORDS_PER_CHUNK];
+            if (chunk == null) {
+                throw new IllegalStateException("Record not yet written"); // Torn read: discarded by the caller
+            }
+            if (chunk.get(offsetOf(slot)) != KIND_REMOVED) {
+                page.add(decode(chunk, slot));
+            }
+        }
+        return new PoolSnapshot(version, count, page);
+    }
+
+    // Writes the ticket into the record at the given slot, choosing the most compact representation
+    private void encode(String ticketInfo, int slot) {
+        ByteBuffer chunk = chunkFor(slot);
+        int offset = offsetOf(slot);
+
+        int producerEnd = ticketInfo.lastIndexOf('-');
+        long sequence = producerEnd > TICKET_PREFIX.length() && ticketInfo.startsWith(TICKET_PREFIX)
+                ? parseSequence(ticketInfo, producerEnd + 1)
+                : -1;
+        if (sequence >= 0) {
+            encodeStructured(slot, producerIndexOf(ticketInfo.substring(TICKET_PREFIX.length(), producerEnd)), sequence);
+            return;
+        }
+
+        byte[] text = ticketInfo.getBytes(StandardCharsets.UTF_8);
+        if (text.length <= INLINE_LIMIT) {
+            chunk.put(offset, KIND_INLINE);
+            chunk.put(offset + 1, (byte) text.length);
+            chunk.put(offset + 2, text);
+            return;
+        }
+
+        long key = nextOverflowKey++;
+        overflow.put(key, ticketInfo);
+        chunk.put(offset, KIND_OVERFLOW);
+        chunk.putLong(offset + 8, key);
+    }
+
+    private void encodeStructured(int slot, int producer, long sequence) {
+        ByteBuffer chunk = chunkFor(slot);
+        int offset = offsetOf(slot);
+        chunk.put(offset, KIND_STRUCTURED);
+        chunk.putInt(offset + 4, producer);
+        chunk.putLong(offset + 8, sequence);
+        chunk.putInt(offset + 16, 0);
+    }
+
+    // Rebuilds the String form of the record at the given slot; this is the only place tickets are materialised
+    private String decode(int slot) {
+        return decode(chunkFor(slot), slot);
+    }
+
+    private String decode(ByteBuffer chunk, int slot) {
+        int offset = offsetOf(slot);
+
+        switch (chunk.get(offset)) {
+            case KIND_STRUCTURED:
+                return TICKET_PREFIX + producerNames.get(chunk.getInt(offset + 4)) + "-" + chunk.getLong(offset + 8);
+            case KIND_INLINE:
+                byte[] text = new byte[chunk.get(offset + 1)];
+                chunk.get(offset + 2, text);
+                return new String(text, StandardCharsets.UTF_8);
+            default:
+                return overflow.get(chunk.getLong(offset + 8));
+        }
+    }
+
+    // Parses a canonical non-negative decimal (no sign, no leading zeros) so decoding reproduces the original text
+    private static long parseSequence(String ticketInfo, int from) {
+        int length = ticketInfo.length() - from;
+        if (length <= 0 || length > 18 || (length > 1 && ticketInfo.charAt(from) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < ticketInfo.length(); i++) {
+            char c = ticketInfo.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private int producerIndexOf(String producerId) {
+        Integer index = producerIndex.get(producerId);
+        if (index == null) {
+            index = producerNames.size();
+            producerNames.add(producerId);
+            producerIndex.put(producerId, index);
+        }
+        return index;
+    }
+
+    private ByteBuffer chunkFor(int slot) {
+        int chunkIndex = slot / RECORDS_PER_CHUNK;
+        ByteBuffer chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            int records = Math.min(RECORDS_PER_CHUNK, capacity - chunkIndex * RECORDS_PER_CHUNK);
+            chunk = ByteBuffer.allocateDirect(records * RECORD_SIZE);
+            chunks[chunkIndex] = chunk;
+        }
+        return chunk;
+    }
+
+    private static int offsetOf(int slot) {
+        return (slot % RECORDS_PER_CHUNK) * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+// FIFO queue of asynchronous purchases waiting for tickets. Producers complete the oldest
+// purchase directly, so a pending purchase costs one queue entry rather than a blocked thread.
+final class PendingPurchases {
+    private final ConcurrentLinkedDeque<TicketPurchase> waiting = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Queues a new purchase behind those already waiting.
+     */
+    TicketPurchase register() {
+        // Drop purchases at the head that were cancelled or timed out, so abandoned entries do not pile up
+        TicketPurchase head;
+        while ((head = waiting.peekFirst()) != null && head.isDone()) {
+            waiting.remove(head);
+        }
+
+        TicketPurchase purchase = new TicketPurchase();
+        waiting.addLast(purchase);
+        return purchase;
+    }
+
+    /**
+     * Returns true if any purchase may still be waiting. Cheap enough to call on every add.
+     */
+    boolean hasWaiting() {
+        return !waiting.isEmpty();
+    }
+
+    /**
+     * Hands the ticket straight to the oldest waiting purchase.
+     *
+     * @return true if a purchase took the ticket, false if none was waiting
+     */
+    boolean handOff(String ticket) {
+        TicketPurchase purchase = claimNext();
+        if (purchase == null) {
+            return false;
+        }
+        purchase.deliver(ticket);
+        return true;
+    }
+
+    /**
+     * Matches waiting purchases with tickets already in the pool. Pools call this after inserting a
+     * ticket and after registering a purchase: whichever side acts second sees the other.
+     *
+     * @param take       removes one ticket from the pool without blocking, or returns null
+     * @param hasTickets whether the pool currently holds any ticket
+     */
+    void dispatch(Supplier<String> take, BooleanSupplier hasTickets) {
+        while (hasWaiting()) {
+            TicketPurchase purchase = claimNext();
+            if (purchase == null) {
+                return;
+            }
+            String ticket = take.get();
+            if (ticket != null) {
+                purchase.deliver(ticket);
+                continue;
+            }
+
+            // No ticket after all: put the purchase back at the front, then re-check in case
+            // a producer inserted a ticket while the purchase was out of the queue
+            purchase.release();
+            waiting.addFirst(purchase);
+            if (!hasTickets.getAsBoolean()) {
+                return;
+            }
+        }
+    }
+
+    // Removes and claims the oldest purchase that is still waiting, skipping cancelled ones
+    private TicketPurchase claimNext() {
+        TicketPurchase purchase;
+        while ((purchase = waiting.pollFirst()) != null) {
+            if (purchase.claim()) {
+                return purchase;
+            }
+        }
+        return null;
+    }
+}
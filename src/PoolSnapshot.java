@@ -0,0 +1,61 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Immutable view of a pool's contents at one version: the size and a page of tickets from the head,
+// taken together so they always agree with each other
+public final class PoolSnapshot {
+    private final long version;
+    private final int availableTickets;
+    private final List<String> tickets;
+
+    /**
+     * Constructs a snapshot. The ticket list is copied.
+     *
+     * @param version          the pool's version when the snapshot was taken
+     * @param availableTickets the number of tickets in the pool at that version
+     * @param tickets          up to the requested number of tickets, starting at the head of the pool
+     */
+    PoolSnapshot(long version, int availableTickets, List<String> tickets) {
+        this.version = version;
+        this.availableTickets = availableTickets;
+        this.tickets = Collections.unmodifiableList(new ArrayList<>(tickets));
+    }
+
+    /**
+     * Returns the version of the pool this snapshot was taken at. The version grows with every change to the
+     * pool, so two snapshots of the same implementation with equal versions have the same contents.
+     *
+     * @return the pool version, or -1 if the implementation cannot version its contents
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of tickets that were available.
+     *
+     * @return the number of available tickets
+     */
+    public int getAvailableTickets() {
+        return availableTickets;
+    }
+
+    /**
+     * Returns the ticket at the head of the pool, the next one a purchase would have taken.
+     *
+     * @return the head ticket, or null if the pool was empty or no tickets were requested
+     */
+    public String getHead() {
+        return tickets.isEmpty() ? null : tickets.get(0);
+    }
+
+    /**
+     * Returns the page of tickets copied from the head of the pool, in purchase order.
+     *
+     * @return an unmodifiable list of at most the requested number of tickets
+     */
+    public List<String> getTickets() {
+        return tickets;
+    }
+}
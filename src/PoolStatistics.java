@@ -0,0 +1,153 @@
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histograms and event counters for one synchronization mechanism
+final class PoolStatistics {
+    // The pool operations that are timed separately
+    enum Operation {
+        ADD,
+        ADD_BATCH,
+        PUT,
+        OFFER_TIMED,
+        PURCHASE,
+        PURCHASE_TIMED,
+        TRY_PURCHASE,
+        PURCHASE_BATCH,
+        PURCHASE_ASYNC,
+        REMOVE,
+        HOLD,
+        READ
+    }
+
+    private final SynchronizationMechanism mechanism;
+    // Allocated when first needed: the histograms are almost all of the footprint, and most pools never record
+    private volatile Map<Operation, LatencyHistogram> histograms;
+    private final LongAdder fullPoolRejections = new LongAdder();
+    private final LongAdder emptyPoolWaits = new LongAdder();
+    private final LongAdder fullPoolWaits = new LongAdder();
+    private volatile boolean enabled;
+    private volatile long since = System.nanoTime();
+
+    PoolStatistics(SynchronizationMechanism mechanism) {
+        this.mechanism = mechanism;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        if (enabled) {
+            histograms(); // Before the flag, so a recorder that sees it enabled finds the histograms
+        }
+        this.enabled = enabled;
+    }
+
+    void record(Operation operation, long nanos) {
+        histograms().get(operation).record(nanos);
+    }
+
+    // Counts an add (or part of a batch) turned away because the pool was full
+    void recordFullPoolRejection(int tickets) {
+        fullPoolRejections.add(tickets);
+    }
+
+    // Counts a purchase that found the pool empty and had to wait
+    void recordEmptyPoolWait() {
+        emptyPoolWaits.increment();
+    }
+
+    // Counts a blocking add that found the pool full and had to wait
+    void recordFullPoolWait() {
+        fullPoolWaits.increment();
+    }
+
+    long getFullPoolRejections() {
+        return fullPoolRejections.sum();
+    }
+
+    long getEmptyPoolWaits() {
+        return emptyPoolWaits.sum();
+    }
+
+    long getFullPoolWaits() {
+        return fullPoolWaits.sum();
+    }
+
+    // When the statistics were last reset, so a reader comparing two readings can tell if a reset came between them
+    long getSince() {
+        return since;
+    }
+
+    LatencyHistogram.Snapshot snapshot(Operation operation) {
+        return histograms().get(operation).snapshot();
+    }
+
+    /**
+     * Clears every histogram and counter and restarts the ops/sec clock.
+     */
+    void reset() {
+        Map<Operation, LatencyHistogram> allocated = histograms;
+        if (allocated != null) {
+            for (LatencyHistogram histogram : allocated.values()) {
+                histogram.reset();
+            }
+        }
+        fullPoolRejections.reset();
+        emptyPoolWaits.reset();
+        fullPoolWaits.reset();
+        since = System.nanoTime();
+    }
+
+    /**
+     * Appends a per-operation table (latencies in microseconds) to the given builder.
+     * Mechanisms and operations with no recorded calls are left out.
+     */
+    void appendReport(StringBuilder report) {
+        Map<Operation, LatencyHistogram> allocated = histograms;
+        if (allocated == null) {
+            return;
+        }
+        double seconds = Math.max(1e-9, (System.nanoTime() - since) / 1e9);
+        long totalOps = 0;
+        Map<Operation, LatencyHistogram.Snapshot> snapshots = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram.Snapshot snapshot = allocated.get(operation).snapshot();
+            if (snapshot.getCount() > 0) {
+                snapshots.put(operation, snapshot);
+                totalOps += snapshot.getCount();
+            }
+        }
+        if (totalOps == 0) {
+            return;
+        }
+
+        report.append(String.format("%s: %.0f ops/sec over %.1f s, %d full-pool rejections, %d full-pool waits, %d empty-pool waits%n",
+                mechanism, totalOps / seconds, seconds, getFullPoolRejections(), getFullPoolWaits(), getEmptyPoolWaits()));
+        report.append(String.format("  %-15s %10s %10s %10s %10s %10s  (us)%n", "operation", "count", "p50", "p99", "p99.9", "max"));
+        for (Map.Entry<Operation, LatencyHistogram.Snapshot> entry : snapshots.entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue();
+            report.append(String.format("  %-15s %10d %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(), snapshot.getCount(),
+                    snapshot.getPercentile(50) / 1000.0, snapshot.getPercentile(99) / 1000.0,
+                    snapshot.getPercentile(99.9) / 1000.0, snapshot.getMax() / 1000.0));
+        }
+    }
+
+    private Map<Operation, LatencyHistogram> histograms() {
+        Map<Operation, LatencyHistogram> allocated = histograms;
+        if (allocated == null) {
+            synchronized (this) {
+                allocated = histograms;
+                if (allocated == null) {
+                    allocated = new EnumMap<>(Operation.class);
+                    for (Operation operation : Operation.values()) {
+                        allocated.put(operation, new LatencyHistogram());
+                    }
+                    histograms = allocated;
+                }
+            }
+        }
+        return allocated;
+    }
+}
@@ -1,40 +1,101 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 // Producer class to add tickets
-class Producer implements Runnable {
+class Producer implements SteppedActor {
+    private static final long FULL_POOL_WAIT_MS = 1000;
+
     private final TicketPool ticketPool;
     private final String producerId;
     private volatile boolean running;
-    private final int delayMs;
+    private volatile int delayMs;
+    private EventLog.Sink log = EventLog.SHARED; // Set before the actor starts, if at all
+    private final int batchSize;
+    private final boolean adaptive;
+    private final TicketTier tier;
+    private final TicketIds.Range ticketIds; // Tickets are minted as numeric IDs, never as text
+    private final long[] batch;
+    private int batchCount; // Tickets in the batch, minted and not yet added
+    private long nextDelayMs; // Set by each step
+    private long ticketsProduced; // Exact once stopped, or when read by whatever steps the producer
 
     public Producer(TicketPool ticketPool, String producerId, int delayMs) {
+        this(ticketPool, producerId, delayMs, 1);
+    }
+
+    public Producer(TicketPool ticketPool, String producerId, int delayMs, int batchSize) {
+        this(ticketPool, producerId, delayMs, batchSize, false);
+    }
+
+    // In adaptive mode a producer facing a full pool waits until a purchase frees a slot, instead of sleeping
+    // for a fixed time and retrying, so it runs exactly as fast as the consumers allow
+    public Producer(TicketPool ticketPool, String producerId, int delayMs, int batchSize, boolean adaptive) {
+        this(ticketPool, producerId, delayMs, batchSize, adaptive, TicketTier.GENERAL);
+    }
+
+    // Releases tickets of the given tier, which only buyers of that tier or a higher one may purchase
+    public Producer(TicketPool ticketPool, String producerId, int delayMs, int batchSize, boolean adaptive, TicketTier tier) {
         this.ticketPool = ticketPool;
         this.producerId = producerId;
         this.running = true;
         this.delayMs = delayMs;
+        this.batchSize = Math.max(1, batchSize);
+        this.adaptive = adaptive;
+        this.tier = tier;
+        this.ticketIds = TicketIds.reserve(producerId);
+        this.batch = new long[this.batchSize];
+        this.nextDelayMs = delayMs;
     }
 
     // The main logic of the producer thread
     @Override
     public void run() {
-        int ticketCounter = 0;
-
         while (running) {
             try {
-                // Generate new ticket info
-                String ticketInfo = "Ticket-" + producerId + "-" + ticketCounter;
+                if (batchSize > 1) {
+                    int added = addBatch();
+                    if (added == 0 && adaptive) {
+                        // Wait for the first free slot, then add the rest of the batch behind it; only a
+                        // blocking add needs the ticket's text
+                        log.record(EventLog.Kind.POOL_FULL, producerId, null);
+                        if (ticketPool.offerTicket(TicketIds.format(batch[0]), tier, FULL_POOL_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                            added = 1 + ticketPool.addTickets(batch, 1, batchCount - 1, tier);
+                        }
+                    }
+                    if (added > 0) {
+                        batchAdded(added);
+                        Thread.sleep(delayMs);
+                    } else if (!adaptive) {
+                        log.record(EventLog.Kind.POOL_FULL, producerId, null);
+                        Thread.sleep(delayMs * 2);
+                    }
+                    continue;
+                }
+
+                // The next ticket's ID; it is only used up once the ticket is added
+                long ticketId = ticketIds.peek();
 
                 // Try to add the ticket to the pool
-                boolean added = ticketPool.addTicket(ticketInfo);
+                boolean added = ticketPool.addTicket(ticketId, tier);
+                if (!added && adaptive) {
+                    // Wait until a purchase frees a slot; the timeout only bounds how long a stop request can go unnoticed
+                    log.record(EventLog.Kind.POOL_FULL, producerId, null);
+                    added = ticketPool.offerTicket(TicketIds.format(ticketId), tier, FULL_POOL_WAIT_MS, TimeUnit.MILLISECONDS);
+                    if (!added) {
+                        continue;
+                    }
+                }
 
                 if (added) {
                     // Ticket added successfully
-                    System.out.println(producerId + " produced: " + ticketInfo);
-                    ticketCounter++;
+                    log.record(EventLog.Kind.PRODUCED, producerId, ticketIds.next());
+                    ticketsProduced++;
 
                     // Wait for specified delay before producing next ticket
                     Thread.sleep(delayMs);
                 } else {
                     // Pool is full, wait longer before retrying
-                    System.out.println(producerId + ": Pool full, waiting before retry");
+                    log.record(EventLog.Kind.POOL_FULL, producerId, null);
                     Thread.sleep(delayMs * 2); // Wait longer when pool is full
                 }
             } catch (InterruptedException e) {
@@ -45,8 +106,72 @@ class Producer implements Runnable {
         }
     }
 
+    // Adds one ticket or batch without waiting. A full pool is retried after twice the delay, or after the delay
+    // for an adaptive producer, since waiting for a free slot would hold one of the engine's threads
+    @Override
+    public CompletableFuture<?> step() {
+        if (batchSize > 1) {
+            int added = addBatch();
+            if (added > 0) {
+                batchAdded(added);
+                nextDelayMs = delayMs;
+            } else {
+                log.record(EventLog.Kind.POOL_FULL, producerId, null);
+                nextDelayMs = adaptive ? delayMs : delayMs * 2L;
+            }
+            return null;
+        }
+
+        if (ticketPool.addTicket(ticketIds.peek(), tier)) {
+            log.record(EventLog.Kind.PRODUCED, producerId, ticketIds.next());
+            ticketsProduced++;
+            nextDelayMs = delayMs;
+        } else {
+            log.record(EventLog.Kind.POOL_FULL, producerId, null);
+            nextDelayMs = adaptive ? delayMs : delayMs * 2L;
+        }
+        return null;
+    }
+
+    // Tops up the batch with new IDs, behind any left over from a partial add, and adds it; returns how many fit
+    private int addBatch() {
+        while (batchCount < batchSize) {
+            batch[batchCount++] = ticketIds.next();
+        }
+        return ticketPool.addTickets(batch, 0, batchCount, tier);
+    }
+
+    // Logs the tickets at the front of the batch that were added and drops them from it
+    private void batchAdded(int added) {
+        log.record(EventLog.Kind.PRODUCED_BATCH, producerId, added, batch[0], batch[added - 1]);
+        System.arraycopy(batch, added, batch, 0, batchCount - added);
+        batchCount -= added;
+        ticketsProduced += added;
+    }
+
+    // Tickets this producer has added to the pool
+    public long getTicketsProduced() {
+        return ticketsProduced;
+    }
+
+    @Override
+    public long nextDelayMs() {
+        return nextDelayMs;
+    }
+
+    @Override
+    public void setDelayMs(int delayMs) {
+        this.delayMs = delayMs;
+    }
+
     // Stops the producer thread
+    @Override
     public void stop() {
         running = false;
     }
+
+    @Override
+    public void logTo(EventLog.Sink sink) {
+        this.log = sink;
+    }
 }
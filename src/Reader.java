@@ -1,9 +1,12 @@
+import java.util.concurrent.CompletableFuture;
+
 // Reader class to query ticket pool status
-class Reader implements Runnable {
+class Reader implements SteppedActor {
     private final TicketPool ticketPool;
     private final String readerId;
     private volatile boolean running;
-    private final int delayMs;
+    private volatile int delayMs;
+    private EventLog.Sink log = EventLog.SHARED; // Set before the actor starts, if at all
 
     public Reader(TicketPool ticketPool, String readerId, int delayMs) {
         this.ticketPool = ticketPool;
@@ -17,17 +20,7 @@ class Reader implements Runnable {
     public void run() {
         while (running) {
             try {
-                // Read and print the number of available tickets
-                int availableTickets = ticketPool.getAvailableTickets();
-                System.out.println(readerId + " read: " + availableTickets + " tickets available");
-
-                // Optionally peek at the first ticket if available
-                if (availableTickets > 0) {
-                    String ticketInfo = ticketPool.viewTicketInfo(0);
-                    if (ticketInfo != null) {
-                        System.out.println(readerId + " peeked at first ticket: " + ticketInfo);
-                    }
-                }
+                step();
 
                 // Wait for a specified delay before the next read
                 Thread.sleep(delayMs);
@@ -39,8 +32,38 @@ class Reader implements Runnable {
         }
     }
 
+    // Takes the count and the first ticket from one snapshot, without holding up producers and consumers
+    @Override
+    public CompletableFuture<?> step() {
+        PoolSnapshot snapshot = ticketPool.snapshot(1);
+        log.record(EventLog.Kind.READ, readerId, snapshot.getAvailableTickets(), null, null);
+
+        // Log the first ticket if available
+        String ticketInfo = snapshot.getHead();
+        if (ticketInfo != null) {
+            log.record(EventLog.Kind.PEEKED, readerId, ticketInfo);
+        }
+        return null;
+    }
+
+    @Override
+    public long nextDelayMs() {
+        return delayMs;
+    }
+
+    @Override
+    public void setDelayMs(int delayMs) {
+        this.delayMs = delayMs;
+    }
+
     // Stops the reader thread
+    @Override
     public void stop() {
         running = false;
     }
+
+    @Override
+    public void logTo(EventLog.Sink sink) {
+        this.log = sink;
+    }
 }
\ No newline at end of file
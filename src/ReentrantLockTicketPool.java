@@ -1,63 +1,244 @@
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 // 2. ReentrantLock/ReentrantReadWriteLock implementation
-class ReentrantLockTicketPool implements TicketPool {
-    private final List<String> tickets;
+class ReentrantLockTicketPool implements TicketPool, HeldTickets {
+    private final IndexedTicketQueue tickets;
     private final int capacity;
     private final ReentrantReadWriteLock lock;
     private final Condition notEmpty;
     private final Condition notFull;
+    private final PendingPurchases pendingPurchases;
+    private final SeqLock seqLock;
+    private int held; // Tickets on hold, which keep their slots; guarded by the write lock
 
     /**
-     * Constructs a ticket pool using Reentrant locks with specified capacity.
+     * Constructs a ticket pool using non-fair Reentrant locks with specified capacity.
      */
     public ReentrantLockTicketPool(int capacity) {
-        this.tickets = new ArrayList<>();
+        this(capacity, false);
+    }
+
+    /**
+     * Constructs a ticket pool using Reentrant locks with specified capacity and fairness.
+     * A fair lock grants access in arrival order at the cost of throughput.
+     */
+    public ReentrantLockTicketPool(int capacity, boolean fair) {
+        this.tickets = new IndexedTicketQueue();
         this.capacity = capacity;
-        this.lock = new ReentrantReadWriteLock();
-        ReentrantLock writeLock = new ReentrantLock(); // Used only to create dummy conditions (not actually used)
-        this.notEmpty = writeLock.newCondition();
-        this.notFull = writeLock.newCondition();
+        this.lock = new ReentrantReadWriteLock(fair);
+        this.notEmpty = lock.writeLock().newCondition(); // Bound to the lock that guards the list
+        this.notFull = lock.writeLock().newCondition();
+        this.pendingPurchases = new PendingPurchases();
+        this.seqLock = new SeqLock();
     }
 
     /**
-     * Adds a ticket to the pool if not full.
+     * Adds a ticket to the pool if not full, signalling one waiting consumer.
      */
     @Override
     public boolean addTicket(String ticketInfo) {
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticketInfo)) {
+            return true; // Delivered straight to the oldest asynchronous purchase
+        }
         lock.writeLock().lock();
         try {
-            if (tickets.size() < capacity) {
-                tickets.add(ticketInfo);
-                return true;
+            if (tickets.size() + held >= capacity) {
+                return false;
             }
-            return false;
+            append(ticketInfo);
         } finally {
             lock.writeLock().unlock();
         }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return true;
     }
 
     /**
-     * Continuously checks and waits for ticket availability, and returns the first ticket.
+     * Adds as many of the tickets as fit under a single write lock acquisition.
      */
     @Override
-    public String purchaseTicket() throws InterruptedException {
-        while (true) {
-            lock.writeLock().lock();
+    public int addTickets(Collection<String> ticketInfos) {
+        if (pendingPurchases.hasWaiting()) {
+            return TicketPool.super.addTickets(ticketInfos); // Hand tickets to waiting purchases one by one
+        }
+        int added = 0;
+        lock.writeLock().lock();
+        try {
+            seqLock.beginWrite();
             try {
-                if (!tickets.isEmpty()) {
-                    return tickets.remove(0);
+                for (String ticketInfo : ticketInfos) {
+                    if (tickets.size() + held >= capacity) {
+                        break;
+                    }
+                    tickets.addLast(ticketInfo);
+                    added++;
                 }
             } finally {
-                lock.writeLock().unlock();
+                seqLock.endWrite();
+            }
+
+            if (added == 1) {
+                notEmpty.signal();
+            } else if (added > 1) {
+                notEmpty.signalAll(); // Several consumers can proceed
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return added;
+    }
+
+    /**
+     * Waits on the notFull condition until a purchase frees a slot, then adds the ticket.
+     */
+    @Override
+    public void putTicket(String ticketInfo) throws InterruptedException {
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticketInfo)) {
+            return; // Delivered straight to the oldest asynchronous purchase
+        }
+        lock.writeLock().lockInterruptibly();
+        try {
+            while (tickets.size() + held >= capacity) {
+                notFull.await();
+            }
+            append(ticketInfo);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+    }
+
+    /**
+     * Waits on the notFull condition up to the given timeout, returning false if no slot was freed in time.
+     */
+    @Override
+    public boolean offerTicket(String ticketInfo, long timeout, TimeUnit unit) throws InterruptedException {
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticketInfo)) {
+            return true; // Delivered straight to the oldest asynchronous purchase
+        }
+        long nanos = unit.toNanos(timeout);
+        lock.writeLock().lockInterruptibly();
+        try {
+            while (tickets.size() + held >= capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            append(ticketInfo);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return true;
+    }
+
+    /**
+     * Waits on the notEmpty condition until a ticket is available, and returns the first ticket.
+     */
+    @Override
+    public String purchaseTicket() throws InterruptedException {
+        lock.writeLock().lockInterruptibly();
+        try {
+            while (tickets.isEmpty()) {
+                notEmpty.await();
             }
+            return removeFirst();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Waits up to the given timeout for a ticket, returning null if none arrived in time.
+     */
+    @Override
+    public String purchaseTicket(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.writeLock().lockInterruptibly();
+        try {
+            while (tickets.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return removeFirst();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-            // Wait a bit before retrying
-            Thread.sleep(100);
+    /**
+     * Returns the first ticket if one is available right now, or null otherwise.
+     */
+    @Override
+    public String tryPurchase() {
+        lock.writeLock().lock();
+        try {
+            return tickets.isEmpty() ? null : removeFirst();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a future for the next ticket. If purchases are already waiting, or the pool is empty,
+     * the purchase joins the FIFO queue of waiting purchases and is completed by a later add.
+     */
+    @Override
+    public CompletableFuture<String> purchaseTicketAsync() {
+        if (!pendingPurchases.hasWaiting()) {
+            String ticket = tryPurchase();
+            if (ticket != null) {
+                return CompletableFuture.completedFuture(ticket);
+            }
+        }
+        TicketPurchase purchase = pendingPurchases.register();
+        pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        return purchase;
+    }
+
+    /**
+     * Waits until a ticket is available, then removes up to maxTickets from the front under one write lock.
+     */
+    @Override
+    public int purchaseTickets(int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        if (maxTickets <= 0) {
+            return 0;
+        }
+        lock.writeLock().lockInterruptibly();
+        try {
+            while (tickets.isEmpty()) {
+                notEmpty.await();
+            }
+
+            seqLock.beginWrite();
+            int count = tickets.drainTo(maxTickets, purchased);
+            seqLock.endWrite();
+            if (count == 1) {
+                notFull.signal();
+            } else {
+                notFull.signalAll(); // Several producers can proceed
+            }
+            return count;
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -81,10 +262,114 @@ class ReentrantLockTicketPool implements TicketPool {
     public String viewTicketInfo(int index) {
         lock.readLock().lock();
         try {
-            if (index >= 0 && index < tickets.size()) {
-                return tickets.get(index);
+            return tickets.get(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Looks the ticket up in the queue's hash index (read lock used).
+     */
+    @Override
+    public String findTicket(String ticketId) {
+        lock.readLock().lock();
+        try {
+            return tickets.find(ticketId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Unlinks the ticket from the queue through its hash index, signalling one waiting producer if it was found.
+     */
+    @Override
+    public boolean removeTicket(String ticketId) {
+        lock.writeLock().lock();
+        try {
+            seqLock.beginWrite();
+            boolean removed = tickets.remove(ticketId);
+            seqLock.endWrite();
+            if (removed) {
+                notFull.signal();
             }
-            return null;
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the first ticket out of sale for the given time; its slot stays occupied until the hold is settled.
+     */
+    @Override
+    public TicketHold holdTicket(long ttl, TimeUnit unit) {
+        String ticket = takeHeld();
+        return ticket == null ? null : TicketHold.start(this, ticket, ttl, unit);
+    }
+
+    @Override
+    public String takeHeld() {
+        lock.writeLock().lock();
+        try {
+            if (tickets.isEmpty()) {
+                return null;
+            }
+            seqLock.beginWrite();
+            String ticket = tickets.pollFirst();
+            seqLock.endWrite();
+            held++;
+            return ticket;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void settleHeld(String ticket, boolean sold) {
+        boolean handedOff = !sold && pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticket);
+        lock.writeLock().lock();
+        try {
+            held--;
+            if (sold || handedOff) {
+                notFull.signal();
+            } else {
+                append(ticket);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!sold && !handedOff && pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+    }
+
+    @Override
+    public int adoptHeld(int count) {
+        lock.writeLock().lock();
+        try {
+            int adopted = Math.max(0, Math.min(count, capacity - tickets.size() - held));
+            held += adopted;
+            return adopted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the size and the first tickets without taking either lock, retrying if a writer changed the list
+     * meanwhile. Falls back to the read lock only if writers keep interfering.
+     */
+    @Override
+    public PoolSnapshot snapshot(int maxTickets) {
+        PoolSnapshot snapshot = seqLock.readOptimistically(version -> copy(version, maxTickets));
+        if (snapshot != null) {
+            return snapshot;
+        }
+        lock.readLock().lock();
+        try {
+            return copy(seqLock.version(), maxTickets);
         } finally {
             lock.readLock().unlock();
         }
@@ -97,4 +382,38 @@ class ReentrantLockTicketPool implements TicketPool {
     public void switchSynchronizationMechanism(SynchronizationMechanism mechanism) {
         // Not handled here, managed by TicketPoolManager
     }
-}
\ No newline at end of file
+
+    // Appends a ticket and wakes one consumer; the caller holds the write lock and has checked for space
+    private void append(String ticketInfo) {
+        seqLock.beginWrite();
+        tickets.addLast(ticketInfo);
+        seqLock.endWrite();
+        notEmpty.signal();
+    }
+
+    // Removes the head ticket and wakes one producer; the caller holds the write lock
+    private String removeFirst() {
+        seqLock.beginWrite();
+        String ticket = tickets.pollFirst();
+        seqLock.endWrite();
+        notFull.signal();
+        return ticket;
+    }
+
+    // Copies the size and up to maxTickets from the front; may see a torn list unless the caller validates or locks
+    private PoolSnapshot copy(long version, int maxTickets) {
+        int size = tickets.size();
+        List<String> page = new ArrayList<>(Math.max(0, Math.min(maxTickets, size)));
+        tickets.copyTo(maxTickets, page);
+        return new PoolSnapshot(version, size, page);
+    }
+
+    private boolean hasTickets() {
+        lock.readLock().lock();
+        try {
+            return !tickets.isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A load scenario read from a file: pool settings followed by phases, each with its own arrival rates and actors.
+// Lines are "key value" settings or "phase <name> key=value ...", with # starting a comment, for example:
+//
+//   capacity 5000
+//   mechanism LOCK_FREE_RING
+//   prefill 5000
+//   phase onsale duration=10s purchase-rate=20000 consumers=64 arrivals=bursty burst=50
+//   phase resale duration=30s add-rate=200 purchase-rate=250 producers=2 consumers=8 patience=100
+public final class Scenario {
+    private final int capacity;
+    private final SynchronizationMechanism mechanism;
+    private final long seed;
+    private final int prefill;
+    private final Path report;
+    private final List<Phase> phases;
+
+    private Scenario(int capacity, SynchronizationMechanism mechanism, long seed, int prefill, Path report,
+                     List<Phase> phases) {
+        this.capacity = capacity;
+        this.mechanism = mechanism;
+        this.seed = seed;
+        this.prefill = prefill;
+        this.report = report;
+        this.phases = Collections.unmodifiableList(phases);
+    }
+
+    /**
+     * Reads a scenario file.
+     *
+     * @param file the scenario file
+     * @return the scenario
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if a line is not a valid setting or phase, naming the line
+     */
+    public static Scenario load(Path file) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses the lines of a scenario file.
+     *
+     * @param lines the lines of the file
+     * @return the scenario
+     * @throws IllegalArgumentException if a line is not a valid setting or phase, naming the line
+     */
+    public static Scenario parse(List<String> lines) {
+        int capacity = 1000;
+        SynchronizationMechanism mechanism = SynchronizationMechanism.SYNCHRONIZED;
+        long seed = 1;
+        int prefill = 0;
+        Path report = null;
+        List<Phase> phases = new ArrayList<>();
+
+        for (int number = 1; number <= lines.size(); number++) {
+            String line = lines.get(number - 1);
+            int comment = line.indexOf('#');
+            String[] parts = (comment >= 0 ? line.substring(0, comment) : line).trim().split("\\s+");
+            if (parts[0].isEmpty()) {
+                continue;
+            }
+            try {
+                switch (parts[0]) {
+                    case "capacity":
+                        capacity = Integer.parseInt(value(parts));
+                        break;
+                    case "mechanism":
+                        mechanism = SynchronizationMechanism.valueOf(value(parts));
+                        break;
+                    case "seed":
+                        seed = Long.parseLong(value(parts));
+                        break;
+                    case "prefill":
+                        prefill = Integer.parseInt(value(parts));
+                        break;
+                    case "report":
+                        report = Paths.get(value(parts));
+                        break;
+                    case "phase":
+                        phases.add(Phase.parse(parts));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown setting " + parts[0]);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("line " + number + ": " + e.getMessage(), e);
+            }
+        }
+        if (phases.isEmpty()) {
+            throw new IllegalArgumentException("no phases");
+        }
+        return new Scenario(capacity, mechanism, seed, prefill, report, phases);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public SynchronizationMechanism getMechanism() {
+        return mechanism;
+    }
+
+    // Seeds every arrival schedule, so a scenario offers the same arrivals each time it runs
+    public long getSeed() {
+        return seed;
+    }
+
+    // Tickets added before the first phase starts
+    public int getPrefill() {
+        return prefill;
+    }
+
+    // Where the report goes, as CSV if the name ends in .csv and as JSON otherwise; null to only print it
+    public Path getReport() {
+        return report;
+    }
+
+    public List<Phase> getPhases() {
+        return phases;
+    }
+
+    private static String value(String[] parts) {
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("use: " + parts[0] + " <value>");
+        }
+        return parts[1];
+    }
+
+    // Reads a time such as 500ms, 10s, 2m or 1h; a bare number is in milliseconds
+    static long parseMillis(String time) {
+        if (time.endsWith("ms")) {
+            return Long.parseLong(time.substring(0, time.length() - 2));
+        } else if (time.endsWith("s")) {
+            return Long.parseLong(time.substring(0, time.length() - 1)) * 1000;
+        } else if (time.endsWith("m")) {
+            return Long.parseLong(time.substring(0, time.length() - 1)) * 60_000;
+        } else if (time.endsWith("h")) {
+            return Long.parseLong(time.substring(0, time.length() - 1)) * 3_600_000;
+        }
+        return Long.parseLong(time);
+    }
+
+    // One stretch of the scenario with steady arrival rates
+    public static final class Phase {
+        private final String name;
+        private final long durationMs;
+        private final double addRate;
+        private final double purchaseRate;
+        private final int producers;
+        private final int consumers;
+        private final ArrivalPattern arrivals;
+        private final int burst;
+        private final long patienceMs;
+        private final SynchronizationMechanism mechanism;
+
+        private Phase(String name, long durationMs, double addRate, double purchaseRate, int producers, int consumers,
+                      ArrivalPattern arrivals, int burst, long patienceMs, SynchronizationMechanism mechanism) {
+            this.name = name;
+            this.durationMs = durationMs;
+            this.addRate = addRate;
+            this.purchaseRate = purchaseRate;
+            this.producers = producers;
+            this.consumers = consumers;
+            this.arrivals = arrivals;
+            this.burst = burst;
+            this.patienceMs = patienceMs;
+            this.mechanism = mechanism;
+        }
+
+        // Parses "phase <name> key=value ..."; every key but duration is optional
+        private static Phase parse(String[] parts) {
+            if (parts.length < 2 || parts[1].contains("=")) {
+                throw new IllegalArgumentException("use: phase <name> duration=<time> [key=value ...]");
+            }
+            Map<String, String> options = new HashMap<>();
+            for (int i = 2; i < parts.length; i++) {
+                String[] option = parts[i].split("=", 2);
+                if (option.length != 2) {
+                    throw new IllegalArgumentException("expected key=value: " + parts[i]);
+                }
+                options.put(option[0], option[1]);
+            }
+            if (!options.containsKey("duration")) {
+                throw new IllegalArgumentException("phase " + parts[1] + " has no duration");
+            }
+            String mechanism = options.remove("mechanism");
+            Phase phase = new Phase(parts[1],
+                    parseMillis(options.remove("duration")),
+                    Double.parseDouble(options.getOrDefault("add-rate", "0")),
+                    Double.parseDouble(options.getOrDefault("purchase-rate", "0")),
+                    Integer.parseInt(options.getOrDefault("producers", "1")),
+                    Integer.parseInt(options.getOrDefault("consumers", "1")),
+                    ArrivalPattern.valueOf(options.getOrDefault("arrivals", "poisson").toUpperCase()),
+                    Integer.parseInt(options.getOrDefault("burst", "10")),
+                    parseMillis(options.getOrDefault("patience", "0")),
+                    mechanism != null ? SynchronizationMechanism.valueOf(mechanism) : null);
+            options.keySet().removeAll(List.of("add-rate", "purchase-rate", "producers", "consumers", "arrivals",
+                    "burst", "patience"));
+            if (!options.isEmpty()) {
+                throw new IllegalArgumentException("unknown phase options " + options.keySet());
+            }
+            if (phase.durationMs <= 0 || phase.addRate < 0 || phase.purchaseRate < 0 || phase.producers < 1
+                    || phase.consumers < 1 || phase.burst < 1 || phase.patienceMs < 0) {
+                throw new IllegalArgumentException("phase " + phase.name + " has a value out of range");
+            }
+            return phase;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        // Adds offered per second, whether or not the pool has room for them
+        public double getAddRate() {
+            return addRate;
+        }
+
+        // Purchases offered per second, whether or not the pool has tickets for them
+        public double getPurchaseRate() {
+            return purchaseRate;
+        }
+
+        // Threads serving the offered adds; arrivals queue up while all of them are busy
+        public int getProducers() {
+            return producers;
+        }
+
+        // Threads serving the offered purchases; arrivals queue up while all of them are busy
+        public int getConsumers() {
+            return consumers;
+        }
+
+        public ArrivalPattern getArrivals() {
+            return arrivals;
+        }
+
+        // Arrivals per burst when the arrivals are bursty
+        public int getBurst() {
+            return burst;
+        }
+
+        // How long a purchase waits for a ticket before giving up; 0 gives up at once on an empty pool
+        public long getPatienceMs() {
+            return patienceMs;
+        }
+
+        // The mechanism to switch to when the phase starts, or null to keep the current one
+        public SynchronizationMechanism getMechanism() {
+            return mechanism;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Runs a Scenario against a fresh pool with open-loop load: arrivals follow a seeded schedule whether or not the
+// pool keeps up, and each one's latency is measured from when it was due, not from when a thread got to it.
+// A closed loop of actors sleeping between calls slows down with the pool and so hides the queueing delay.
+public final class ScenarioRunner {
+    private static final long DRAIN_TIMEOUT_MS = 30_000;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Scenario scenario;
+    private final List<Load> loads = new ArrayList<>();
+    private TicketPoolManager pool;
+    private long elapsedNanos;
+
+    /**
+     * Constructs a runner for the given scenario.
+     *
+     * @param scenario the scenario to run
+     */
+    public ScenarioRunner(Scenario scenario) {
+        this.scenario = scenario;
+    }
+
+    /**
+     * Runs every phase in turn, then waits up to 30 seconds for the arrivals still queued to be served.
+     * Arrivals not served by then are reported as unfinished.
+     *
+     * @throws InterruptedException if interrupted while a phase runs
+     */
+    public void run() throws InterruptedException {
+        pool = new TicketPoolManager(scenario.getCapacity(), scenario.getMechanism());
+        for (int i = 0; i < scenario.getPrefill(); i++) {
+            pool.addTicket("Ticket-prefill-" + i);
+        }
+
+        SplittableRandom seeds = new SplittableRandom(scenario.getSeed());
+        long start = System.nanoTime();
+        long phaseStart = start;
+        for (Scenario.Phase phase : scenario.getPhases()) {
+            if (phase.getMechanism() != null) {
+                pool.switchSynchronizationMechanism(phase.getMechanism());
+            }
+            long phaseEnd = phaseStart + TimeUnit.MILLISECONDS.toNanos(phase.getDurationMs());
+            for (Operation operation : Operation.values()) {
+                // Every load takes a seed, even an idle one, so each phase's schedule depends only on the scenario
+                Load load = new Load(phase, operation, seeds.split(), phaseStart, phaseEnd);
+                if (load.rate > 0) {
+                    loads.add(load);
+                    load.start(pool);
+                }
+            }
+            // The next phase starts on schedule even if this one's arrivals are still queued
+            long remaining;
+            while ((remaining = phaseEnd - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            }
+            phaseStart = phaseEnd;
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DRAIN_TIMEOUT_MS);
+        for (Load load : loads) {
+            load.finish(drainDeadline);
+        }
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Returns the number of tickets left in the pool after the run.
+     *
+     * @return the number of available tickets
+     */
+    public int getAvailableTickets() {
+        return pool.getAvailableTickets();
+    }
+
+    /**
+     * Returns how many arrivals of the given phase and operation ("add" or "purchase") the schedule offered.
+     *
+     * @return the number of arrivals, or 0 if the phase offered none of that operation
+     */
+    public long getOffered(String phase, String operation) {
+        for (Load load : loads) {
+            if (load.phase.getName().equals(phase) && load.operation.label.equals(operation)) {
+                return load.offered.sum();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the report to the given file, as CSV if its name ends in .csv and as JSON otherwise.
+     *
+     * @param file the report file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeReport(Path file) throws IOException {
+        String report = file.toString().endsWith(".csv") ? formatCsv() : formatJson();
+        Files.write(file, report.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Formats the run as a JSON object with the scenario's settings and one entry per phase and operation.
+     * Latencies are in microseconds; response time counts from when the arrival was due, service time from
+     * when a thread started serving it.
+     */
+    public String formatJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"capacity\": ").append(scenario.getCapacity()).append(",\n");
+        json.append("  \"mechanism\": \"").append(scenario.getMechanism()).append("\",\n");
+        json.append("  \"seed\": ").append(scenario.getSeed()).append(",\n");
+        json.append("  \"prefill\": ").append(scenario.getPrefill()).append(",\n");
+        json.append("  \"elapsedSeconds\": ").append(format(elapsedNanos / 1e9)).append(",\n");
+        json.append("  \"availableTickets\": ").append(pool.getAvailableTickets()).append(",\n");
+        json.append("  \"loads\": [");
+        for (int i = 0; i < loads.size(); i++) {
+            Load load = loads.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"phase\": \"").append(escape(load.phase.getName()))
+                    .append("\", \"operation\": \"").append(load.operation.label)
+                    .append("\", \"arrivals\": \"").append(load.phase.getArrivals())
+                    .append("\", \"workers\": ").append(load.workers.length)
+                    .append(", \"offeredRate\": ").append(format(load.rate))
+                    .append(", \"offered\": ").append(load.offered.sum())
+                    .append(", \"succeeded\": ").append(load.succeeded.sum())
+                    .append(", \"failed\": ").append(load.failed.sum())
+                    .append(", \"unfinished\": ").append(load.getUnfinished())
+                    .append(", \"throughput\": ").append(format(load.getThroughput()))
+                    .append(", \"maxBacklog\": ").append(load.maxBacklog)
+                    .append(",\n     \"responseUs\": ");
+            appendJson(json, load.response.snapshot());
+            json.append(",\n     \"serviceUs\": ");
+            appendJson(json, load.service.snapshot());
+            json.append("}");
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * Formats the run as CSV, one row per phase and operation, with the same fields as the JSON report.
+     */
+    public String formatCsv() {
+        StringBuilder csv = new StringBuilder("phase,operation,arrivals,workers,offered_rate,offered,succeeded,failed,"
+                + "unfinished,throughput,max_backlog");
+        for (String kind : new String[] {"response", "service"}) {
+            csv.append(',').append(kind).append("_p50_us,").append(kind).append("_p90_us,").append(kind)
+                    .append("_p99_us,").append(kind).append("_p999_us,").append(kind).append("_max_us");
+        }
+        csv.append('\n');
+        for (Load load : loads) {
+            csv.append(load.phase.getName()).append(',').append(load.operation.label).append(',')
+                    .append(load.phase.getArrivals()).append(',').append(load.workers.length).append(',')
+                    .append(format(load.rate)).append(',').append(load.offered.sum()).append(',')
+                    .append(load.succeeded.sum()).append(',').append(load.failed.sum()).append(',')
+                    .append(load.getUnfinished()).append(',').append(format(load.getThroughput())).append(',')
+                    .append(load.maxBacklog);
+            for (LatencyHistogram.Snapshot snapshot : new LatencyHistogram.Snapshot[] {
+                    load.response.snapshot(), load.service.snapshot()}) {
+                for (double percentile : PERCENTILES) {
+                    csv.append(',').append(format(snapshot.getPercentile(percentile) / 1000.0));
+                }
+                csv.append(',').append(format(snapshot.getMax() / 1000.0));
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Formats a short table of offered and achieved rates and response-time percentiles, for the console.
+     */
+    public String formatSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-12s %-8s %10s %10s %9s %9s %10s %10s %10s %10s%n", "phase", "op", "offered/s",
+                "served/s", "succeeded", "failed", "p50 (us)", "p99 (us)", "p99.9 (us)", "svc p99"));
+        for (Load load : loads) {
+            LatencyHistogram.Snapshot response = load.response.snapshot();
+            summary.append(String.format("%-12s %-8s %10.0f %10.0f %9d %9d %10.1f %10.1f %10.1f %10.1f%n",
+                    load.phase.getName(), load.operation.label, load.rate, load.getThroughput(), load.succeeded.sum(),
+                    load.failed.sum(), response.getPercentile(50) / 1000.0, response.getPercentile(99) / 1000.0,
+                    response.getPercentile(99.9) / 1000.0, load.service.snapshot().getPercentile(99) / 1000.0));
+        }
+        summary.append(String.format("%d tickets left after %.1f s%n", pool.getAvailableTickets(), elapsedNanos / 1e9));
+        return summary.toString();
+    }
+
+    private static void appendJson(StringBuilder json, LatencyHistogram.Snapshot snapshot) {
+        json.append("{\"p50\": ").append(format(snapshot.getPercentile(50) / 1000.0))
+                .append(", \"p90\": ").append(format(snapshot.getPercentile(90) / 1000.0))
+                .append(", \"p99\": ").append(format(snapshot.getPercentile(99) / 1000.0))
+                .append(", \"p99.9\": ").append(format(snapshot.getPercentile(99.9) / 1000.0))
+                .append(", \"max\": ").append(format(snapshot.getMax() / 1000.0)).append("}");
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    // The two kinds of arrival a phase offers
+    private enum Operation {
+        ADD("add"),
+        PURCHASE("purchase");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+    }
+
+    // An arrival waiting to be served, stamped with when the schedule made it due
+    private static final class Arrival {
+        private static final Arrival DONE = new Arrival(0); // Tells a worker the schedule has ended
+
+        private final long dueNanos;
+
+        private Arrival(long dueNanos) {
+            this.dueNanos = dueNanos;
+        }
+    }
+
+    // One operation of one phase: a generator thread queues arrivals on schedule and worker threads serve them
+    private static final class Load {
+        private final Scenario.Phase phase;
+        private final Operation operation;
+        private final double rate;
+        private final SplittableRandom random;
+        private final long startNanos;
+        private final long endNanos;
+        private final BlockingQueue<Arrival> queue = new LinkedBlockingQueue<>();
+        private final Thread[] workers;
+        private final long[] lastCompletion; // Per worker, so finishing a call writes no shared line
+        private final LatencyHistogram response = new LatencyHistogram();
+        private final LatencyHistogram service = new LatencyHistogram();
+        private final LongAdder offered = new LongAdder();
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final AtomicLong ticketCounter = new AtomicLong();
+        private long maxBacklog; // Generator thread only, read after it is joined
+        private Thread generator;
+
+        private Load(Scenario.Phase phase, Operation operation, SplittableRandom random, long startNanos, long endNanos) {
+            this.phase = phase;
+            this.operation = operation;
+            this.rate = operation == Operation.ADD ? phase.getAddRate() : phase.getPurchaseRate();
+            this.random = random;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+            this.workers = new Thread[operation == Operation.ADD ? phase.getProducers() : phase.getConsumers()];
+            this.lastCompletion = new long[workers.length];
+        }
+
+        private void start(TicketPool pool) {
+            for (int i = 0; i < workers.length; i++) {
+                int worker = i;
+                workers[i] = newThread(() -> serve(pool, worker), "-" + i);
+                workers[i].start();
+            }
+            generator = newThread(this::generate, "-arrivals");
+            generator.start();
+        }
+
+        private Thread newThread(Runnable task, String suffix) {
+            Thread thread = new Thread(task, "scenario-" + phase.getName() + "-" + operation.label + suffix);
+            thread.setDaemon(true);
+            return thread;
+        }
+
+        // Waits for the queued arrivals to be served, giving up on them at the deadline
+        private void finish(long deadlineNanos) throws InterruptedException {
+            generator.join();
+            for (Thread worker : workers) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+                }
+                worker.interrupt();
+                worker.join();
+            }
+        }
+
+        // Queues every arrival at its due time; a late wake-up queues the overdue ones at once, still stamped
+        // with when they were due
+        private void generate() {
+            double meanGapNanos = 1e9 / rate * (phase.getArrivals() == ArrivalPattern.BURSTY ? phase.getBurst() : 1);
+            int perArrival = phase.getArrivals() == ArrivalPattern.BURSTY ? phase.getBurst() : 1;
+            long due = startNanos;
+            while (true) {
+                double gap = phase.getArrivals() == ArrivalPattern.UNIFORM
+                        ? meanGapNanos
+                        : -Math.log(1 - random.nextDouble()) * meanGapNanos;
+                due += (long) gap;
+                if (due - endNanos >= 0) {
+                    break;
+                }
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                for (int i = 0; i < perArrival; i++) {
+                    queue.add(new Arrival(due));
+                }
+                offered.add(perArrival);
+                int backlog = queue.size();
+                if (backlog > maxBacklog) {
+                    maxBacklog = backlog;
+                }
+            }
+            for (int i = 0; i < workers.length; i++) {
+                queue.add(Arrival.DONE);
+            }
+        }
+
+        private void serve(TicketPool pool, int worker) {
+            try {
+                while (true) {
+                    Arrival arrival = queue.take();
+                    if (arrival == Arrival.DONE) {
+                        return;
+                    }
+                    long started = System.nanoTime();
+                    boolean served = operation == Operation.ADD
+                            ? pool.addTicket("Ticket-" + phase.getName() + "-" + ticketCounter.getAndIncrement())
+                            : purchase(pool) != null;
+                    long completed = System.nanoTime();
+                    response.record(completed - arrival.dueNanos);
+                    service.record(completed - started);
+                    (served ? succeeded : failed).increment();
+                    lastCompletion[worker] = completed;
+                }
+            } catch (InterruptedException e) {
+                // Past the drain deadline; what is still queued counts as unfinished
+            }
+        }
+
+        private String purchase(TicketPool pool) throws InterruptedException {
+            return phase.getPatienceMs() > 0
+                    ? pool.purchaseTicket(phase.getPatienceMs(), TimeUnit.MILLISECONDS)
+                    : pool.tryPurchase();
+        }
+
+        private long getUnfinished() {
+            return offered.sum() - succeeded.sum() - failed.sum();
+        }
+
+        // Successful calls per second, over the phase or until the last queued arrival was served if later
+        private double getThroughput() {
+            long last = endNanos;
+            for (long completed : lastCompletion) {
+                if (completed != 0 && completed - last > 0) {
+                    last = completed;
+                }
+            }
+            return succeeded.sum() / ((last - startNanos) / 1e9);
+        }
+    }
+}
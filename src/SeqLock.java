@@ -0,0 +1,77 @@
+import java.lang.invoke.VarHandle;
+import java.util.function.LongFunction;
+
+// Sequence lock that lets readers copy a pool's contents without taking the writers' lock. Writers, already
+// serialised by the pool's own lock, make the sequence odd while they change the guarded state; a reader
+// copies optimistically and keeps the copy only if the sequence was even and unchanged throughout.
+final class SeqLock {
+    private static final int MAX_OPTIMISTIC_ATTEMPTS = 8;
+
+    private volatile long sequence;
+
+    /**
+     * Marks the start of a change. Must be called with the pool's write lock held.
+     */
+    void beginWrite() {
+        sequence = sequence + 1;
+        VarHandle.storeStoreFence(); // The odd sequence must be visible before any of the writes that follow
+    }
+
+    /**
+     * Marks the end of a change started by {@link #beginWrite()}, publishing it to readers.
+     */
+    void endWrite() {
+        sequence = sequence + 1;
+    }
+
+    /**
+     * Returns a stamp for an optimistic read, or -1 if a write is in progress.
+     */
+    long tryOptimisticRead() {
+        long stamp = sequence;
+        return (stamp & 1) == 0 ? stamp : -1;
+    }
+
+    /**
+     * Returns true if no write has started since the stamp was taken, so everything read since is consistent.
+     */
+    boolean validate(long stamp) {
+        VarHandle.loadLoadFence(); // The copied state must be read before the sequence is checked again
+        return stamp >= 0 && sequence == stamp;
+    }
+
+    /**
+     * Returns the number of completed writes. Only meaningful while holding the pool's lock, or for a valid stamp.
+     */
+    long version() {
+        return sequence >>> 1;
+    }
+
+    /**
+     * Runs {@code read} against the unlocked state until it sees a consistent copy, giving up after a few
+     * attempts so that a reader cannot be starved by a steady stream of writes. The read may observe torn
+     * state, so it must not write anything and may fail with a runtime exception; such attempts are discarded.
+     *
+     * @param read copies the guarded state, given the version the copy will carry
+     * @return the validated copy, or null if every attempt overlapped a write
+     */
+    <T> T readOptimistically(LongFunction<T> read) {
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = tryOptimisticRead();
+            if (stamp < 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            T copy;
+            try {
+                copy = read.apply(stamp >>> 1);
+            } catch (RuntimeException e) {
+                continue; // Torn read of a structure being changed
+            }
+            if (validate(stamp)) {
+                return copy;
+            }
+        }
+        return null;
+    }
+}
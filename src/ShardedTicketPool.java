@@ -0,0 +1,728 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 5. Sharded implementation: capacity split across independently locked stripes with work stealing
+class ShardedTicketPool implements TicketPool, HeldTickets {
+    private static final int OPTIMISTIC_SNAPSHOT_ATTEMPTS = 8;
+
+    private final Stripe[] stripes;
+    private final ReentrantLock waitLock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+    private final AtomicInteger waitingConsumers;
+    private final AtomicInteger waitingProducers;
+    private final PendingPurchases pendingPurchases;
+
+    /**
+     * Constructs a sharded ticket pool with one stripe per available processor.
+     */
+    public ShardedTicketPool(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a sharded ticket pool whose capacity is split as evenly as possible across the given
+     * number of stripes. The stripe count is reduced if needed so that every stripe holds at least one ticket.
+     */
+    public ShardedTicketPool(int capacity, int stripeCount) {
+        int count = Math.max(1, Math.min(stripeCount, capacity));
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            int stripeCapacity = capacity / count + (i < capacity % count ? 1 : 0);
+            stripes[i] = new Stripe(Math.max(0, stripeCapacity));
+        }
+        this.waitLock = new ReentrantLock();
+        this.notEmpty = waitLock.newCondition();
+        this.notFull = waitLock.newCondition();
+        this.waitingConsumers = new AtomicInteger();
+        this.waitingProducers = new AtomicInteger();
+        this.pendingPurchases = new PendingPurchases();
+    }
+
+    /**
+     * Adds the ticket to the calling thread's home stripe, spilling to the other stripes only when it is full.
+     * Returns false if every stripe is full, so the overall capacity limit stays exact.
+     */
+    @Override
+    public boolean addTicket(String ticketInfo) {
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticketInfo)) {
+            return true; // Delivered straight to the oldest asynchronous purchase
+        }
+        int home = homeStripe();
+        for (int i = 0; i < stripes.length; i++) {
+            if (stripes[(home + i) % stripes.length].offer(ticketInfo)) {
+                signalConsumer();
+                if (pendingPurchases.hasWaiting()) {
+                    pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fills the home stripe first, then the others, taking each stripe's lock once for its share of the batch.
+     */
+    @Override
+    public int addTickets(Collection<String> ticketInfos) {
+        if (pendingPurchases.hasWaiting()) {
+            return TicketPool.super.addTickets(ticketInfos); // Hand tickets to waiting purchases one by one
+        }
+        Iterator<String> remaining = ticketInfos.iterator();
+        int home = homeStripe();
+        int added = 0;
+        for (int i = 0; i < stripes.length && remaining.hasNext(); i++) {
+            added += stripes[(home + i) % stripes.length].offerAll(remaining);
+        }
+        if (added == 1) {
+            signalConsumer();
+        } else if (added > 1) {
+            signalAllConsumers(); // Several consumers can proceed
+        }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return added;
+    }
+
+    /**
+     * Adds the ticket to any stripe with space, waiting on the notFull condition if every stripe is full.
+     */
+    @Override
+    public void putTicket(String ticketInfo) throws InterruptedException {
+        if (addTicket(ticketInfo)) {
+            return;
+        }
+
+        waitingProducers.incrementAndGet();
+        try {
+            // Stripes are retried without waitLock; it is only held to recheck for space and wait
+            while (!addTicket(ticketInfo)) {
+                waitLock.lockInterruptibly();
+                try {
+                    if (!hasSpace()) {
+                        notFull.await();
+                    }
+                } finally {
+                    waitLock.unlock();
+                }
+            }
+        } finally {
+            waitingProducers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Adds the ticket to any stripe with space, waiting up to the given timeout if every stripe is full.
+     */
+    @Override
+    public boolean offerTicket(String ticketInfo, long timeout, TimeUnit unit) throws InterruptedException {
+        if (addTicket(ticketInfo)) {
+            return true;
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waitingProducers.incrementAndGet();
+        try {
+            while (!addTicket(ticketInfo)) {
+                long nanos = deadline - System.nanoTime();
+                if (nanos <= 0) {
+                    return false;
+                }
+                waitLock.lockInterruptibly();
+                try {
+                    if (!hasSpace()) {
+                        notFull.awaitNanos(nanos);
+                    }
+                } finally {
+                    waitLock.unlock();
+                }
+            }
+            return true;
+        } finally {
+            waitingProducers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes a ticket from the home stripe or steals one from another stripe, waiting if all are empty.
+     */
+    @Override
+    public String purchaseTicket() throws InterruptedException {
+        String ticket = tryPurchase();
+        if (ticket != null) {
+            return ticket;
+        }
+
+        waitingConsumers.incrementAndGet();
+        try {
+            // Stripes are scanned without waitLock. Producers publish a ticket before they check for waiting
+            // consumers and signal under waitLock, so rechecking the stripe sizes under it cannot miss a wakeup
+            while ((ticket = tryPurchase()) == null) {
+                waitLock.lockInterruptibly();
+                try {
+                    if (!hasTickets()) {
+                        notEmpty.await();
+                    }
+                } finally {
+                    waitLock.unlock();
+                }
+            }
+            return ticket;
+        } finally {
+            waitingConsumers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes a ticket from any stripe, waiting up to the given timeout if all are empty.
+     */
+    @Override
+    public String purchaseTicket(long timeout, TimeUnit unit) throws InterruptedException {
+        String ticket = tryPurchase();
+        if (ticket != null) {
+            return ticket;
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waitingConsumers.incrementAndGet();
+        try {
+            while ((ticket = tryPurchase()) == null) {
+                long nanos = deadline - System.nanoTime();
+                if (nanos <= 0) {
+                    return null;
+                }
+                waitLock.lockInterruptibly();
+                try {
+                    if (!hasTickets()) {
+                        notEmpty.awaitNanos(nanos);
+                    }
+                } finally {
+                    waitLock.unlock();
+                }
+            }
+            return ticket;
+        } finally {
+            waitingConsumers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes a ticket from the home stripe, then tries to steal from the others in order.
+     * Returns null if every stripe is empty. Wakes a producer waiting for space if a ticket was taken.
+     */
+    @Override
+    public String tryPurchase() {
+        int home = homeStripe();
+        for (int i = 0; i < stripes.length; i++) {
+            String ticket = stripes[(home + i) % stripes.length].poll();
+            if (ticket != null) {
+                signalProducer();
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a future for the next ticket. If purchases are already waiting, or the pool is empty,
+     * the purchase joins the FIFO queue of waiting purchases and is completed by a later add.
+     */
+    @Override
+    public CompletableFuture<String> purchaseTicketAsync() {
+        if (!pendingPurchases.hasWaiting()) {
+            String ticket = tryPurchase();
+            if (ticket != null) {
+                return CompletableFuture.completedFuture(ticket);
+            }
+        }
+        TicketPurchase purchase = pendingPurchases.register();
+        pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        return purchase;
+    }
+
+    /**
+     * Waits for one ticket, then drains up to maxTickets from the home stripe and steals the rest from the others.
+     */
+    @Override
+    public int purchaseTickets(int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        if (maxTickets <= 0) {
+            return 0;
+        }
+        purchased.add(purchaseTicket());
+        int count = 1;
+        int home = homeStripe();
+        for (int i = 0; i < stripes.length && count < maxTickets; i++) {
+            count += stripes[(home + i) % stripes.length].drainTo(maxTickets - count, purchased);
+        }
+        if (count > 1) {
+            signalAllProducers(); // Several producers can proceed
+        }
+        return count;
+    }
+
+    /**
+     * Returns the exact number of available tickets by locking every stripe in index order.
+     */
+    @Override
+    public int getAvailableTickets() {
+        lockAll();
+        try {
+            int total = 0;
+            for (Stripe stripe : stripes) {
+                total += stripe.tickets.size();
+            }
+            return total;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Returns the ticket at the given index, counting through the stripes in order, or null if invalid.
+     */
+    @Override
+    public String viewTicketInfo(int index) {
+        if (index < 0) {
+            return null;
+        }
+        lockAll();
+        try {
+            int remaining = index;
+            for (Stripe stripe : stripes) {
+                if (remaining < stripe.tickets.size()) {
+                    return stripe.tickets.get(remaining);
+                }
+                remaining -= stripe.tickets.size();
+            }
+            return null;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Looks the ticket up in each non-empty stripe's hash index. Stripes are probed one at a time, so the cost
+     * depends on the stripe count rather than on the number of tickets.
+     */
+    @Override
+    public String findTicket(String ticketId) {
+        for (Stripe stripe : stripes) {
+            String ticket = stripe.find(ticketId);
+            if (ticket != null) {
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Unlinks the ticket from whichever stripe holds it, waking a producer waiting for space if it was found.
+     */
+    @Override
+    public boolean removeTicket(String ticketId) {
+        for (Stripe stripe : stripes) {
+            if (stripe.remove(ticketId)) {
+                signalProducer();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies every stripe without locking any of them, keeping the copy only if no stripe changed between the
+     * first and the last read, so the stripes agree with each other. Falls back to locking every stripe in index
+     * order only if writers keep interfering. The version is the sum of the stripes' versions.
+     */
+    @Override
+    public PoolSnapshot snapshot(int maxTickets) {
+        long[] stamps = new long[stripes.length];
+        List<String> page = new ArrayList<>(Math.max(0, Math.min(maxTickets, 64)));
+        for (int attempt = 0; attempt < OPTIMISTIC_SNAPSHOT_ATTEMPTS; attempt++) {
+            page.clear();
+            try {
+                long version = 0;
+                int total = 0;
+                boolean writing = false;
+                for (int i = 0; i < stripes.length && !writing; i++) {
+                    stamps[i] = stripes[i].seqLock.tryOptimisticRead();
+                    writing = stamps[i] < 0;
+                    version += stamps[i] >>> 1;
+                    total += stripes[i].copyTo(maxTickets - page.size(), page);
+                }
+                if (!writing && validateAll(stamps)) {
+                    return new PoolSnapshot(version, total, page);
+                }
+            } catch (RuntimeException e) {
+                // Torn read of a stripe being changed; retry
+            }
+            Thread.onSpinWait();
+        }
+
+        page.clear();
+        lockAll();
+        try {
+            long version = 0;
+            int total = 0;
+            for (Stripe stripe : stripes) {
+                version += stripe.seqLock.version();
+                total += stripe.copyTo(maxTickets - page.size(), page);
+            }
+            return new PoolSnapshot(version, total, page);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Takes a ticket for a hold of the given time, from the home stripe first. The slot stays reserved in the
+     * stripe the ticket came from until the hold is settled.
+     */
+    @Override
+    public TicketHold holdTicket(long ttl, TimeUnit unit) {
+        String ticket = takeHeld();
+        return ticket == null ? null : TicketHold.start(this, ticket, ttl, unit);
+    }
+
+    @Override
+    public String takeHeld() {
+        int home = homeStripe();
+        for (int i = 0; i < stripes.length; i++) {
+            String ticket = stripes[(home + i) % stripes.length].hold();
+            if (ticket != null) {
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gives the slot back in the first stripe found with a reserved one, which need not be the stripe the ticket
+     * came from; the stripes only have to agree on the total.
+     */
+    @Override
+    public void settleHeld(String ticket, boolean sold) {
+        boolean handedOff = !sold && pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticket);
+        boolean restore = !sold && !handedOff;
+        int home = homeStripe();
+        for (int i = 0; i < stripes.length; i++) {
+            if (stripes[(home + i) % stripes.length].unhold(ticket, restore)) {
+                break;
+            }
+        }
+        if (restore) {
+            signalConsumer();
+            if (pendingPurchases.hasWaiting()) {
+                pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+            }
+        } else {
+            signalProducer();
+        }
+    }
+
+    @Override
+    public int adoptHeld(int count) {
+        int adopted = 0;
+        for (int i = 0; i < stripes.length && adopted < count; i++) {
+            adopted += stripes[i].reserve(count - adopted);
+        }
+        return adopted;
+    }
+
+    /**
+     * No-op for this implementation; switching is handled by TicketPoolManager.
+     */
+    @Override
+    public void switchSynchronizationMechanism(SynchronizationMechanism mechanism) {
+        // Not handled here, managed by TicketPoolManager
+    }
+
+    // Maps the calling thread to a stable stripe so each thread mostly touches one lock
+    private int homeStripe() {
+        long mixed = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        return (int) ((mixed >>> 32) % stripes.length);
+    }
+
+    private boolean validateAll(long[] stamps) {
+        for (int i = 0; i < stripes.length; i++) {
+            if (!stripes[i].seqLock.validate(stamps[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasTickets() {
+        for (Stripe stripe : stripes) {
+            if (stripe.size > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // True if some stripe has a free slot; read without locking, like hasTickets
+    private boolean hasSpace() {
+        for (Stripe stripe : stripes) {
+            if (stripe.used < stripe.capacity) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void signalConsumer() {
+        if (waitingConsumers.get() > 0) {
+            waitLock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    private void signalAllConsumers() {
+        if (waitingConsumers.get() > 0) {
+            waitLock.lock();
+            try {
+                notEmpty.signalAll();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    private void signalProducer() {
+        if (waitingProducers.get() > 0) {
+            waitLock.lock();
+            try {
+                notFull.signal();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    private void signalAllProducers() {
+        if (waitingProducers.get() > 0) {
+            waitLock.lock();
+            try {
+                notFull.signalAll();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.unlock();
+        }
+    }
+
+    // A single shard: a bounded FIFO guarded by its own lock
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final IndexedTicketQueue tickets = new IndexedTicketQueue();
+        private final SeqLock seqLock = new SeqLock();
+        private final int capacity;
+        private volatile int size; // Lets stealers skip empty stripes without locking them
+        private volatile int used; // Tickets plus held slots, so waiting producers can recheck without locking
+        private int held; // Slots of tickets on hold, guarded by lock
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+
+        // Publishes the counts read without the lock; the caller holds it
+        private void updateSize() {
+            size = tickets.size();
+            used = size + held;
+        }
+
+        boolean offer(String ticketInfo) {
+            if (used >= capacity) {
+                return false;
+            }
+            lock.lock();
+            try {
+                if (tickets.size() + held >= capacity) {
+                    return false;
+                }
+                seqLock.beginWrite();
+                tickets.addLast(ticketInfo);
+                seqLock.endWrite();
+                updateSize();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int offerAll(Iterator<String> ticketInfos) {
+            if (used >= capacity) {
+                return 0;
+            }
+            lock.lock();
+            try {
+                int added = 0;
+                seqLock.beginWrite();
+                try {
+                    while (tickets.size() + held < capacity && ticketInfos.hasNext()) {
+                        tickets.addLast(ticketInfos.next());
+                        added++;
+                    }
+                } finally {
+                    seqLock.endWrite();
+                }
+                updateSize();
+                return added;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int drainTo(int maxTickets, Collection<? super String> purchased) {
+            if (size == 0) {
+                return 0;
+            }
+            lock.lock();
+            try {
+                int count;
+                seqLock.beginWrite();
+                try {
+                    count = tickets.drainTo(maxTickets, purchased);
+                } finally {
+                    seqLock.endWrite();
+                }
+                updateSize();
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Appends up to maxTickets from the front and returns the stripe's size; reads without locking
+        int copyTo(int maxTickets, List<String> page) {
+            int count = tickets.size();
+            tickets.copyTo(maxTickets, page);
+            return count;
+        }
+
+        String find(String ticketId) {
+            if (size == 0) {
+                return null;
+            }
+            lock.lock();
+            try {
+                return tickets.find(ticketId);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean remove(String ticketId) {
+            if (size == 0) {
+                return false;
+            }
+            lock.lock();
+            try {
+                if (tickets.find(ticketId) == null) {
+                    return false;
+                }
+                seqLock.beginWrite();
+                tickets.remove(ticketId);
+                seqLock.endWrite();
+                updateSize();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        String poll() {
+            if (size == 0) {
+                return null;
+            }
+            lock.lock();
+            try {
+                seqLock.beginWrite();
+                String ticket = tickets.pollFirst();
+                seqLock.endWrite();
+                updateSize();
+                return ticket;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Polls a ticket whose slot stays reserved as held
+        String hold() {
+            if (size == 0) {
+                return null;
+            }
+            lock.lock();
+            try {
+                seqLock.beginWrite();
+                String ticket = tickets.pollFirst();
+                seqLock.endWrite();
+                if (ticket != null) {
+                    held++;
+                }
+                updateSize();
+                return ticket;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Frees a held slot, putting the ticket back on sale in it if asked; false if this stripe holds none
+        boolean unhold(String ticket, boolean restore) {
+            lock.lock();
+            try {
+                if (held == 0) {
+                    return false;
+                }
+                held--;
+                if (restore) {
+                    seqLock.beginWrite();
+                    tickets.addLast(ticket);
+                    seqLock.endWrite();
+                }
+                updateSize();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Reserves up to count free slots as held and returns how many were reserved
+        int reserve(int count) {
+            lock.lock();
+            try {
+                int reserved = Math.max(0, Math.min(count, capacity - tickets.size() - held));
+                held += reserved;
+                updateSize();
+                return reserved;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -1,56 +1,114 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 // SimulationManager to manage the entire simulation
 public class SimulationManager {
-    private final TicketPool ticketPool;
+    private final TicketPoolManager ticketPool;
     private final int poolCapacity;
-    private final Map<String, Thread> producerThreads;
-    private final Map<String, Producer> producers;
-    private final Map<String, Thread> consumerThreads;
-    private final Map<String, Consumer> consumers;
-    private final Map<String, Thread> readerThreads;
-    private final Map<String, Reader> readers;
+    private static final long STOP_TIMEOUT_MS = 2000;
+
+    private final Map<String, ActorHandle> producers;
+    private final Map<String, ActorHandle> consumers;
+    private final Map<String, ActorHandle> readers;
+    private final Map<String, TicketHold> holds; // Holds taken from the console, by ticket
+    private final EventRegistry events; // Per-event pools, for actors given an event
 
     private final Scanner scanner;
-    private SynchronizationMechanism currentMechanism = SynchronizationMechanism.SYNCHRONIZED;
+    private ExecutionMode executionMode;
+    private ThreadFactory actorThreadFactory;
+    private ActorEngine actorEngine; // Created when the first actor is started in SCHEDULED mode
+    private ScheduledExecutorService statisticsReporter;
+    private TicketServer server;
 
     // Constructor initializes the simulation manager with the given pool capacity
     public SimulationManager(int poolCapacity) {
+        this(poolCapacity, ExecutionMode.PLATFORM);
+    }
+
+    // Constructor initializes the simulation manager with the given pool capacity and actor execution mode
+    public SimulationManager(int poolCapacity, ExecutionMode executionMode) {
+        this(poolCapacity, executionMode, createThreadFactory(executionMode), new TicketPoolManager(poolCapacity));
+    }
+
+    // Constructor initializes the simulation manager with a pool journaled to the given directory
+    public SimulationManager(int poolCapacity, ExecutionMode executionMode, Path journalDirectory, boolean syncCommit)
+            throws IOException {
+        // The thread factory is created first so an unsupported mode fails before the journal is opened
+        this(poolCapacity, executionMode, createThreadFactory(executionMode),
+                new TicketPoolManager(poolCapacity, journalDirectory, syncCommit));
+    }
+
+    private SimulationManager(int poolCapacity, ExecutionMode executionMode, ThreadFactory actorThreadFactory,
+                              TicketPoolManager ticketPool) {
         this.poolCapacity = poolCapacity;
-        this.ticketPool = new TicketPoolManager(poolCapacity);
-        this.producerThreads = new HashMap<>();
+        this.ticketPool = ticketPool;
         this.producers = new HashMap<>();
-        this.consumerThreads = new HashMap<>();
         this.consumers = new HashMap<>();
-        this.readerThreads = new HashMap<>();
         this.readers = new HashMap<>();
+        this.holds = new HashMap<>();
+        this.events = new EventRegistry(poolCapacity);
         this.scanner = new Scanner(System.in);
+        this.actorThreadFactory = actorThreadFactory;
+        this.executionMode = executionMode;
+    }
+
+    // Chooses whether actors added from now on run on platform or virtual threads of their own, or as scheduled tasks
+    public void setExecutionMode(ExecutionMode mode) {
+        this.actorThreadFactory = createThreadFactory(mode);
+        this.executionMode = mode;
+    }
+
+    // Creates the thread factory for the given execution mode
+    private static ThreadFactory createThreadFactory(ExecutionMode mode) {
+        if (mode == ExecutionMode.VIRTUAL) {
+            return Thread.ofVirtual().factory();
+        }
+        return Thread::new;
     }
 
     // Adds a new producer with the given ID and delay
     public void addProducer(String id, int delayMs) {
-        Producer producer = new Producer(ticketPool, id, delayMs);
-        Thread thread = new Thread(producer);
+        addProducer(id, delayMs, 1);
+    }
+
+    // Adds a new producer that releases tickets in batches of the given size
+    public void addProducer(String id, int delayMs, int batchSize) {
+        addProducer(id, delayMs, batchSize, false);
+    }
 
-        producers.put(id, producer);
-        producerThreads.put(id, thread);
+    // Adds a new producer; an adaptive producer waits for free space when the pool is full instead of retrying blindly
+    public void addProducer(String id, int delayMs, int batchSize, boolean adaptive) {
+        addProducer(id, delayMs, batchSize, adaptive, TicketTier.GENERAL);
+    }
+
+    // Adds a new producer that releases tickets of the given tier
+    public void addProducer(String id, int delayMs, int batchSize, boolean adaptive, TicketTier tier) {
+        addProducer(id, delayMs, batchSize, adaptive, tier, null);
+    }
 
-        thread.start();
-        System.out.println("Producer " + id + " added");
+    // Adds a new producer that releases tickets for the given event, or into the main pool if eventId is null
+    public void addProducer(String id, int delayMs, int batchSize, boolean adaptive, TicketTier tier, String eventId) {
+        Producer producer = new Producer(poolFor(eventId), id, delayMs, batchSize, adaptive, tier);
+        putActor(producers, id, startActor(producer));
+        System.out.println("Producer " + id + " added" + (adaptive ? " (adaptive)" : "") + describeTier(tier)
+                + describeEvent(eventId));
     }
 
     // Stops and removes a producer with the given ID
     public void removeProducer(String id) {
         if (producers.containsKey(id)) {
-            producers.get(id).stop();
-            producerThreads.get(id).interrupt();
-
-            producers.remove(id);
-            producerThreads.remove(id);
-
+            stopActor("Producer", id, producers.remove(id));
             System.out.println("Producer " + id + " removed");
         } else {
             System.out.println("Producer " + id + " not found");
@@ -59,81 +117,294 @@ public class SimulationManager {
 
     // Adds a new consumer with the given ID and delay
     public void addConsumer(String id, int delayMs) {
-        Consumer consumer = new Consumer(ticketPool, id, delayMs);
-        Thread thread = new Thread(consumer);
+        addConsumer(id, delayMs, 1);
+    }
 
-        consumers.put(id, consumer);
-        consumerThreads.put(id, thread);
+    // Adds a new consumer that purchases up to the given number of tickets at a time
+    public void addConsumer(String id, int delayMs, int batchSize) {
+        addConsumer(id, delayMs, batchSize, TicketTier.GENERAL);
+    }
+
+    // Adds a new consumer that buys as a member of the given tier
+    public void addConsumer(String id, int delayMs, int batchSize, TicketTier tier) {
+        addConsumer(id, delayMs, batchSize, tier, null);
+    }
 
-        thread.start();
-        System.out.println("Consumer " + id + " added");
+    // Adds a new consumer that buys tickets for the given event, or from the main pool if eventId is null
+    public void addConsumer(String id, int delayMs, int batchSize, TicketTier tier, String eventId) {
+        startConsumer(poolFor(eventId), id, delayMs, batchSize, tier);
+        System.out.println("Consumer " + id + " added" + describeTier(tier) + describeEvent(eventId));
+    }
+
+    // Adds count consumers named <prefix>-0 .. <prefix>-(count-1) in one step
+    public void addConsumers(String prefix, int count, int delayMs, int batchSize) {
+        addConsumers(prefix, count, delayMs, batchSize, TicketTier.GENERAL);
+    }
+
+    // Adds count consumers of the given tier in one step
+    public void addConsumers(String prefix, int count, int delayMs, int batchSize, TicketTier tier) {
+        addConsumers(prefix, count, delayMs, batchSize, tier, null);
+    }
+
+    // Adds count consumers for the given event in one step, or for the main pool if eventId is null
+    public void addConsumers(String prefix, int count, int delayMs, int batchSize, TicketTier tier, String eventId) {
+        TicketPool pool = poolFor(eventId);
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            startConsumer(pool, prefix + "-" + i, delayMs, batchSize, tier);
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(count + " consumers added on " + executionMode
+                + (executionMode == ExecutionMode.SCHEDULED ? " tasks" : " threads") + " in " + elapsedMs + " ms");
+    }
+
+    // Creates and starts a consumer without reporting it
+    private void startConsumer(TicketPool pool, String id, int delayMs, int batchSize, TicketTier tier) {
+        putActor(consumers, id, startActor(new Consumer(pool, id, delayMs, batchSize, tier)));
     }
 
     // Stops and removes a consumer with the given ID
     public void removeConsumer(String id) {
         if (consumers.containsKey(id)) {
-            consumers.get(id).stop();
-            consumerThreads.get(id).interrupt();
-
-            consumers.remove(id);
-            consumerThreads.remove(id);
-
+            stopActor("Consumer", id, consumers.remove(id));
             System.out.println("Consumer " + id + " removed");
         } else {
             System.out.println("Consumer " + id + " not found");
         }
     }
 
-    // Adds a new reader with the given ID and delay
-    public void addReader(String id, int delayMs) {
-        Reader reader = new Reader(ticketPool, id, delayMs);
-        Thread thread = new Thread(reader);
+    // Creates an event with its own capacity and mechanism, for actors added with its ID
+    public void addEvent(String eventId, int capacity, SynchronizationMechanism mechanism) {
+        if (events.getPool(eventId) != null) {
+            System.out.println("Event " + eventId + " already exists");
+            return;
+        }
+        events.event(eventId, capacity, mechanism).getAvailableTickets(); // The first call creates the pool
+        System.out.println("Event " + eventId + " added with capacity " + capacity + " (" + mechanism + ")");
+    }
 
-        readers.put(id, reader);
-        readerThreads.put(id, thread);
+    // Lists up to count events with their pools' state
+    public void displayEvents(int count) {
+        List<String> eventIds = events.getEventIds();
+        eventIds.sort(null);
+        System.out.println("--------- Events ---------");
+        for (String eventId : eventIds.subList(0, Math.min(count, eventIds.size()))) {
+            TicketPoolManager pool = events.getPool(eventId);
+            if (pool != null) {
+                System.out.println(eventId + ": " + pool.getAvailableTickets() + "/" + pool.getCapacity()
+                        + " available, " + pool.getHeldTickets() + " held (" + pool.getCurrentMechanism() + ")");
+            }
+        }
+        if (eventIds.size() > count) {
+            System.out.println("... and " + (eventIds.size() - count) + " more");
+        }
+        System.out.println(events.getEvictedEvents() + " events evicted, " + events.getDiscardedTickets()
+                + " unsold tickets discarded");
+        System.out.println("--------------------------");
+    }
+
+    // Serves the main pool over TCP on the given port, or stops serving if port is negative
+    public void setServerPort(int port) throws IOException {
+        if (server != null) {
+            server.close();
+            System.out.println("Stopped serving on port " + server.getPort());
+            server = null;
+        }
+        if (port >= 0) {
+            server = new TicketServer(ticketPool, new InetSocketAddress(port));
+            System.out.println("Serving the pool on port " + server.getPort());
+        }
+    }
 
-        thread.start();
+    // Adds a new reader with the given ID and delay
+    public void addReader(String id, int delayMs) {
+        putActor(readers, id, startActor(new Reader(ticketPool, id, delayMs)));
         System.out.println("Reader " + id + " added");
     }
 
     // Stops and removes a reader with the given ID
     public void removeReader(String id) {
         if (readers.containsKey(id)) {
-            readers.get(id).stop();
-            readerThreads.get(id).interrupt();
-
-            readers.remove(id);
-            readerThreads.remove(id);
-
+            stopActor("Reader", id, readers.remove(id));
             System.out.println("Reader " + id + " removed");
         } else {
             System.out.println("Reader " + id + " not found");
         }
     }
 
+    // Changes the delay of the producers, consumers and readers with the given ID, or whose IDs start with the
+    // given prefix if it ends in '*'; returns how many were changed
+    public int setActorDelay(String id, int delayMs) {
+        boolean prefix = id.endsWith("*");
+        String match = prefix ? id.substring(0, id.length() - 1) : id;
+        int changed = 0;
+        for (Map<String, ActorHandle> actors : List.of(producers, consumers, readers)) {
+            if (!prefix) {
+                ActorHandle actor = actors.get(match);
+                if (actor != null) {
+                    actor.setDelayMs(delayMs);
+                    changed++;
+                }
+                continue;
+            }
+            for (Map.Entry<String, ActorHandle> entry : actors.entrySet()) {
+                if (entry.getKey().startsWith(match)) {
+                    entry.getValue().setDelayMs(delayMs);
+                    changed++;
+                }
+            }
+        }
+        return changed;
+    }
+
+    // Starts an actor on a thread of its own, or on the shared engine in SCHEDULED mode
+    private ActorHandle startActor(SteppedActor actor) {
+        if (executionMode != ExecutionMode.SCHEDULED) {
+            return ActorHandle.start(actor, actorThreadFactory);
+        }
+        if (actorEngine == null) {
+            actorEngine = new ActorEngine();
+        }
+        return ActorHandle.start(actor, actorEngine);
+    }
+
+    // Registers a started actor, stopping any earlier one that had the same ID so it is not left running unseen
+    private void putActor(Map<String, ActorHandle> actors, String id, ActorHandle actor) {
+        ActorHandle replaced = actors.put(id, actor);
+        if (replaced != null) {
+            stopActor("Actor", id, replaced);
+        }
+    }
+
+    // Stops an actor and waits for it to finish what it is doing
+    private void stopActor(String kind, String id, ActorHandle actor) {
+        actor.stop();
+        try {
+            if (!actor.await(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                System.out.println("Warning: " + kind + " " + id + " did not stop within " + STOP_TIMEOUT_MS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Runs a virtual-time what-if on fresh pools, once for every combination of the given capacities, producer
+    // counts and consumer counts, and prints a line per run. Nothing sleeps, so hours of traffic take seconds.
+    // The same seed and jitter give the same results.
+    public void simulate(long durationMs, int[] capacities, SynchronizationMechanism mechanism, int[] producerCounts,
+                         int[] consumerCounts, int producerDelayMs, int consumerDelayMs, int batchSize, long seed, double jitter) {
+        if (mechanism == SynchronizationMechanism.AUTO) {
+            System.out.println("AUTO tunes itself on wall-clock load and cannot be simulated; choose an implementation");
+            return;
+        }
+        System.out.printf("%9s %9s %9s %10s %10s %8s %7s %7s %9s %9s %8s%n", "capacity", "producers", "consumers",
+                "produced", "sold", "left", "empty%", "full%", "wait p50", "wait p99", "wall ms");
+        for (int capacity : capacities) {
+            for (int producerCount : producerCounts) {
+                for (int consumerCount : consumerCounts) {
+                    simulateOnce(durationMs, capacity, mechanism, producerCount, consumerCount, producerDelayMs,
+                            consumerDelayMs, batchSize, seed, jitter);
+                }
+            }
+        }
+        System.out.println("Simulated " + durationMs / 1000.0 + " s per run with seed " + seed + " and jitter " + jitter
+                + "; waits in virtual ms");
+    }
+
+    // Runs and prints one simulation on a pool of its own
+    private void simulateOnce(long durationMs, int capacity, SynchronizationMechanism mechanism, int producerCount,
+                              int consumerCount, int producerDelayMs, int consumerDelayMs, int batchSize, long seed,
+                              double jitter) {
+        long start = System.nanoTime();
+        TicketPoolManager pool = new TicketPoolManager(capacity, mechanism);
+        List<Producer> simulatedProducers = new ArrayList<>();
+        List<Consumer> simulatedConsumers = new ArrayList<>();
+        long[] samples = new long[3]; // Total, empty and full
+        try (VirtualTimeSimulation simulation = new VirtualTimeSimulation(seed, jitter)) {
+            for (int i = 0; i < producerCount; i++) {
+                Producer producer = new Producer(pool, "P" + i, producerDelayMs, batchSize);
+                producer.logTo(EventLog.DISCARD); // Millions of simulated events would swamp the shared log
+                simulatedProducers.add(producer);
+                simulation.add(producer);
+            }
+            for (int i = 0; i < consumerCount; i++) {
+                Consumer consumer = new Consumer(pool, "C" + i, consumerDelayMs, batchSize);
+                consumer.logTo(EventLog.DISCARD);
+                simulatedConsumers.add(consumer);
+                simulation.add(consumer);
+            }
+            simulation.every(Math.max(1, durationMs / 1000), () -> {
+                int available = pool.getAvailableTickets();
+                samples[0]++;
+                samples[1] += available == 0 ? 1 : 0;
+                samples[2] += available == capacity ? 1 : 0;
+            });
+            simulation.run(durationMs);
+
+            long produced = simulatedProducers.stream().mapToLong(Producer::getTicketsProduced).sum();
+            long sold = simulatedConsumers.stream().mapToLong(Consumer::getTicketsPurchased).sum();
+            System.out.printf("%9d %9d %9d %10d %10d %8d %7.1f %7.1f %9d %9d %8d%n", capacity, producerCount,
+                    consumerCount, produced, sold, pool.getAvailableTickets(),
+                    100.0 * samples[1] / Math.max(1, samples[0]), 100.0 * samples[2] / Math.max(1, samples[0]),
+                    simulation.getWaitPercentile(50), simulation.getWaitPercentile(99),
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            try {
+                pool.close();
+            } catch (IOException e) {
+                System.out.println("Failed to close the simulated pool: " + e.getMessage());
+            }
+        }
+    }
+
     // Switches the synchronization mechanism used by the ticket pool
     public void switchSynchronizationMechanism(SynchronizationMechanism mechanism) {
         ticketPool.switchSynchronizationMechanism(mechanism);
-        currentMechanism = mechanism;
+    }
+
+    // Switches the synchronization mechanism, choosing fair or unfair locking for lock-based pools
+    public void switchSynchronizationMechanism(SynchronizationMechanism mechanism, boolean fair) {
+        ticketPool.setFairLocking(fair);
+        switchSynchronizationMechanism(mechanism);
+    }
+
+    // Switches the synchronization mechanism, also choosing how a tiered pool shares tickets between buyer tiers
+    public void switchSynchronizationMechanism(SynchronizationMechanism mechanism, boolean fair, TierSelection selection) {
+        ticketPool.setTierSelection(selection);
+        switchSynchronizationMechanism(mechanism, fair);
     }
 
     // Displays the current state of the ticket pool and simulation
     public void displayTicketPoolState() {
+        // Count and sample tickets come from one snapshot, so they agree and sales are not held up
+        PoolSnapshot snapshot = ticketPool.snapshot(3);
         System.out.println("--------- Ticket Pool State ---------");
-        System.out.println("Current synchronization: " + currentMechanism);
+        System.out.println("Current synchronization: " + (ticketPool.isAutoTuning()
+                ? "AUTO (" + ticketPool.getCurrentMechanism() + ")" : ticketPool.getCurrentMechanism()));
         System.out.println("Pool capacity: " + poolCapacity);
-        System.out.println("Available tickets: " + ticketPool.getAvailableTickets());
+        System.out.println("Available tickets: " + snapshot.getAvailableTickets()
+                + (snapshot.getVersion() >= 0 ? " (version " + snapshot.getVersion() + ")" : ""));
         System.out.println("Active producers: " + producers.size());
         System.out.println("Active consumers: " + consumers.size());
         System.out.println("Active readers: " + readers.size());
+        System.out.println("Held tickets: " + ticketPool.getHeldTickets());
+        System.out.println("Network: " + (server == null ? "off" : "port " + server.getPort() + ", "
+                + server.getConnectionCount() + " connections, " + server.getPendingPurchases() + " waiting purchases"));
+        System.out.println("Events: " + events.getEventCount() + " (" + events.getEvictedEvents() + " evicted)");
+        System.out.println("Execution mode: " + executionMode + (actorEngine == null ? ""
+                : " (" + actorEngine.getActorCount() + " scheduled actors on " + actorEngine.getThreadCount() + " threads)"));
+        System.out.println("Journal: " + ticketPool.getJournalState());
+        System.out.println("Event logging: " + EventLog.getVerbosity() + " (dropped " + EventLog.getDroppedEvents() + " events)");
+        Runtime runtime = Runtime.getRuntime();
+        System.out.println("Heap used: " + (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + " MB");
         System.out.println("------------------------------------");
 
         // Display a few sample tickets if available
-        int availableTickets = ticketPool.getAvailableTickets();
+        int availableTickets = snapshot.getAvailableTickets();
         if (availableTickets > 0) {
             System.out.println("Sample tickets:");
-            for (int i = 0; i < Math.min(3, availableTickets); i++) {
-                System.out.println("- " + ticketPool.viewTicketInfo(i));
+            for (String ticket : snapshot.getTickets()) {
+                System.out.println("- " + ticket);
             }
             if (availableTickets > 3) {
                 System.out.println("- ... and " + (availableTickets - 3) + " more");
@@ -142,6 +413,39 @@ public class SimulationManager {
         }
     }
 
+    // Prints the latency and event statistics recorded since the last reset
+    public void displayStatistics() {
+        System.out.println("--------- Pool Statistics ---------");
+        if (!ticketPool.isStatisticsEnabled()) {
+            System.out.println("Statistics are off. Use: stats on");
+        } else {
+            String report = ticketPool.formatStatistics();
+            System.out.print(report.isEmpty() ? "No operations recorded yet\n" : report);
+        }
+        System.out.println("-----------------------------------");
+    }
+
+    // Prints and resets the statistics every intervalSeconds, or stops periodic reports if intervalSeconds is 0
+    public void setStatisticsInterval(int intervalSeconds) {
+        if (statisticsReporter != null) {
+            statisticsReporter.shutdownNow();
+            statisticsReporter = null;
+        }
+        if (intervalSeconds > 0) {
+            ticketPool.setStatisticsEnabled(true);
+            ticketPool.resetStatistics();
+            statisticsReporter = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "statistics-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            statisticsReporter.scheduleAtFixedRate(() -> {
+                displayStatistics();
+                ticketPool.resetStatistics();
+            }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
     // Starts the CLI interface for interactive simulation control
     public void startCLI() {
         boolean running = true;
@@ -169,13 +473,35 @@ public class SimulationManager {
     // Prints help message with available commands
     private void printHelp() {
         System.out.println("help - Display available commands");
-        System.out.println("add-producer <id> <delayMs> - Add a new producer");
+        System.out.println("add-producer <id> <delayMs> [batch=<n>] [adaptive] [tier=<tier>] [event=<id>] - Add a new producer; adaptive ones wait for free space when the pool is full");
         System.out.println("remove-producer <id> - Remove a producer");
-        System.out.println("add-consumer <id> <delayMs> - Add a new consumer");
+        System.out.println("add-consumer <id> <delayMs> [batch=<n>] [tier=<tier>] [event=<id>] - Add a new consumer");
+        System.out.println("add-consumers <prefix> <count> <delayMs> [batch=<n>] [tier=<tier>] [event=<id>] - Add many consumers at once");
+        System.out.println("  event: the actor works on that event's own pool instead of the main one, creating it if needed");
+        System.out.println("  tiers " + Arrays.toString(TicketTier.values()) + ": buyers may purchase tickets of their own tier or a lower one (default GENERAL)");
         System.out.println("remove-consumer <id> - Remove a consumer");
+        System.out.println("add-event <id> <capacity> [mechanism] - Create an event with its own pool; idle and sold-out events are evicted");
+        System.out.println("events [count] - Display the events that currently have a pool");
         System.out.println("add-reader <id> <delayMs> - Add a new reader");
         System.out.println("remove-reader <id> - Remove a reader");
-        System.out.println("switch-sync <mechanism> - Switch synchronization mechanism (SYNCHRONIZED, REENTRANT_LOCK, BLOCKING_QUEUE)");
+        System.out.println("switch-sync <mechanism> [fair] [strict] [interval=<ms>] - Switch synchronization mechanism " + Arrays.toString(SynchronizationMechanism.values())
+                + "; strict makes a tiered pool always serve the highest waiting tier first");
+        System.out.println("  AUTO switches between implementations as the load changes, sampling every interval (default 1000 ms)");
+        System.out.println("auto-log [count] - Display the auto-tuner's most recent decisions and their reasons");
+        System.out.println("mode <mode> - Run actors added from now on as " + Arrays.toString(ExecutionMode.values())
+                + "; SCHEDULED runs them as tasks on a shared pool sized to the cores instead of a thread each");
+        System.out.println("set-rate <id>|<prefix>* <delayMs> - Change the delay of running producers, consumers and readers");
+        System.out.println("simulate <duration> [capacity=<n>,...] [producers=<n>,...] [consumers=<n>,...] [producer-delay=<ms>] [consumer-delay=<ms>] [batch=<n>] [mechanism=<m>] [seed=<n>] [jitter=<0..1>]");
+        System.out.println("  Runs a reproducible virtual-time what-if (e.g. 1h) on fresh pools, once per combination of the listed values;");
+        System.out.println("  jitter varies each delay by up to that fraction either way (default 0.1)");
+        System.out.println("log <verbosity> [rate=<n>] - Set actor event logging " + Arrays.toString(LogVerbosity.values()) + ", sampling one in n events");
+        System.out.println("stats [on|off|reset] [interval=<seconds>] - Display or control per-mechanism latency statistics");
+        System.out.println("find-ticket <ticketId> - Look up a ticket in the pool by ID");
+        System.out.println("withdraw-ticket <ticketId> - Remove a ticket from the pool by ID");
+        System.out.println("hold-ticket <ttlMs> - Take the next ticket out of sale until it is confirmed, released or the hold expires");
+        System.out.println("confirm-hold <ticketId> - Complete the purchase of a held ticket");
+        System.out.println("release-hold <ticketId> - Put a held ticket back on sale");
+        System.out.println("serve <port>|stop - Serve the pool to TicketClient connections over TCP (port 0 picks one)");
         System.out.println("state - Display ticket pool state");
         System.out.println("exit - Exit the simulation");
     }
@@ -192,9 +518,16 @@ public class SimulationManager {
 
                 case "add-producer":
                     if (parts.length >= 3) {
-                        addProducer(parts[1], Integer.parseInt(parts[2]));
+                        Map<String, String> options = parseOptions(parts, 3);
+                        TicketTier tier = parseTier(options);
+                        if (tier != null) {
+                            addProducer(parts[1], Integer.parseInt(parts[2]),
+                                    Integer.parseInt(options.getOrDefault("batch", "1")),
+                                    Boolean.parseBoolean(options.getOrDefault("adaptive", "false")), tier,
+                                    options.get("event"));
+                        }
                     } else {
-                        System.out.println("Invalid command format. Use: add-producer <id> <delayMs>");
+                        System.out.println("Invalid command format. Use: add-producer <id> <delayMs> [batch=<n>] [adaptive] [tier=<tier>] [event=<id>]");
                     }
                     break;
 
@@ -208,9 +541,27 @@ public class SimulationManager {
 
                 case "add-consumer":
                     if (parts.length >= 3) {
-                        addConsumer(parts[1], Integer.parseInt(parts[2]));
+                        Map<String, String> options = parseOptions(parts, 3);
+                        TicketTier tier = parseTier(options);
+                        if (tier != null) {
+                            addConsumer(parts[1], Integer.parseInt(parts[2]),
+                                    Integer.parseInt(options.getOrDefault("batch", "1")), tier, options.get("event"));
+                        }
                     } else {
-                        System.out.println("Invalid command format. Use: add-consumer <id> <delayMs>");
+                        System.out.println("Invalid command format. Use: add-consumer <id> <delayMs> [batch=<n>] [tier=<tier>] [event=<id>]");
+                    }
+                    break;
+
+                case "add-consumers":
+                    if (parts.length >= 4) {
+                        Map<String, String> options = parseOptions(parts, 4);
+                        TicketTier tier = parseTier(options);
+                        if (tier != null) {
+                            addConsumers(parts[1], Integer.parseInt(parts[2]), Integer.parseInt(parts[3]),
+                                    Integer.parseInt(options.getOrDefault("batch", "1")), tier, options.get("event"));
+                        }
+                    } else {
+                        System.out.println("Invalid command format. Use: add-consumers <prefix> <count> <delayMs> [batch=<n>] [tier=<tier>] [event=<id>]");
                     }
                     break;
 
@@ -222,6 +573,20 @@ public class SimulationManager {
                     }
                     break;
 
+                case "add-event":
+                    if (parts.length >= 3) {
+                        addEvent(parts[1], Integer.parseInt(parts[2]), parts.length >= 4
+                                ? SynchronizationMechanism.valueOf(parts[3])
+                                : SynchronizationMechanism.SYNCHRONIZED);
+                    } else {
+                        System.out.println("Invalid command format. Use: add-event <id> <capacity> [mechanism]");
+                    }
+                    break;
+
+                case "events":
+                    displayEvents(parts.length >= 2 ? Integer.parseInt(parts[1]) : 20);
+                    break;
+
                 case "add-reader":
                     if (parts.length >= 3) {
                         addReader(parts[1], Integer.parseInt(parts[2]));
@@ -242,12 +607,182 @@ public class SimulationManager {
                     if (parts.length >= 2) {
                         try {
                             SynchronizationMechanism mechanism = SynchronizationMechanism.valueOf(parts[1]);
-                            switchSynchronizationMechanism(mechanism);
+                            Map<String, String> options = parseOptions(parts, 2);
+                            if (options.containsKey("interval")) {
+                                ticketPool.setAutoTuningInterval(Long.parseLong(options.get("interval")));
+                            }
+                            switchSynchronizationMechanism(mechanism, options.containsKey("fair"),
+                                    options.containsKey("strict") ? TierSelection.STRICT : TierSelection.WEIGHTED);
+                        } catch (IllegalArgumentException e) {
+                            System.out.println("Invalid mechanism. Use one of: " + Arrays.toString(SynchronizationMechanism.values()));
+                        }
+                    } else {
+                        System.out.println("Invalid command format. Use: switch-sync <mechanism> [fair] [strict] [interval=<ms>]");
+                    }
+                    break;
+
+                case "mode":
+                    if (parts.length >= 2) {
+                        try {
+                            setExecutionMode(ExecutionMode.valueOf(parts[1]));
+                            System.out.println("Execution mode set to " + parts[1]);
                         } catch (IllegalArgumentException e) {
-                            System.out.println("Invalid mechanism. Use: SYNCHRONIZED, REENTRANT_LOCK, or BLOCKING_QUEUE");
+                            System.out.println("Invalid mode. Use one of: " + Arrays.toString(ExecutionMode.values()));
                         }
                     } else {
-                        System.out.println("Invalid command format. Use: switch-sync <mechanism>");
+                        System.out.println("Invalid command format. Use: mode <mode>");
+                    }
+                    break;
+
+                case "set-rate":
+                    if (parts.length >= 3) {
+                        int changed = setActorDelay(parts[1], Integer.parseInt(parts[2]));
+                        System.out.println(changed == 0 ? "No actor matches " + parts[1]
+                                : "Delay set to " + parts[2] + " ms for " + changed + " actors");
+                    } else {
+                        System.out.println("Invalid command format. Use: set-rate <id>|<prefix>* <delayMs>");
+                    }
+                    break;
+
+                case "simulate":
+                    if (parts.length >= 2) {
+                        Map<String, String> options = parseOptions(parts, 2);
+                        simulate(Scenario.parseMillis(parts[1]),
+                                parseList(options.getOrDefault("capacity", String.valueOf(poolCapacity))),
+                                SynchronizationMechanism.valueOf(options.getOrDefault("mechanism",
+                                        ticketPool.getCurrentMechanism().name())),
+                                parseList(options.getOrDefault("producers", "1")),
+                                parseList(options.getOrDefault("consumers", "1")),
+                                Integer.parseInt(options.getOrDefault("producer-delay", "100")),
+                                Integer.parseInt(options.getOrDefault("consumer-delay", "100")),
+                                Integer.parseInt(options.getOrDefault("batch", "1")),
+                                Long.parseLong(options.getOrDefault("seed", "1")),
+                                Double.parseDouble(options.getOrDefault("jitter", "0.1")));
+                    } else {
+                        System.out.println("Invalid command format. Use: simulate <duration> [capacity=<n>,...] [producers=<n>,...] [consumers=<n>,...] [producer-delay=<ms>] [consumer-delay=<ms>] [batch=<n>] [mechanism=<m>] [seed=<n>] [jitter=<0..1>]");
+                    }
+                    break;
+
+                case "log":
+                    if (parts.length >= 2) {
+                        LogVerbosity verbosity;
+                        try {
+                            verbosity = LogVerbosity.valueOf(parts[1]);
+                        } catch (IllegalArgumentException e) {
+                            System.out.println("Invalid verbosity. Use one of: " + Arrays.toString(LogVerbosity.values()));
+                            break;
+                        }
+                        Map<String, String> options = parseOptions(parts, 2);
+                        EventLog.setVerbosity(verbosity, Integer.parseInt(options.getOrDefault("rate", "100")));
+                        System.out.println("Event logging set to " + verbosity
+                                + (verbosity == LogVerbosity.SAMPLED ? " (one in " + EventLog.getSampleRate() + ")" : ""));
+                    } else {
+                        System.out.println("Invalid command format. Use: log <verbosity> [rate=<n>]");
+                    }
+                    break;
+
+                case "stats":
+                    if (parts.length == 1) {
+                        displayStatistics();
+                        break;
+                    }
+                    switch (parts[1]) {
+                        case "on":
+                            ticketPool.setStatisticsEnabled(true);
+                            System.out.println("Statistics enabled");
+                            break;
+                        case "off":
+                            setStatisticsInterval(0);
+                            ticketPool.setStatisticsEnabled(false);
+                            System.out.println("Statistics disabled" + (ticketPool.isAutoTuning()
+                                    ? "; AUTO keeps the current implementation until they are on again" : ""));
+                            break;
+                        case "reset":
+                            ticketPool.resetStatistics();
+                            System.out.println("Statistics reset");
+                            break;
+                        default:
+                            Map<String, String> options = parseOptions(parts, 1);
+                            if (options.containsKey("interval")) {
+                                int intervalSeconds = Integer.parseInt(options.get("interval"));
+                                setStatisticsInterval(intervalSeconds);
+                                System.out.println(intervalSeconds > 0
+                                        ? "Reporting statistics every " + intervalSeconds + " s"
+                                        : "Periodic statistics reports stopped");
+                            } else {
+                                System.out.println("Invalid command format. Use: stats [on|off|reset] [interval=<seconds>]");
+                            }
+                    }
+                    break;
+
+                case "auto-log":
+                    if (!ticketPool.isAutoTuning()) {
+                        System.out.println("Auto-tuning is off. Use: switch-sync AUTO");
+                    } else {
+                        List<String> decisions = ticketPool.getAutoTuningDecisions();
+                        int count = parts.length >= 2 ? Integer.parseInt(parts[1]) : 20;
+                        for (String decision : decisions.subList(Math.max(0, decisions.size() - count), decisions.size())) {
+                            System.out.println(decision);
+                        }
+                    }
+                    break;
+
+                case "find-ticket":
+                    if (parts.length >= 2) {
+                        String ticket = ticketPool.findTicket(parts[1]);
+                        System.out.println(ticket != null ? "In pool: " + ticket : "Not in pool: " + parts[1]);
+                    } else {
+                        System.out.println("Invalid command format. Use: find-ticket <ticketId>");
+                    }
+                    break;
+
+                case "withdraw-ticket":
+                    if (parts.length >= 2) {
+                        System.out.println(ticketPool.removeTicket(parts[1])
+                                ? "Withdrew " + parts[1]
+                                : "Not in pool: " + parts[1]);
+                    } else {
+                        System.out.println("Invalid command format. Use: withdraw-ticket <ticketId>");
+                    }
+                    break;
+
+                case "hold-ticket":
+                    if (parts.length >= 2) {
+                        holds.values().removeIf(hold -> !hold.isHeld());
+                        TicketHold hold = ticketPool.holdTicket(Long.parseLong(parts[1]), TimeUnit.MILLISECONDS);
+                        if (hold != null) {
+                            holds.put(hold.getTicket(), hold);
+                            System.out.println("Holding " + hold.getTicket() + " for " + parts[1] + " ms");
+                        } else {
+                            System.out.println("No ticket available to hold");
+                        }
+                    } else {
+                        System.out.println("Invalid command format. Use: hold-ticket <ttlMs>");
+                    }
+                    break;
+
+                case "confirm-hold":
+                case "release-hold":
+                    if (parts.length >= 2) {
+                        TicketHold hold = holds.remove(parts[1]);
+                        boolean confirming = parts[0].equals("confirm-hold");
+                        if (hold == null) {
+                            System.out.println("No hold on " + parts[1]);
+                        } else if (confirming ? ticketPool.confirm(hold) : ticketPool.release(hold)) {
+                            System.out.println((confirming ? "Sold " : "Released ") + parts[1]);
+                        } else {
+                            System.out.println("Hold on " + parts[1] + " already expired");
+                        }
+                    } else {
+                        System.out.println("Invalid command format. Use: " + parts[0] + " <ticketId>");
+                    }
+                    break;
+
+                case "serve":
+                    if (parts.length >= 2) {
+                        setServerPort(parts[1].equals("stop") ? -1 : Integer.parseInt(parts[1]));
+                    } else {
+                        System.out.println("Invalid command format. Use: serve <port>|stop");
                     }
                     break;
 
@@ -265,23 +800,79 @@ public class SimulationManager {
         }
     }
 
-    // Gracefully stops all running threads and closes scanner
-    private void shutdownAll() {
-        // Stop all producers
-        for (String id : new ArrayList<>(producers.keySet())) {
-            removeProducer(id);
+    // Reads the tier=<tier> option, defaulting to GENERAL; reports an unknown tier and returns null
+    private TicketTier parseTier(Map<String, String> options) {
+        try {
+            return TicketTier.valueOf(options.getOrDefault("tier", TicketTier.GENERAL.name()));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid tier. Use one of: " + Arrays.toString(TicketTier.values()));
+            return null;
         }
+    }
+
+    private static String describeTier(TicketTier tier) {
+        return tier == TicketTier.GENERAL ? "" : " (" + tier + " tier)";
+    }
+
+    private static String describeEvent(String eventId) {
+        return eventId == null ? "" : " for event " + eventId;
+    }
+
+    // The pool an actor works on: the given event's, or the main pool if eventId is null
+    private TicketPool poolFor(String eventId) {
+        return eventId == null ? ticketPool : events.event(eventId);
+    }
 
-        // Stop all consumers
-        for (String id : new ArrayList<>(consumers.keySet())) {
-            removeConsumer(id);
+    // Parses a comma-separated list of numbers, such as capacity=1000,5000
+    private static int[] parseList(String values) {
+        return Arrays.stream(values.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    // Parses trailing key=value options (e.g. batch=10); a bare key is treated as key=true
+    private Map<String, String> parseOptions(String[] parts, int from) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = from; i < parts.length; i++) {
+            String[] option = parts[i].split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
         }
+        return options;
+    }
 
-        // Stop all readers
-        for (String id : new ArrayList<>(readers.keySet())) {
-            removeReader(id);
+    // Gracefully stops all running actors and closes scanner
+    private void shutdownAll() {
+        // Ask every actor to stop first, then wait for them, so they wind down together rather than one by one
+        List<ActorHandle> actors = new ArrayList<>();
+        for (Map<String, ActorHandle> each : List.of(producers, consumers, readers)) {
+            actors.addAll(each.values());
+            each.clear();
+        }
+        actors.forEach(ActorHandle::stop);
+        int unfinished = 0;
+        try {
+            for (ActorHandle actor : actors) {
+                if (!actor.await(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    unfinished++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Stopped " + actors.size() + " actors" + (unfinished > 0 ? ", " + unfinished + " still running" : ""));
+        if (actorEngine != null) {
+            actorEngine.close();
         }
 
+        setStatisticsInterval(0);
+        events.close();
+        if (server != null) {
+            server.close();
+        }
+        try {
+            ticketPool.close();
+        } catch (IOException e) {
+            System.out.println("Failed to checkpoint the journal: " + e.getMessage());
+        }
+        EventLog.flush(1, TimeUnit.SECONDS);
         scanner.close();
     }
 }
@@ -0,0 +1,21 @@
+import java.util.concurrent.CompletableFuture;
+
+// A producer, consumer or reader that can either run on a thread of its own or be stepped by an ActorEngine.
+// A step does one piece of work without blocking; the engine schedules the next one after nextDelayMs().
+interface SteppedActor extends Runnable {
+    // Does one piece of work. Returns null when it is finished, or a future the actor is waiting on, such as an
+    // asynchronous purchase; the next step follows its completion, and the engine cancels it if the actor is stopped
+    CompletableFuture<?> step();
+
+    // How long to wait before the next step, read after every step so rate changes apply at once
+    long nextDelayMs();
+
+    // Changes the delay between steps while the actor runs
+    void setDelayMs(int delayMs);
+
+    // Asks run() to return; steps are stopped by the engine instead
+    void stop();
+
+    // Sends the actor's events to the given sink instead of the shared event log
+    void logTo(EventLog.Sink sink);
+}
@@ -2,5 +2,10 @@
 public enum SynchronizationMechanism {
     SYNCHRONIZED,
     REENTRANT_LOCK,
-    BLOCKING_QUEUE
+    BLOCKING_QUEUE,
+    LOCK_FREE_RING,
+    SHARDED,
+    OFF_HEAP,
+    TIERED,
+    AUTO // Not an implementation: lets TicketPoolManager pick one of the others from the observed load
 }
@@ -1,48 +1,174 @@
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 // 1. Synchronized implementation
-class SynchronizedTicketPool implements TicketPool {
-    private final List<String> tickets;
+class SynchronizedTicketPool implements TicketPool, HeldTickets {
+    private final IndexedTicketQueue tickets;
     private final int capacity;
+    private final WaitQueue waitingConsumers;
+    private final WaitQueue waitingProducers;
+    private final PendingPurchases pendingPurchases;
+    private final SeqLock seqLock;
+    private int held; // Tickets on hold, which keep their slots
 
     /**
      * Constructs a synchronized ticket pool with specified capacity.
+     * The monitor guards only the short critical sections; consumers waiting for tickets and producers
+     * waiting for space park outside it, so blocked virtual threads do not pin their carrier threads.
+     * Each side parks in its own queue, so a wakeup always reaches a thread that can act on it.
      */
     public SynchronizedTicketPool(int capacity) {
-        this.tickets = new ArrayList<>();
+        this.tickets = new IndexedTicketQueue();
         this.capacity = capacity;
+        this.waitingConsumers = new WaitQueue();
+        this.waitingProducers = new WaitQueue();
+        this.pendingPurchases = new PendingPurchases();
+        this.seqLock = new SeqLock();
     }
 
     /**
      * Adds a ticket to the pool if there is available capacity.
-     * Notifies a waiting consumer if the ticket is successfully added.
+     * Wakes a waiting consumer if the ticket is successfully added.
      */
     @Override
-    public synchronized boolean addTicket(String ticketInfo) {
-        if (tickets.size() < capacity) {
-            tickets.add(ticketInfo);
-            notify(); // Notify waiting consumers
-            return true;
+    public boolean addTicket(String ticketInfo) {
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticketInfo)) {
+            return true; // Delivered straight to the oldest asynchronous purchase
         }
-        return false;
+        synchronized (this) {
+            if (tickets.size() + held >= capacity) {
+                return false;
+            }
+            seqLock.beginWrite();
+            tickets.addLast(ticketInfo);
+            seqLock.endWrite();
+        }
+        waitingConsumers.signal(); // Wake a waiting consumer
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return true;
     }
 
     /**
-     * Waits until at least one ticket is available, then removes and returns it.
-     * Notifies a waiting producer after removal.
+     * Adds as many of the tickets as fit in one synchronized block.
+     * Wakes all waiting consumers if more than one ticket was added.
      */
     @Override
-    public synchronized String purchaseTicket() throws InterruptedException {
-        while (tickets.isEmpty()) {
-            wait(); // Wait until a ticket is available
+    public int addTickets(Collection<String> ticketInfos) {
+        if (pendingPurchases.hasWaiting()) {
+            return TicketPool.super.addTickets(ticketInfos); // Hand tickets to waiting purchases one by one
+        }
+        int added = 0;
+        synchronized (this) {
+            seqLock.beginWrite();
+            try {
+                for (String ticketInfo : ticketInfos) {
+                    if (tickets.size() + held >= capacity) {
+                        break;
+                    }
+                    tickets.addLast(ticketInfo);
+                    added++;
+                }
+            } finally {
+                seqLock.endWrite();
+            }
+        }
+
+        if (added == 1) {
+            waitingConsumers.signal();
+        } else if (added > 1) {
+            waitingConsumers.signalAll(); // Several consumers can proceed
+        }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
         }
+        return added;
+    }
+
+    /**
+     * Waits in the producer queue until a purchase frees a slot, then adds the ticket.
+     */
+    @Override
+    public void putTicket(String ticketInfo) throws InterruptedException {
+        waitingProducers.await(() -> addTicket(ticketInfo) ? Boolean.TRUE : null, this::hasSpace, -1);
+    }
 
-        String ticket = tickets.remove(0);
-        notify(); // Notify waiting producers
+    /**
+     * Waits in the producer queue up to the given timeout for a free slot, returning false if none appeared in time.
+     */
+    @Override
+    public boolean offerTicket(String ticketInfo, long timeout, TimeUnit unit) throws InterruptedException {
+        return waitingProducers.await(() -> addTicket(ticketInfo) ? Boolean.TRUE : null, this::hasSpace,
+                Math.max(0, unit.toNanos(timeout))) != null;
+    }
+
+    /**
+     * Waits until at least one ticket is available, then removes and returns it.
+     */
+    @Override
+    public String purchaseTicket() throws InterruptedException {
+        return waitingConsumers.await(this::tryPurchase, this::hasTickets, -1);
+    }
+
+    /**
+     * Waits up to the given timeout for a ticket, returning null if none arrived in time.
+     */
+    @Override
+    public String purchaseTicket(long timeout, TimeUnit unit) throws InterruptedException {
+        return waitingConsumers.await(this::tryPurchase, this::hasTickets, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    /**
+     * Removes and returns the first ticket if one is available, or null otherwise.
+     * Wakes a producer waiting for space if a ticket was removed.
+     */
+    @Override
+    public String tryPurchase() {
+        String ticket = removeFirst();
+        if (ticket != null) {
+            waitingProducers.signal();
+        }
         return ticket;
     }
 
+    /**
+     * Returns a future for the next ticket. If purchases are already waiting, or the pool is empty,
+     * the purchase joins the FIFO queue of waiting purchases and is completed by a later add.
+     */
+    @Override
+    public CompletableFuture<String> purchaseTicketAsync() {
+        if (!pendingPurchases.hasWaiting()) {
+            String ticket = tryPurchase();
+            if (ticket != null) {
+                return CompletableFuture.completedFuture(ticket);
+            }
+        }
+        TicketPurchase purchase = pendingPurchases.register();
+        pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        return purchase;
+    }
+
+    /**
+     * Waits until at least one ticket is available, then removes up to maxTickets from the front in one step.
+     */
+    @Override
+    public int purchaseTickets(int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        if (maxTickets <= 0) {
+            return 0;
+        }
+        int count = waitingConsumers.await(() -> drain(maxTickets, purchased), this::hasTickets, -1);
+        if (count == 1) {
+            waitingProducers.signal();
+        } else {
+            waitingProducers.signalAll(); // Several producers can proceed
+        }
+        return count;
+    }
+
     /**
      * Returns the number of available tickets in the pool.
      */
@@ -56,10 +182,94 @@ class SynchronizedTicketPool implements TicketPool {
      */
     @Override
     public synchronized String viewTicketInfo(int index) {
-        if (index >= 0 && index < tickets.size()) {
-            return tickets.get(index);
+        return tickets.get(index);
+    }
+
+    /**
+     * Looks the ticket up in the queue's hash index.
+     */
+    @Override
+    public synchronized String findTicket(String ticketId) {
+        return tickets.find(ticketId);
+    }
+
+    /**
+     * Unlinks the ticket from the queue through its hash index, waking a producer waiting for space if it was found.
+     */
+    @Override
+    public boolean removeTicket(String ticketId) {
+        boolean removed;
+        synchronized (this) {
+            seqLock.beginWrite();
+            removed = tickets.remove(ticketId);
+            seqLock.endWrite();
+        }
+        if (removed) {
+            waitingProducers.signal();
+        }
+        return removed;
+    }
+
+    /**
+     * Takes the first ticket out of sale for the given time; its slot stays occupied until the hold is settled.
+     */
+    @Override
+    public TicketHold holdTicket(long ttl, TimeUnit unit) {
+        String ticket = takeHeld();
+        return ticket == null ? null : TicketHold.start(this, ticket, ttl, unit);
+    }
+
+    @Override
+    public synchronized String takeHeld() {
+        String ticket = removeFirst();
+        if (ticket != null) {
+            held++;
+        }
+        return ticket;
+    }
+
+    @Override
+    public void settleHeld(String ticket, boolean sold) {
+        // A returned ticket goes straight to the oldest asynchronous purchase if one is waiting, which frees the slot
+        boolean handedOff = !sold && pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticket);
+        synchronized (this) {
+            held--;
+            if (!sold && !handedOff) {
+                seqLock.beginWrite();
+                tickets.addLast(ticket);
+                seqLock.endWrite();
+            }
+        }
+        if (sold || handedOff) {
+            waitingProducers.signal();
+            return;
+        }
+        waitingConsumers.signal();
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+    }
+
+    @Override
+    public synchronized int adoptHeld(int count) {
+        int adopted = Math.max(0, Math.min(count, capacity - tickets.size() - held));
+        held += adopted;
+        return adopted;
+    }
+
+    /**
+     * Copies the size and the first tickets without entering the monitor, retrying if a writer changed the list
+     * meanwhile. Falls back to a synchronized copy only if writers keep interfering.
+     */
+    @Override
+    public PoolSnapshot snapshot(int maxTickets) {
+        PoolSnapshot snapshot = seqLock.readOptimistically(version -> copy(version, maxTickets));
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (this) {
+            return copy(seqLock.version(), maxTickets);
         }
-        return null;
     }
 
     /**
@@ -69,5 +279,41 @@ class SynchronizedTicketPool implements TicketPool {
     public void switchSynchronizationMechanism(SynchronizationMechanism mechanism) {
         // Not handled here, managed by TicketPoolManager
     }
-}
 
+    private synchronized boolean hasTickets() {
+        return !tickets.isEmpty();
+    }
+
+    private synchronized boolean hasSpace() {
+        return tickets.size() + held < capacity;
+    }
+
+    private synchronized String removeFirst() {
+        if (tickets.isEmpty()) {
+            return null;
+        }
+        seqLock.beginWrite();
+        String ticket = tickets.pollFirst();
+        seqLock.endWrite();
+        return ticket;
+    }
+
+    // Removes up to maxTickets from the front, or returns null if the pool is empty
+    private synchronized Integer drain(int maxTickets, Collection<? super String> purchased) {
+        if (tickets.isEmpty()) {
+            return null;
+        }
+        seqLock.beginWrite();
+        int count = tickets.drainTo(maxTickets, purchased);
+        seqLock.endWrite();
+        return count;
+    }
+
+    // Copies the size and up to maxTickets from the front; may see a torn list unless the caller validates or locks
+    private PoolSnapshot copy(long version, int maxTickets) {
+        int size = tickets.size();
+        List<String> page = new ArrayList<>(Math.max(0, Math.min(maxTickets, size)));
+        tickets.copyTo(maxTickets, page);
+        return new PoolSnapshot(version, size, page);
+    }
+}
@@ -0,0 +1,238 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Blocking client for a TicketServer. The send methods queue requests without waiting, so many can be in flight
+// on one connection; flush() writes them and receive() reads the next response. The plain methods send one
+// request and wait for its response, and must not be mixed with requests still in flight.
+public class TicketClient implements AutoCloseable {
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(TicketProtocol.MAX_FRAME);
+    private final ByteBuffer in = ByteBuffer.allocate(4 + TicketProtocol.MAX_FRAME);
+    private int nextRequestId;
+
+    /**
+     * Connects to a ticket server.
+     *
+     * @param host the server's host
+     * @param port the server's port
+     * @throws IOException if the connection fails
+     */
+    public TicketClient(String host, int port) throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        in.flip();
+    }
+
+    /**
+     * Queues an add.
+     *
+     * @param ticketInfo the ticket to add
+     * @return the request ID its response will carry
+     */
+    public int sendAdd(String ticketInfo) throws IOException {
+        byte[] ticket = TicketProtocol.encode(ticketInfo);
+        ByteBuffer request = request(TicketProtocol.ADD, TicketProtocol.sizeOf(ticket));
+        TicketProtocol.putString(request, ticket);
+        return nextRequestId - 1;
+    }
+
+    /**
+     * Queues a purchase of up to maxTickets tickets. The server answers at once with what is available, or if
+     * nothing is, when a ticket arrives or the timeout passes.
+     *
+     * @param maxTickets the most tickets to buy
+     * @param timeoutMs  how long to wait for a first ticket; 0 to not wait, -1 to wait without limit
+     * @return the request ID its response will carry
+     */
+    public int sendPurchase(int maxTickets, int timeoutMs) throws IOException {
+        request(TicketProtocol.PURCHASE, 8).putInt(maxTickets).putInt(timeoutMs);
+        return nextRequestId - 1;
+    }
+
+    /**
+     * Queues a status request.
+     *
+     * @return the request ID its response will carry
+     */
+    public int sendStatus() throws IOException {
+        request(TicketProtocol.STATUS, 0);
+        return nextRequestId - 1;
+    }
+
+    /**
+     * Writes every queued request.
+     */
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Waits for the next response. Responses to purchases that had to wait may overtake earlier requests.
+     *
+     * @return the response
+     * @throws EOFException if the server closed the connection
+     * @throws IOException  if the server sent a frame larger than TicketProtocol.MAX_FRAME
+     */
+    public Response receive() throws IOException {
+        while (!hasResponse()) {
+            if (in.remaining() >= 4 && in.getInt(in.position()) > in.capacity() - 4) {
+                // It could never be read whole, so waiting for the rest would spin forever
+                throw new IOException("Response frame of " + in.getInt(in.position()) + " bytes is larger than "
+                        + TicketProtocol.MAX_FRAME);
+            }
+            in.compact();
+            int read = channel.read(in);
+            in.flip();
+            if (read < 0) {
+                throw new EOFException("Server closed the connection");
+            }
+        }
+        int end = in.position() + 4 + in.getInt();
+        Response response = new Response(in);
+        in.position(end);
+        return response;
+    }
+
+    /**
+     * Returns true if a whole response has already been read, so receive() will not wait for the network.
+     */
+    public boolean hasResponse() {
+        return in.remaining() >= 4 && in.remaining() >= 4 + in.getInt(in.position());
+    }
+
+    /**
+     * Adds a ticket and waits for the answer.
+     *
+     * @return true if the ticket was added, false if the pool was full
+     */
+    public boolean addTicket(String ticketInfo) throws IOException {
+        sendAdd(ticketInfo);
+        flush();
+        return receive().getStatus() == TicketProtocol.OK;
+    }
+
+    /**
+     * Buys one ticket, waiting up to the given timeout.
+     *
+     * @param timeoutMs how long to wait; 0 to not wait, -1 to wait without limit
+     * @return the ticket, or null if none arrived in time
+     */
+    public String purchaseTicket(int timeoutMs) throws IOException {
+        List<String> tickets = purchaseTickets(1, timeoutMs);
+        return tickets.isEmpty() ? null : tickets.get(0);
+    }
+
+    /**
+     * Buys up to maxTickets tickets, waiting up to the given timeout for the first.
+     *
+     * @param timeoutMs how long to wait; 0 to not wait, -1 to wait without limit
+     * @return the tickets, empty if none arrived in time
+     */
+    public List<String> purchaseTickets(int maxTickets, int timeoutMs) throws IOException {
+        sendPurchase(maxTickets, timeoutMs);
+        flush();
+        return receive().getTickets();
+    }
+
+    /**
+     * Asks for the pool's state.
+     *
+     * @return a response with the available, capacity, held and mechanism fields filled in
+     */
+    public Response status() throws IOException {
+        sendStatus();
+        flush();
+        return receive();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Starts a request frame, writing out what is queued first if it would not fit
+    private ByteBuffer request(byte op, int payloadSize) throws IOException {
+        if (out.remaining() < 4 + 5 + payloadSize) {
+            flush();
+        }
+        return out.putInt(5 + payloadSize).put(op).putInt(nextRequestId++);
+    }
+
+    // One response from the server
+    public static final class Response {
+        private final byte status;
+        private final int requestId;
+        private List<String> tickets = Collections.emptyList();
+        private int available;
+        private int capacity;
+        private int held;
+        private String mechanism;
+        private String error;
+
+        private Response(ByteBuffer frame) {
+            byte op = frame.get();
+            this.status = frame.get();
+            this.requestId = frame.getInt();
+            if (status == TicketProtocol.ERROR) {
+                error = TicketProtocol.getString(frame);
+            } else if (op == TicketProtocol.PURCHASE) {
+                int count = Short.toUnsignedInt(frame.getShort());
+                tickets = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    tickets.add(TicketProtocol.getString(frame));
+                }
+            } else if (op == TicketProtocol.STATUS) {
+                available = frame.getInt();
+                capacity = frame.getInt();
+                held = frame.getInt();
+                mechanism = TicketProtocol.getString(frame);
+            }
+        }
+
+        public int getRequestId() {
+            return requestId;
+        }
+
+        // TicketProtocol.OK, REJECTED (pool full, or no ticket in time) or ERROR
+        public byte getStatus() {
+            return status;
+        }
+
+        // The tickets bought, for a purchase
+        public List<String> getTickets() {
+            return tickets;
+        }
+
+        public int getAvailable() {
+            return available;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public int getHeld() {
+            return held;
+        }
+
+        public String getMechanism() {
+            return mechanism;
+        }
+
+        // The server's message, for an ERROR response
+        public String getError() {
+            return error;
+        }
+    }
+}
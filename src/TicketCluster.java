@@ -0,0 +1,405 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Client for a ticket inventory split into partitions, one per TicketServer node. Each ticket lives on exactly
+// one node, so a ticket can never be sold twice however the nodes fail. Adds go to the ticket's home partition;
+// purchases go to the better stocked of two random nodes and fall back to the other partitions when it runs dry.
+// The client keeps an estimate of each node's stock, corrected by every call it makes and by a periodic
+// status poll, which gives a cluster-wide count without asking every node.
+public final class TicketCluster implements AutoCloseable {
+    private static final long DEFAULT_REFRESH_MS = 100;
+    private static final long DOWN_RETRY_MS = 1000;  // How long a node that failed is skipped
+    private static final int WAIT_SLICE_MS = 50;     // A waiting purchase moves to another node after this long
+
+    private final Node[] nodes;
+    private final ScheduledExecutorService refresher;
+
+    /**
+     * Connects to the given nodes, refreshing the stock estimates every 100 ms.
+     *
+     * @param addresses the nodes, one per partition
+     */
+    public TicketCluster(List<InetSocketAddress> addresses) {
+        this(addresses, DEFAULT_REFRESH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Connects to the given nodes. Connections are opened when first needed, so the nodes need not be up yet.
+     *
+     * @param addresses       the nodes, one per partition
+     * @param refreshInterval how often every node is asked for its stock
+     * @param unit            the unit of the interval
+     */
+    public TicketCluster(List<InetSocketAddress> addresses, long refreshInterval, TimeUnit unit) {
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("A cluster needs at least one node");
+        }
+        this.nodes = new Node[addresses.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new Node(addresses.get(i));
+        }
+        this.refresher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "cluster-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, 0, refreshInterval, unit);
+    }
+
+    /**
+     * Adds a ticket to its home partition, chosen by the ticket's hash, or to the next node up that has room.
+     *
+     * @return true if a node took the ticket, false if every node up is full
+     */
+    public boolean addTicket(String ticketInfo) {
+        int home = Math.floorMod(ticketInfo.hashCode(), nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            Node node = nodes[(home + i) % nodes.length];
+            if (node.isUp() && node.add(ticketInfo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Purchases a ticket if any node has one. Nodes believed to have stock are asked first; if none of them
+     * does, the others are asked too, so a stale estimate delays a sale but never loses one.
+     *
+     * @return the ticket, or null if no node up had one
+     */
+    public String tryPurchase() {
+        int first = pickStocked();
+        String ticket = purchaseFrom(first, true);
+        return ticket != null ? ticket : purchaseFrom(first, false);
+    }
+
+    /**
+     * Purchases a ticket, waiting up to the given timeout for one to arrive on any node. While waiting, the
+     * purchase waits on one node at a time for a short slice, moving on when the slice ends.
+     *
+     * @return the ticket, or null if the timeout passed
+     * @throws InterruptedException if interrupted between slices
+     */
+    public String purchaseTicket(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            String ticket = tryPurchase();
+            long remaining = deadline - System.nanoTime();
+            if (ticket != null || remaining <= 0) {
+                return ticket;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            Node node = nodes[pickStocked()];
+            int sliceMs = (int) Math.max(1, Math.min(WAIT_SLICE_MS, TimeUnit.NANOSECONDS.toMillis(remaining)));
+            List<String> waited = node.isUp() ? node.purchase(1, sliceMs) : Collections.emptyList();
+            if (!waited.isEmpty()) {
+                return waited.get(0);
+            }
+            if (!node.isUp()) {
+                Thread.sleep(Math.min(sliceMs, 10)); // Do not spin on a dead node while the others are empty
+            }
+        }
+    }
+
+    /**
+     * Purchases up to maxTickets tickets from whichever nodes have them, without waiting.
+     *
+     * @return the tickets purchased, empty if no node up had any
+     */
+    public List<String> purchaseTickets(int maxTickets) {
+        List<String> purchased = new ArrayList<>();
+        int first = pickStocked();
+        for (int i = 0; i < nodes.length && purchased.size() < maxTickets; i++) {
+            Node node = nodes[(first + i) % nodes.length];
+            if (node.isUp()) {
+                purchased.addAll(node.purchase(maxTickets - purchased.size(), 0));
+            }
+        }
+        return purchased;
+    }
+
+    /**
+     * Returns the estimated number of tickets on the nodes that are up. The estimate follows this client's own
+     * calls at once and other clients' calls within one refresh interval; it never contacts a node.
+     *
+     * @return the estimated cluster-wide number of available tickets
+     */
+    public int getAvailableTickets() {
+        int available = 0;
+        for (Node node : nodes) {
+            if (node.isUp()) {
+                available += node.available.get();
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Returns the number of partitions, which is the number of nodes.
+     */
+    public int getPartitionCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Returns the number of nodes not currently marked down after a failure.
+     */
+    public int getLiveNodes() {
+        int live = 0;
+        for (Node node : nodes) {
+            live += node.isUp() ? 1 : 0;
+        }
+        return live;
+    }
+
+    /**
+     * Returns the number of calls to nodes that failed, each of which marked its node down for a while.
+     */
+    public long getNodeFailures() {
+        long failures = 0;
+        for (Node node : nodes) {
+            failures += node.failures.sum();
+        }
+        return failures;
+    }
+
+    /**
+     * Asks every node for its stock now, marking nodes down or back up. Also runs on the refresher thread.
+     */
+    public void refresh() {
+        for (Node node : nodes) {
+            node.refresh();
+        }
+    }
+
+    /**
+     * Stops the refresher and closes every connection.
+     */
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+        for (Node node : nodes) {
+            node.closeConnections();
+        }
+    }
+
+    // Power of two choices: of two random nodes up, the one with more estimated stock, which spreads buyers
+    // over the partitions while steering them away from ones running dry
+    private int pickStocked() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(nodes.length);
+        int second = random.nextInt(nodes.length);
+        if (!nodes[first].isUp()) {
+            return second;
+        }
+        if (!nodes[second].isUp()) {
+            return first;
+        }
+        return nodes[second].available.get() > nodes[first].available.get() ? second : first;
+    }
+
+    // Asks each node up in turn from the given one: those believed stocked, or on the second pass the rest
+    private String purchaseFrom(int first, boolean stocked) {
+        for (int i = 0; i < nodes.length; i++) {
+            Node node = nodes[(first + i) % nodes.length];
+            if (node.isUp() && (node.available.get() > 0) == stocked) {
+                List<String> tickets = node.purchase(1, 0);
+                if (!tickets.isEmpty()) {
+                    return tickets.get(0);
+                }
+            }
+        }
+        return null;
+    }
+
+    // One partition: its address, idle connections and stock estimate
+    private static final class Node {
+        private final InetSocketAddress address;
+        private final Queue<TicketClient> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger available = new AtomicInteger();
+        private final LongAdder failures = new LongAdder();
+        private volatile long downUntil;
+
+        private Node(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        private boolean isUp() {
+            long until = downUntil;
+            return until == 0 || System.nanoTime() - until >= 0;
+        }
+
+        private boolean add(String ticketInfo) {
+            TicketClient client = borrow();
+            if (client == null) {
+                return false;
+            }
+            try {
+                boolean added = client.addTicket(ticketInfo);
+                if (added) {
+                    available.incrementAndGet();
+                }
+                idle.add(client);
+                return added;
+            } catch (IOException e) {
+                fail(client);
+                return false;
+            }
+        }
+
+        private List<String> purchase(int maxTickets, int timeoutMs) {
+            TicketClient client = borrow();
+            if (client == null) {
+                return Collections.emptyList();
+            }
+            try {
+                List<String> tickets = client.purchaseTickets(maxTickets, timeoutMs);
+                if (tickets.isEmpty()) {
+                    available.set(0);
+                } else {
+                    available.getAndUpdate(count -> Math.max(0, count - tickets.size()));
+                }
+                idle.add(client);
+                return tickets;
+            } catch (IOException e) {
+                fail(client);
+                return Collections.emptyList();
+            }
+        }
+
+        private void refresh() {
+            TicketClient client = borrow();
+            if (client == null) {
+                return;
+            }
+            try {
+                available.set(client.status().getAvailable());
+                downUntil = 0;
+                idle.add(client);
+            } catch (IOException e) {
+                fail(client);
+            }
+        }
+
+        // An idle connection, or a new one; null if the node cannot be reached
+        private TicketClient borrow() {
+            TicketClient client = idle.poll();
+            if (client != null) {
+                return client;
+            }
+            try {
+                return new TicketClient(address.getHostString(), address.getPort());
+            } catch (IOException e) {
+                fail(null);
+                return null;
+            }
+        }
+
+        // Marks the node down and drops its connections; whatever it held is unreachable until it is back
+        private void fail(TicketClient client) {
+            failures.increment();
+            downUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DOWN_RETRY_MS);
+            available.set(0);
+            if (client != null) {
+                close(client);
+            }
+            closeConnections();
+        }
+
+        private void closeConnections() {
+            TicketClient client;
+            while ((client = idle.poll()) != null) {
+                close(client);
+            }
+        }
+
+        private static void close(TicketClient client) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                // Already unusable
+            }
+        }
+    }
+
+    /**
+     * Starts one to the given number of nodes on localhost in turn and measures purchase and add throughput
+     * through the cluster, to show how it scales with the node count.
+     * Usage: TicketCluster [max nodes] [client threads] [seconds per run]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int maxNodes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        long durationMs = TimeUnit.SECONDS.toMillis(args.length > 2 ? Integer.parseInt(args[2]) : 3);
+        for (int count = 1; count <= maxNodes; count++) {
+            System.out.printf("%d nodes: %.0f ops/sec%n", count, measureLocal(count, threads, durationMs));
+        }
+    }
+
+    /**
+     * Starts the given number of nodes on localhost, each a pool of 100,000 half-filled tickets, and returns
+     * the operations per second the given number of threads achieve through a cluster client, alternating
+     * adds and purchases.
+     */
+    static double measureLocal(int nodeCount, int threads, long durationMs) throws IOException, InterruptedException {
+        List<TicketServer> servers = new ArrayList<>();
+        List<TicketPoolManager> pools = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try {
+            for (int i = 0; i < nodeCount; i++) {
+                TicketPoolManager pool = new TicketPoolManager(100_000, SynchronizationMechanism.LOCK_FREE_RING);
+                for (int t = 0; t < 50_000; t++) {
+                    pool.addTicket("Ticket-Node" + i + "-" + t);
+                }
+                pools.add(pool);
+                TicketServer server = new TicketServer(pool, new InetSocketAddress(loopback, 0));
+                servers.add(server);
+                addresses.add(new InetSocketAddress(loopback, server.getPort()));
+            }
+            try (TicketCluster cluster = new TicketCluster(addresses)) {
+                LongAdder operations = new LongAdder();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs);
+                List<Thread> workers = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    String prefix = "Ticket-Client" + i + "-";
+                    Thread worker = new Thread(() -> {
+                        for (int n = 0; System.nanoTime() - deadline < 0; n++) {
+                            if (n % 2 == 0 ? cluster.addTicket(prefix + n) : cluster.tryPurchase() != null) {
+                                operations.increment();
+                            }
+                        }
+                    }, "cluster-load-" + i);
+                    workers.add(worker);
+                    worker.start();
+                }
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+                return operations.sum() / (durationMs / 1000.0);
+            }
+        } finally {
+            for (TicketServer server : servers) {
+                server.close();
+            }
+            for (TicketPoolManager pool : pools) {
+                pool.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A ticket taken out of sale for a limited time, for example while its buyer checks out. Confirming the hold
+// completes the purchase; releasing it, or letting it expire, puts the ticket back on sale. Exactly one of the
+// three takes effect, however they race
+public final class TicketHold {
+    private static final int HELD = 0;
+    private static final int CONFIRMED = 1;
+    private static final int RELEASED = 2;
+    private static final int EXPIRED = 3;
+
+    private final HoldSettler owner;
+    private final String ticket;
+    private final long deadline; // System.nanoTime() at which the hold expires
+    private final AtomicInteger state = new AtomicInteger(HELD);
+
+    // Timing wheel bookkeeping, only touched by the timer thread
+    long expiryTick;
+    TicketHold next;
+
+    private TicketHold(HoldSettler owner, String ticket, long deadline) {
+        this.owner = owner;
+        this.ticket = ticket;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Starts a hold on a ticket the owner has already taken out of sale, and schedules its expiry.
+     */
+    static TicketHold start(HoldSettler owner, String ticket, long ttl, TimeUnit unit) {
+        TicketHold hold = new TicketHold(owner, ticket, System.nanoTime() + Math.max(0, unit.toNanos(ttl)));
+        HoldTimer.shared().schedule(hold);
+        return hold;
+    }
+
+    /**
+     * Returns the held ticket.
+     */
+    public String getTicket() {
+        return ticket;
+    }
+
+    /**
+     * Returns true while the hold is neither confirmed, released nor expired.
+     */
+    public boolean isHeld() {
+        return state.get() == HELD;
+    }
+
+    /**
+     * Returns the time left before the hold expires, or zero once it is due.
+     */
+    public long getRemaining(TimeUnit unit) {
+        return unit.convert(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    // A hold past its deadline can no longer be confirmed, even if the timer has not expired it yet
+    boolean confirm() {
+        if (System.nanoTime() - deadline >= 0) {
+            expire();
+            return false;
+        }
+        return settle(CONFIRMED, true);
+    }
+
+    boolean release() {
+        return settle(RELEASED, false);
+    }
+
+    boolean expire() {
+        return settle(EXPIRED, false);
+    }
+
+    private boolean settle(int outcome, boolean sold) {
+        if (!state.compareAndSet(HELD, outcome)) {
+            return false;
+        }
+        owner.settleHeld(ticket, sold);
+        return true;
+    }
+}
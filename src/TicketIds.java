@@ -0,0 +1,140 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compact numeric ticket IDs, minted without allocating. An ID packs the number of a producer name (high bits)
+// and a sequence number (low 40 bits), and stands for the ticket "Ticket-<name>-<sequence>". Each producer takes
+// sequence numbers from its name in blocks, so producers share no counter per ticket and two producers with the
+// same name never mint the same ID. A pool with a compact record format keeps the ID and builds the text only when
+// the ticket is handed out, printed or looked up; pools that keep tickets as text build it when it is added.
+// A name stays registered for the life of the JVM, since tickets minted under it may still be in some pool, so
+// the registry holds one small entry per distinct producer name ever used, up to MAX_NAMES. Producers restarted
+// under the same name reuse their entry.
+final class TicketIds {
+    private static final int SEQUENCE_BITS = 40;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int MAX_NAMES = 1 << (63 - SEQUENCE_BITS); // Keeps IDs non-negative
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final String PREFIX = "Ticket-";
+
+    private static final ConcurrentHashMap<String, Name> names = new ConcurrentHashMap<>();
+    private static volatile Name[] byNumber = new Name[16]; // Doubled when full, so registering is amortized O(1)
+    private static int nameCount; // Guarded by the class lock
+
+    private TicketIds() {
+    }
+
+    /**
+     * Returns a range minting IDs for the given producer name. A range is used by one producer at a time.
+     */
+    static Range reserve(String producerId) {
+        Name name = names.get(producerId);
+        return new Range(name != null ? name : register(producerId));
+    }
+
+    // The producer name the ID was minted for
+    static String producerOf(long ticketId) {
+        return byNumber[(int) (ticketId >>> SEQUENCE_BITS)].text;
+    }
+
+    static long sequenceOf(long ticketId) {
+        return ticketId & SEQUENCE_MASK;
+    }
+
+    /**
+     * Returns the text form of the ID, "Ticket-<name>-<sequence>".
+     */
+    static String format(long ticketId) {
+        return appendTo(new StringBuilder(32), ticketId).toString();
+    }
+
+    // Writes the text form of the ID without building a String for it
+    static StringBuilder appendTo(StringBuilder text, long ticketId) {
+        return text.append(byNumber[(int) (ticketId >>> SEQUENCE_BITS)].head).append(ticketId & SEQUENCE_MASK);
+    }
+
+    /**
+     * Returns format(ticketId).hashCode() without building the String, so pools can index numeric tickets
+     * alongside tickets added as text.
+     */
+    static int hashOf(long ticketId) {
+        int hash = byNumber[(int) (ticketId >>> SEQUENCE_BITS)].headHash;
+        long sequence = ticketId & SEQUENCE_MASK;
+        long divisor = 1;
+        while (divisor <= sequence / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            hash = 31 * hash + (char) ('0' + sequence / divisor % 10);
+        }
+        return hash;
+    }
+
+    // How many producer names are registered
+    static synchronized int getNameCount() {
+        return nameCount;
+    }
+
+    private static synchronized Name register(String producerId) {
+        Name name = names.get(producerId);
+        if (name == null) {
+            if (nameCount == MAX_NAMES) {
+                throw new IllegalStateException("too many producer names for ticket IDs");
+            }
+            Name[] table = byNumber;
+            if (nameCount == table.length) {
+                table = Arrays.copyOf(table, Math.min(table.length * 2, MAX_NAMES));
+            }
+            name = new Name(producerId, nameCount++);
+            table[name.number] = name;
+            byNumber = table; // Published, even into the same table, before any ID with this number can be minted
+            names.put(producerId, name);
+        }
+        return name;
+    }
+
+    // A producer name and the sequence numbers not yet reserved under it
+    private static final class Name {
+        private final String text;
+        private final String head; // "Ticket-<name>-", the part of every ticket's text before its sequence
+        private final int headHash;
+        private final int number;
+        private final AtomicLong nextBlock = new AtomicLong();
+
+        private Name(String text, int number) {
+            this.text = text;
+            this.head = PREFIX + text + "-";
+            this.headHash = head.hashCode();
+            this.number = number;
+        }
+    }
+
+    // Mints IDs from blocks of sequence numbers reserved for one producer; not thread-safe
+    static final class Range {
+        private final Name name;
+        private long next;
+        private long end;
+
+        private Range(Name name) {
+            this.name = name;
+        }
+
+        // The ID next() returns next, reserving a new block if this one is used up
+        long peek() {
+            if (next == end) {
+                next = name.nextBlock.getAndAdd(BLOCK_SIZE);
+                end = next + BLOCK_SIZE;
+                if (end > SEQUENCE_MASK) {
+                    throw new IllegalStateException("ticket sequence numbers for " + name.text + " are used up");
+                }
+            }
+            return ((long) name.number << SEQUENCE_BITS) | next;
+        }
+
+        long next() {
+            long ticketId = peek();
+            next++;
+            return ticketId;
+        }
+    }
+}
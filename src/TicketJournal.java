@@ -0,0 +1,558 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Write-ahead journal of ticket adds and purchases. Records are copied into memory-mapped segment files
+// under a short lock; a flusher thread forces them to disk in groups, and a checkpointer periodically folds
+// the journal into a compact checkpoint so that recovery replays only the tail written since.
+final class TicketJournal implements AutoCloseable {
+    // Record layout: [0..3] payload length, [4..7] CRC32 of type and payload, [8] type, [9..] UTF-8 ticket text.
+    // A zero length marks the end of the written part of a segment; a bad CRC marks a torn write.
+    private static final int HEADER_SIZE = 9;
+    private static final byte TYPE_ADD = 1;
+    private static final byte TYPE_PURCHASE = 2;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long flushIntervalNanos;
+    private final boolean syncCommit;
+
+    // Segments by the journal position of their first byte; positions run on across segment boundaries
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private ByteBuffer active;
+    private long activeStart;
+    private volatile long writtenPosition;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition flushRequested = flushLock.newCondition();
+    private final Condition flushed = flushLock.newCondition();
+    private volatile long durablePosition;
+
+    // Outstanding tickets as of checkpointPosition: insertion-ordered counts, negative for a purchase
+    // journaled before its add. Only the checkpointer thread touches these after recovery.
+    private final Map<String, Integer> checkpointTickets = new LinkedHashMap<>();
+    private volatile long checkpointPosition;
+    private volatile long lastCheckpointMillis;
+
+    private final Thread flusher;
+    private Thread checkpointer;
+    private volatile boolean closed;
+
+    private TicketJournal(Path directory, int segmentSize, long flushIntervalMs, boolean syncCommit) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMs));
+        this.syncCommit = syncCommit;
+        this.flusher = new Thread(this::flushLoop, "journal-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * Opens the journal in the given directory, creating it if needed, and recovers the tickets it holds.
+     *
+     * @param directory            where segments and the checkpoint are kept
+     * @param segmentSize          the size in bytes of each memory-mapped segment file
+     * @param flushIntervalMs      the longest time a record stays in memory before it is forced to disk
+     * @param checkpointIntervalMs how often the journal is folded into a new checkpoint
+     * @param syncCommit           true to make every add and purchase wait until its record is on disk
+     * @param recovered            receives the unsold tickets found by recovery, in the order they were added
+     * @return the open journal, positioned after the last intact record
+     * @throws IOException if the directory cannot be read or written
+     */
+    static TicketJournal open(Path directory, int segmentSize, long flushIntervalMs, long checkpointIntervalMs,
+                              boolean syncCommit, List<String> recovered) throws IOException {
+        if (segmentSize < 4096) {
+            throw new IllegalArgumentException("Segment size must be at least 4096 bytes: " + segmentSize);
+        }
+        Files.createDirectories(directory);
+        TicketJournal journal = new TicketJournal(directory, segmentSize, flushIntervalMs, syncCommit);
+        journal.recover(recovered);
+        journal.flusher.start();
+        journal.startCheckpointer(checkpointIntervalMs);
+        return journal;
+    }
+
+    /**
+     * Records that a ticket was added to the pool.
+     */
+    void recordAdd(String ticketInfo) {
+        commit(append(TYPE_ADD, ticketInfo));
+    }
+
+    /**
+     * Records that a batch of tickets was added to the pool, waiting at most once for the whole batch.
+     */
+    void recordAdds(Iterable<String> ticketInfos, int count) {
+        long position = writtenPosition;
+        Iterator<String> iterator = ticketInfos.iterator();
+        for (int i = 0; i < count && iterator.hasNext(); i++) {
+            position = append(TYPE_ADD, iterator.next());
+        }
+        commit(position);
+    }
+
+    /**
+     * Records that a ticket was purchased from the pool.
+     */
+    void recordPurchase(String ticket) {
+        commit(append(TYPE_PURCHASE, ticket));
+    }
+
+    /**
+     * Records that a batch of tickets was purchased from the pool, waiting at most once for the whole batch.
+     */
+    void recordPurchases(Iterable<String> tickets) {
+        long position = writtenPosition;
+        for (String ticket : tickets) {
+            position = append(TYPE_PURCHASE, ticket);
+        }
+        commit(position);
+    }
+
+    /**
+     * Returns the position up to which records are known to be on disk.
+     */
+    long getDurablePosition() {
+        return durablePosition;
+    }
+
+    /**
+     * Returns the position after the last record written.
+     */
+    long getWrittenPosition() {
+        return writtenPosition;
+    }
+
+    /**
+     * Returns the journal position covered by the latest checkpoint.
+     */
+    long getCheckpointPosition() {
+        return checkpointPosition;
+    }
+
+    /**
+     * Returns the number of segment files currently kept.
+     */
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    boolean isSyncCommit() {
+        return syncCommit;
+    }
+
+    /**
+     * Returns when the latest checkpoint was written, or 0 if none has been written since the journal was opened.
+     */
+    long getLastCheckpointMillis() {
+        return lastCheckpointMillis;
+    }
+
+    /**
+     * Folds every record written so far into a new checkpoint and deletes the segments it makes redundant.
+     *
+     * @throws IOException if the checkpoint cannot be written
+     */
+    void checkpoint() throws IOException {
+        long target = flush();
+        synchronized (checkpointTickets) {
+            if (target <= checkpointPosition) {
+                return;
+            }
+            replay(checkpointPosition, target, checkpointTickets);
+            writeCheckpoint(target);
+            checkpointPosition = target;
+            lastCheckpointMillis = System.currentTimeMillis();
+            deleteSegmentsBefore(target);
+        }
+    }
+
+    /**
+     * Forces every record written so far to disk, releasing any commit waiting for it, stops the background
+     * threads, takes a final checkpoint and unmaps the segments.
+     */
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            try {
+                flush(); // Under the append lock, so nothing is written between the last force and closing
+            } finally {
+                closed = true;
+                flushLock.lock();
+                try {
+                    flushed.signalAll(); // Also releases synchronous commits if the last force failed
+                } finally {
+                    flushLock.unlock();
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+
+        flusher.interrupt();
+        checkpointer.interrupt();
+        boolean interrupted = false;
+        for (Thread thread : new Thread[] {flusher, checkpointer}) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true; // Neither thread outlasts one force or checkpoint; restore the flag after
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            checkpoint();
+        } finally {
+            for (Segment segment : segments.values()) {
+                segment.unmap();
+            }
+            segments.clear();
+            active = null;
+        }
+    }
+
+    // Copies one record into the active segment, rotating to a new segment when it does not fit
+    private long append(byte type, String ticketInfo) {
+        byte[] payload = ticketInfo.getBytes(StandardCharsets.UTF_8);
+        if (HEADER_SIZE + payload.length + 4 > segmentSize) {
+            throw new IllegalArgumentException("Ticket too large for a journal segment: " + payload.length + " bytes");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            // Always leave room for a zero length after the last record
+            if (active == null || active.position() + HEADER_SIZE + payload.length + 4 > segmentSize) {
+                rotate();
+            }
+            int start = active.position();
+            active.position(start + 4);
+            active.putInt((int) crc.getValue());
+            active.put(type);
+            active.put(payload);
+            active.putInt(start, payload.length); // Length last, so a record is never seen half-written
+            writtenPosition = activeStart + active.position();
+            return writtenPosition;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Waits for the record ending at the given position to reach the disk when commits are synchronous
+    private void commit(long position) {
+        if (!syncCommit) {
+            return;
+        }
+        boolean interrupted = false;
+        flushLock.lock();
+        try {
+            while (durablePosition < position && !closed) { // Closing forces everything written before it is set
+                flushRequested.signal(); // Start the next group now rather than at the end of the interval
+                try {
+                    flushed.await();
+                } catch (InterruptedException e) {
+                    interrupted = true; // The wait is bounded by one force; restore the flag once it is over
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Forces everything written so far and returns the new durable position
+    private long flush() {
+        flushLock.lock();
+        try {
+            long target = writtenPosition;
+            if (target > durablePosition) {
+                // Only segments holding records after the durable position can have dirty pages
+                Long first = segments.floorKey(durablePosition);
+                for (Segment segment : segments.subMap(first == null ? 0 : first, true, target, false).values()) {
+                    segment.force();
+                }
+                durablePosition = target;
+                flushed.signalAll();
+            }
+            return target;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Group commit: every record written while the previous force was running is forced by the next one
+    private void flushLoop() {
+        while (!closed) {
+            flush();
+            flushLock.lock();
+            try {
+                if (writtenPosition <= durablePosition) {
+                    flushRequested.awaitNanos(flushIntervalNanos);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    // Checkpoints on a fixed interval, so recovery never replays more than one interval of records
+    private void startCheckpointer(long checkpointIntervalMs) {
+        long intervalMs = Math.max(1, checkpointIntervalMs);
+        checkpointer = new Thread(() -> {
+            while (!closed) {
+                try {
+                    Thread.sleep(intervalMs);
+                    checkpoint();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    System.out.println("Warning: journal checkpoint failed: " + e.getMessage());
+                }
+            }
+        }, "journal-checkpointer");
+        checkpointer.setDaemon(true);
+        checkpointer.start();
+    }
+
+    // Maps a fresh segment starting at the current write position; the caller holds appendLock
+    private void rotate() {
+        long start = writtenPosition; // Positions run on from the end of the previous segment
+        Path file = directory.resolve(segmentName(start));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            Segment segment = new Segment(channel, segmentSize);
+            segments.put(start, segment);
+            active = segment.records;
+            activeStart = start;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create journal segment " + file, e);
+        }
+    }
+
+    // Rebuilds the outstanding tickets from the checkpoint and every intact record after it
+    private void recover(List<String> recovered) throws IOException {
+        Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpointFile)) {
+            checkpointPosition = readCheckpoint(checkpointFile, checkpointTickets);
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    long start = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                        segments.put(start, new Segment(channel, segmentSize));
+                    }
+                }
+            }
+        }
+
+        // Follow the chain of segments from the checkpoint to the last intact record; each segment starts
+        // where the previous one ended, so a segment that does not continue the chain follows a torn write
+        long end = checkpointPosition;
+        Map.Entry<Long, Segment> entry = segments.floorEntry(end);
+        while (entry != null) {
+            end = entry.getKey() + scan(entry.getValue().records, (int) (end - entry.getKey()));
+            active = entry.getValue().records;
+            activeStart = entry.getKey();
+            Map.Entry<Long, Segment> next = segments.higherEntry(entry.getKey());
+            entry = next != null && next.getKey() == end ? next : null;
+        }
+        for (Long start : new ArrayList<>(segments.tailMap(end, false).keySet())) {
+            segments.remove(start).unmap();
+            Files.deleteIfExists(directory.resolve(segmentName(start)));
+        }
+
+        Map<String, Integer> tickets = new LinkedHashMap<>(checkpointTickets);
+        replay(checkpointPosition, end, tickets);
+        for (Map.Entry<String, Integer> ticket : tickets.entrySet()) {
+            for (int i = 0; i < ticket.getValue(); i++) {
+                recovered.add(ticket.getKey());
+            }
+        }
+
+        writtenPosition = end;
+        durablePosition = end;
+        if (active != null) {
+            active.position((int) (end - activeStart));
+            active.putInt(active.position(), 0); // Cut off any torn record after the intact ones
+        }
+    }
+
+    // Returns the offset after the last intact record at or after the given offset
+    private int scan(ByteBuffer segment, int offset) {
+        CRC32 crc = new CRC32();
+        while (offset + HEADER_SIZE + 4 <= segmentSize) {
+            int length = recordLength(segment, offset);
+            if (length <= 0 || offset + HEADER_SIZE + length + 4 > segmentSize) {
+                break;
+            }
+            crc.reset();
+            crc.update(segment.get(offset + 8));
+            for (int i = 0; i < length; i++) {
+                crc.update(segment.get(offset + HEADER_SIZE + i));
+            }
+            if ((int) crc.getValue() != segment.getInt(offset + 4)) {
+                break;
+            }
+            offset += HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    private static int recordLength(ByteBuffer segment, int offset) {
+        return segment.getInt(offset);
+    }
+
+    // Applies every record in [from, to) to the given ticket counts
+    private void replay(long from, long to, Map<String, Integer> tickets) {
+        long position = from;
+        while (position < to) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+            ByteBuffer segment = entry.getValue().records;
+            int offset = (int) (position - entry.getKey());
+            int length = recordLength(segment, offset);
+            if (length <= 0) {
+                break; // Only reached if a record was cut off; the recovery scan stops at the same place
+            }
+            byte[] payload = new byte[length];
+            segment.get(offset + HEADER_SIZE, payload);
+            String ticket = new String(payload, StandardCharsets.UTF_8);
+            int delta = segment.get(offset + 8) == TYPE_ADD ? 1 : -1;
+            tickets.merge(ticket, delta, (count, change) -> count + change == 0 ? null : count + change);
+            position += HEADER_SIZE + length;
+        }
+    }
+
+    // Writes the checkpoint to a temporary file, forces it and renames it over the previous one
+    private void writeCheckpoint(long position) throws IOException {
+        Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            out.writeLong(position);
+            out.writeInt(checkpointTickets.size());
+            for (Map.Entry<String, Integer> ticket : checkpointTickets.entrySet()) {
+                byte[] text = ticket.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(text.length);
+                out.write(text);
+                out.writeInt(ticket.getValue());
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long readCheckpoint(Path file, Map<String, Integer> tickets) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            long position = in.readLong();
+            int entries = in.readInt();
+            for (int i = 0; i < entries; i++) {
+                byte[] text = new byte[in.readInt()];
+                in.readFully(text);
+                tickets.put(new String(text, StandardCharsets.UTF_8), in.readInt());
+            }
+            return position;
+        }
+    }
+
+    // Drops every segment that ends at or before the checkpoint, except the one being written
+    private void deleteSegmentsBefore(long position) {
+        List<Long> redundant = new ArrayList<>();
+        for (Map.Entry<Long, Segment> entry : segments.headMap(position, false).entrySet()) {
+            Long next = segments.higherKey(entry.getKey());
+            if (next != null && next <= position) {
+                redundant.add(entry.getKey());
+            }
+        }
+        for (Long start : redundant) {
+            segments.remove(start).unmap();
+            try {
+                Files.deleteIfExists(directory.resolve(segmentName(start)));
+            } catch (IOException e) {
+                System.out.println("Warning: cannot delete journal segment: " + e.getMessage());
+            }
+        }
+    }
+
+    private static String segmentName(long start) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX);
+    }
+
+    // One memory-mapped segment file. Records are read and written through a buffer view of the mapping, which
+    // is mapped in an arena of its own so that it is unmapped as soon as the segment is dropped, not when collected
+    private static final class Segment {
+        private final Arena arena;
+        private final MemorySegment mapping;
+        private final ByteBuffer records;
+
+        Segment(FileChannel channel, int size) throws IOException {
+            this.arena = Arena.ofShared();
+            try {
+                this.mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, size, arena);
+            } catch (IOException | RuntimeException e) {
+                arena.close();
+                throw e;
+            }
+            this.records = mapping.asByteBuffer();
+        }
+
+        void force() {
+            mapping.force();
+        }
+
+        // Any later access to the records fails rather than touching memory that is no longer mapped
+        void unmap() {
+            arena.close();
+        }
+    }
+}
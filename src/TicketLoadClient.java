@@ -0,0 +1,154 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Load client for TicketServer: each connection keeps a fixed number of requests in flight, alternating adds
+// and purchases, and the round trip of every request goes into a latency histogram. Without a host it starts a
+// loopback server for each SynchronizationMechanism in turn, so the mechanisms can be compared over the network.
+public class TicketLoadClient {
+    private static final int ID_MASK = (1 << 16) - 1; // Send times are kept by request ID modulo this
+
+    /**
+     * Usage: TicketLoadClient [connections] [depth] [seconds] [host port]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        long durationMs = TimeUnit.SECONDS.toMillis(args.length > 2 ? Integer.parseInt(args[2]) : 5);
+
+        if (args.length > 4) {
+            System.out.println(run(args[3], Integer.parseInt(args[4]), connections, depth, durationMs));
+            return;
+        }
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        for (SynchronizationMechanism mechanism : SynchronizationMechanism.values()) {
+            TicketPoolManager pool = new TicketPoolManager(10_000, mechanism);
+            for (int i = 0; i < 5_000; i++) {
+                pool.addTicket("Ticket-Load-" + i);
+            }
+            try (TicketServer server = new TicketServer(pool, new InetSocketAddress(loopback, 0))) {
+                Result result = run(loopback.getHostAddress(), server.getPort(), connections, depth, durationMs);
+                System.out.println(mechanism + ": " + result);
+            }
+            pool.close();
+        }
+    }
+
+    /**
+     * Runs the load against a server and returns the throughput and latency seen by the clients.
+     *
+     * @param connections the number of connections, each served by its own thread
+     * @param depth       the requests each connection keeps in flight
+     * @param durationMs  how long to send new requests for
+     */
+    public static Result run(String host, int port, int connections, int depth, long durationMs)
+            throws IOException, InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder requests = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        List<TicketClient> clients = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                clients.add(new TicketClient(host, port));
+            }
+            long start = System.nanoTime();
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMs);
+            for (int i = 0; i < connections; i++) {
+                TicketClient client = clients.get(i);
+                String prefix = "Ticket-" + i + "-";
+                Thread thread = new Thread(() -> {
+                    try {
+                        drive(client, prefix, depth, deadline, latency, requests, rejected);
+                    } catch (IOException e) {
+                        System.out.println("Warning: load connection failed: " + e.getMessage());
+                    }
+                }, "load-client-" + i);
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            return new Result(requests.sum(), rejected.sum(), System.nanoTime() - start, latency.snapshot());
+        } finally {
+            for (TicketClient client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    // Keeps depth requests in flight until the deadline, then waits for the last responses
+    private static void drive(TicketClient client, String prefix, int depth, long deadline, LatencyHistogram latency,
+                              LongAdder requests, LongAdder rejected) throws IOException {
+        long[] sentAt = new long[ID_MASK + 1];
+        int outstanding = 0;
+        int sent = 0;
+        while (outstanding < depth) {
+            sentAt[send(client, prefix, sent++) & ID_MASK] = System.nanoTime();
+            outstanding++;
+        }
+        client.flush();
+        while (outstanding > 0) {
+            TicketClient.Response response = client.receive();
+            long now = System.nanoTime();
+            outstanding--;
+            latency.record(now - sentAt[response.getRequestId() & ID_MASK]);
+            requests.increment();
+            if (response.getStatus() != TicketProtocol.OK) {
+                rejected.increment();
+            }
+            if (now - deadline < 0) {
+                sentAt[send(client, prefix, sent++) & ID_MASK] = now;
+                outstanding++;
+            }
+            if (!client.hasResponse()) {
+                client.flush(); // Requests queued behind the responses already read go out together
+            }
+        }
+    }
+
+    // Alternates adds and purchases that do not wait, so the pool stays near its starting fill
+    private static int send(TicketClient client, String prefix, int sequence) throws IOException {
+        return sequence % 2 == 0 ? client.sendAdd(prefix + sequence) : client.sendPurchase(1, 0);
+    }
+
+    // Throughput and round-trip latency of one run
+    public static final class Result {
+        private final long requests;
+        private final long rejected;
+        private final long elapsedNanos;
+        private final LatencyHistogram.Snapshot latency;
+
+        private Result(long requests, long rejected, long elapsedNanos, LatencyHistogram.Snapshot latency) {
+            this.requests = requests;
+            this.rejected = rejected;
+            this.elapsedNanos = elapsedNanos;
+            this.latency = latency;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        // Adds to a full pool and purchases from an empty one
+        public long getRejected() {
+            return rejected;
+        }
+
+        public double getRequestsPerSecond() {
+            return requests / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.0f req/s, %d rejected, round trip p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+                    getRequestsPerSecond(), rejected, latency.getPercentile(50) / 1000.0,
+                    latency.getPercentile(99) / 1000.0, latency.getPercentile(99.9) / 1000.0, latency.getMax() / 1000.0);
+        }
+    }
+}
@@ -1,3 +1,9 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 // Base interface for TicketPool implementations
 public interface TicketPool {
 
@@ -9,6 +15,43 @@ public interface TicketPool {
      */
     boolean addTicket(String ticketInfo);
 
+    /**
+     * Adds a ticket to the pool, waiting for a purchase to free a slot if the pool is full.
+     *
+     * @param ticketInfo the ticket information to add
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void putTicket(String ticketInfo) throws InterruptedException;
+
+    /**
+     * Adds a ticket to the pool, waiting up to the given timeout for a purchase to free a slot if the pool is full.
+     *
+     * @param ticketInfo the ticket information to add
+     * @param timeout    how long to wait before giving up
+     * @param unit       the unit of the timeout argument
+     * @return true if the ticket was added, false if the timeout elapsed first
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    boolean offerTicket(String ticketInfo, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Adds tickets to the pool in iteration order until the pool is full.
+     * Implementations should override this to add the whole batch under a single lock acquisition.
+     *
+     * @param ticketInfos the tickets to add
+     * @return the number of tickets accepted, always a prefix of the collection's iteration order
+     */
+    default int addTickets(Collection<String> ticketInfos) {
+        int added = 0;
+        for (String ticketInfo : ticketInfos) {
+            if (!addTicket(ticketInfo)) {
+                break;
+            }
+            added++;
+        }
+        return added;
+    }
+
     /**
      * Purchases (removes and returns) a ticket from the pool.
      * If no ticket is available, this method may block until one becomes available.
@@ -18,6 +61,186 @@ public interface TicketPool {
      */
     String purchaseTicket() throws InterruptedException;
 
+    /**
+     * Purchases a ticket from the pool, waiting up to the given timeout for one to become available.
+     *
+     * @param timeout how long to wait before giving up
+     * @param unit    the unit of the timeout argument
+     * @return the ticket that was purchased, or null if the timeout elapsed first
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    String purchaseTicket(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Purchases a ticket only if one is available at the time of the call.
+     *
+     * @return the ticket that was purchased, or null if the pool is empty
+     */
+    String tryPurchase();
+
+    /**
+     * Purchases a ticket without blocking the caller. The returned future completes as soon as a ticket
+     * is available; purchases that have to wait are served in the order they were made.
+     * Cancelling the future withdraws the purchase without losing any ticket.
+     *
+     * @return a future completed with the ticket that was purchased
+     */
+    CompletableFuture<String> purchaseTicketAsync();
+
+    /**
+     * Purchases a ticket without blocking the caller, giving up after the given timeout.
+     * On timeout the future completes exceptionally with a {@code TimeoutException}.
+     *
+     * @param timeout how long to wait before giving up
+     * @param unit    the unit of the timeout argument
+     * @return a future completed with the ticket that was purchased
+     */
+    default CompletableFuture<String> purchaseTicketAsync(long timeout, TimeUnit unit) {
+        return purchaseTicketAsync().orTimeout(timeout, unit);
+    }
+
+    /**
+     * Purchases up to {@code maxTickets} tickets, waiting until at least one is available and then
+     * draining whatever else is immediately available, in the manner of {@code BlockingQueue.drainTo}.
+     * Implementations should override this to drain the batch under a single lock acquisition.
+     *
+     * @param maxTickets the maximum number of tickets to purchase
+     * @param purchased  the collection the purchased tickets are added to, in pool order
+     * @return the number of tickets purchased
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    default int purchaseTickets(int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        if (maxTickets <= 0) {
+            return 0;
+        }
+        purchased.add(purchaseTicket());
+        int count = 1;
+        String ticket;
+        while (count < maxTickets && (ticket = tryPurchase()) != null) {
+            purchased.add(ticket);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Adds a ticket of the given tier, which buyers of that tier or a higher one may purchase.
+     * Pools without tiers ignore the tier and add the ticket like {@link #addTicket(String)}.
+     *
+     * @param ticketInfo the ticket information to add
+     * @param tier       the tier of the ticket
+     * @return true if the ticket was successfully added, false if the pool is full
+     */
+    default boolean addTicket(String ticketInfo, TicketTier tier) {
+        return addTicket(ticketInfo);
+    }
+
+    /**
+     * Adds a batch of tickets of the given tier until the pool is full.
+     * Pools without tiers ignore the tier.
+     *
+     * @param ticketInfos the tickets to add
+     * @param tier        the tier of the tickets
+     * @return the number of tickets accepted, always a prefix of the collection's iteration order
+     */
+    default int addTickets(Collection<String> ticketInfos, TicketTier tier) {
+        return addTickets(ticketInfos);
+    }
+
+    /**
+     * Adds the ticket with the given numeric ID from {@link TicketIds}, which stands for the ticket's text form.
+     * Pools that keep tickets as text build it here; pools with a compact record format store the ID as it is.
+     *
+     * @param ticketId the ticket's numeric ID
+     * @param tier     the tier of the ticket
+     * @return true if the ticket was successfully added, false if the pool is full
+     */
+    default boolean addTicket(long ticketId, TicketTier tier) {
+        return addTicket(TicketIds.format(ticketId), tier);
+    }
+
+    /**
+     * Adds count tickets by numeric ID, starting at offset in the array, until the pool is full.
+     * Pools that keep tickets as text build it here and add the batch as a list.
+     *
+     * @param ticketIds the tickets' numeric IDs
+     * @param offset    the index of the first ticket to add
+     * @param count     the number of tickets to add
+     * @param tier      the tier of the tickets
+     * @return the number of tickets accepted, always the first ones
+     */
+    default int addTickets(long[] ticketIds, int offset, int count, TicketTier tier) {
+        List<String> ticketInfos = new ArrayList<>(count);
+        for (int i = offset; i < offset + count; i++) {
+            ticketInfos.add(TicketIds.format(ticketIds[i]));
+        }
+        return addTickets(ticketInfos, tier);
+    }
+
+    /**
+     * Adds a ticket of the given tier, waiting up to the given timeout for a free slot.
+     * Pools without tiers ignore the tier.
+     *
+     * @param ticketInfo the ticket information to add
+     * @param tier       the tier of the ticket
+     * @param timeout    how long to wait before giving up
+     * @param unit       the unit of the timeout argument
+     * @return true if the ticket was added, false if the timeout elapsed first
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    default boolean offerTicket(String ticketInfo, TicketTier tier, long timeout, TimeUnit unit) throws InterruptedException {
+        return offerTicket(ticketInfo, timeout, unit);
+    }
+
+    /**
+     * Purchases a ticket on behalf of a buyer of the given tier, waiting until one the buyer may purchase
+     * is available. Pools without tiers ignore the tier and sell any ticket.
+     *
+     * @param tier the tier of the buyer
+     * @return the ticket that was purchased
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    default String purchaseTicket(TicketTier tier) throws InterruptedException {
+        return purchaseTicket();
+    }
+
+    /**
+     * Purchases a ticket on behalf of a buyer of the given tier only if one it may purchase is available now.
+     * Pools without tiers ignore the tier.
+     *
+     * @param tier the tier of the buyer
+     * @return the ticket that was purchased, or null if there is none
+     */
+    default String tryPurchase(TicketTier tier) {
+        return tryPurchase();
+    }
+
+    /**
+     * Purchases a ticket on behalf of a buyer of the given tier without blocking the caller, in the manner of
+     * {@link #purchaseTicketAsync()}. Pools without tiers ignore the tier. A pool that can only hold pending
+     * purchases for its top tier returns null for other buyers, who should retry with {@link #tryPurchase(TicketTier)}.
+     *
+     * @param tier the tier of the buyer
+     * @return a future completed with the ticket that was purchased, or null if the buyer cannot wait here
+     */
+    default CompletableFuture<String> purchaseTicketAsync(TicketTier tier) {
+        return purchaseTicketAsync();
+    }
+
+    /**
+     * Purchases up to {@code maxTickets} tickets on behalf of a buyer of the given tier, in the manner of
+     * {@link #purchaseTickets(int, Collection)}. Pools without tiers ignore the tier.
+     *
+     * @param tier       the tier of the buyer
+     * @param maxTickets the maximum number of tickets to purchase
+     * @param purchased  the collection the purchased tickets are added to
+     * @return the number of tickets purchased
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    default int purchaseTickets(TicketTier tier, int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        return purchaseTickets(maxTickets, purchased);
+    }
+
     /**
      * Gets the number of available tickets in the pool.
      *
@@ -33,6 +256,66 @@ public interface TicketPool {
      */
     String viewTicketInfo(int index);
 
+    /**
+     * Looks up a ticket by its ID through the pool's hash index, without walking the pool.
+     * A ticket's ID is its ticket information; if the same ID is in the pool more than once,
+     * lookup and removal act on one of the copies.
+     *
+     * @param ticketId the ID of the ticket to find
+     * @return the ticket info if the ticket is in the pool, or null otherwise
+     */
+    String findTicket(String ticketId);
+
+    /**
+     * Withdraws a ticket by its ID in constant time, leaving the remaining tickets in their purchase order.
+     * Exactly one of a removal and a concurrent purchase of the same ticket succeeds.
+     *
+     * @param ticketId the ID of the ticket to remove
+     * @return true if the ticket was in the pool and has been removed
+     */
+    boolean removeTicket(String ticketId);
+
+    /**
+     * Takes the next ticket out of sale for a limited time, for example while its buyer checks out.
+     * A held ticket is not available to other buyers but still counts against the pool's capacity.
+     * Confirming the hold completes the purchase; releasing it, or letting it expire, puts the ticket back on sale.
+     *
+     * @param ttl  how long the hold lasts before it expires
+     * @param unit the unit of the ttl argument
+     * @return the hold, or null if the pool is empty
+     */
+    TicketHold holdTicket(long ttl, TimeUnit unit);
+
+    /**
+     * Completes the purchase of a held ticket, freeing its slot.
+     *
+     * @param hold the hold to confirm
+     * @return true if the ticket is now sold, false if the hold had already been released or had expired
+     */
+    default boolean confirm(TicketHold hold) {
+        return hold.confirm();
+    }
+
+    /**
+     * Gives up a held ticket, putting it back on sale.
+     *
+     * @param hold the hold to release
+     * @return true if the ticket went back on sale, false if the hold had already been confirmed or had expired
+     */
+    default boolean release(TicketHold hold) {
+        return hold.release();
+    }
+
+    /**
+     * Takes an immutable view of the pool: the number of available tickets and the first tickets in
+     * purchase order, read at the same version. Implementations should take the snapshot without
+     * holding up producers and consumers, so frequent readers do not slow down sales.
+     *
+     * @param maxTickets the maximum number of tickets to copy from the head of the pool
+     * @return the snapshot
+     */
+    PoolSnapshot snapshot(int maxTickets);
+
     /**
      * Switches the internal synchronization mechanism used by the ticket pool.
      * This is useful for testing different concurrency control strategies.
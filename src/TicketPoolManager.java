@@ -1,7 +1,46 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
 // Main TicketPool implementation with capability to switch between synchronization strategies
 public class TicketPoolManager implements TicketPool{
-    private TicketPool currentImplementation;
+    // Handed to consumers still blocked in a retired implementation so they retry on the new one.
+    // Compared with equals() because some implementations store a copy of the ticket text.
+    private static final String RETIRED_MARKER = "\u0000retired-implementation\u0000";
+
+    private static final int JOURNAL_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final long JOURNAL_FLUSH_INTERVAL_MS = 10;
+    private static final long JOURNAL_CHECKPOINT_INTERVAL_MS = 30_000;
+
+    private volatile Generation current;
+    private final TicketJournal journal; // Null when the pool is kept in memory only
+    private final Map<SynchronizationMechanism, PoolStatistics> statistics;
     private int capacity;
+    private boolean fairLocking;
+    private TierSelection tierSelection = TierSelection.WEIGHTED;
+    private volatile long lastSwitchPauseNanos;
+    private volatile int lastMigratedTickets;
+    private final AtomicInteger heldTickets = new AtomicInteger(); // Changed only inside the gate
+    private volatile AutoTuner autoTuner; // Null unless the AUTO mechanism is selected
+    private long autoTuningIntervalMs = 1000;
+    private boolean statisticsEnabledForTuning;
+    private final HoldSettler heldSlots = new HeldSlots();
 
     /**
      * Constructs a TicketPoolManager with the specified ticket pool capacity.
@@ -10,9 +49,83 @@ public class TicketPoolManager implements TicketPool{
      * @param capacity the maximum number of tickets allowed in the pool
      */
     public TicketPoolManager(int capacity) {
-        this.capacity = capacity;
         // Default to synchronized implementation
-        this.currentImplementation = new SynchronizedTicketPool(capacity);
+        this(capacity, SynchronizationMechanism.SYNCHRONIZED);
+    }
+
+    /**
+     * Constructs a TicketPoolManager that starts on the given synchronization mechanism, so no switch
+     * and migration is needed to get there. AUTO starts on the synchronized implementation with the
+     * auto-tuner running.
+     *
+     * @param capacity  the maximum number of tickets allowed in the pool
+     * @param mechanism the synchronization mechanism to start with
+     */
+    public TicketPoolManager(int capacity, SynchronizationMechanism mechanism) {
+        this.capacity = capacity;
+        this.journal = null;
+        this.statistics = new EnumMap<>(SynchronizationMechanism.class);
+        for (SynchronizationMechanism each : SynchronizationMechanism.values()) {
+            statistics.put(each, new PoolStatistics(each));
+        }
+        SynchronizationMechanism initial = mechanism == SynchronizationMechanism.AUTO
+                ? SynchronizationMechanism.SYNCHRONIZED : mechanism;
+        this.current = newGeneration(initial, createImplementation(initial));
+        if (mechanism == SynchronizationMechanism.AUTO) {
+            startAutoTuning();
+        }
+    }
+
+    /**
+     * Constructs a TicketPoolManager whose adds and purchases are recorded in a journal in the given directory,
+     * using 64 MB segments, a 10 ms flush interval and a checkpoint every 30 seconds.
+     * Unsold tickets left in the journal by a previous run are restored into the pool.
+     *
+     * @param capacity         the maximum number of tickets allowed in the pool
+     * @param journalDirectory where the journal segments and checkpoint are kept
+     * @param syncCommit       true to make every add and purchase wait until it is on disk, false to accept
+     *                         losing at most one flush interval of changes on a crash
+     * @throws IOException if the journal cannot be opened or recovered
+     */
+    public TicketPoolManager(int capacity, Path journalDirectory, boolean syncCommit) throws IOException {
+        this(capacity, journalDirectory, JOURNAL_SEGMENT_SIZE, JOURNAL_FLUSH_INTERVAL_MS,
+                JOURNAL_CHECKPOINT_INTERVAL_MS, syncCommit);
+    }
+
+    /**
+     * Constructs a TicketPoolManager backed by a journal with the given segment size and intervals.
+     * Recovery time is bounded by the checkpoint interval rather than by the journal's total history.
+     *
+     * @param capacity             the maximum number of tickets allowed in the pool
+     * @param journalDirectory     where the journal segments and checkpoint are kept
+     * @param segmentSize          the size in bytes of each memory-mapped journal segment
+     * @param flushIntervalMs      the longest time a change stays in memory before it is forced to disk
+     * @param checkpointIntervalMs how often the journal is folded into a checkpoint
+     * @param syncCommit           true to make every add and purchase wait until it is on disk
+     * @throws IOException if the journal cannot be opened or recovered
+     */
+    public TicketPoolManager(int capacity, Path journalDirectory, int segmentSize, long flushIntervalMs,
+                             long checkpointIntervalMs, boolean syncCommit) throws IOException {
+        this.capacity = capacity;
+        this.statistics = new EnumMap<>(SynchronizationMechanism.class);
+        for (SynchronizationMechanism mechanism : SynchronizationMechanism.values()) {
+            statistics.put(mechanism, new PoolStatistics(mechanism));
+        }
+        this.current = newGeneration(SynchronizationMechanism.SYNCHRONIZED, new SynchronizedTicketPool(capacity));
+
+        List<String> recovered = new ArrayList<>();
+        this.journal = TicketJournal.open(journalDirectory, segmentSize, flushIntervalMs, checkpointIntervalMs,
+                syncCommit, recovered);
+        int restored = current.implementation.addTickets(recovered);
+        if (restored < recovered.size()) {
+            // Journal them as sold so they do not come back on every restart
+            List<String> discarded = recovered.subList(restored, recovered.size());
+            journal.recordPurchases(discarded);
+            System.out.println("Warning: " + discarded.size() + " recovered tickets did not fit the pool and were discarded");
+        }
+        if (!recovered.isEmpty()) {
+            System.out.println("Recovered " + restored + " tickets from the journal in " + journalDirectory);
+        }
     }
 
     /**
@@ -23,18 +136,346 @@ public class TicketPoolManager implements TicketPool{
      */
     @Override
     public boolean addTicket(String ticketInfo) {
-        return currentImplementation.addTicket(ticketInfo);
+        return addTicket(ticketInfo, TicketTier.GENERAL);
+    }
+
+    /**
+     * Adds a ticket of the given tier to the current ticket pool implementation.
+     * Implementations without tiers ignore the tier.
+     *
+     * @param ticketInfo the ticket information to add
+     * @param tier       the tier of the ticket
+     * @return true if the ticket was successfully added, false if the pool is full
+     */
+    @Override
+    public boolean addTicket(String ticketInfo, TicketTier tier) {
+        boolean added;
+        Deliveries deliveries = deferDeliveries();
+        try {
+            Generation generation = enter();
+            try {
+                added = generation.pool.addTicket(ticketInfo, tier);
+            } finally {
+                generation.exit();
+            }
+            if (added && journal != null) {
+                journal.recordAdd(ticketInfo);
+            }
+        } finally {
+            runDeliveries(deliveries);
+        }
+        return added;
+    }
+
+    /**
+     * Adds a batch of tickets to the current ticket pool implementation.
+     *
+     * @param ticketInfos the tickets to add
+     * @return the number of tickets accepted
+     */
+    @Override
+    public int addTickets(Collection<String> ticketInfos) {
+        return addTickets(ticketInfos, TicketTier.GENERAL);
+    }
+
+    /**
+     * Adds a batch of tickets of the given tier to the current ticket pool implementation.
+     *
+     * @param ticketInfos the tickets to add
+     * @param tier        the tier of the tickets
+     * @return the number of tickets accepted
+     */
+    @Override
+    public int addTickets(Collection<String> ticketInfos, TicketTier tier) {
+        int added;
+        Deliveries deliveries = deferDeliveries();
+        try {
+            Generation generation = enter();
+            try {
+                added = generation.pool.addTickets(ticketInfos, tier);
+            } finally {
+                generation.exit();
+            }
+            if (added > 0 && journal != null) {
+                journal.recordAdds(ticketInfos, added);
+            }
+        } finally {
+            runDeliveries(deliveries);
+        }
+        return added;
+    }
+
+    /**
+     * Adds a ticket by numeric ID to the current implementation, which stores the ID as it is if it can.
+     * Only a journaled pool builds the ticket's text here, to record it.
+     *
+     * @param ticketId the ticket's numeric ID from {@link TicketIds}
+     * @param tier     the tier of the ticket
+     * @return true if the ticket was successfully added, false if the pool is full
+     */
+    @Override
+    public boolean addTicket(long ticketId, TicketTier tier) {
+        boolean added;
+        Deliveries deliveries = deferDeliveries();
+        try {
+            Generation generation = enter();
+            try {
+                added = generation.pool.addTicket(ticketId, tier);
+            } finally {
+                generation.exit();
+            }
+            if (added && journal != null) {
+                journal.recordAdd(TicketIds.format(ticketId));
+            }
+        } finally {
+            runDeliveries(deliveries);
+        }
+        return added;
+    }
+
+    /**
+     * Adds a batch of tickets by numeric ID to the current implementation.
+     *
+     * @param ticketIds the tickets' numeric IDs
+     * @param offset    the index of the first ticket to add
+     * @param count     the number of tickets to add
+     * @param tier      the tier of the tickets
+     * @return the number of tickets accepted, always the first ones
+     */
+    @Override
+    public int addTickets(long[] ticketIds, int offset, int count, TicketTier tier) {
+        int added;
+        Deliveries deliveries = deferDeliveries();
+        try {
+            Generation generation = enter();
+            try {
+                added = generation.pool.addTickets(ticketIds, offset, count, tier);
+            } finally {
+                generation.exit();
+            }
+            if (added > 0 && journal != null) {
+                List<String> ticketInfos = new ArrayList<>(added);
+                for (int i = offset; i < offset + added; i++) {
+                    ticketInfos.add(TicketIds.format(ticketIds[i]));
+                }
+                journal.recordAdds(ticketInfos, added);
+            }
+        } finally {
+            runDeliveries(deliveries);
+        }
+        return added;
+    }
+
+    /**
+     * Adds a ticket to the current implementation, waiting for a purchase to free a slot if it is full.
+     * If the implementation is switched while waiting, the wait continues on the new implementation.
+     *
+     * @param ticketInfo the ticket information to add
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    @Override
+    public void putTicket(String ticketInfo) throws InterruptedException {
+        offer(ticketInfo, TicketTier.GENERAL, false, 0);
+        if (journal != null) {
+            journal.recordAdd(ticketInfo);
+        }
+    }
+
+    /**
+     * Adds a ticket to the current implementation, waiting up to the given timeout for a free slot.
+     * If the implementation is switched while waiting, the wait continues on the new implementation.
+     *
+     * @param ticketInfo the ticket information to add
+     * @param timeout    how long to wait before giving up
+     * @param unit       the unit of the timeout argument
+     * @return true if the ticket was added, false if the timeout elapsed first
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    @Override
+    public boolean offerTicket(String ticketInfo, long timeout, TimeUnit unit) throws InterruptedException {
+        return offerTicket(ticketInfo, TicketTier.GENERAL, timeout, unit);
+    }
+
+    /**
+     * Adds a ticket of the given tier to the current implementation, waiting up to the given timeout for a free slot.
+     *
+     * @param ticketInfo the ticket information to add
+     * @param tier       the tier of the ticket
+     * @param timeout    how long to wait before giving up
+     * @param unit       the unit of the timeout argument
+     * @return true if the ticket was added, false if the timeout elapsed first
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    @Override
+    public boolean offerTicket(String ticketInfo, TicketTier tier, long timeout, TimeUnit unit) throws InterruptedException {
+        boolean added = offer(ticketInfo, tier, true, System.nanoTime() + unit.toNanos(timeout));
+        if (added && journal != null) {
+            journal.recordAdd(ticketInfo);
+        }
+        return added;
     }
 
     /**
      * Purchases a ticket from the current ticket pool implementation.
+     * If the implementation is switched while waiting, the wait continues on the new implementation.
      *
      * @return the ticket information that was purchased
      * @throws InterruptedException if the thread is interrupted while waiting
      */
     @Override
     public String purchaseTicket() throws InterruptedException {
-        return currentImplementation.purchaseTicket();
+        return purchaseTicket(TicketTier.PRESALE);
+    }
+
+    /**
+     * Purchases a ticket on behalf of a buyer of the given tier from the current implementation.
+     * An untiered purchase is a presale buyer's, which may purchase tickets of every tier.
+     *
+     * @param tier the tier of the buyer
+     * @return the ticket information that was purchased
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    @Override
+    public String purchaseTicket(TicketTier tier) throws InterruptedException {
+        while (true) {
+            Generation generation = enterBlocking();
+            String ticket;
+            try {
+                ticket = generation.pool.purchaseTicket(tier);
+            } finally {
+                generation.blockedConsumers.decrementAndGet();
+            }
+            if (!RETIRED_MARKER.equals(ticket)) {
+                return journalPurchase(ticket);
+            }
+        }
+    }
+
+    /**
+     * Purchases a ticket from the current implementation, waiting up to the given timeout.
+     *
+     * @param timeout how long to wait before giving up
+     * @param unit    the unit of the timeout argument
+     * @return the ticket information that was purchased, or null if the timeout elapsed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    @Override
+    public String purchaseTicket(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            Generation generation = enterBlocking();
+            String ticket;
+            try {
+                ticket = generation.pool.purchaseTicket(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } finally {
+                generation.blockedConsumers.decrementAndGet();
+            }
+            if (!RETIRED_MARKER.equals(ticket)) {
+                return journalPurchase(ticket);
+            }
+        }
+    }
+
+    /**
+     * Purchases a ticket from the current implementation only if one is available now.
+     *
+     * @return the ticket information that was purchased, or null if the pool is empty
+     */
+    @Override
+    public String tryPurchase() {
+        return tryPurchase(TicketTier.PRESALE);
+    }
+
+    /**
+     * Purchases a ticket on behalf of a buyer of the given tier only if one it may purchase is available now.
+     *
+     * @param tier the tier of the buyer
+     * @return the ticket information that was purchased, or null if there is none
+     */
+    @Override
+    public String tryPurchase(TicketTier tier) {
+        String ticket;
+        Generation generation = enter();
+        try {
+            ticket = generation.pool.tryPurchase(tier);
+        } finally {
+            generation.exit();
+        }
+        return journalPurchase(ticket);
+    }
+
+    /**
+     * Purchases a ticket asynchronously from the current implementation.
+     * If the implementation is switched while the purchase is pending, it is placed again on the new one.
+     * The future is completed only once the add that supplied the ticket has left the gate, so its dependent
+     * stages may call the manager again, even while a switch is under way.
+     *
+     * @return a future completed with the ticket that was purchased
+     */
+    @Override
+    public CompletableFuture<String> purchaseTicketAsync() {
+        TicketPurchase purchase = new TicketPurchase();
+        forwardPurchase(purchase);
+        return purchase;
+    }
+
+    /**
+     * Purchases a ticket asynchronously on behalf of a buyer of the given tier. Pending purchases are placed
+     * again as top-tier purchases when the implementation is switched, so on a tiered pool only top-tier
+     * buyers may wait.
+     *
+     * @param tier the tier of the buyer
+     * @return a future completed with the ticket that was purchased, or null if the buyer cannot wait here
+     */
+    @Override
+    public CompletableFuture<String> purchaseTicketAsync(TicketTier tier) {
+        if (tier != TicketTier.PRESALE && getCurrentMechanism() == SynchronizationMechanism.TIERED) {
+            return null;
+        }
+        return purchaseTicketAsync();
+    }
+
+    /**
+     * Purchases up to maxTickets tickets from the current implementation in a single drain.
+     *
+     * @param maxTickets the maximum number of tickets to purchase
+     * @param purchased  the collection the purchased tickets are added to
+     * @return the number of tickets purchased
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    @Override
+    public int purchaseTickets(int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        return purchaseTickets(TicketTier.PRESALE, maxTickets, purchased);
+    }
+
+    /**
+     * Purchases up to maxTickets tickets on behalf of a buyer of the given tier in a single drain.
+     *
+     * @param tier       the tier of the buyer
+     * @param maxTickets the maximum number of tickets to purchase
+     * @param purchased  the collection the purchased tickets are added to
+     * @return the number of tickets purchased
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    @Override
+    public int purchaseTickets(TicketTier tier, int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        List<String> batch = new ArrayList<>(Math.min(Math.max(maxTickets, 0), 1024));
+        while (true) {
+            Generation generation = enterBlocking();
+            try {
+                generation.pool.purchaseTickets(tier, maxTickets, batch);
+            } finally {
+                generation.blockedConsumers.decrementAndGet();
+            }
+            batch.removeIf(RETIRED_MARKER::equals);
+            if (!batch.isEmpty() || maxTickets <= 0) {
+                if (journal != null) {
+                    journal.recordPurchases(batch);
+                }
+                purchased.addAll(batch);
+                return batch.size();
+            }
+        }
     }
 
     /**
@@ -44,7 +485,12 @@ public class TicketPoolManager implements TicketPool{
      */
     @Override
     public int getAvailableTickets() {
-        return currentImplementation.getAvailableTickets();
+        Generation generation = enter();
+        try {
+            return generation.pool.getAvailableTickets();
+        } finally {
+            generation.exit();
+        }
     }
 
     /**
@@ -55,36 +501,647 @@ public class TicketPoolManager implements TicketPool{
      */
     @Override
     public String viewTicketInfo(int index) {
-        return currentImplementation.viewTicketInfo(index);
+        Generation generation = enter();
+        try {
+            return generation.pool.viewTicketInfo(index);
+        } finally {
+            generation.exit();
+        }
+    }
+
+    /**
+     * Looks the ticket up in the current implementation's index.
+     */
+    @Override
+    public String findTicket(String ticketId) {
+        Generation generation = enter();
+        try {
+            return generation.pool.findTicket(ticketId);
+        } finally {
+            generation.exit();
+        }
+    }
+
+    /**
+     * Removes the ticket from the current implementation. Tickets migrated by a switch keep their IDs,
+     * so a ticket can be removed whichever implementation holds it.
+     */
+    @Override
+    public boolean removeTicket(String ticketId) {
+        boolean removed;
+        Generation generation = enter();
+        try {
+            removed = generation.pool.removeTicket(ticketId);
+        } finally {
+            generation.exit();
+        }
+        if (removed) {
+            journalPurchase(ticketId); // A withdrawn ticket leaves the pool just as a sold one does
+        }
+        return removed;
+    }
+
+    /**
+     * Holds the next ticket of the current implementation. The hold is settled on whichever implementation is
+     * current when it is confirmed, released or expires, since a switch carries held slots across.
+     * A held ticket is journaled only once it is sold, so after a crash it is recovered as available.
+     */
+    @Override
+    public TicketHold holdTicket(long ttl, TimeUnit unit) {
+        String ticket;
+        Generation generation = enter();
+        try {
+            ticket = ((HeldTickets) generation.pool).takeHeld();
+            if (ticket != null) {
+                heldTickets.incrementAndGet();
+            }
+        } finally {
+            generation.exit();
+        }
+        return ticket == null ? null : TicketHold.start(heldSlots, ticket, ttl, unit);
     }
 
     /**
-     * Switches the synchronization mechanism used by the ticket pool.
-     * This does not transfer existing tickets between implementations.
+     * Returns the maximum number of tickets the pool can hold.
+     *
+     * @return the pool capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of tickets currently on hold.
+     *
+     * @return the number of holds not yet confirmed, released or expired
+     */
+    public int getHeldTickets() {
+        return heldTickets.get();
+    }
+
+    /**
+     * Takes a snapshot of the current implementation's contents without holding up its producers and consumers.
+     * Versions restart when the implementation is switched.
+     *
+     * @param maxTickets the maximum number of tickets to copy from the head of the pool
+     * @return the snapshot
+     */
+    @Override
+    public PoolSnapshot snapshot(int maxTickets) {
+        Generation generation = enter();
+        try {
+            return generation.pool.snapshot(maxTickets);
+        } finally {
+            generation.exit();
+        }
+    }
+
+    /**
+     * Switches the synchronization mechanism used by the ticket pool as a hot migration.
+     * New calls are held at the gate while in-flight calls finish, the remaining tickets are
+     * moved into the new implementation in purchase order, and producers and consumers still blocked
+     * in the old implementation are woken and redirected. Callers are paused only for the drain itself.
+     * AUTO keeps the current implementation and lets the auto-tuner switch from then on; choosing any other
+     * mechanism turns the auto-tuner off again.
      *
      * @param mechanism the new synchronization mechanism to use
      */
     @Override
-    public void switchSynchronizationMechanism(SynchronizationMechanism mechanism) {
-        // Store reference to the old implementation (optional for future transfer logic)
-        TicketPool oldImplementation = currentImplementation;
+    public synchronized void switchSynchronizationMechanism(SynchronizationMechanism mechanism) {
+        if (mechanism == SynchronizationMechanism.AUTO) {
+            startAutoTuning();
+            return;
+        }
+        stopAutoTuning();
+        migrateTo(mechanism);
+    }
+
+    // Performs a switch chosen by the given auto-tuner, unless AUTO has been turned off since it decided
+    synchronized boolean switchForTuner(AutoTuner tuner, SynchronizationMechanism mechanism) {
+        if (autoTuner != tuner) {
+            return false;
+        }
+        migrateTo(mechanism);
+        return true;
+    }
+
+    // The hot migration itself; called with the manager's monitor held
+    private void migrateTo(SynchronizationMechanism mechanism) {
+        TicketPool replacement = createImplementation(mechanism);
+        Generation previous = current;
+        long start = System.nanoTime();
+
+        // Close the gate on the old implementation and let in-flight calls drain out
+        previous.retiring = true;
+        while (previous.activeCalls.sum() != 0) {
+            Thread.onSpinWait();
+        }
+
+        // Producers waiting for space must leave before the drain frees any, or their tickets would be stranded
+        redirectBlockedProducers(previous);
+
+        // Held tickets keep their slots in the new implementation
+        int held = heldTickets.get();
+        int adopted = ((HeldTickets) replacement).adoptHeld(held);
+
+        // Move the remaining tickets across in the order they would have been purchased
+        List<String> migrated = new ArrayList<>();
+        String ticket;
+        while ((ticket = previous.implementation.tryPurchase()) != null) {
+            migrated.add(ticket);
+        }
+        int accepted = replacement.addTickets(migrated);
+
+        current = newGeneration(mechanism, replacement);
+        previous.retired.countDown();
+        lastSwitchPauseNanos = System.nanoTime() - start;
+        lastMigratedTickets = accepted;
+
+        // Pending asynchronous purchases are withdrawn from the old implementation and placed again on the new one,
+        // oldest first so they keep their place in line
+        List<Map.Entry<CompletableFuture<String>, Long>> pending = new ArrayList<>(previous.asyncPurchases.entrySet());
+        pending.sort(Map.Entry.comparingByValue());
+        for (Map.Entry<CompletableFuture<String>, Long> purchase : pending) {
+            purchase.getKey().cancel(false);
+        }
+
+        releaseBlockedConsumers(previous);
+
+        System.out.println("Switched to " + mechanism + " implementation (migrated " + accepted
+                + " tickets, paused " + lastSwitchPauseNanos / 1000 + " us)");
+        if (accepted < migrated.size()) {
+            System.out.println("Warning: " + (migrated.size() - accepted) + " tickets did not fit the new implementation");
+        }
+        if (adopted < held) {
+            System.out.println("Warning: " + (held - adopted) + " held tickets did not fit the new implementation");
+        }
+    }
+
+    /**
+     * Describes the journal: how far it has been written, forced to disk and checkpointed.
+     *
+     * @return a one-line summary, or "off" if the pool is kept in memory only
+     */
+    public String getJournalState() {
+        if (journal == null) {
+            return "off";
+        }
+        return (journal.isSyncCommit() ? "sync" : "async") + " commit, written " + journal.getWrittenPosition()
+                + " B, durable " + journal.getDurablePosition() + " B, checkpoint at " + journal.getCheckpointPosition()
+                + " B, " + journal.getSegmentCount() + " segments";
+    }
+
+    /**
+     * Stops the auto-tuner if AUTO is selected, then forces every journaled change to disk and writes a final
+     * checkpoint. The pool must not be used afterwards if it has a journal.
+     *
+     * @throws IOException if the final checkpoint cannot be written
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            stopAutoTuning();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Chooses whether lock-based implementations created by later switches use fair locks.
+     * Fair locks serve waiting threads in arrival order; unfair locks favour throughput.
+     *
+     * @param fair true to use fair locking, false for the default unfair mode
+     */
+    public void setFairLocking(boolean fair) {
+        this.fairLocking = fair;
+    }
+
+    /**
+     * Chooses how tiered implementations created by later switches share tickets between waiting buyer tiers.
+     *
+     * @param selection strict priority, or the default weighted sharing
+     */
+    public void setTierSelection(TierSelection selection) {
+        this.tierSelection = selection;
+    }
+
+    /**
+     * Sets how often an auto-tuner started by a later switch to AUTO samples the pool.
+     *
+     * @param millis the sampling interval in milliseconds
+     */
+    public void setAutoTuningInterval(long millis) {
+        this.autoTuningIntervalMs = millis;
+    }
+
+    /**
+     * Returns whether the AUTO mechanism is selected, so the implementation is chosen by the auto-tuner.
+     *
+     * @return true while auto-tuning
+     */
+    public boolean isAutoTuning() {
+        return autoTuner != null;
+    }
+
+    /**
+     * Returns the auto-tuner's most recent decisions, oldest first, each with its time, outcome and reason.
+     *
+     * @return the decisions, or an empty list if AUTO is not selected
+     */
+    public List<String> getAutoTuningDecisions() {
+        AutoTuner tuner = autoTuner;
+        return tuner != null ? tuner.getDecisions() : Collections.emptyList();
+    }
+
+    /**
+     * Returns the synchronization mechanism of the implementation currently serving calls.
+     * While auto-tuning this is the mechanism the auto-tuner has chosen, never AUTO itself.
+     *
+     * @return the current synchronization mechanism
+     */
+    public SynchronizationMechanism getCurrentMechanism() {
+        return current.mechanism;
+    }
+
+    /**
+     * Returns how long callers were held at the gate during the most recent switch.
+     *
+     * @return the pause length in nanoseconds, or 0 if no switch has happened
+     */
+    public long getLastSwitchPauseNanos() {
+        return lastSwitchPauseNanos;
+    }
 
-        // You could potentially transfer tickets here if needed
-        int currentSize = oldImplementation.getAvailableTickets();
+    /**
+     * Returns how many tickets the most recent switch moved into the new implementation.
+     *
+     * @return the number of migrated tickets, or 0 if no switch has happened
+     */
+    public int getLastMigratedTickets() {
+        return lastMigratedTickets;
+    }
 
-        // Create a new pool instance based on the selected synchronization mechanism
+    /**
+     * Turns latency and event recording on or off for every mechanism.
+     * While disabled, each call pays only for one volatile read in the instrumentation layer.
+     *
+     * @param enabled true to start recording, false to stop
+     */
+    public void setStatisticsEnabled(boolean enabled) {
+        enableStatistics(enabled);
+    }
+
+    /**
+     * Returns whether latency and event recording is currently on.
+     *
+     * @return true if statistics are being recorded
+     */
+    public boolean isStatisticsEnabled() {
+        return statistics.get(SynchronizationMechanism.SYNCHRONIZED).isEnabled();
+    }
+
+    // Turns recording on or off for every mechanism without going through the overridable setter, since the
+    // constructor may start the auto-tuner before a subclass is initialized
+    private void enableStatistics(boolean enabled) {
+        for (PoolStatistics mechanismStatistics : statistics.values()) {
+            mechanismStatistics.setEnabled(enabled);
+        }
+    }
+
+    /**
+     * Returns the statistics recorded for the given mechanism since the last reset.
+     *
+     * @param mechanism the synchronization mechanism
+     * @return the mechanism's statistics
+     */
+    public PoolStatistics getStatistics(SynchronizationMechanism mechanism) {
+        return statistics.get(mechanism);
+    }
+
+    /**
+     * Clears the statistics of every mechanism.
+     */
+    public void resetStatistics() {
+        for (PoolStatistics mechanismStatistics : statistics.values()) {
+            mechanismStatistics.reset();
+        }
+    }
+
+    /**
+     * Formats the statistics of every mechanism that has recorded calls since the last reset.
+     *
+     * @return the report, or an empty string if nothing was recorded
+     */
+    public String formatStatistics() {
+        StringBuilder report = new StringBuilder();
+        for (PoolStatistics mechanismStatistics : statistics.values()) {
+            mechanismStatistics.appendReport(report);
+        }
+        return report.toString();
+    }
+
+    // Starts an auto-tuner, turning statistics on if needed since the tuner decides from them
+    private void startAutoTuning() {
+        if (autoTuner != null) {
+            return;
+        }
+        if (!statistics.get(SynchronizationMechanism.SYNCHRONIZED).isEnabled()) {
+            enableStatistics(true);
+            statisticsEnabledForTuning = true;
+        }
+        autoTuner = new AutoTuner(this, autoTuningIntervalMs);
+        autoTuner.start();
+        System.out.println("Auto-tuning from " + current.mechanism + ", sampling every " + autoTuningIntervalMs + " ms");
+    }
+
+    // Stops the auto-tuner, if any, and turns statistics back off if it was the one that turned them on
+    private void stopAutoTuning() {
+        if (autoTuner == null) {
+            return;
+        }
+        autoTuner.stop();
+        autoTuner = null;
+        if (statisticsEnabledForTuning) {
+            enableStatistics(false);
+            statisticsEnabledForTuning = false;
+        }
+    }
+
+    // Wraps a new implementation in the instrumentation layer for its mechanism
+    private Generation newGeneration(SynchronizationMechanism mechanism, TicketPool implementation) {
+        return new Generation(mechanism, implementation, new InstrumentedTicketPool(implementation, statistics.get(mechanism)));
+    }
+
+    // Creates a new, empty pool instance for the selected synchronization mechanism
+    private TicketPool createImplementation(SynchronizationMechanism mechanism) {
         switch (mechanism) {
-            case SYNCHRONIZED:
-                currentImplementation = new SynchronizedTicketPool(capacity);
-                break;
             case REENTRANT_LOCK:
-                currentImplementation = new ReentrantLockTicketPool(capacity);
-                break;
+                return new ReentrantLockTicketPool(capacity, fairLocking);
             case BLOCKING_QUEUE:
-                currentImplementation = new BlockingQueueTicketPool(capacity);
-                break;
+                return new BlockingQueueTicketPool(capacity);
+            case LOCK_FREE_RING:
+                return new LockFreeRingTicketPool(capacity);
+            case SHARDED:
+                return new ShardedTicketPool(capacity);
+            case OFF_HEAP:
+                return new OffHeapTicketPool(capacity);
+            case TIERED:
+                return new TieredTicketPool(capacity, tierSelection);
+            case SYNCHRONIZED:
+            default:
+                return new SynchronizedTicketPool(capacity);
+        }
+    }
+
+    // Registers a short, non-blocking call against the current implementation, waiting out any switch in progress
+    private Generation enter() {
+        while (true) {
+            Generation generation = current;
+            generation.activeCalls.increment();
+            if (!generation.retiring) {
+                return generation;
+            }
+            generation.exit();
+            generation.awaitRetirement();
         }
+    }
+
+    // Registers a consumer that is about to block inside the current implementation
+    private Generation enterBlocking() {
+        Generation generation = enter();
+        generation.blockedConsumers.incrementAndGet();
+        generation.exit();
+        return generation;
+    }
+
+    // Places a purchase on the current implementation and relays the outcome to the caller's future.
+    // The relay is deferred until the completing call has left the gate, see Deliveries.
+    private void forwardPurchase(TicketPurchase purchase) {
+        Deliveries deliveries = deferDeliveries();
+        Generation generation = enter();
+        try {
+            CompletableFuture<String> inner = generation.pool.purchaseTicketAsync();
+            generation.asyncPurchases.put(inner, generation.nextPurchase.getAndIncrement());
+            purchase.whenComplete((ticket, failure) -> {
+                if (failure != null) {
+                    inner.cancel(false); // Caller cancelled or timed out: withdraw the purchase from the pool
+                }
+            });
+            inner.whenComplete((ticket, failure) -> {
+                generation.asyncPurchases.remove(inner);
+                deliverOutsideGate(() -> relay(purchase, generation, ticket, failure));
+            });
+        } finally {
+            generation.exit();
+            runDeliveries(deliveries);
+        }
+    }
 
-        System.out.println("Switched to " + mechanism + " implementation");
+    // Hands the outcome of a purchase placed on the given generation to the caller, placing it again if the
+    // generation was retired before a ticket arrived
+    private void relay(TicketPurchase purchase, Generation generation, String ticket, Throwable failure) {
+        if (failure == null && !RETIRED_MARKER.equals(ticket)) {
+            if (purchase.claim()) {
+                purchase.deliver(journalPurchase(ticket));
+            } else {
+                returnTicket(ticket); // The caller gave up while the ticket was in flight
+            }
+        } else if (failure == null || generation.retiring && isCancellation(failure)) {
+            if (!purchase.isDone()) {
+                forwardPurchase(purchase);
+            }
+        } else {
+            purchase.completeExceptionally(failure);
+        }
+    }
+
+    // Puts back a ticket whose buyer gave up while it was in flight, through the current generation's measured pool.
+    // The sale was never journaled, so only a ticket that no longer fits is recorded, to keep it from coming back.
+    private void returnTicket(String ticket) {
+        boolean returned;
+        Generation generation = enter();
+        try {
+            returned = generation.pool.addTicket(ticket);
+        } finally {
+            generation.exit();
+        }
+        if (!returned) {
+            journalPurchase(ticket);
+            System.out.println("Warning: ticket " + ticket + " returned after a cancelled purchase did not fit");
+        }
+    }
+
+    // Counts the calling thread into a gated call that may complete asynchronous purchases
+    private static Deliveries deferDeliveries() {
+        Deliveries deliveries = Deliveries.current.get();
+        deliveries.depth++;
+        return deliveries;
+    }
+
+    // Counts the calling thread out again; the outermost call, now outside every gate, runs the deferred deliveries
+    private static void runDeliveries(Deliveries deliveries) {
+        if (--deliveries.depth > 0) {
+            return;
+        }
+        Runnable delivery;
+        while ((delivery = deliveries.pending.poll()) != null) {
+            delivery.run();
+        }
+    }
+
+    // Runs a delivery now, or once the calling thread has left the gated call it is completing it from
+    private static void deliverOutsideGate(Runnable delivery) {
+        Deliveries deliveries = Deliveries.current.get();
+        if (deliveries.depth > 0) {
+            deliveries.pending.add(delivery);
+        } else {
+            delivery.run();
+        }
+    }
+
+    // Records a purchase in the journal, if there is one, before the ticket is handed to the caller
+    private String journalPurchase(String ticket) {
+        if (ticket != null && journal != null) {
+            journal.recordPurchase(ticket);
+        }
+        return ticket;
+    }
+
+    private static boolean isCancellation(Throwable failure) {
+        return failure instanceof CancellationException
+                || failure instanceof CompletionException && failure.getCause() instanceof CancellationException;
+    }
+
+    // Adds a ticket through the current implementation's blocking add, registered so that a switch can redirect it
+    private boolean offer(String ticketInfo, TicketTier tier, boolean timed, long deadline) throws InterruptedException {
+        Thread producer = Thread.currentThread();
+        while (true) {
+            Generation generation = enter();
+            generation.blockedProducers.add(producer);
+            generation.exit();
+            boolean redirected = false;
+            try {
+                if (!timed) {
+                    generation.pool.putTicket(ticketInfo);
+                    return true;
+                }
+                return generation.pool.offerTicket(ticketInfo, tier, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                synchronized (generation.blockedProducers) {
+                    redirected = generation.redirectedProducers.remove(producer);
+                }
+                if (!redirected) {
+                    throw e;
+                }
+            } finally {
+                synchronized (generation.blockedProducers) {
+                    generation.blockedProducers.remove(producer);
+                    if (!redirected && generation.redirectedProducers.remove(producer)) {
+                        Thread.interrupted(); // The redirect arrived after the add had already succeeded
+                    }
+                }
+            }
+        }
+    }
+
+    // Interrupts every producer waiting in the old implementation and waits for them to leave it; each one
+    // either completed its add before the drain or retries on the new implementation. A producer already
+    // interrupted is left to throw, so the redirect never takes the place of a genuine interrupt
+    private static void redirectBlockedProducers(Generation previous) {
+        synchronized (previous.blockedProducers) {
+            for (Thread producer : previous.blockedProducers) {
+                if (!producer.isInterrupted()) {
+                    previous.redirectedProducers.add(producer);
+                    producer.interrupt();
+                }
+            }
+        }
+        while (!previous.blockedProducers.isEmpty()) {
+            Thread.yield();
+        }
+    }
+
+    // Feeds retirement markers to the old implementation until every consumer blocked in it has left
+    private static void releaseBlockedConsumers(Generation previous) {
+        int blocked;
+        while ((blocked = previous.blockedConsumers.get()) > 0) {
+            int missing = blocked - previous.implementation.getAvailableTickets();
+            if (missing > 0) {
+                previous.implementation.addTickets(Collections.nCopies(missing, RETIRED_MARKER));
+            }
+            Thread.yield();
+        }
+    }
+
+    // Settles holds on the implementation current at the time, journaling the ones that are sold
+    private final class HeldSlots implements HoldSettler {
+        @Override
+        public void settleHeld(String ticket, boolean sold) {
+            Deliveries deliveries = deferDeliveries(); // A released ticket may go straight to a waiting purchase
+            try {
+                Generation generation = enter();
+                try {
+                    ((HeldTickets) generation.pool).settleHeld(ticket, sold);
+                    heldTickets.decrementAndGet();
+                } finally {
+                    generation.exit();
+                }
+                if (sold) {
+                    journalPurchase(ticket);
+                }
+            } finally {
+                runDeliveries(deliveries);
+            }
+        }
+    }
+
+    // Purchases completed by a thread inside a gated call, kept until the call has left the gate. Completing the
+    // caller's future runs its dependent stages, and one that called back into the manager during a switch would
+    // wait for the switch, while the switch waited for the gated call that is running that stage.
+    private static final class Deliveries {
+        private static final ThreadLocal<Deliveries> current = ThreadLocal.withInitial(Deliveries::new);
+
+        private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+        private int depth; // Gated calls of this thread that may complete purchases, innermost included
+    }
+
+    // One implementation instance together with the bookkeeping needed to retire it safely
+    private static final class Generation {
+        private final SynchronizationMechanism mechanism;
+        private final TicketPool implementation; // Used directly for migration, which is not measured
+        private final TicketPool pool;
+        private final LongAdder activeCalls = new LongAdder(); // Striped so the gate adds no shared contention point
+        private final AtomicInteger blockedConsumers = new AtomicInteger();
+        private final Set<Thread> blockedProducers = ConcurrentHashMap.newKeySet(); // Also guards redirects
+        private final Set<Thread> redirectedProducers = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch retired = new CountDownLatch(1);
+        private final Map<CompletableFuture<String>, Long> asyncPurchases = new ConcurrentHashMap<>(); // Value is arrival order
+        private final AtomicLong nextPurchase = new AtomicLong();
+        private volatile boolean retiring;
+
+        Generation(SynchronizationMechanism mechanism, TicketPool implementation, TicketPool pool) {
+            this.mechanism = mechanism;
+            this.implementation = implementation;
+            this.pool = pool;
+        }
+
+        void exit() {
+            activeCalls.decrement();
+        }
+
+        void awaitRetirement() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    retired.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true; // The pause is bounded; restore the flag once it is over
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
@@ -0,0 +1,59 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Binary framing shared by TicketServer and TicketClient. Every frame is a 4-byte length followed by that many
+// bytes. A request is [op][request ID: int][payload] and a response is [op][status][request ID: int][payload],
+// so a client may pipeline requests and match responses, which for waiting purchases can arrive out of order.
+//
+//   ADD            request: ticket                     response: -
+//   PURCHASE       request: max tickets, timeout ms    response: count: short, tickets
+//   STATUS         request: -                          response: available, capacity, held: int, mechanism
+//
+// Strings are an unsigned 2-byte length and UTF-8 bytes. A purchase timeout of 0 returns at once and -1 waits
+// without limit. An ERROR response carries a message instead of the payload. A purchase response holds at most
+// MAX_TICKETS tickets and one frame's worth of them; the server leaves the rest of a larger batch on sale.
+final class TicketProtocol {
+    static final int MAX_FRAME = 64 * 1024;
+    static final int MAX_TICKETS = 0xFFFF; // The count is an unsigned short
+    static final int MAX_TICKET_BYTES = MAX_FRAME - 6 - 2; // A frame less the response header and the count
+
+    static final byte ADD = 1;
+    static final byte PURCHASE = 2;
+    static final byte STATUS = 3;
+
+    static final byte OK = 0;
+    static final byte REJECTED = 1; // Pool full for an add, no ticket within the timeout for a purchase
+    static final byte ERROR = 2;
+
+    private TicketProtocol() {
+    }
+
+    // Bytes putString writes for the given string
+    static int sizeOf(byte[] utf8) {
+        return 2 + utf8.length;
+    }
+
+    static byte[] encode(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length > 0xFFFF) {
+            throw new IllegalArgumentException("string of " + utf8.length + " bytes is too long");
+        }
+        return utf8;
+    }
+
+    static void putString(ByteBuffer buffer, byte[] utf8) {
+        buffer.putShort((short) utf8.length);
+        buffer.put(utf8);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String text = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return text;
+    }
+}
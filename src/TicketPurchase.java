@@ -0,0 +1,81 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A pending asynchronous purchase. A producer claims it before handing over a ticket, so a
+// concurrent cancellation or timeout can never discard a ticket that is already in flight.
+final class TicketPurchase extends CompletableFuture<String> {
+    private static final int WAITING = 0;
+    private static final int CLAIMED = 1;
+    private static final int DONE = 2;
+
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+
+    /**
+     * Reserves this purchase for delivery. Exactly one caller can claim a waiting purchase.
+     *
+     * @return true if the caller now owns the purchase and must deliver or release it
+     */
+    boolean claim() {
+        return state.compareAndSet(WAITING, CLAIMED);
+    }
+
+    /**
+     * Returns a claimed purchase to the waiting state when no ticket could be found for it.
+     */
+    void release() {
+        state.set(WAITING);
+    }
+
+    /**
+     * Completes a claimed purchase with its ticket.
+     */
+    void deliver(String ticket) {
+        state.set(DONE);
+        super.complete(ticket);
+    }
+
+    /**
+     * Returns true while the purchase can still be claimed.
+     */
+    boolean isWaiting() {
+        return state.get() == WAITING;
+    }
+
+    /**
+     * Cancels the purchase unless a ticket is already being delivered to it.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return abandon() ? super.cancel(mayInterruptIfRunning) : isCancelled();
+    }
+
+    /**
+     * Fails the purchase (for example on timeout) unless a ticket is already being delivered to it.
+     */
+    @Override
+    public boolean completeExceptionally(Throwable ex) {
+        return abandon() && super.completeExceptionally(ex);
+    }
+
+    /**
+     * Completes the purchase from outside the pool. Only allowed while no ticket is being delivered.
+     */
+    @Override
+    public boolean complete(String value) {
+        return abandon() && super.complete(value);
+    }
+
+    // Moves WAITING to DONE, waiting out the brief window in which a producer holds a claim
+    private boolean abandon() {
+        while (true) {
+            int current = state.get();
+            if (current == WAITING && state.compareAndSet(WAITING, DONE)) {
+                return true;
+            }
+            if (current == DONE) {
+                return false;
+            }
+            Thread.onSpinWait(); // Claimed: resolves to DONE or back to WAITING almost immediately
+        }
+    }
+}
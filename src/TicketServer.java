@@ -0,0 +1,502 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Non-blocking TCP front end for a ticket pool, speaking the TicketProtocol framing. One selector thread reads,
+// runs and answers every request; a purchase that has to wait becomes an asynchronous purchase on the pool, so
+// it costs a queue entry rather than a thread, and its response is written when a producer completes it.
+public class TicketServer implements AutoCloseable {
+    private static final int GATHER = 64; // Responses written per system call
+
+    private final TicketPoolManager pool;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread selectorThread;
+    private final Queue<Connection> flushQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<CompletedPurchase> completedPurchases = new ConcurrentLinkedQueue<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pendingPurchases = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * Opens a server for the given pool on the given address and starts serving.
+     *
+     * @param pool    the pool to serve
+     * @param address the address to listen on; port 0 picks a free port
+     * @throws IOException if the address cannot be bound
+     */
+    public TicketServer(TicketPoolManager pool, InetSocketAddress address) throws IOException {
+        this.pool = pool;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        try {
+            server.bind(address);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        this.selectorThread = new Thread(this::serve, "ticket-server");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the number of open client connections.
+     *
+     * @return the number of connections
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Returns the number of purchases waiting for a ticket.
+     *
+     * @return the number of pending purchases
+     */
+    public int getPendingPurchases() {
+        return pendingPurchases.get();
+    }
+
+    /**
+     * Returns the number of requests received since the server started.
+     *
+     * @return the number of requests
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Stops serving and closes every connection. Pending purchases are withdrawn without losing tickets.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Selector loop: accepts, reads and runs requests, and writes responses queued by completed purchases
+    private void serve() {
+        try {
+            while (running) {
+                selector.select();
+                answerCompleted();
+                flushQueued();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isReadable()) {
+                        read(connection);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(connection);
+                    }
+                }
+                answerCompleted();
+                flushQueued();
+            }
+        } catch (IOException e) {
+            System.out.println("Warning: ticket server stopped: " + e.getMessage());
+        } finally {
+            for (Connection connection : new ArrayList<>(connections)) {
+                disconnect(connection);
+            }
+            answerCompleted(); // Every connection is closed, so this puts the tickets back on sale
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException e) {
+                System.out.println("Warning: closing the ticket server failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // Answers purchases completed since the last pass, filling each batch from what is available now. Runs on the
+    // selector thread, never inside the add that completed the purchase, so a switch cannot be kept waiting on it
+    private void answerCompleted() {
+        CompletedPurchase completed;
+        while ((completed = completedPurchases.poll()) != null) {
+            TicketBatch batch = new TicketBatch();
+            batch.add(completed.ticket); // Always fits, as adds longer than a response can carry are refused
+            drain(batch, completed.limit);
+            if (!respondTickets(completed.connection, completed.requestId, batch)) {
+                restore(batch.tickets); // The buyer disconnected while the tickets were in flight
+            }
+        }
+    }
+
+    private void flushQueued() {
+        Connection queued;
+        while ((queued = flushQueue.poll()) != null) {
+            queued.flushQueued.set(false);
+            flush(queued);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connections.add(connection);
+    }
+
+    // Runs every complete frame received so far, then writes all their responses at once
+    private void read(Connection connection) {
+        ByteBuffer in = connection.in;
+        try {
+            if (connection.channel.read(in) < 0) {
+                disconnect(connection);
+                return;
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+            return;
+        }
+
+        in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length < 5 || length > TicketProtocol.MAX_FRAME) {
+                disconnect(connection); // Not our framing; nothing after this can be trusted
+                return;
+            }
+            if (in.remaining() < 4 + length) {
+                break;
+            }
+            int end = in.position() + 4 + length;
+            int limit = in.limit();
+            in.position(in.position() + 4).limit(end);
+            handle(connection, in);
+            in.limit(limit).position(end);
+        }
+        in.compact();
+        flush(connection);
+    }
+
+    // Runs one request; the buffer is limited to the frame
+    private void handle(Connection connection, ByteBuffer frame) {
+        requests.increment();
+        byte op = frame.get();
+        int requestId = frame.remaining() >= 4 ? frame.getInt() : -1;
+        try {
+            switch (op) {
+                case TicketProtocol.ADD:
+                    if (2 + Short.toUnsignedInt(frame.getShort(frame.position())) > TicketProtocol.MAX_TICKET_BYTES) {
+                        respondError(connection, op, requestId, "ticket too long to be sold in a response");
+                        break;
+                    }
+                    boolean added = pool.addTicket(TicketProtocol.getString(frame));
+                    send(connection, header(op, added ? TicketProtocol.OK : TicketProtocol.REJECTED, requestId, 0));
+                    break;
+                case TicketProtocol.PURCHASE:
+                    purchase(connection, requestId, frame.getInt(), frame.getInt());
+                    break;
+                case TicketProtocol.STATUS:
+                    respondStatus(connection, requestId);
+                    break;
+                default:
+                    respondError(connection, op, requestId, "unknown operation " + op);
+            }
+        } catch (BufferUnderflowException e) {
+            respondError(connection, op, requestId, "truncated request");
+        } catch (RuntimeException e) {
+            respondError(connection, op, requestId, String.valueOf(e.getMessage()));
+        }
+    }
+
+    // Sells what is available now; if nothing is and the buyer will wait, registers an asynchronous purchase
+    // and fills the rest of the batch from what is available when it completes
+    private void purchase(Connection connection, int requestId, int maxTickets, int timeoutMs) {
+        if (maxTickets < 1) {
+            respondError(connection, TicketProtocol.PURCHASE, requestId, "max tickets must be positive");
+            return;
+        }
+        int limit = Math.min(maxTickets, TicketProtocol.MAX_TICKETS);
+        TicketBatch tickets = new TicketBatch();
+        drain(tickets, limit);
+        if (tickets.count() > 0 || timeoutMs == 0) {
+            respondTickets(connection, requestId, tickets);
+            return;
+        }
+
+        CompletableFuture<String> purchase = timeoutMs < 0
+                ? pool.purchaseTicketAsync()
+                : pool.purchaseTicketAsync(timeoutMs, TimeUnit.MILLISECONDS);
+        pendingPurchases.incrementAndGet();
+        connection.pending.add(purchase);
+        purchase.whenComplete((ticket, failure) -> {
+            connection.pending.remove(purchase);
+            pendingPurchases.decrementAndGet();
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                if (cause instanceof TimeoutException) {
+                    respondTickets(connection, requestId, new TicketBatch());
+                } else if (!(cause instanceof CancellationException)) {
+                    respondError(connection, TicketProtocol.PURCHASE, requestId, String.valueOf(cause.getMessage()));
+                }
+            } else {
+                completedPurchases.add(new CompletedPurchase(connection, requestId, ticket, limit));
+                if (!running) {
+                    answerCompleted(); // The selector thread may have made its last pass already
+                } else if (Thread.currentThread() != selectorThread) {
+                    selector.wakeup();
+                }
+            }
+        });
+    }
+
+    // Buys up to maxTickets tickets into the batch, stopping once the next would not fit the response frame.
+    // That ticket is already bought, so it goes back on sale
+    private void drain(TicketBatch batch, int maxTickets) {
+        String ticket;
+        while (batch.count() < maxTickets && (ticket = pool.tryPurchase()) != null) {
+            if (!batch.add(ticket)) {
+                restore(List.of(ticket));
+                return;
+            }
+        }
+    }
+
+    // Returns false if the connection has closed, in which case the tickets were not sent
+    private boolean respondTickets(Connection connection, int requestId, TicketBatch batch) {
+        ByteBuffer response = header(TicketProtocol.PURCHASE,
+                batch.count() == 0 ? TicketProtocol.REJECTED : TicketProtocol.OK, requestId, batch.size);
+        response.putShort((short) batch.count());
+        for (byte[] ticket : batch.encoded) {
+            TicketProtocol.putString(response, ticket);
+        }
+        return send(connection, response);
+    }
+
+    private void restore(List<String> tickets) {
+        for (String ticket : tickets) {
+            if (!pool.addTicket(ticket)) {
+                System.out.println("Warning: ticket " + ticket + " put back on sale did not fit");
+            }
+        }
+    }
+
+    private void respondStatus(Connection connection, int requestId) {
+        byte[] mechanism = TicketProtocol.encode(pool.getCurrentMechanism().name());
+        ByteBuffer response = header(TicketProtocol.STATUS, TicketProtocol.OK, requestId, 12 + TicketProtocol.sizeOf(mechanism));
+        response.putInt(pool.getAvailableTickets()).putInt(pool.getCapacity()).putInt(pool.getHeldTickets());
+        TicketProtocol.putString(response, mechanism);
+        send(connection, response);
+    }
+
+    private void respondError(Connection connection, byte op, int requestId, String message) {
+        byte[] encoded = TicketProtocol.encode(message);
+        ByteBuffer response = header(op, TicketProtocol.ERROR, requestId, TicketProtocol.sizeOf(encoded));
+        TicketProtocol.putString(response, encoded);
+        send(connection, response);
+    }
+
+    private static ByteBuffer header(byte op, byte status, int requestId, int payloadSize) {
+        ByteBuffer response = ByteBuffer.allocate(4 + 6 + payloadSize);
+        return response.putInt(6 + payloadSize).put(op).put(status).putInt(requestId);
+    }
+
+    // Queues a response for the selector to write, or returns false if the connection has closed. A purchase
+    // completed by an add on another connection is answered this way even on the selector thread. Locked against
+    // disconnect, so a response is either queued in time for disconnect to find it unsent or not queued at all
+    private boolean send(Connection connection, ByteBuffer response) {
+        synchronized (connection) {
+            if (connection.closed) {
+                return false;
+            }
+            connection.outgoing.add(response.flip());
+        }
+        if (connection.flushQueued.compareAndSet(false, true)) {
+            flushQueue.add(connection);
+            if (Thread.currentThread() != selectorThread) {
+                selector.wakeup();
+            }
+        }
+        return true;
+    }
+
+    // Writes queued responses until done or the socket is full. While it is full the connection is not read,
+    // so a client that pipelines without reading its responses is held back instead of filling the heap
+    private void flush(Connection connection) {
+        if (connection.closed) {
+            return;
+        }
+        try {
+            while (true) {
+                ByteBuffer next;
+                while (connection.gathered < GATHER && (next = connection.outgoing.poll()) != null) {
+                    connection.gather[connection.gathered++] = next;
+                }
+                if (connection.gathered == 0) {
+                    connection.key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                connection.channel.write(connection.gather, 0, connection.gathered);
+                int written = 0;
+                while (written < connection.gathered && !connection.gather[written].hasRemaining()) {
+                    written++;
+                }
+                System.arraycopy(connection.gather, written, connection.gather, 0, connection.gathered - written);
+                for (int i = connection.gathered - written; i < connection.gathered; i++) {
+                    connection.gather[i] = null;
+                }
+                connection.gathered -= written;
+                if (connection.gathered > 0) {
+                    connection.key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    // Closes the connection, withdraws its waiting purchases and puts back tickets sold in responses it never sent
+    private void disconnect(Connection connection) {
+        synchronized (connection) {
+            if (connection.closed) {
+                return;
+            }
+            connection.closed = true;
+        }
+        connections.remove(connection);
+        for (CompletableFuture<String> purchase : connection.pending) {
+            purchase.cancel(false);
+        }
+        for (int i = 0; i < connection.gathered; i++) {
+            restoreUnsent(connection.gather[i]);
+        }
+        ByteBuffer unsent;
+        while ((unsent = connection.outgoing.poll()) != null) {
+            restoreUnsent(unsent);
+        }
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // Already unusable; nothing more to release
+        }
+    }
+
+    // A response the client did not receive in full; if it sold tickets, they go back on sale
+    private void restoreUnsent(ByteBuffer response) {
+        if (response.get(4) != TicketProtocol.PURCHASE || response.get(5) != TicketProtocol.OK) {
+            return;
+        }
+        ByteBuffer payload = response.duplicate().position(10);
+        List<String> tickets = new ArrayList<>();
+        for (int count = Short.toUnsignedInt(payload.getShort()); count > 0; count--) {
+            tickets.add(TicketProtocol.getString(payload));
+        }
+        restore(tickets);
+    }
+
+    // One client's socket, buffers and waiting purchases
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(4 + TicketProtocol.MAX_FRAME);
+        private final Queue<ByteBuffer> outgoing = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer[] gather = new ByteBuffer[GATHER]; // Selector thread only
+        private final Set<CompletableFuture<String>> pending = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean flushQueued = new AtomicBoolean();
+        private int gathered;
+        private SelectionKey key;
+        private volatile boolean closed;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    // A waiting purchase that has received its first ticket, to be answered on the selector thread
+    private static final class CompletedPurchase {
+        private final Connection connection;
+        private final int requestId;
+        private final String ticket;
+        private final int limit;
+
+        private CompletedPurchase(Connection connection, int requestId, String ticket, int limit) {
+            this.connection = connection;
+            this.requestId = requestId;
+            this.ticket = ticket;
+            this.limit = limit;
+        }
+    }
+
+    // The tickets of one purchase response, encoded as they are added so the response stays within a frame
+    private static final class TicketBatch {
+        private final List<String> tickets = new ArrayList<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+        private int size = 2; // Payload bytes, starting with the count
+
+        // Returns false, leaving the batch unchanged, if the ticket would not fit the frame
+        boolean add(String ticket) {
+            byte[] utf8 = TicketProtocol.encode(ticket);
+            if (size - 2 + TicketProtocol.sizeOf(utf8) > TicketProtocol.MAX_TICKET_BYTES) {
+                return false;
+            }
+            tickets.add(ticket);
+            encoded.add(utf8);
+            size += TicketProtocol.sizeOf(utf8);
+            return true;
+        }
+
+        int count() {
+            return tickets.size();
+        }
+    }
+}
@@ -1,6 +1,20 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 public class TicketSystemApplication {
 
     public static void main(String[] args) {
+        // Headless mode: --scenario <file> [report] runs a load scenario and exits instead of starting the CLI
+        if (args.length > 0 && args[0].equals("--scenario")) {
+            if (args.length < 2) {
+                System.out.println("Usage: TicketSystemApplication --scenario <file> [report.json|report.csv]");
+                return;
+            }
+            runScenario(Paths.get(args[1]), args.length > 2 ? Paths.get(args[2]) : null);
+            return;
+        }
+
         // Default pool capacity
         int poolCapacity = 10;
 
@@ -13,9 +27,72 @@ public class TicketSystemApplication {
             }
         }
 
-        SimulationManager manager = new SimulationManager(poolCapacity);
+        // Optional second argument selects platform or virtual threads for actors, or scheduled tasks on a shared pool
+        ExecutionMode executionMode = ExecutionMode.PLATFORM;
+        if (args.length > 1) {
+            try {
+                executionMode = ExecutionMode.valueOf(args[1]);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid execution mode. Using default: " + executionMode);
+            }
+        }
+
+        // Optional third argument journals the pool to a directory, and a fourth "sync" waits for every change to reach disk
+        Path journalDirectory = args.length > 2 ? Paths.get(args[2]) : null;
+        boolean syncCommit = args.length > 3 && args[3].equalsIgnoreCase("sync");
+
+        SimulationManager manager;
+        try {
+            manager = createManager(poolCapacity, executionMode, journalDirectory, syncCommit);
+        } catch (IOException e) {
+            System.out.println("Cannot open journal: " + e.getMessage());
+            return;
+        }
 
         // Start the CLI
         manager.startCLI();
     }
+
+    // Runs a scenario file, prints a summary and writes the report to the given file or the one the scenario names
+    private static void runScenario(Path scenarioFile, Path reportFile) {
+        Scenario scenario;
+        try {
+            scenario = Scenario.load(scenarioFile);
+        } catch (IOException e) {
+            System.out.println("Cannot read scenario: " + e.getMessage());
+            return;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid scenario: " + e.getMessage());
+            return;
+        }
+
+        ScenarioRunner runner = new ScenarioRunner(scenario);
+        try {
+            runner.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Scenario interrupted");
+            return;
+        }
+        System.out.print(runner.formatSummary());
+
+        Path report = reportFile != null ? reportFile : scenario.getReport();
+        if (report != null) {
+            try {
+                runner.writeReport(report);
+                System.out.println("Report written to " + report);
+            } catch (IOException e) {
+                System.out.println("Cannot write report: " + e.getMessage());
+            }
+        }
+    }
+
+    // Creates the simulation manager, journaled if a directory was given
+    private static SimulationManager createManager(int poolCapacity, ExecutionMode executionMode,
+                                                   Path journalDirectory, boolean syncCommit) throws IOException {
+        if (journalDirectory == null) {
+            return new SimulationManager(poolCapacity, executionMode);
+        }
+        return new SimulationManager(poolCapacity, executionMode, journalDirectory, syncCommit);
+    }
 }
@@ -1,18 +1,64 @@
+import com.sun.management.ThreadMXBean;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 public class TicketSystemTest {
 
-    public static void main(String[] args) throws InterruptedException {
+    public static void main(String[] args) throws InterruptedException, IOException {
         // Test each synchronization mechanism
-        testSynchronizationMechanism(SynchronizationMechanism.SYNCHRONIZED);
-        testSynchronizationMechanism(SynchronizationMechanism.REENTRANT_LOCK);
-        testSynchronizationMechanism(SynchronizationMechanism.BLOCKING_QUEUE);
+        for (SynchronizationMechanism mechanism : SynchronizationMechanism.values()) {
+            testSynchronizationMechanism(mechanism);
+            testWakeupLatency(mechanism);
+            testBlockingAdd(mechanism);
+            testBatchOperations(mechanism);
+            testAsyncPurchase(mechanism);
+            testTicketIndex(mechanism);
+            testHolds(mechanism);
+        }
+
+        testOffHeapEncoding();
+        testStriping();
+        testTicketIds();
+        testPriorityTiers();
+        testSnapshots();
+        testLiveSwitching();
+        testEventLog();
+        testStatistics();
+        testAutoTuning();
+        testEventRegistry();
+        testScenarioRunner();
+        testTicketServer();
+        testCluster();
+        testActorEngine();
+        testVirtualTimeSimulation();
+        testJournal();
 
         // Run performance comparison
         comparePerformance();
@@ -97,6 +143,1585 @@ public class TicketSystemTest {
         System.out.println("Counts match: " + isCorrect);
     }
 
+    /**
+     * Tests timed and non-blocking purchases on an empty pool, and measures how quickly
+     * a consumer blocked in purchaseTicket() is woken once a ticket is added.
+     *
+     * @param mechanism the synchronization mechanism to test
+     */
+    private static void testWakeupLatency(SynchronizationMechanism mechanism) throws InterruptedException {
+        System.out.println("\nTesting timed purchase and wake-up latency:");
+        TicketPoolManager pool = new TicketPoolManager(10);
+        pool.switchSynchronizationMechanism(mechanism);
+
+        System.out.println("tryPurchase on empty pool: " + pool.tryPurchase());
+        System.out.println("Timed purchase on empty pool: " + pool.purchaseTicket(50, TimeUnit.MILLISECONDS));
+
+        long[] wokenAt = new long[1];
+        Thread consumer = new Thread(() -> {
+            try {
+                pool.purchaseTicket();
+                wokenAt[0] = System.nanoTime();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+
+        Thread.sleep(50); // Let the consumer block on the empty pool
+        long addedAt = System.nanoTime();
+        pool.addTicket("Wake-up Ticket");
+        consumer.join(5000);
+
+        System.out.println("Wake-to-purchase latency: " + (wokenAt[0] - addedAt) / 1000 + " us");
+    }
+
+    /**
+     * Tests timed and blocking adds on a full pool: a timed add gives up, a blocked producer is woken by the
+     * next purchase, and a producer still blocked when the mechanism is switched completes on the new one.
+     *
+     * @param mechanism the synchronization mechanism to test
+     */
+    private static void testBlockingAdd(SynchronizationMechanism mechanism) throws InterruptedException {
+        System.out.println("\nTesting timed and blocking add:");
+        TicketPoolManager pool = new TicketPoolManager(2);
+        pool.switchSynchronizationMechanism(mechanism);
+        pool.addTickets(List.of("Full-0", "Full-1"));
+
+        System.out.println("Timed add on full pool: " + pool.offerTicket("Full-2", 50, TimeUnit.MILLISECONDS));
+
+        long[] addedAt = new long[1];
+        Thread producer = new Thread(() -> {
+            try {
+                pool.putTicket("Blocked-0");
+                addedAt[0] = System.nanoTime();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        Thread.sleep(50); // Let the producer block on the full pool
+        long purchasedAt = System.nanoTime();
+        pool.tryPurchase();
+        producer.join(5000);
+        System.out.println("Purchase-to-add latency: " + (addedAt[0] - purchasedAt) / 1000 + " us");
+
+        Thread redirected = new Thread(() -> {
+            try {
+                pool.putTicket("Blocked-1");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        redirected.start();
+        Thread.sleep(50);
+        pool.switchSynchronizationMechanism(mechanism == SynchronizationMechanism.SYNCHRONIZED
+                ? SynchronizationMechanism.REENTRANT_LOCK : SynchronizationMechanism.SYNCHRONIZED);
+        List<String> purchased = new ArrayList<>();
+        pool.purchaseTickets(2, purchased);
+        redirected.join(5000);
+        pool.purchaseTickets(2, purchased);
+        System.out.println("Blocked producer redirected by switch: " + !redirected.isAlive()
+                + ", tickets in order: " + purchased.equals(List.of("Full-1", "Blocked-0", "Blocked-1")));
+    }
+
+    /**
+     * Tests batch add and batch purchase, including a batch that only partially fits.
+     *
+     * @param mechanism the synchronization mechanism to test
+     */
+    private static void testBatchOperations(SynchronizationMechanism mechanism) throws InterruptedException {
+        System.out.println("\nTesting batch add/purchase:");
+        TicketPoolManager pool = new TicketPoolManager(10);
+        pool.switchSynchronizationMechanism(mechanism);
+
+        List<String> batch = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            batch.add("Batch-Ticket-" + i);
+        }
+        System.out.println("Accepted from batch of 15: " + pool.addTickets(batch));
+
+        List<String> purchased = new ArrayList<>();
+        System.out.println("Purchased in one drain (max 4): " + pool.purchaseTickets(4, purchased));
+        System.out.println("Drained tickets: " + purchased);
+        System.out.println("Available tickets after drain: " + pool.getAvailableTickets());
+
+        purchased.clear();
+        pool.purchaseTickets(100, purchased);
+        System.out.println("Drained remainder: " + purchased.size() + ", available: " + pool.getAvailableTickets());
+    }
+
+    /**
+     * Tests asynchronous purchases: completion from an add, FIFO order among waiting purchases,
+     * cancellation and timeout without losing tickets, and pending purchases following a switch.
+     *
+     * @param mechanism the synchronization mechanism to test
+     */
+    private static void testAsyncPurchase(SynchronizationMechanism mechanism) throws InterruptedException {
+        System.out.println("\nTesting asynchronous purchase:");
+        TicketPoolManager pool = new TicketPoolManager(100);
+        pool.switchSynchronizationMechanism(mechanism);
+
+        pool.addTicket("Async-Ready");
+        System.out.println("Completed immediately: " + "Async-Ready".equals(pool.purchaseTicketAsync().getNow(null)));
+
+        CompletableFuture<String> first = pool.purchaseTicketAsync();
+        CompletableFuture<String> cancelled = pool.purchaseTicketAsync();
+        CompletableFuture<String> second = pool.purchaseTicketAsync();
+        System.out.println("Pending while empty: " + !first.isDone());
+        cancelled.cancel(false);
+        pool.addTicket("Async-1");
+        pool.addTicket("Async-2");
+        System.out.println("FIFO completion, cancelled skipped: "
+                + ("Async-1".equals(first.join()) && "Async-2".equals(second.join())));
+
+        CompletableFuture<String> timed = pool.purchaseTicketAsync(20, TimeUnit.MILLISECONDS);
+        Thread.sleep(100);
+        pool.addTicket("Async-After-Timeout");
+        System.out.println("Timed out: " + timed.isCompletedExceptionally()
+                + ", ticket kept: " + (pool.getAvailableTickets() == 1));
+        pool.tryPurchase();
+
+        // Many pending purchases cost no threads; a switch moves them to the new implementation
+        List<CompletableFuture<String>> pending = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            pending.add(pool.purchaseTicketAsync());
+        }
+        pool.switchSynchronizationMechanism(mechanism == SynchronizationMechanism.SYNCHRONIZED
+                ? SynchronizationMechanism.BLOCKING_QUEUE : SynchronizationMechanism.SYNCHRONIZED);
+        Set<String> delivered = ConcurrentHashMap.newKeySet();
+        pending.forEach(future -> future.thenAccept(delivered::add));
+        for (int i = 0; i < 5000; i++) {
+            pool.addTicket("Async-Bulk-" + i);
+        }
+        System.out.println("All pending purchases completed after switch: "
+                + (delivered.size() == 5000 && pool.getAvailableTickets() == 0)
+                + ", order kept: " + "Async-Bulk-4999".equals(pending.get(4999).join()));
+
+        // A dependent stage that calls back into the pool while a switch waits for the add that completed it
+        Thread[] switcher = new Thread[1];
+        CompletableFuture<String> reentrant = pool.purchaseTicketAsync();
+        CompletableFuture<Boolean> calledBack = reentrant.thenApply(ticket -> {
+            switcher[0] = new Thread(() -> pool.switchSynchronizationMechanism(mechanism));
+            switcher[0].start();
+            try {
+                Thread.sleep(50); // Long enough for the switch to close the gate
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return pool.tryPurchase() == null;
+        });
+        Thread adder = new Thread(() -> pool.addTicket("Async-Reentrant"));
+        adder.start();
+        adder.join(5000);
+        if (switcher[0] != null) {
+            switcher[0].join(5000);
+        }
+        System.out.println("Dependent stage may call back during a switch: " + (!adder.isAlive()
+                && switcher[0] != null && !switcher[0].isAlive() && calledBack.getNow(false)));
+    }
+
+    /**
+     * Tests lookup and removal by ticket ID: FIFO order of the remaining tickets, capacity freed once purchases
+     * pass a removed ticket, and that under concurrent adds, purchases and removals every ticket leaves the pool
+     * exactly once.
+     *
+     * @param mechanism the synchronization mechanism to test
+     */
+    private static void testTicketIndex(SynchronizationMechanism mechanism) throws InterruptedException {
+        System.out.println("\nTesting ticket index:");
+        TicketPoolManager pool = new TicketPoolManager(5);
+        pool.switchSynchronizationMechanism(mechanism);
+        for (int i = 0; i < 5; i++) {
+            pool.addTicket("Indexed-" + i);
+        }
+        boolean removed = pool.removeTicket("Indexed-2");
+        System.out.println("Found, removed once, then gone: " + ("Indexed-3".equals(pool.findTicket("Indexed-3"))
+                && removed && !pool.removeTicket("Indexed-2") && pool.findTicket("Indexed-2") == null));
+        System.out.println("Remaining in order: " + pool.snapshot(5).getTickets() + ", available: " + pool.getAvailableTickets());
+        pool.tryPurchase();
+        pool.tryPurchase();
+        System.out.println("Space freed after purchases pass it: "
+                + (pool.addTicket("Indexed-5") && pool.addTicket("Indexed-6") && pool.addTicket("Indexed-7")));
+
+        TicketPoolManager shared = new TicketPoolManager(64);
+        shared.switchSynchronizationMechanism(mechanism);
+        int ticketsPerProducer = 5000;
+        Set<String> taken = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger produced = new AtomicInteger();
+        Thread[] producers = new Thread[2];
+        for (int p = 0; p < producers.length; p++) {
+            int producer = p;
+            producers[p] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < ticketsPerProducer; i++) {
+                        shared.putTicket("Index-P" + producer + "-" + i);
+                        produced.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        Thread consumer = new Thread(() -> {
+            while (taken.size() < producers.length * ticketsPerProducer) {
+                String ticket = shared.tryPurchase();
+                if (ticket != null && !taken.add(ticket)) {
+                    duplicates.incrementAndGet();
+                }
+            }
+        });
+        Thread remover = new Thread(() -> {
+            int i = 0;
+            while (taken.size() < producers.length * ticketsPerProducer) {
+                String ticket = "Index-P" + (i % producers.length) + "-" + (i / producers.length % ticketsPerProducer);
+                if (shared.removeTicket(ticket) && !taken.add(ticket)) {
+                    duplicates.incrementAndGet();
+                }
+                i++;
+            }
+        });
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        consumer.start();
+        remover.start();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        consumer.join(10000);
+        remover.join(10000);
+        System.out.println("Every ticket purchased or removed exactly once: "
+                + (duplicates.get() == 0 && taken.size() == produced.get() && shared.getAvailableTickets() == 0
+                && shared.findTicket("Index-P0-0") == null));
+    }
+
+    /**
+     * Tests ticket holds: confirming, releasing and expiring them, holds that survive a switch and wake blocked
+     * producers when settled, and holders racing buyers without selling any ticket twice.
+     *
+     * @param mechanism the synchronization mechanism to test
+     */
+    private static void testHolds(SynchronizationMechanism mechanism) throws InterruptedException {
+        System.out.println("\nTesting ticket holds:");
+        TicketPoolManager pool = new TicketPoolManager(3);
+        pool.switchSynchronizationMechanism(mechanism);
+        pool.addTicket("Hold-0");
+        pool.addTicket("Hold-1");
+        pool.addTicket("Hold-2");
+        TicketHold confirmed = pool.holdTicket(10, TimeUnit.SECONDS);
+        TicketHold released = pool.holdTicket(10, TimeUnit.SECONDS);
+        System.out.println("Held tickets leave sale but keep their slots: " + ("Hold-0".equals(confirmed.getTicket())
+                && pool.getAvailableTickets() == 1 && !pool.addTicket("Hold-3")));
+        System.out.println("Confirm sells once and frees the slot: " + (pool.confirm(confirmed) && !pool.release(confirmed)
+                && pool.addTicket("Hold-3") && pool.getAvailableTickets() == 2));
+        System.out.println("Release returns the ticket to the back: " + (pool.release(released) && !pool.confirm(released)
+                && "Hold-1".equals(pool.snapshot(3).getTickets().get(2)) && pool.getHeldTickets() == 0));
+
+        TicketHold expiring = pool.holdTicket(50, TimeUnit.MILLISECONDS);
+        Thread blocked = new Thread(() -> {
+            try {
+                pool.putTicket("Hold-4");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        blocked.start();
+        Thread.sleep(300);
+        System.out.println("Expired hold returns its ticket and cannot be confirmed: " + (!expiring.isHeld()
+                && !pool.confirm(expiring) && pool.findTicket(expiring.getTicket()) != null && blocked.isAlive()));
+        TicketHold switched = pool.holdTicket(10, TimeUnit.SECONDS);
+        pool.switchSynchronizationMechanism(mechanism);
+        System.out.println("Hold survives a switch: " + (pool.getAvailableTickets() == 2 && !pool.addTicket("Hold-5")
+                && pool.confirm(switched)));
+        blocked.join(1000);
+        System.out.println("Confirming wakes a blocked producer: " + (!blocked.isAlive() && pool.findTicket("Hold-4") != null));
+
+        // Holders race buyers; every ticket must be sold exactly once, whether bought directly or through a hold
+        TicketPoolManager shared = new TicketPoolManager(16);
+        shared.switchSynchronizationMechanism(mechanism);
+        int ticketCount = 4000;
+        Set<String> sold = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < ticketCount; i++) {
+                    shared.putTicket("Held-" + i);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread[] buyers = new Thread[3];
+        for (int b = 0; b < buyers.length; b++) {
+            boolean holder = b > 0;
+            buyers[b] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (sold.size() < ticketCount) {
+                    String ticket = null;
+                    if (holder) {
+                        TicketHold hold = shared.holdTicket(random.nextInt(1, 20), TimeUnit.MILLISECONDS);
+                        if (hold != null) {
+                            int outcome = random.nextInt(3);
+                            if (outcome == 0 && shared.confirm(hold)) {
+                                ticket = hold.getTicket();
+                            } else if (outcome == 1) {
+                                shared.release(hold);
+                            } // Otherwise left to expire
+                        }
+                    } else {
+                        ticket = shared.tryPurchase();
+                    }
+                    if (ticket != null && !sold.add(ticket)) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+            });
+        }
+        producer.start();
+        for (Thread buyer : buyers) {
+            buyer.start();
+        }
+        producer.join(20000);
+        for (Thread buyer : buyers) {
+            buyer.join(20000);
+        }
+        System.out.println("Every held ticket sold exactly once: " + (duplicates.get() == 0
+                && sold.size() == ticketCount && shared.getHeldTickets() == 0
+                && shared.getAvailableTickets() == 0));
+    }
+
+    /**
+     * Tests that numeric ticket IDs stand for the usual ticket text, stay unique across producers that share a
+     * name, and that a producer adding to an off-heap pool allocates nothing per ticket.
+     */
+    private static void testTicketIds() throws InterruptedException, IOException {
+        System.out.println("\n====== Testing numeric ticket IDs ======");
+        TicketIds.Range range = TicketIds.reserve("P-ids");
+        boolean hashesMatch = true;
+        for (int i = 0; i < 70_000; i++) {
+            long ticketId = range.next();
+            hashesMatch &= TicketIds.hashOf(ticketId) == TicketIds.format(ticketId).hashCode();
+        }
+        long queueId = TicketIds.reserve("Q").next();
+        System.out.println("Text and hash codes match: " + (hashesMatch
+                && TicketIds.format(queueId).equals("Ticket-Q-" + TicketIds.sequenceOf(queueId))));
+
+        int namesBefore = TicketIds.getNameCount();
+        boolean registered = true;
+        for (int i = 0; i < 10_000; i++) {
+            String name = "Name-" + namesBefore + "-" + i; // Unique to this run, so the count grows by exactly 10,000
+            registered &= TicketIds.producerOf(TicketIds.reserve(name).next()).equals(name);
+        }
+        TicketIds.reserve("Name-" + namesBefore + "-0");
+        System.out.println("Each new name registered once: " + (registered && TicketIds.getNameCount() == namesBefore + 10_000));
+
+        TicketPoolManager pool = new TicketPoolManager(200_000, SynchronizationMechanism.OFF_HEAP);
+        LogVerbosity verbosity = EventLog.getVerbosity();
+        EventLog.setVerbosity(LogVerbosity.OFF, 100);
+        try {
+            Set<String> sold = new HashSet<>();
+            Thread[] producers = new Thread[4];
+            for (int t = 0; t < producers.length; t++) {
+                Producer producer = new Producer(pool, "Shared", 0, 1 + t % 2 * 9); // Same name, single and batched
+                producers[t] = new Thread(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        producer.step();
+                    }
+                });
+                producers[t].start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            String ticket;
+            while ((ticket = pool.tryPurchase()) != null) {
+                sold.add(ticket);
+            }
+            System.out.println("Producers sharing a name mint unique tickets: " + (sold.size() == 2 * 5000 + 2 * 50_000));
+
+            Producer producer = new Producer(pool, "Minter", 0);
+            producer.step();
+            String minted = pool.viewTicketInfo(0);
+            System.out.println("Numeric ticket found and withdrawn by its text: " + (minted.startsWith("Ticket-Minter-")
+                    && minted.equals(pool.findTicket(minted)) && pool.removeTicket(minted)
+                    && pool.getAvailableTickets() == 0));
+
+            ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+            for (int round = 0; round < 3; round++) { // The last round runs warm, with the pool's index at full size
+                long before = threads.getCurrentThreadAllocatedBytes();
+                for (int i = 0; i < 100_000; i++) {
+                    producer.step();
+                }
+                long bytesPerTicket = (threads.getCurrentThreadAllocatedBytes() - before) / 100_000;
+                pool.purchaseTickets(200_000, new ArrayList<>());
+                if (round == 2) {
+                    System.out.println("Producer allocates nothing per ticket: " + (bytesPerTicket == 0)
+                            + " (" + bytesPerTicket + " bytes)");
+                }
+            }
+
+            // A pool that keeps text builds it on add, so a producer there costs what adding formatted text costs
+            TicketPoolManager textPool = new TicketPoolManager(200_000);
+            Producer textProducer = new Producer(textPool, "Texter", 0);
+            TicketIds.Range texts = TicketIds.reserve("Texter");
+            long numericBytes = 0;
+            long textBytes = 0;
+            for (int round = 0; round < 3; round++) {
+                long before = threads.getCurrentThreadAllocatedBytes();
+                for (int i = 0; i < 100_000; i++) {
+                    textProducer.step();
+                }
+                numericBytes = (threads.getCurrentThreadAllocatedBytes() - before) / 100_000;
+                textPool.purchaseTickets(200_000, new ArrayList<>());
+                before = threads.getCurrentThreadAllocatedBytes();
+                for (int i = 0; i < 100_000; i++) {
+                    textPool.addTicket(TicketIds.format(texts.next()));
+                }
+                textBytes = (threads.getCurrentThreadAllocatedBytes() - before) / 100_000;
+                textPool.purchaseTickets(200_000, new ArrayList<>());
+            }
+            System.out.println("SYNCHRONIZED producer allocates no more than adding its text: "
+                    + (numericBytes > 0 && numericBytes <= textBytes + 8)
+                    + " (" + numericBytes + " bytes, " + textBytes + " adding text)");
+            textPool.close();
+        } finally {
+            EventLog.setVerbosity(verbosity, 100);
+            pool.close();
+        }
+    }
+
+    private static void testPriorityTiers() throws InterruptedException {
+        System.out.println("\n====== Testing priority tiers ======");
+        TicketPoolManager pool = new TicketPoolManager(10);
+        pool.switchSynchronizationMechanism(SynchronizationMechanism.TIERED);
+        pool.addTicket("Presale-1", TicketTier.PRESALE);
+        pool.addTicket("Member-1", TicketTier.MEMBER);
+        pool.addTicket("General-1", TicketTier.GENERAL);
+        System.out.println("Buyers limited to their tier or lower: "
+                + ("General-1".equals(pool.tryPurchase(TicketTier.GENERAL)) && pool.tryPurchase(TicketTier.GENERAL) == null
+                && "Member-1".equals(pool.tryPurchase(TicketTier.MEMBER)) && pool.tryPurchase(TicketTier.MEMBER) == null
+                && "Presale-1".equals(pool.tryPurchase(TicketTier.PRESALE))));
+        pool.addTickets(List.of("General-2", "General-3"), TicketTier.GENERAL);
+        pool.addTicket("Presale-2", TicketTier.PRESALE);
+        System.out.println("Own tier first, then lower tiers in order: "
+                + ("Presale-2".equals(pool.purchaseTicket(TicketTier.PRESALE)) && "General-2".equals(pool.tryPurchase())));
+
+        // With buyers of two tiers waiting for the same ticket, strict selection wakes the higher tier
+        TieredTicketPool strict = new TieredTicketPool(10, TierSelection.STRICT);
+        Map<TicketTier, String> served = new ConcurrentHashMap<>();
+        Thread[] buyers = new Thread[2];
+        TicketTier[] buyerTiers = {TicketTier.GENERAL, TicketTier.PRESALE};
+        for (int b = 0; b < buyers.length; b++) {
+            TicketTier tier = buyerTiers[b];
+            buyers[b] = new Thread(() -> {
+                try {
+                    served.put(tier, strict.purchaseTicket(tier));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            buyers[b].start();
+            Thread.sleep(50);
+        }
+        strict.addTicket("Contested-1");
+        Thread.sleep(100);
+        boolean presaleFirst = "Contested-1".equals(served.get(TicketTier.PRESALE)) && !served.containsKey(TicketTier.GENERAL);
+        strict.addTicket("Contested-2");
+        for (Thread buyer : buyers) {
+            buyer.join(1000);
+        }
+        System.out.println("Strict selection serves the higher tier first: "
+                + (presaleFirst && "Contested-2".equals(served.get(TicketTier.GENERAL))));
+
+        // Under weighted selection every waiting tier gets a share of the wakeups
+        TieredTicketPool weighted = new TieredTicketPool(10);
+        Map<TicketTier, AtomicInteger> purchases = new EnumMap<>(TicketTier.class);
+        List<Thread> consumers = new ArrayList<>();
+        for (TicketTier tier : TicketTier.values()) {
+            AtomicInteger count = new AtomicInteger();
+            purchases.put(tier, count);
+            for (int c = 0; c < 2; c++) {
+                Thread consumer = new Thread(() -> {
+                    try {
+                        while (true) {
+                            weighted.purchaseTicket(tier);
+                            count.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        // Stopped
+                    }
+                });
+                consumer.start();
+                consumers.add(consumer);
+            }
+        }
+        int ticketCount = 2000;
+        for (int i = 0; i < ticketCount; i++) {
+            weighted.putTicket("Weighted-" + i);
+            if (i % 50 == 0) {
+                Thread.sleep(1);
+            }
+        }
+        while (weighted.getAvailableTickets() > 0) {
+            Thread.sleep(10);
+        }
+        for (Thread consumer : consumers) {
+            consumer.interrupt();
+            consumer.join(1000);
+        }
+        int total = 0;
+        for (AtomicInteger count : purchases.values()) {
+            total += count.get();
+        }
+        System.out.println("General tickets bought per buyer tier: " + purchases);
+        System.out.println("Every tier served, nothing lost: "
+                + (total == ticketCount && purchases.values().stream().allMatch(count -> count.get() > 0)));
+    }
+
+    /**
+     * Tests that every record format of the off-heap pool decodes back to the original ticket text.
+     */
+    private static void testOffHeapEncoding() throws InterruptedException {
+        System.out.println("\n====== Testing OFF_HEAP encoding ======");
+        OffHeapTicketPool pool = new OffHeapTicketPool(10);
+        String[] samples = {
+                "Ticket-P1-42",                                   // structured record
+                "Ticket-Vendor-A-007",                            // leading zero: kept as text
+                "Test Ticket 1",                                  // inline text
+                "A ticket description longer than one record"     // heap overflow
+        };
+
+        for (String sample : samples) {
+            pool.addTicket(sample);
+        }
+        System.out.println("Peek at index 1: " + pool.viewTicketInfo(1));
+
+        boolean allMatch = true;
+        for (String sample : samples) {
+            allMatch &= sample.equals(pool.purchaseTicket());
+        }
+        System.out.println("Round trip matches: " + allMatch);
+    }
+
+    /**
+     * Tests the SHARDED pool across its stripes: tickets added by one thread are bought by another through
+     * stealing, the capacity limit stays exact while many threads add at once, and blocked consumers and
+     * producers are woken by the other side.
+     */
+    private static void testStriping() throws InterruptedException {
+        System.out.println("\n====== Testing SHARDED striping ======");
+        ShardedTicketPool pool = new ShardedTicketPool(100, 4);
+
+        // One thread fills its home stripe and spills into the rest; another drains them all
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                pool.addTicket("Ticket-S-" + i);
+            }
+        });
+        producer.start();
+        producer.join();
+        System.out.println("Full after one producer: " + (pool.getAvailableTickets() == 100 && !pool.addTicket("Extra")));
+        Set<String> stolen = new HashSet<>();
+        Thread stealer = new Thread(() -> {
+            try {
+                String ticket;
+                while ((ticket = pool.purchaseTicket(0, TimeUnit.MILLISECONDS)) != null) {
+                    stolen.add(ticket);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stealer.start();
+        stealer.join();
+        System.out.println("Stolen across stripes: " + (stolen.size() == 100 && pool.getAvailableTickets() == 0));
+
+        // Many threads race to fill the pool; exactly its capacity must be accepted
+        int threads = 16;
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] adders = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            adders[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 50; i++) {
+                    if (pool.addTicket("Ticket-H" + id + "-" + i)) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+            adders[t].start();
+        }
+        start.countDown();
+        for (Thread adder : adders) {
+            adder.join();
+        }
+        System.out.println("Capacity exact under contention: "
+                + (accepted.get() == 100 && pool.getAvailableTickets() == 100));
+
+        // Blocked producers and consumers hand every ticket through exactly once
+        Set<String> bought = ConcurrentHashMap.newKeySet();
+        AtomicInteger failures = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 200; i++) {
+                        if (id % 2 == 0) {
+                            pool.putTicket("Ticket-W" + id + "-" + i);
+                        } else if (!bought.add(pool.purchaseTicket())) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    failures.incrementAndGet();
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join(10000);
+            if (worker.isAlive()) {
+                failures.incrementAndGet();
+                worker.interrupt();
+            }
+        }
+        System.out.println("Blocking handoff exact: " + (failures.get() == 0 && bought.size() == 1600
+                && pool.getAvailableTickets() == 100));
+    }
+
+    /**
+     * Tests that snapshots taken while a producer and a consumer are running are internally consistent:
+     * the page matches the size, versions never go backwards, and for the FIFO pools the page is a run of
+     * consecutive tickets. The BlockingQueue pool is unversioned, so only its ordering is checked.
+     */
+    private static void testSnapshots() throws InterruptedException {
+        System.out.println("\n====== Testing snapshot reads ======");
+        for (SynchronizationMechanism mechanism : SynchronizationMechanism.values()) {
+            TicketPoolManager pool = new TicketPoolManager(1000);
+            pool.switchSynchronizationMechanism(mechanism);
+            pool.addTickets(List.of("Snap-0", "Snap-1", "Snap-2"));
+            PoolSnapshot initial = pool.snapshot(2);
+            boolean initialCorrect = initial.getAvailableTickets() == 3
+                    && initial.getTickets().equals(List.of("Snap-0", "Snap-1"));
+            pool.purchaseTickets(3, new ArrayList<>());
+
+            Thread producer = new Thread(() -> {
+                for (int i = 3; i < 20000; ) {
+                    if (pool.addTicket("Snap-" + i)) {
+                        i++;
+                    }
+                }
+            });
+            Thread consumer = new Thread(() -> {
+                try {
+                    for (int i = 3; i < 20000; i++) {
+                        pool.purchaseTicket();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producer.start();
+            consumer.start();
+
+            int snapshots = 0;
+            int inconsistent = 0;
+            long lastVersion = -1;
+            while (consumer.isAlive()) {
+                PoolSnapshot snapshot = pool.snapshot(5);
+                snapshots++;
+                List<String> page = snapshot.getTickets();
+                boolean consistent = true;
+                for (int i = 1; i < page.size(); i++) {
+                    int previous = Integer.parseInt(page.get(i - 1).substring(5));
+                    int next = Integer.parseInt(page.get(i).substring(5));
+                    if (mechanism == SynchronizationMechanism.BLOCKING_QUEUE ? next <= previous
+                            : mechanism != SynchronizationMechanism.SHARDED && next != previous + 1) {
+                        consistent = false;
+                    }
+                }
+                if (snapshot.getVersion() >= 0) {
+                    consistent &= page.size() == Math.min(5, snapshot.getAvailableTickets())
+                            && snapshot.getVersion() >= lastVersion;
+                    lastVersion = snapshot.getVersion();
+                }
+                if (!consistent) {
+                    inconsistent++;
+                }
+            }
+            producer.join();
+
+            System.out.println(mechanism + ": initial snapshot correct: " + initialCorrect
+                    + ", " + snapshots + " snapshots under load, inconsistent: " + inconsistent);
+        }
+    }
+
+    /**
+     * Tests that switching mechanisms keeps queued tickets in order, redirects consumers blocked in the
+     * old implementation, and neither loses nor duplicates tickets while producers and consumers are running.
+     */
+    private static void testLiveSwitching() throws InterruptedException {
+        System.out.println("\n====== Testing live mechanism switching ======");
+        TicketPoolManager pool = new TicketPoolManager(1000);
+
+        for (int i = 0; i < 5; i++) {
+            pool.addTicket("Queued-" + i);
+        }
+        pool.switchSynchronizationMechanism(SynchronizationMechanism.LOCK_FREE_RING);
+        System.out.println("Migrated tickets: " + pool.getLastMigratedTickets()
+                + ", head after switch: " + pool.viewTicketInfo(0));
+        List<String> drained = new ArrayList<>();
+        pool.purchaseTickets(5, drained);
+
+        // Consumers blocked on an empty pool must follow the switch
+        CountDownLatch redirected = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            new Thread(() -> {
+                try {
+                    pool.purchaseTicket();
+                    redirected.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }).start();
+        }
+        Thread.sleep(50);
+        pool.switchSynchronizationMechanism(SynchronizationMechanism.REENTRANT_LOCK);
+        for (int i = 0; i < 3; i++) {
+            pool.addTicket("After-Switch-" + i);
+        }
+        System.out.println("Blocked consumers redirected: " + redirected.await(5, TimeUnit.SECONDS));
+
+        // Switch repeatedly under load and check that every ticket is accounted for exactly once
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger added = new AtomicInteger();
+        Set<String> purchased = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch producersDone = new CountDownLatch(4);
+        for (int p = 0; p < 4; p++) {
+            final int producerId = p;
+            executor.submit(() -> {
+                for (int j = 0; j < 2000; j++) {
+                    if (pool.addTicket("Live-" + producerId + "-" + j)) {
+                        added.incrementAndGet();
+                    }
+                }
+                producersDone.countDown();
+            });
+        }
+        for (int c = 0; c < 4; c++) {
+            executor.submit(() -> {
+                try {
+                    String ticket;
+                    while ((ticket = pool.purchaseTicket(200, TimeUnit.MILLISECONDS)) != null) {
+                        if (!purchased.add(ticket)) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        SynchronizationMechanism[] mechanisms = SynchronizationMechanism.values();
+        for (int i = 0; producersDone.getCount() > 0; i++) {
+            pool.switchSynchronizationMechanism(mechanisms[i % mechanisms.length]);
+            Thread.sleep(5);
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        System.out.println("Added: " + added.get() + ", purchased: " + purchased.size()
+                + ", remaining: " + pool.getAvailableTickets() + ", duplicates: " + duplicates.get());
+        System.out.println("No tickets lost: " + (added.get() == purchased.size() + pool.getAvailableTickets()));
+    }
+
+    /**
+     * Tests that the asynchronous event log writes every event in FULL mode, about one in n in SAMPLED mode,
+     * none when OFF, and formats records the way the actors used to print them.
+     */
+    private static void testEventLog() throws InterruptedException {
+        System.out.println("\n====== Testing event log ======");
+        PrintStream console = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+        int[] lines = new int[3];
+        try {
+            LogVerbosity[] levels = {LogVerbosity.FULL, LogVerbosity.SAMPLED, LogVerbosity.OFF};
+            for (int level = 0; level < levels.length; level++) {
+                EventLog.setVerbosity(levels[level], 10);
+                Thread[] actors = new Thread[4];
+                for (int t = 0; t < actors.length; t++) {
+                    String actorId = "Actor-" + t;
+                    actors[t] = new Thread(() -> {
+                        for (int i = 0; i < 2500; i++) {
+                            EventLog.record(EventLog.Kind.PURCHASED, actorId, "Ticket-" + i);
+                        }
+                    });
+                    actors[t].start();
+                }
+                for (Thread actor : actors) {
+                    actor.join();
+                }
+                EventLog.flush(5, TimeUnit.SECONDS);
+                lines[level] = captured.toString().split("\n", -1).length - 1;
+                captured.reset();
+            }
+        } finally {
+            EventLog.setVerbosity(LogVerbosity.FULL, 100);
+        }
+        EventLog.record(EventLog.Kind.PRODUCED_BATCH, "P1", 3, "Ticket-P1-0", "Ticket-P1-2");
+        EventLog.flush(5, TimeUnit.SECONDS);
+        System.setOut(console);
+
+        System.out.println("FULL wrote all events: " + (lines[0] + EventLog.getDroppedEvents() == 10000));
+        System.out.println("SAMPLED wrote about one in ten: " + (lines[1] > 500 && lines[1] < 1500));
+        System.out.println("OFF wrote nothing: " + (lines[2] == 0));
+        System.out.println("Formatted: " + captured.toString().trim());
+    }
+
+    /**
+     * Tests histogram precision and that the instrumentation layer counts operations, full-pool rejections
+     * and empty-pool waits for the mechanism in use, and nothing while disabled.
+     */
+    private static void testStatistics() throws InterruptedException {
+        System.out.println("\n====== Testing pool statistics ======");
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        System.out.println("Percentiles within 12.5%: "
+                + (Math.abs(snapshot.getPercentile(50) - 50000) <= 6250
+                && Math.abs(snapshot.getPercentile(99) - 99000) <= 12375
+                && snapshot.getMax() == 100000));
+
+        TicketPoolManager pool = new TicketPoolManager(10);
+        pool.switchSynchronizationMechanism(SynchronizationMechanism.REENTRANT_LOCK);
+        pool.addTicket("Unmeasured");
+        pool.setStatisticsEnabled(true);
+        for (int i = 0; i < 12; i++) {
+            pool.addTicket("Stats-" + i);
+        }
+        while (pool.tryPurchase() != null) {
+            // Empty the pool
+        }
+        Thread consumer = new Thread(() -> {
+            try {
+                pool.purchaseTicket();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        Thread.sleep(50);
+        pool.addTicket("Stats-Wait");
+        consumer.join();
+
+        PoolStatistics statistics = pool.getStatistics(SynchronizationMechanism.REENTRANT_LOCK);
+        System.out.println("Adds: " + statistics.snapshot(PoolStatistics.Operation.ADD).getCount()
+                + ", rejections: " + statistics.getFullPoolRejections()
+                + ", empty-pool waits: " + statistics.getEmptyPoolWaits()
+                + ", purchase wait measured: "
+                + (statistics.snapshot(PoolStatistics.Operation.PURCHASE).getMax() >= TimeUnit.MILLISECONDS.toNanos(40)));
+        System.out.print(pool.formatStatistics());
+
+        pool.resetStatistics();
+        pool.setStatisticsEnabled(false);
+        pool.addTicket("Unmeasured");
+        System.out.println("Nothing recorded while disabled: " + pool.formatStatistics().isEmpty());
+    }
+
+    /**
+     * Tests the auto-tuner's decisions on made-up intervals: no switch on thin traffic or on load that flips
+     * back and forth, a switch only after the same choice wins several intervals in a row, and a switch that
+     * made contention worse being undone and not retried. Then checks that AUTO on a live pool moves a
+     * lightly used pool to the synchronized implementation without losing tickets.
+     */
+    private static void testAutoTuning() throws InterruptedException {
+        System.out.println("\n====== Testing auto-tuning ======");
+        SynchronizationMechanism sync = SynchronizationMechanism.SYNCHRONIZED;
+        SynchronizationMechanism ring = SynchronizationMechanism.LOCK_FREE_RING;
+        AutoTuner.Sample thin = new AutoTuner.Sample(10, 0, 0, 500_000, 0);
+        AutoTuner.Sample contended = new AutoTuner.Sample(100_000, 1_000, 100, 200_000, 0);
+        AutoTuner.Sample worse = new AutoTuner.Sample(100_000, 1_000, 100, 400_000, 0);
+        AutoTuner.Sample quiet = new AutoTuner.Sample(100_000, 1_000, 100, 5_000, 0);
+        AutoTuner.Sample readHeavy = new AutoTuner.Sample(100_000, 80_000, 100, 200_000, 0);
+        AutoTuner.Sample waitHeavy = new AutoTuner.Sample(100_000, 1_000, 30_000, 200_000, 5_000_000);
+
+        AutoTuner flapping = new AutoTuner(new TicketPoolManager(10), 1000);
+        boolean stayed = flapping.decide(sync, thin) == null;
+        for (int i = 0; i < 10; i++) {
+            stayed &= flapping.decide(sync, i % 2 == 0 ? contended : quiet) == null;
+        }
+        System.out.println("No switch on thin or flapping load: " + stayed);
+
+        AutoTuner tuner = new AutoTuner(new TicketPoolManager(10), 1000);
+        boolean confirmed = tuner.decide(sync, contended) == null && tuner.decide(sync, contended) == null
+                && tuner.decide(sync, contended) == ring;
+        System.out.println("Switch after three contended intervals: " + confirmed);
+        boolean reverted = tuner.decide(ring, worse) == null && tuner.decide(ring, worse) == null
+                && tuner.decide(ring, worse) == sync;
+        boolean backedOff = true;
+        for (int i = 0; i < 10; i++) {
+            backedOff &= tuner.decide(sync, contended) == null;
+        }
+        System.out.println("Worse switch undone and not retried: " + (reverted && backedOff));
+
+        AutoTuner classifier = new AutoTuner(new TicketPoolManager(10), 1000);
+        for (int i = 0; i < 2; i++) {
+            classifier.decide(sync, readHeavy);
+        }
+        SynchronizationMechanism forReads = classifier.decide(sync, readHeavy);
+        AutoTuner waits = new AutoTuner(new TicketPoolManager(10), 1000);
+        for (int i = 0; i < 2; i++) {
+            waits.decide(sync, waitHeavy);
+        }
+        SynchronizationMechanism forWaits = waits.decide(sync, waitHeavy);
+        System.out.println("Read-heavy picks " + forReads + ", wait-heavy picks " + forWaits + ": "
+                + (forReads == SynchronizationMechanism.REENTRANT_LOCK && forWaits == SynchronizationMechanism.BLOCKING_QUEUE));
+        List<String> decisions = tuner.getDecisions();
+        System.out.println("Every decision logged with its reason: " + (decisions.size() == 16
+                && decisions.get(2).contains("switch SYNCHRONIZED -> LOCK_FREE_RING")
+                && decisions.get(5).contains("revert LOCK_FREE_RING -> SYNCHRONIZED: ")
+                && decisions.get(5).contains("contention rose from 200.0 us")));
+
+        TicketPoolManager pool = new TicketPoolManager(100);
+        pool.switchSynchronizationMechanism(SynchronizationMechanism.BLOCKING_QUEUE);
+        pool.setAutoTuningInterval(100);
+        pool.switchSynchronizationMechanism(SynchronizationMechanism.AUTO);
+        int added = 0;
+        int purchased = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pool.getCurrentMechanism() != sync && System.nanoTime() < deadline) {
+            if (pool.addTicket("Auto-" + added)) {
+                added++;
+            }
+            if (added % 2 == 0 && pool.tryPurchase() != null) {
+                purchased++;
+            }
+        }
+        System.out.println("AUTO moved a quiet pool to " + pool.getCurrentMechanism() + " without losing tickets: "
+                + (pool.getCurrentMechanism() == sync && pool.isAutoTuning()
+                && added == purchased + pool.getAvailableTickets()));
+        pool.switchSynchronizationMechanism(SynchronizationMechanism.REENTRANT_LOCK);
+        System.out.println("Choosing a mechanism turns AUTO off: " + (!pool.isAutoTuning()
+                && !pool.isStatisticsEnabled() && pool.getAutoTuningDecisions().isEmpty()));
+    }
+
+    /**
+     * Tests that event pools are created on first use with their own settings, stay apart, and are evicted
+     * when sold out or idle but never while a call is waiting on them.
+     */
+    private static void testEventRegistry() throws InterruptedException {
+        System.out.println("\n====== Testing event registry ======");
+        EventRegistry registry = new EventRegistry(100, SynchronizationMechanism.SYNCHRONIZED, 300, 50, TimeUnit.MILLISECONDS);
+        TicketPool concert = registry.event("Concert", 5, SynchronizationMechanism.SYNCHRONIZED);
+        TicketPool match = registry.event("Match", 100, SynchronizationMechanism.LOCK_FREE_RING);
+        boolean lazy = registry.getEventCount() == 0;
+        int added = 0;
+        for (int i = 0; i < 6; i++) {
+            added += concert.addTicket("Concert-" + i) ? 1 : 0;
+        }
+        match.addTicket("Match-0");
+        System.out.println("Events created on first use with their own settings: " + (lazy && added == 5
+                && registry.getEventCount() == 2
+                && registry.getPool("Match").getCurrentMechanism() == SynchronizationMechanism.LOCK_FREE_RING));
+        System.out.println("Events keep their tickets apart: " + (concert.getAvailableTickets() == 5
+                && match.getAvailableTickets() == 1 && "Match-0".equals(match.findTicket("Match-0"))
+                && concert.findTicket("Match-0") == null));
+
+        while (concert.tryPurchase() != null) {
+            // Sell the concert out
+        }
+        TicketPoolManager soldOut = registry.getPool("Concert");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.getPool("Concert") != null && System.nanoTime() < deadline) {
+            match.getAvailableTickets(); // Keeps the match busy so only the concert goes idle
+            Thread.sleep(5);
+        }
+        boolean evicted = registry.getPool("Concert") == null && registry.getPool("Match") != null
+                && registry.getDiscardedTickets() == 0;
+        boolean recreated = concert.addTicket("Concert-Again") && registry.getPool("Concert") != soldOut
+                && registry.getPool("Concert").getCapacity() == 5;
+        System.out.println("Sold-out event evicted and re-created on next use: " + (evicted && recreated));
+
+        concert.tryPurchase();
+        TicketPoolManager waitingPool = registry.getPool("Concert");
+        CompletableFuture<String> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return concert.purchaseTicket();
+            } catch (InterruptedException e) {
+                return null;
+            }
+        });
+        for (int i = 0; i < 30; i++) {
+            match.getAvailableTickets();
+            Thread.sleep(10);
+        }
+        boolean kept = registry.getPool("Concert") == waitingPool;
+        concert.addTicket("Concert-Late");
+        String late = waiting.join();
+        System.out.println("No eviction while a purchase waits: " + (kept && "Concert-Late".equals(late)));
+
+        match.addTicket("Match-1");
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.getPool("Match") != null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        System.out.println("Idle event evicted with its unsold tickets counted: " + (registry.getPool("Match") == null
+                && registry.getDiscardedTickets() == 2 && match.getAvailableTickets() == 0));
+        registry.close();
+
+        EventRegistry many = new EventRegistry(16);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5000; i++) {
+            many.event("Event-" + i).addTicket("Ticket-" + i);
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("5000 events created in " + elapsedMs + " ms: " + (many.getEventCount() == 5000
+                && many.event("Event-4999").findTicket("Ticket-4999") != null));
+        many.close();
+    }
+
+    /**
+     * Tests that a scenario offers the same seeded arrivals on every run, that no ticket is lost across phases
+     * and a mechanism switch, and that queueing delay behind a slow server shows up in the response times.
+     */
+    private static void testScenarioRunner() throws InterruptedException, IOException {
+        System.out.println("\n====== Testing scenario runner ======");
+        boolean rejected;
+        try {
+            Scenario.parse(List.of("capacity 10", "phase sale purchase-rate=10"));
+            rejected = false;
+        } catch (IllegalArgumentException e) {
+            rejected = e.getMessage().startsWith("line 2: ");
+        }
+        System.out.println("Invalid scenario line reported: " + rejected);
+
+        List<String> lines = List.of(
+                "capacity 500",
+                "prefill 100   # on sale from the start",
+                "seed 42",
+                "phase steady duration=200ms add-rate=1000 purchase-rate=800 producers=2 consumers=2",
+                "phase rush duration=200ms purchase-rate=5000 consumers=4 arrivals=bursty burst=25 mechanism=LOCK_FREE_RING",
+                "phase slow duration=100ms purchase-rate=1000 patience=2");
+        ScenarioRunner first = new ScenarioRunner(Scenario.parse(lines));
+        first.run();
+        ScenarioRunner second = new ScenarioRunner(Scenario.parse(lines));
+        second.run();
+        System.out.println("Same seed offers the same arrivals: " + (first.getOffered("steady", "add") > 0
+                && first.getOffered("steady", "add") == second.getOffered("steady", "add")
+                && first.getOffered("steady", "purchase") == second.getOffered("steady", "purchase")
+                && first.getOffered("rush", "purchase") == second.getOffered("rush", "purchase")
+                && first.getOffered("rush", "purchase") % 25 == 0));
+
+        Path report = Files.createTempFile("scenario", ".csv");
+        first.writeReport(report);
+        List<String> rows = Files.readAllLines(report);
+        Files.delete(report);
+        Map<String, String[]> byLoad = new LinkedHashMap<>();
+        for (String row : rows.subList(1, rows.size())) {
+            String[] columns = row.split(",");
+            byLoad.put(columns[0] + "/" + columns[1], columns);
+        }
+        long added = Long.parseLong(byLoad.get("steady/add")[6]);
+        long sold = 0;
+        long served = 0;
+        for (String[] columns : byLoad.values()) {
+            served += Long.parseLong(columns[6]) + Long.parseLong(columns[7]);
+            if (columns[1].equals("purchase")) {
+                sold += Long.parseLong(columns[6]);
+            }
+        }
+        System.out.println("Every arrival served and no ticket lost: " + (rows.get(0).startsWith("phase,operation,")
+                && byLoad.size() == 4 && served == first.getOffered("steady", "add")
+                + first.getOffered("steady", "purchase") + first.getOffered("rush", "purchase")
+                + first.getOffered("slow", "purchase")
+                && 100 + added == sold + first.getAvailableTickets()));
+
+        // One consumer waiting 2 ms per purchase on an empty pool serves 500 a second against 1000 offered
+        String[] slow = byLoad.get("slow/purchase");
+        double responseP50 = Double.parseDouble(slow[11]);
+        double serviceP50 = Double.parseDouble(slow[16]);
+        System.out.println("Queueing delay counted from the due time (p50 " + responseP50 + " us vs "
+                + serviceP50 + " us service): " + (responseP50 > 5 * serviceP50));
+        System.out.println("JSON report lists every load: "
+                + (first.formatJson().split("\"operation\"", -1).length - 1 == 4));
+    }
+
+    /**
+     * Tests the network front end: pipelined requests answered in order, purchases that wait without a thread
+     * each, and no ticket lost when a buyer disconnects while waiting.
+     */
+    private static void testTicketServer() throws InterruptedException, IOException {
+        System.out.println("\n====== Testing ticket server ======");
+        TicketPoolManager pool = new TicketPoolManager(3, SynchronizationMechanism.LOCK_FREE_RING);
+        InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        String host = InetAddress.getLoopbackAddress().getHostAddress();
+        try (TicketServer server = new TicketServer(pool, loopback);
+             TicketClient client = new TicketClient(host, server.getPort())) {
+            for (int i = 0; i < 5; i++) {
+                client.sendAdd("Net-" + i);
+            }
+            client.flush();
+            boolean pipelined = true;
+            for (int i = 0; i < 5; i++) {
+                TicketClient.Response response = client.receive();
+                pipelined &= response.getRequestId() == i
+                        && response.getStatus() == (i < 3 ? TicketProtocol.OK : TicketProtocol.REJECTED);
+            }
+            TicketClient.Response status = client.status();
+            System.out.println("Pipelined adds answered in order, full pool rejected: " + (pipelined
+                    && status.getAvailable() == 3 && status.getCapacity() == 3
+                    && status.getMechanism().equals("LOCK_FREE_RING")));
+            System.out.println("Batch purchase drains what is available: "
+                    + (client.purchaseTickets(2, 0).equals(List.of("Net-0", "Net-1"))
+                    && client.purchaseTickets(5, 0).equals(List.of("Net-2"))
+                    && client.purchaseTicket(0) == null && client.purchaseTicket(50) == null));
+
+            int threadsBefore = Thread.activeCount();
+            int waiting = 500;
+            for (int i = 0; i < waiting; i++) {
+                client.sendPurchase(1, -1);
+            }
+            client.flush();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (server.getPendingPurchases() < waiting && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            boolean noThreadEach = server.getPendingPurchases() == waiting && Thread.activeCount() - threadsBefore < 10;
+            Set<String> sold = new HashSet<>();
+            try (TicketClient producer = new TicketClient(host, server.getPort())) {
+                for (int i = 0; i < waiting; i++) {
+                    producer.sendAdd("Wait-" + i);
+                }
+                producer.flush();
+                for (int i = 0; i < waiting; i++) {
+                    producer.receive();
+                }
+            }
+            for (int i = 0; i < waiting; i++) {
+                sold.addAll(client.receive().getTickets());
+            }
+            System.out.println(waiting + " waiting purchases held without a thread each, all served: "
+                    + (noThreadEach && sold.size() == waiting && server.getPendingPurchases() == 0));
+
+            TicketClient leaving = new TicketClient(host, server.getPort());
+            leaving.sendPurchase(1, -1);
+            leaving.flush();
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (server.getPendingPurchases() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            leaving.close();
+            while (server.getPendingPurchases() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            boolean added = client.addTicket("Net-Kept");
+            System.out.println("Disconnect withdraws a waiting purchase without losing a ticket: "
+                    + (added && pool.getAvailableTickets() == 1 && server.getConnectionCount() == 1));
+
+            TicketLoadClient.Result load = TicketLoadClient.run(host, server.getPort(), 2, 16, 200);
+            System.out.println("Load client: " + load + ": " + (load.getRequests() > 0));
+        }
+        pool.close();
+
+        // A batch larger than one response frame is split over several purchases without losing a ticket
+        TicketPoolManager large = new TicketPoolManager(10000);
+        try (TicketServer server = new TicketServer(large, loopback);
+             TicketClient client = new TicketClient(host, server.getPort())) {
+            for (int i = 0; i < 10000; i++) {
+                client.sendAdd(String.format("Ticket-Oversized-%05d", i));
+            }
+            client.flush();
+            for (int i = 0; i < 10000; i++) {
+                client.receive();
+            }
+            List<String> first = client.purchaseTickets(10000, 0);
+            Set<String> bought = new HashSet<>(first);
+            List<String> batch;
+            while (!(batch = client.purchaseTickets(10000, 0)).isEmpty()) {
+                bought.addAll(batch);
+            }
+            System.out.println("Oversized batch purchase split over frames: " + (first.size() > 0 && first.size() < 10000
+                    && first.get(0).equals("Ticket-Oversized-00000") && bought.size() == 10000
+                    && large.getAvailableTickets() == 0));
+        }
+        large.close();
+
+        // Waiting purchases are answered while the pool switches mechanisms under the server
+        TicketPoolManager switching = new TicketPoolManager(100);
+        try (TicketServer server = new TicketServer(switching, loopback);
+             TicketClient client = new TicketClient(host, server.getPort())) {
+            AtomicInteger bought = new AtomicInteger();
+            Thread buyer = new Thread(() -> {
+                try {
+                    while (bought.get() < 600) {
+                        bought.addAndGet(client.purchaseTickets(3, -1).size());
+                    }
+                } catch (IOException e) {
+                    System.out.println("Buyer failed: " + e);
+                }
+            });
+            buyer.start();
+            Thread switcher = new Thread(() -> {
+                SynchronizationMechanism[] mechanisms = {SynchronizationMechanism.LOCK_FREE_RING,
+                        SynchronizationMechanism.SYNCHRONIZED, SynchronizationMechanism.SHARDED};
+                for (int i = 0; buyer.isAlive() && i < 30; i++) {
+                    switching.switchSynchronizationMechanism(mechanisms[i % mechanisms.length]);
+                }
+            });
+            switcher.start();
+            for (int i = 0; i < 600; i++) {
+                switching.putTicket("Switching-" + i);
+                if (i % 50 == 0) {
+                    Thread.sleep(1); // Lets the buyer catch up and wait, so adds complete its purchases
+                }
+            }
+            buyer.join(10000);
+            switcher.join(10000);
+            System.out.println("Waiting purchases answered across switches: " + (bought.get() == 600
+                    && !buyer.isAlive() && !switcher.isAlive()));
+        }
+        switching.close();
+
+        // A client refuses a frame it could never buffer instead of waiting for the rest of it
+        boolean refused = false;
+        try (ServerSocket fake = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             TicketClient client = new TicketClient(host, fake.getLocalPort());
+             Socket accepted = fake.accept()) {
+            new DataOutputStream(accepted.getOutputStream()).writeInt(TicketProtocol.MAX_FRAME + 1);
+            client.receive();
+        } catch (IOException e) {
+            refused = !(e instanceof EOFException) && e.getMessage().startsWith("Response frame");
+        }
+        System.out.println("Client refuses a frame larger than its buffer: " + refused);
+    }
+
+    /**
+     * Tests a cluster of nodes on localhost: tickets spread over the partitions, purchases falling back to other
+     * partitions, and every ticket sold at most once while a node is killed mid-sale.
+     */
+    private static void testCluster() throws InterruptedException, IOException {
+        System.out.println("\n====== Testing cluster ======");
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        List<TicketPoolManager> pools = new ArrayList<>();
+        List<TicketServer> servers = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TicketPoolManager pool = new TicketPoolManager(2000, SynchronizationMechanism.LOCK_FREE_RING);
+            TicketServer server = new TicketServer(pool, new InetSocketAddress(loopback, 0));
+            pools.add(pool);
+            servers.add(server);
+            addresses.add(new InetSocketAddress(loopback, server.getPort()));
+        }
+
+        int total = 3000;
+        try (TicketCluster cluster = new TicketCluster(addresses, 20, TimeUnit.MILLISECONDS)) {
+            int added = 0;
+            for (int i = 0; i < total; i++) {
+                added += cluster.addTicket("Cluster-" + i) ? 1 : 0;
+            }
+            cluster.refresh();
+            boolean spread = true;
+            for (TicketPoolManager pool : pools) {
+                spread &= pool.getAvailableTickets() > total / 6;
+            }
+            System.out.println("Tickets spread over 3 partitions, estimate matches: " + (added == total && spread
+                    && cluster.getAvailableTickets() == total));
+
+            Set<String> sold = ConcurrentHashMap.newKeySet();
+            AtomicInteger duplicates = new AtomicInteger();
+            CountDownLatch halfSold = new CountDownLatch(total / 3);
+            List<Thread> buyers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread buyer = new Thread(() -> {
+                    String ticket;
+                    while ((ticket = cluster.tryPurchase()) != null) {
+                        if (!sold.add(ticket)) {
+                            duplicates.incrementAndGet();
+                        }
+                        halfSold.countDown();
+                    }
+                });
+                buyers.add(buyer);
+                buyer.start();
+            }
+            halfSold.await();
+            servers.get(1).close(); // Kill a node mid-sale
+            for (Thread buyer : buyers) {
+                buyer.join();
+            }
+            int stranded = pools.get(1).getAvailableTickets();
+            System.out.println("Killed node's partition skipped, no ticket sold twice or lost: " + (duplicates.get() == 0
+                    && sold.size() + stranded == total && pools.get(0).getAvailableTickets() == 0
+                    && pools.get(2).getAvailableTickets() == 0 && cluster.getLiveNodes() == 2
+                    && cluster.getNodeFailures() > 0));
+
+            CompletableFuture<String> waiting = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return cluster.purchaseTicket(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            });
+            Thread.sleep(100);
+            pools.get(2).addTicket("Cluster-Late");
+            System.out.println("Waiting purchase finds a ticket on another partition: "
+                    + "Cluster-Late".equals(waiting.join()));
+        } finally {
+            for (TicketServer server : servers) {
+                server.close();
+            }
+            for (TicketPoolManager pool : pools) {
+                pool.close();
+            }
+        }
+
+        double one = TicketCluster.measureLocal(1, 8, 300);
+        double three = TicketCluster.measureLocal(3, 8, 300);
+        System.out.printf("Cluster throughput: 1 node %.0f ops/sec, 3 nodes %.0f ops/sec (one machine)%n", one, three);
+    }
+
+    /**
+     * Tests that 100,000 scheduled consumers and a few producers share a handful of engine threads, that a
+     * rate change takes effect while they run, and that stopping them leaves no purchase pending and no
+     * ticket lost.
+     */
+    private static void testActorEngine() throws InterruptedException, IOException {
+        System.out.println("\n====== Testing scheduled actor engine ======");
+        AtomicInteger produced = new AtomicInteger();
+        AtomicInteger purchased = new AtomicInteger();
+        // Counts tickets in and out, including those bought by purchases that waited
+        TicketPoolManager pool = new TicketPoolManager(10_000, SynchronizationMechanism.LOCK_FREE_RING) {
+            @Override
+            public boolean addTicket(long ticketId, TicketTier tier) {
+                boolean added = super.addTicket(ticketId, tier);
+                produced.addAndGet(added ? 1 : 0);
+                return added;
+            }
+
+            @Override
+            public String tryPurchase(TicketTier tier) {
+                String ticket = super.tryPurchase(tier);
+                purchased.addAndGet(ticket != null ? 1 : 0);
+                return ticket;
+            }
+
+            @Override
+            public CompletableFuture<String> purchaseTicketAsync(TicketTier tier) {
+                CompletableFuture<String> purchase = super.purchaseTicketAsync(tier);
+                if (purchase != null) {
+                    purchase.thenAccept(ticket -> purchased.incrementAndGet());
+                }
+                return purchase;
+            }
+        };
+        EventLog.setVerbosity(LogVerbosity.OFF, 100);
+        ActorEngine engine = new ActorEngine(4);
+        try {
+            int threadsBefore = Thread.activeCount();
+            List<ActorHandle> producers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                producers.add(ActorHandle.start(new Producer(pool, "P" + i, 1), engine));
+            }
+            List<ActorHandle> consumers = new ArrayList<>();
+            for (int i = 0; i < 100_000; i++) {
+                consumers.add(ActorHandle.start(new Consumer(pool, "C" + i, 20), engine));
+            }
+            Thread.sleep(1000);
+            System.out.println("100,000 consumers on " + engine.getThreadCount() + " threads, tickets flowing: "
+                    + (engine.getThreadCount() <= 4 && Thread.activeCount() - threadsBefore <= 4
+                    && engine.getActorCount() == 100_008 && purchased.get() > 0));
+
+            int before = produced.get();
+            Thread.sleep(500);
+            int fast = produced.get() - before;
+            producers.forEach(producer -> producer.setDelayMs(100));
+            Thread.sleep(200); // Let steps scheduled at the old rate run out
+            before = produced.get();
+            Thread.sleep(500);
+            int slow = produced.get() - before;
+            System.out.println("Rate change applies while running (" + fast + " then " + slow + " tickets): "
+                    + (slow > 0 && slow * 5 < fast));
+
+            boolean stopped = true;
+            for (List<ActorHandle> actors : List.of(producers, consumers)) {
+                actors.forEach(ActorHandle::stop);
+                for (ActorHandle actor : actors) {
+                    stopped &= actor.await(5, TimeUnit.SECONDS);
+                }
+            }
+            int available = pool.getAvailableTickets();
+            pool.addTicket("After-Stop");
+            System.out.println("Stop drains every actor, no purchase left pending: " + (stopped
+                    && engine.getActorCount() == 0 && pool.getAvailableTickets() == available + 1));
+            System.out.println("Tickets conserved: " + (produced.get() == purchased.get() + available));
+        } finally {
+            engine.close();
+            EventLog.setVerbosity(LogVerbosity.FULL, 100);
+            pool.close();
+        }
+    }
+
+    /**
+     * Tests that an hour of virtual traffic runs in seconds, that the same seed gives the same run, and that
+     * tickets are conserved and closing withdraws the purchases still waiting.
+     */
+    private static void testVirtualTimeSimulation() throws IOException {
+        System.out.println("\n====== Testing virtual-time simulation ======");
+        long written = EventLog.getWrittenEvents() + EventLog.getDroppedEvents();
+        long start = System.nanoTime();
+        String first = simulateHour(42);
+        long wallMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("One virtual hour in " + wallMs + " ms: " + (wallMs < 30_000));
+        System.out.println("Same seed, same run: " + first.equals(simulateHour(42)) + " (" + first + ")");
+        EventLog.flush(5, TimeUnit.SECONDS);
+        System.out.println("Simulated actors leave the shared log alone: " + (EventLog.getVerbosity() == LogVerbosity.FULL
+                && EventLog.getWrittenEvents() + EventLog.getDroppedEvents() == written));
+    }
+
+    // Runs an hour of 10 producers and 500 consumers and returns what happened, having checked conservation
+    private static String simulateHour(long seed) throws IOException {
+        TicketPoolManager pool = new TicketPoolManager(1000, SynchronizationMechanism.REENTRANT_LOCK);
+        List<Producer> producers = new ArrayList<>();
+        List<Consumer> consumers = new ArrayList<>();
+        String result;
+        int available;
+        int waiting;
+        try {
+            try (VirtualTimeSimulation simulation = new VirtualTimeSimulation(seed, 0.2)) {
+                for (int i = 0; i < 10; i++) {
+                    producers.add(new Producer(pool, "P" + i, 100));
+                    producers.get(i).logTo(EventLog.DISCARD);
+                    simulation.add(producers.get(i));
+                }
+                for (int i = 0; i < 500; i++) {
+                    consumers.add(new Consumer(pool, "C" + i, 5000));
+                    consumers.get(i).logTo(EventLog.DISCARD);
+                    simulation.add(consumers.get(i));
+                }
+                simulation.run(3_600_000);
+
+                long produced = producers.stream().mapToLong(Producer::getTicketsProduced).sum();
+                long sold = consumers.stream().mapToLong(Consumer::getTicketsPurchased).sum();
+                available = pool.getAvailableTickets();
+                result = produced + " produced, " + sold + " sold, " + simulation.getSteps() + " steps, wait p99 "
+                        + simulation.getWaitPercentile(99) + " ms";
+                if (simulation.getNow() != 3_600_000 || produced != sold + available || sold == 0) {
+                    result += " (clock or ticket count wrong)";
+                }
+                waiting = simulation.getWaitingActors();
+            }
+            // Closing the simulation withdraws its actors' waiting purchases, so the next ticket stays on sale
+            pool.addTicket("After-Close");
+            if (waiting > 0 && pool.getAvailableTickets() != available + 1) {
+                result += " (purchase left waiting)";
+            }
+        } finally {
+            pool.close();
+        }
+        return result;
+    }
+
+    /**
+     * Tests that unsold tickets survive a restart in order, that segments rotate and are deleted once
+     * checkpointed, and that recovery from a checkpoint plus the journal after it gives the same tickets.
+     */
+    private static void testJournal() throws InterruptedException, IOException {
+        System.out.println("\n====== Testing journal ======");
+        Path directory = Files.createTempDirectory("ticket-journal");
+        try {
+            TicketPoolManager pool = new TicketPoolManager(100, directory, 4096, 10, 60_000, true);
+            for (int i = 0; i < 20; i++) {
+                pool.addTicket("Journal-" + i);
+            }
+            pool.addTickets(List.of("Journal-20", "Journal-21"));
+            for (int i = 0; i < 5; i++) {
+                pool.tryPurchase();
+            }
+            List<String> batch = new ArrayList<>();
+            pool.purchaseTickets(2, batch);
+            pool.purchaseTicketAsync().join();
+            System.out.println("Sync commit durable: " + pool.getJournalState());
+            pool.close();
+
+            TicketPoolManager recovered = new TicketPoolManager(100, directory, 4096, 10, 60_000, false);
+            PoolSnapshot snapshot = recovered.snapshot(100);
+            System.out.println("Recovered unsold tickets in order: " + (snapshot.getAvailableTickets() == 14
+                    && snapshot.getTickets().get(0).equals("Journal-8")
+                    && snapshot.getTickets().get(13).equals("Journal-21")));
+            recovered.close();
+
+            List<String> restored = new ArrayList<>();
+            TicketJournal journal = TicketJournal.open(directory, 4096, 10, 60_000, false, restored);
+            for (int i = 0; i < 1000; i++) {
+                journal.recordAdd("Rotated-" + i);
+                if (i % 2 == 0) {
+                    journal.recordPurchase("Rotated-" + i);
+                }
+            }
+            int segmentsBefore = journal.getSegmentCount();
+            journal.checkpoint();
+            System.out.println("Segments rotated and deleted at checkpoint: "
+                    + (segmentsBefore > 1 && journal.getSegmentCount() < segmentsBefore));
+            journal.recordPurchase("Rotated-1");
+            journal.close();
+
+            restored.clear();
+            TicketJournal.open(directory, 4096, 10, 60_000, false, restored).close();
+            System.out.println("Recovered from checkpoint and journal: " + (restored.size() == 14 + 499
+                    && restored.get(14).equals("Rotated-3") && restored.get(restored.size() - 1).equals("Rotated-999")));
+
+            // Closing under synchronous writers releases every one of them, and each add it acknowledged survives
+            TicketJournal closing = TicketJournal.open(directory, 4096, 10, 60_000, true, new ArrayList<>());
+            AtomicInteger acknowledged = new AtomicInteger();
+            Thread[] writers = new Thread[4];
+            for (int w = 0; w < writers.length; w++) {
+                int writer = w;
+                writers[w] = new Thread(() -> {
+                    try {
+                        for (int i = 0; ; i++) {
+                            closing.recordAdd("Closing-" + writer + "-" + i);
+                            acknowledged.incrementAndGet();
+                        }
+                    } catch (IllegalStateException e) {
+                        // The journal is closed
+                    }
+                });
+                writers[w].start();
+            }
+            Thread.sleep(50);
+            closing.close();
+            boolean released = true;
+            for (Thread writer : writers) {
+                writer.join(5000);
+                released &= !writer.isAlive();
+            }
+            restored.clear();
+            TicketJournal.open(directory, 4096, 10, 60_000, false, restored).close();
+            System.out.println("Close releases synchronous writers and keeps their adds: " + (released
+                    && acknowledged.get() > 0 && restored.size() == 14 + 499 + acknowledged.get()));
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
     /**
      * Compares the performance of different synchronization mechanisms
      * by running high-load ticket add/purchase operations.
@@ -107,57 +1732,37 @@ public class TicketSystemTest {
         int numThreads = 100;
         int operationsPerThread = 1000;
 
-        List<Long> syncTimes = new ArrayList<>();
-        List<Long> lockTimes = new ArrayList<>();
-        List<Long> queueTimes = new ArrayList<>();
+        Map<SynchronizationMechanism, List<Long>> times = new LinkedHashMap<>();
+        for (SynchronizationMechanism mechanism : SynchronizationMechanism.values()) {
+            times.put(mechanism, new ArrayList<>());
+        }
 
         // Run three iterations for each mechanism to average out noise
         for (int iter = 0; iter < 3; iter++) {
             System.out.println("\nIteration " + (iter + 1));
 
-            // Test with 'synchronized'
-            TicketPoolManager syncPool = new TicketPoolManager(numThreads * operationsPerThread);
-            syncPool.switchSynchronizationMechanism(SynchronizationMechanism.SYNCHRONIZED);
-            long syncTime = measurePerformance(syncPool, numThreads, operationsPerThread);
-            syncTimes.add(syncTime);
-            System.out.println("Synchronized time: " + syncTime + " ms");
-
-            // Test with 'ReentrantLock'
-            TicketPoolManager lockPool = new TicketPoolManager(numThreads * operationsPerThread);
-            lockPool.switchSynchronizationMechanism(SynchronizationMechanism.REENTRANT_LOCK);
-            long lockTime = measurePerformance(lockPool, numThreads, operationsPerThread);
-            lockTimes.add(lockTime);
-            System.out.println("ReentrantLock time: " + lockTime + " ms");
-
-            // Test with 'BlockingQueue'
-            TicketPoolManager queuePool = new TicketPoolManager(numThreads * operationsPerThread);
-            queuePool.switchSynchronizationMechanism(SynchronizationMechanism.BLOCKING_QUEUE);
-            long queueTime = measurePerformance(queuePool, numThreads, operationsPerThread);
-            queueTimes.add(queueTime);
-            System.out.println("BlockingQueue time: " + queueTime + " ms");
-        }
-
-        // Calculate average execution time for each mechanism
-        double syncAvg = syncTimes.stream().mapToLong(Long::longValue).average().orElse(0);
-        double lockAvg = lockTimes.stream().mapToLong(Long::longValue).average().orElse(0);
-        double queueAvg = queueTimes.stream().mapToLong(Long::longValue).average().orElse(0);
+            for (SynchronizationMechanism mechanism : times.keySet()) {
+                TicketPoolManager pool = new TicketPoolManager(numThreads * operationsPerThread);
+                pool.switchSynchronizationMechanism(mechanism);
+                long time = measurePerformance(pool, numThreads, operationsPerThread);
+                times.get(mechanism).add(time);
+                System.out.println(mechanism + " time: " + time + " ms");
+            }
+        }
 
+        // Calculate average execution time for each mechanism and determine the fastest
         System.out.println("\nPerformance Results (average):");
-        System.out.println("Synchronized: " + syncAvg + " ms");
-        System.out.println("ReentrantLock: " + lockAvg + " ms");
-        System.out.println("BlockingQueue: " + queueAvg + " ms");
+        SynchronizationMechanism fastest = null;
+        double fastestTime = Double.MAX_VALUE;
 
-        // Determine the fastest mechanism
-        String fastest = "Synchronized";
-        double fastestTime = syncAvg;
-
-        if (lockAvg < fastestTime) {
-            fastest = "ReentrantLock";
-            fastestTime = lockAvg;
-        }
+        for (Map.Entry<SynchronizationMechanism, List<Long>> entry : times.entrySet()) {
+            double average = entry.getValue().stream().mapToLong(Long::longValue).average().orElse(0);
+            System.out.println(entry.getKey() + ": " + average + " ms");
 
-        if (queueAvg < fastestTime) {
-            fastest = "BlockingQueue";
+            if (average < fastestTime) {
+                fastest = entry.getKey();
+                fastestTime = average;
+            }
         }
 
         System.out.println("\nFastest approach: " + fastest);
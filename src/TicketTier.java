@@ -0,0 +1,17 @@
+// Enum to represent ticket tiers, from the highest priority to the lowest. A ticket of a tier can be bought
+// by buyers of that tier or a higher one; the weight is the tier's share of wakeups under weighted selection
+public enum TicketTier {
+    PRESALE(4),
+    MEMBER(2),
+    GENERAL(1);
+
+    private final int weight;
+
+    TicketTier(int weight) {
+        this.weight = weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,5 @@
+// Enum to represent how a tiered pool chooses between buyers of different tiers waiting for the same ticket
+public enum TierSelection {
+    STRICT,
+    WEIGHTED
+}
@@ -0,0 +1,687 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 7. Tiered implementation: one independently locked sub-queue per ticket tier, with priority between buyer tiers
+class TieredTicketPool implements TicketPool, HeldTickets {
+    private static final int OPTIMISTIC_SNAPSHOT_ATTEMPTS = 8;
+    private static final TicketTier[] TIERS = TicketTier.values();
+    private static final int ALL_TIERS = (1 << TIERS.length) - 1;
+
+    private final Tier[] tiers; // Indexed by tier ordinal, highest priority first
+    private final int capacity;
+    private final AtomicInteger size; // Slots reserved across all tiers; the only counter the tiers share
+    private final AtomicInteger stockedTiers; // Bit t is set while tier t holds tickets
+    private final WaitQueue waitingProducers;
+    private final WaitQueue[] waitingBuyers; // One queue per buyer tier, so a wakeup can be aimed at a tier
+    private final TierSelection selection;
+    private final int[] schedule; // Weighted round-robin order of buyer tiers
+    private final AtomicInteger turn;
+    private final ConcurrentHashMap<String, TicketTier> heldTiers; // Tier of each held ticket, to return it to
+    private final PendingPurchases pendingPurchases;
+
+    /**
+     * Constructs a tiered ticket pool that shares wakeups between buyer tiers by weight.
+     */
+    public TieredTicketPool(int capacity) {
+        this(capacity, TierSelection.WEIGHTED);
+    }
+
+    /**
+     * Constructs a tiered ticket pool with the given capacity shared by all tiers.
+     * Each tier has its own queue and lock, so producers and buyers of different tiers never contend; the tiers
+     * share only an atomic slot count and a bitmask of non-empty tiers, which makes choosing a tier constant time.
+     * When a ticket arrives and buyers of several tiers are waiting for it, {@link TierSelection#STRICT} always
+     * wakes the highest tier, while {@link TierSelection#WEIGHTED} shares wakeups by the tiers' weights so that
+     * lower tiers are not starved.
+     */
+    public TieredTicketPool(int capacity, TierSelection selection) {
+        this.tiers = new Tier[TIERS.length];
+        this.waitingBuyers = new WaitQueue[TIERS.length];
+        for (int t = 0; t < TIERS.length; t++) {
+            tiers[t] = new Tier();
+            waitingBuyers[t] = new WaitQueue();
+        }
+        this.capacity = capacity;
+        this.size = new AtomicInteger();
+        this.stockedTiers = new AtomicInteger();
+        this.waitingProducers = new WaitQueue();
+        this.selection = selection;
+        this.schedule = weightedSchedule();
+        this.turn = new AtomicInteger();
+        this.heldTiers = new ConcurrentHashMap<>();
+        this.pendingPurchases = new PendingPurchases();
+    }
+
+    /**
+     * Adds a general ticket, which buyers of every tier may purchase.
+     */
+    @Override
+    public boolean addTicket(String ticketInfo) {
+        return addTicket(ticketInfo, TicketTier.GENERAL);
+    }
+
+    /**
+     * Adds the ticket to its tier's queue if there is a free slot, and wakes a buyer allowed to purchase it.
+     */
+    @Override
+    public boolean addTicket(String ticketInfo, TicketTier tier) {
+        if (pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticketInfo)) {
+            return true; // Delivered straight to the oldest asynchronous purchase
+        }
+        if (reserve(1) == 0) {
+            return false;
+        }
+        tiers[tier.ordinal()].offer(ticketInfo, tier.ordinal());
+        signalBuyer(tier.ordinal());
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return true;
+    }
+
+    /**
+     * Adds general tickets as a batch.
+     */
+    @Override
+    public int addTickets(Collection<String> ticketInfos) {
+        return addTickets(ticketInfos, TicketTier.GENERAL);
+    }
+
+    /**
+     * Reserves slots for as much of the batch as fits, then adds it under a single acquisition of the tier's lock.
+     */
+    @Override
+    public int addTickets(Collection<String> ticketInfos, TicketTier tier) {
+        if (pendingPurchases.hasWaiting()) {
+            // Hand tickets to waiting purchases one by one
+            int added = 0;
+            for (String ticketInfo : ticketInfos) {
+                if (!addTicket(ticketInfo, tier)) {
+                    break;
+                }
+                added++;
+            }
+            return added;
+        }
+        int added = reserve(ticketInfos.size());
+        if (added == 0) {
+            return 0;
+        }
+        tiers[tier.ordinal()].offerAll(ticketInfos.iterator(), added, tier.ordinal());
+        if (added == 1) {
+            signalBuyer(tier.ordinal());
+        } else {
+            for (int b = 0; b <= tier.ordinal(); b++) {
+                waitingBuyers[b].signalAll(); // Several buyers can proceed
+            }
+        }
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+        return added;
+    }
+
+    /**
+     * Waits in the producer queue until a purchase frees a slot, then adds the ticket as a general ticket.
+     */
+    @Override
+    public void putTicket(String ticketInfo) throws InterruptedException {
+        waitingProducers.await(() -> addTicket(ticketInfo) ? Boolean.TRUE : null, this::hasSpace, -1);
+    }
+
+    /**
+     * Waits in the producer queue up to the given timeout for a free slot, then adds the ticket as a general ticket.
+     */
+    @Override
+    public boolean offerTicket(String ticketInfo, long timeout, TimeUnit unit) throws InterruptedException {
+        return offerTicket(ticketInfo, TicketTier.GENERAL, timeout, unit);
+    }
+
+    /**
+     * Waits in the producer queue up to the given timeout for a free slot, returning false if none appeared in time.
+     */
+    @Override
+    public boolean offerTicket(String ticketInfo, TicketTier tier, long timeout, TimeUnit unit) throws InterruptedException {
+        return waitingProducers.await(() -> addTicket(ticketInfo, tier) ? Boolean.TRUE : null, this::hasSpace,
+                Math.max(0, unit.toNanos(timeout))) != null;
+    }
+
+    /**
+     * Waits until a ticket of any tier is available, then removes and returns it.
+     */
+    @Override
+    public String purchaseTicket() throws InterruptedException {
+        return purchaseTicket(TicketTier.PRESALE);
+    }
+
+    /**
+     * Waits in the buyer tier's queue until a ticket it may purchase is available, then removes and returns it.
+     * Tickets of the buyer's own tier are taken first, keeping the tickets lower tiers may buy for them.
+     */
+    @Override
+    public String purchaseTicket(TicketTier tier) throws InterruptedException {
+        int eligible = eligibleTiers(tier);
+        String ticket = take(eligible);
+        if (ticket != null) {
+            return ticket;
+        }
+        try {
+            return waitingBuyers[tier.ordinal()].await(() -> take(eligible), () -> false, -1);
+        } finally {
+            passOnWakeup();
+        }
+    }
+
+    /**
+     * Waits up to the given timeout for a ticket of any tier, returning null if none arrived in time.
+     */
+    @Override
+    public String purchaseTicket(long timeout, TimeUnit unit) throws InterruptedException {
+        String ticket = take(ALL_TIERS);
+        if (ticket != null) {
+            return ticket;
+        }
+        try {
+            return waitingBuyers[0].await(() -> take(ALL_TIERS), () -> false, Math.max(0, unit.toNanos(timeout)));
+        } finally {
+            passOnWakeup();
+        }
+    }
+
+    /**
+     * Removes and returns a ticket of any tier, highest tier first, or null if the pool is empty.
+     */
+    @Override
+    public String tryPurchase() {
+        return take(ALL_TIERS);
+    }
+
+    /**
+     * Waits for a ticket on behalf of a top-tier buyer. Pending purchases are served from any tier, so buyers of
+     * lower tiers cannot wait here and get null.
+     */
+    @Override
+    public CompletableFuture<String> purchaseTicketAsync(TicketTier tier) {
+        return tier == TicketTier.PRESALE ? purchaseTicketAsync() : null;
+    }
+
+    /**
+     * Removes and returns a ticket the buyer tier may purchase, or null if there is none.
+     */
+    @Override
+    public String tryPurchase(TicketTier tier) {
+        return take(eligibleTiers(tier));
+    }
+
+    /**
+     * Returns a future for the next ticket of any tier. If purchases are already waiting, or the pool is empty,
+     * the purchase joins the FIFO queue of waiting purchases and is completed by a later add.
+     */
+    @Override
+    public CompletableFuture<String> purchaseTicketAsync() {
+        if (!pendingPurchases.hasWaiting()) {
+            String ticket = tryPurchase();
+            if (ticket != null) {
+                return CompletableFuture.completedFuture(ticket);
+            }
+        }
+        TicketPurchase purchase = pendingPurchases.register();
+        pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        return purchase;
+    }
+
+    /**
+     * Waits for a ticket of any tier, then drains the rest of the batch tier by tier.
+     */
+    @Override
+    public int purchaseTickets(int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        return purchaseTickets(TicketTier.PRESALE, maxTickets, purchased);
+    }
+
+    /**
+     * Waits for one ticket the buyer tier may purchase, then drains up to maxTickets from the eligible tiers,
+     * own tier first, taking each tier's lock once.
+     */
+    @Override
+    public int purchaseTickets(TicketTier tier, int maxTickets, Collection<? super String> purchased) throws InterruptedException {
+        if (maxTickets <= 0) {
+            return 0;
+        }
+        purchased.add(purchaseTicket(tier));
+        int count = 1;
+        int stocked = stockedTiers.get() & eligibleTiers(tier);
+        while (stocked != 0 && count < maxTickets) {
+            int t = Integer.numberOfTrailingZeros(stocked);
+            int drained = tiers[t].drainTo(maxTickets - count, purchased, t);
+            size.addAndGet(-drained);
+            count += drained;
+            stocked &= stocked - 1;
+        }
+        if (count > 1) {
+            waitingProducers.signalAll(); // Several producers can proceed
+        }
+        return count;
+    }
+
+    /**
+     * Returns the exact number of available tickets by locking every tier in priority order.
+     */
+    @Override
+    public int getAvailableTickets() {
+        lockAll();
+        try {
+            int total = 0;
+            for (Tier tier : tiers) {
+                total += tier.tickets.size();
+            }
+            return total;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Returns the ticket at the given index, counting through the tiers in priority order, or null if invalid.
+     */
+    @Override
+    public String viewTicketInfo(int index) {
+        if (index < 0) {
+            return null;
+        }
+        lockAll();
+        try {
+            int remaining = index;
+            for (Tier tier : tiers) {
+                if (remaining < tier.tickets.size()) {
+                    return tier.tickets.get(remaining);
+                }
+                remaining -= tier.tickets.size();
+            }
+            return null;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Looks the ticket up in each non-empty tier's hash index.
+     */
+    @Override
+    public String findTicket(String ticketId) {
+        int stocked = stockedTiers.get();
+        for (; stocked != 0; stocked &= stocked - 1) {
+            String ticket = tiers[Integer.numberOfTrailingZeros(stocked)].find(ticketId);
+            if (ticket != null) {
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Unlinks the ticket from whichever tier holds it, waking a producer waiting for space if it was found.
+     */
+    @Override
+    public boolean removeTicket(String ticketId) {
+        int stocked = stockedTiers.get();
+        for (; stocked != 0; stocked &= stocked - 1) {
+            int t = Integer.numberOfTrailingZeros(stocked);
+            if (tiers[t].remove(ticketId, t)) {
+                size.decrementAndGet();
+                waitingProducers.signal();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies every tier in priority order without locking any of them, keeping the copy only if no tier changed
+     * between the first and the last read. Falls back to locking every tier only if writers keep interfering.
+     * The version is the sum of the tiers' versions.
+     */
+    @Override
+    public PoolSnapshot snapshot(int maxTickets) {
+        long[] stamps = new long[tiers.length];
+        List<String> page = new ArrayList<>(Math.max(0, Math.min(maxTickets, 64)));
+        for (int attempt = 0; attempt < OPTIMISTIC_SNAPSHOT_ATTEMPTS; attempt++) {
+            page.clear();
+            try {
+                long version = 0;
+                int total = 0;
+                boolean writing = false;
+                for (int t = 0; t < tiers.length && !writing; t++) {
+                    stamps[t] = tiers[t].seqLock.tryOptimisticRead();
+                    writing = stamps[t] < 0;
+                    version += stamps[t] >>> 1;
+                    total += tiers[t].copyTo(maxTickets - page.size(), page);
+                }
+                if (!writing && validateAll(stamps)) {
+                    return new PoolSnapshot(version, total, page);
+                }
+            } catch (RuntimeException e) {
+                // Torn read of a tier being changed; retry
+            }
+            Thread.onSpinWait();
+        }
+
+        page.clear();
+        lockAll();
+        try {
+            long version = 0;
+            int total = 0;
+            for (Tier tier : tiers) {
+                version += tier.seqLock.version();
+                total += tier.copyTo(maxTickets - page.size(), page);
+            }
+            return new PoolSnapshot(version, total, page);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Takes a ticket of the highest stocked tier for a hold of the given time. Its slot stays reserved, and a
+     * released or expired ticket goes back to the end of its own tier.
+     */
+    @Override
+    public TicketHold holdTicket(long ttl, TimeUnit unit) {
+        String ticket = takeHeld();
+        return ticket == null ? null : TicketHold.start(this, ticket, ttl, unit);
+    }
+
+    @Override
+    public String takeHeld() {
+        int stocked;
+        while ((stocked = stockedTiers.get()) != 0) {
+            int t = Integer.numberOfTrailingZeros(stocked);
+            String ticket = tiers[t].poll(t);
+            if (ticket != null) {
+                heldTiers.put(ticket, TIERS[t]);
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void settleHeld(String ticket, boolean sold) {
+        TicketTier tier = heldTiers.remove(ticket);
+        if (tier == null) {
+            tier = TicketTier.GENERAL; // Held in another pool before a switch
+        }
+        if (sold || pendingPurchases.hasWaiting() && pendingPurchases.handOff(ticket)) {
+            size.decrementAndGet();
+            waitingProducers.signal();
+            return;
+        }
+        tiers[tier.ordinal()].offer(ticket, tier.ordinal());
+        signalBuyer(tier.ordinal());
+        if (pendingPurchases.hasWaiting()) {
+            pendingPurchases.dispatch(this::tryPurchase, this::hasTickets);
+        }
+    }
+
+    @Override
+    public int adoptHeld(int count) {
+        return reserve(count);
+    }
+
+    /**
+     * No-op for this implementation; switching is handled by TicketPoolManager.
+     */
+    @Override
+    public void switchSynchronizationMechanism(SynchronizationMechanism mechanism) {
+        // Not handled here, managed by TicketPoolManager
+    }
+
+    // Tiers whose tickets a buyer of the given tier may purchase: its own and every lower one
+    private static int eligibleTiers(TicketTier tier) {
+        return ALL_TIERS & -(1 << tier.ordinal());
+    }
+
+    // Builds a smooth weighted round-robin order, so each tier's turns are spread out rather than bunched together
+    private static int[] weightedSchedule() {
+        int total = 0;
+        for (TicketTier tier : TIERS) {
+            total += tier.getWeight();
+        }
+        int[] order = new int[total];
+        int[] credit = new int[TIERS.length];
+        for (int slot = 0; slot < total; slot++) {
+            int best = 0;
+            for (int t = 0; t < TIERS.length; t++) {
+                credit[t] += TIERS[t].getWeight();
+                if (credit[t] > credit[best]) {
+                    best = t;
+                }
+            }
+            credit[best] -= total;
+            order[slot] = best;
+        }
+        return order;
+    }
+
+    // Claims up to wanted slots of the shared capacity, returning how many were granted
+    private int reserve(int wanted) {
+        while (true) {
+            int reserved = size.get();
+            int granted = Math.min(wanted, capacity - reserved);
+            if (granted <= 0) {
+                return 0;
+            }
+            if (size.compareAndSet(reserved, reserved + granted)) {
+                return granted;
+            }
+        }
+    }
+
+    // Takes a ticket from the highest stocked tier among the eligible ones. A tier found empty had its bit
+    // cleared under its lock by whoever emptied it, so the loop only repeats after losing a race
+    private String take(int eligible) {
+        int stocked;
+        while ((stocked = stockedTiers.get() & eligible) != 0) {
+            int t = Integer.numberOfTrailingZeros(stocked);
+            String ticket = tiers[t].poll(t);
+            if (ticket != null) {
+                size.decrementAndGet();
+                waitingProducers.signal();
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    // Wakes one waiting buyer allowed to purchase a ticket of the given tier, chosen by the selection policy
+    private void signalBuyer(int tier) {
+        int waiting = 0;
+        for (int b = 0; b <= tier; b++) {
+            if (waitingBuyers[b].hasWaiters()) {
+                waiting |= 1 << b;
+            }
+        }
+        if (waiting != 0) {
+            waitingBuyers[chooseBuyer(waiting)].signal();
+        }
+    }
+
+    // Picks the buyer tier to wake among those waiting; probes at most one pass of the schedule
+    private int chooseBuyer(int waiting) {
+        if (selection == TierSelection.WEIGHTED && (waiting & (waiting - 1)) != 0) {
+            int start = turn.getAndIncrement();
+            for (int i = 0; i < schedule.length; i++) {
+                int b = schedule[Math.floorMod(start + i, schedule.length)];
+                if ((waiting & (1 << b)) != 0) {
+                    return b;
+                }
+            }
+        }
+        return Integer.numberOfTrailingZeros(waiting);
+    }
+
+    // A buyer leaving the wait may have absorbed a wakeup meant for another tier; pass it on if tickets remain.
+    // Buyers of every tier may purchase the lowest stocked tier, so its waiters are the ones to choose from
+    private void passOnWakeup() {
+        int stocked = stockedTiers.get();
+        if (stocked != 0) {
+            signalBuyer(31 - Integer.numberOfLeadingZeros(stocked));
+        }
+    }
+
+    private boolean hasTickets() {
+        return stockedTiers.get() != 0;
+    }
+
+    private boolean hasSpace() {
+        return size.get() < capacity;
+    }
+
+    // Sets or clears a tier's bit; called under the tier's lock, so the bit always matches the queue
+    private void markStocked(int tier, boolean stocked) {
+        int bit = 1 << tier;
+        while (true) {
+            int mask = stockedTiers.get();
+            int updated = stocked ? mask | bit : mask & ~bit;
+            if (mask == updated || stockedTiers.compareAndSet(mask, updated)) {
+                return;
+            }
+        }
+    }
+
+    private boolean validateAll(long[] stamps) {
+        for (int t = 0; t < tiers.length; t++) {
+            if (!tiers[t].seqLock.validate(stamps[t])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void lockAll() {
+        for (Tier tier : tiers) {
+            tier.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int t = tiers.length - 1; t >= 0; t--) {
+            tiers[t].lock.unlock();
+        }
+    }
+
+    // One tier's FIFO, guarded by its own lock. Capacity is reserved by the pool before a ticket is offered
+    private final class Tier {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final IndexedTicketQueue tickets = new IndexedTicketQueue();
+        private final SeqLock seqLock = new SeqLock();
+
+        void offer(String ticketInfo, int tier) {
+            lock.lock();
+            try {
+                seqLock.beginWrite();
+                tickets.addLast(ticketInfo);
+                seqLock.endWrite();
+                if (tickets.size() == 1) {
+                    markStocked(tier, true);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void offerAll(Iterator<String> ticketInfos, int count, int tier) {
+            lock.lock();
+            try {
+                seqLock.beginWrite();
+                try {
+                    for (int i = 0; i < count; i++) {
+                        tickets.addLast(ticketInfos.next());
+                    }
+                } finally {
+                    seqLock.endWrite();
+                }
+                markStocked(tier, true);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        String poll(int tier) {
+            lock.lock();
+            try {
+                if (tickets.isEmpty()) {
+                    return null;
+                }
+                seqLock.beginWrite();
+                String ticket = tickets.pollFirst();
+                seqLock.endWrite();
+                if (tickets.isEmpty()) {
+                    markStocked(tier, false);
+                }
+                return ticket;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int drainTo(int maxTickets, Collection<? super String> purchased, int tier) {
+            lock.lock();
+            try {
+                int count;
+                seqLock.beginWrite();
+                try {
+                    count = tickets.drainTo(maxTickets, purchased);
+                } finally {
+                    seqLock.endWrite();
+                }
+                if (tickets.isEmpty()) {
+                    markStocked(tier, false);
+                }
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Appends up to maxTickets from the front and returns the tier's size; reads without locking
+        int copyTo(int maxTickets, List<String> page) {
+            int count = tickets.size();
+            tickets.copyTo(maxTickets, page);
+            return count;
+        }
+
+        String find(String ticketId) {
+            lock.lock();
+            try {
+                return tickets.find(ticketId);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean remove(String ticketId, int tier) {
+            lock.lock();
+            try {
+                if (tickets.find(ticketId) == null) {
+                    return false;
+                }
+                seqLock.beginWrite();
+                tickets.remove(ticketId);
+                seqLock.endWrite();
+                if (tickets.isEmpty()) {
+                    markStocked(tier, false);
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
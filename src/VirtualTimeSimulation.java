@@ -0,0 +1,191 @@
+import java.util.LinkedHashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Discrete-event simulation of stepped actors on a virtual clock. Steps run one at a time from a queue ordered by
+// virtual time, and the clock jumps straight to the next one instead of sleeping, so hours of traffic take seconds.
+// The seed spreads the actors' first steps over their first delay and draws any jitter on the delays after that,
+// so a run on a fresh pool is reproducible.
+public final class VirtualTimeSimulation implements AutoCloseable {
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final SplittableRandom random;
+    private final double jitter;
+    private final Set<Waiting> waiting = new LinkedHashSet<>(); // Actors waiting on a future their last step returned
+    private final ConcurrentLinkedQueue<Waiting> resumed = new ConcurrentLinkedQueue<>();
+    private final LatencyHistogram waits = new LatencyHistogram(); // Virtual milliseconds, not nanoseconds
+    private long now;
+    private long sequence; // Breaks ties between events due at the same time in the order they were scheduled
+    private long steps;
+
+    /**
+     * Creates a simulation with its clock at zero, in which actors keep exactly to their delays.
+     *
+     * @param seed seeds the start offsets of the actors
+     */
+    public VirtualTimeSimulation(long seed) {
+        this(seed, 0);
+    }
+
+    /**
+     * Creates a simulation with its clock at zero. Jitter varies each delay at random by up to the given fraction
+     * either way, which keeps actors with equal delays from settling into lockstep.
+     *
+     * @param seed   seeds the start offsets of the actors and the jitter
+     * @param jitter how far a delay may vary, from 0 to 1
+     */
+    public VirtualTimeSimulation(long seed, double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1");
+        }
+        this.random = new SplittableRandom(seed);
+        this.jitter = jitter;
+    }
+
+    /**
+     * Adds an actor, whose first step falls at a random point within its first delay.
+     */
+    void add(SteppedActor actor) {
+        long firstDelay = actor.nextDelayMs();
+        schedule(now + (firstDelay > 0 ? random.nextLong(firstDelay) : 0), () -> step(actor));
+    }
+
+    /**
+     * Runs action every intervalMs of virtual time, starting one interval from now, for example to sample the pool.
+     */
+    public void every(long intervalMs, Runnable action) {
+        schedule(now + intervalMs, () -> {
+            action.run();
+            every(intervalMs, action);
+        });
+    }
+
+    /**
+     * Advances the clock by durationMs, running every step that falls due on the way.
+     */
+    public void run(long durationMs) {
+        long end = now + durationMs;
+        while (!events.isEmpty() && events.peek().time <= end) {
+            Event event = events.poll();
+            now = event.time;
+            event.action.run();
+            resumeWaiting();
+        }
+        now = end;
+    }
+
+    // The virtual time in milliseconds since the simulation started
+    public long getNow() {
+        return now;
+    }
+
+    // Actor steps run so far
+    public long getSteps() {
+        return steps;
+    }
+
+    // Actors waiting on an asynchronous purchase
+    public int getWaitingActors() {
+        return waiting.size();
+    }
+
+    // Waits that ended so far, and the virtual milliseconds they lasted
+    public long getWaitCount() {
+        return waits.snapshot().getCount();
+    }
+
+    /**
+     * Returns the virtual milliseconds within which the given percentile of finished waits ended.
+     */
+    public long getWaitPercentile(double percentile) {
+        return waits.snapshot().getPercentile(percentile);
+    }
+
+    /**
+     * Withdraws the purchases actors are still waiting on, so no ticket is handed to an actor that will not step again.
+     */
+    @Override
+    public void close() {
+        for (Waiting each : waiting) {
+            each.future.cancel(false);
+        }
+        waiting.clear();
+        events.clear();
+    }
+
+    private void schedule(long time, Runnable action) {
+        events.add(new Event(time, sequence++, action));
+    }
+
+    // Runs one step and schedules the actor's next, or waits for the future it returned
+    private void step(SteppedActor actor) {
+        steps++;
+        CompletableFuture<?> future = actor.step();
+        if (future == null) {
+            scheduleNext(actor);
+            return;
+        }
+        Waiting entry = new Waiting(actor, future, now);
+        waiting.add(entry);
+        // Pools complete a purchase inside the add that supplies its ticket, so this normally runs during a later
+        // step on this thread; the queue also copes with pools that complete it elsewhere
+        future.whenComplete((result, failure) -> resumed.add(entry));
+        resumeWaiting();
+    }
+
+    // Schedules the next step of every actor whose wait ended during the last step, at the current virtual time
+    private void resumeWaiting() {
+        Waiting entry;
+        while ((entry = resumed.poll()) != null) {
+            waiting.remove(entry);
+            if (entry.future.isCancelled()) {
+                continue;
+            }
+            waits.record(now - entry.since);
+            scheduleNext(entry.actor);
+        }
+    }
+
+    // Schedules the actor's next step after its delay, varied by the jitter
+    private void scheduleNext(SteppedActor actor) {
+        long delay = actor.nextDelayMs();
+        if (jitter > 0 && delay > 0) {
+            delay = Math.max(0, Math.round(delay * (1 + jitter * (2 * random.nextDouble() - 1))));
+        }
+        schedule(now + delay, () -> step(actor));
+    }
+
+    // A step due at a virtual time
+    private static final class Event implements Comparable<Event> {
+        private final long time;
+        private final long sequence;
+        private final Runnable action;
+
+        private Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    // An actor waiting on the future its last step returned, since a virtual time
+    private static final class Waiting {
+        private final SteppedActor actor;
+        private final CompletableFuture<?> future;
+        private final long since;
+
+        private Waiting(SteppedActor actor, CompletableFuture<?> future, long since) {
+            this.actor = actor;
+            this.future = future;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+// Parks threads waiting on a pool condition without holding any lock or monitor,
+// so a blocked virtual thread unmounts from its carrier instead of pinning it
+final class WaitQueue {
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Repeatedly calls {@code attempt} until it returns a non-null result, parking between tries.
+     * The caller registers before re-trying, so a concurrent {@link #signal()} issued after the state
+     * change is never missed. On the way out, the wakeup is passed on if {@code moreAvailable} still holds,
+     * in case this thread consumed a signal meant for another waiter.
+     *
+     * @param attempt       the non-blocking operation to retry, returning null while the condition is unmet
+     * @param moreAvailable whether the condition still holds for other waiters after this one is done
+     * @param timeoutNanos  the maximum time to wait, or a negative value to wait indefinitely
+     * @return the attempt's result, or null if the timeout elapsed first
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    <T> T await(Supplier<T> attempt, BooleanSupplier moreAvailable, long timeoutNanos) throws InterruptedException {
+        T result = attempt.get();
+        if (result != null) {
+            return result;
+        }
+
+        boolean timed = timeoutNanos >= 0;
+        long deadline = System.nanoTime() + timeoutNanos;
+        Thread current = Thread.currentThread();
+        waiters.add(current);
+        try {
+            while ((result = attempt.get()) == null) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (timed) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            return result;
+        } finally {
+            waiters.remove(current);
+            if (moreAvailable.getAsBoolean()) {
+                signal();
+            }
+        }
+    }
+
+    /**
+     * Returns true if any thread is parked, or about to park, in this queue.
+     */
+    boolean hasWaiters() {
+        return !waiters.isEmpty();
+    }
+
+    /**
+     * Wakes the longest-waiting thread, if any.
+     */
+    void signal() {
+        Thread waiter = waiters.peek();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Wakes every waiting thread, for state changes that several waiters can act on.
+     */
+    void signalAll() {
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+    }
+}